@@ -24,6 +24,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.auto.value.AutoValue;
 import com.google.cloud.storage.BlobId;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.flogger.FluentLogger;
 import google.registry.batch.CloudTasksUtils;
@@ -37,7 +38,9 @@ import google.registry.model.tld.Tld;
 import google.registry.rde.BrdaCopyAction;
 import google.registry.rde.DepositFragment;
 import google.registry.rde.Ghostryde;
+import google.registry.rde.Ghostryde.ShardedEncoder;
 import google.registry.rde.PendingDeposit;
+import google.registry.rde.PendingDeposit.PendingDepositCoder;
 import google.registry.rde.RdeCounter;
 import google.registry.rde.RdeMarshaller;
 import google.registry.rde.RdeModule;
@@ -47,30 +50,45 @@ import google.registry.rde.RdeUtils;
 import google.registry.request.Action;
 import google.registry.request.RequestParameters;
 import google.registry.tldconfig.idn.IdnTableEnum;
+import google.registry.util.ImprovedOutputStream;
 import google.registry.xjc.rdeheader.XjcRdeHeader;
 import google.registry.xjc.rdeheader.XjcRdeHeaderElement;
 import google.registry.xml.ValidationMode;
 import google.registry.xml.XmlException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Serial;
+import java.io.Serializable;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.security.Security;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.VarIntCoder;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.DoFn.OutputReceiver;
+import org.apache.beam.sdk.transforms.GroupByKey;
+import org.apache.beam.sdk.transforms.MapElements;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PDone;
+import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.sdk.values.TypeDescriptors;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openpgp.PGPPublicKey;
 
 public class RdeIO {
 
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   @AutoValue
   abstract static class Write
       extends PTransform<PCollection<KV<PendingDeposit, Iterable<DepositFragment>>>, PDone> {
@@ -122,6 +140,206 @@ public class RdeIO {
     }
   }
 
+  /**
+   * Writes deposits in shards, so that large deposits aren't marshalled by a single worker.
+   *
+   * <p>The fragments of each deposit are spread over {@link #shards()} shards, which are counted
+   * and compressed in parallel. The compressed shards of a deposit are then stitched into a single
+   * ghostryde file, followed by the RDE header with their combined counts. Only the encryption of
+   * each deposit is done by a single worker.
+   */
+  @AutoValue
+  abstract static class ShardedWrite
+      extends PTransform<PCollection<KV<PendingDeposit, DepositFragment>>, PDone> {
+
+    private static final long serialVersionUID = -2409467187366421437L;
+
+    abstract GcsUtils gcsUtils();
+
+    abstract CloudTasksUtils cloudTasksUtils();
+
+    abstract String rdeBucket();
+
+    // It's OK to return a primitive array because we are only using it to construct the
+    // PGPPublicKey, which is not serializable.
+    @SuppressWarnings("mutable")
+    abstract byte[] stagingKeyBytes();
+
+    abstract ValidationMode validationMode();
+
+    abstract int shards();
+
+    static Builder builder() {
+      return new AutoValue_RdeIO_ShardedWrite.Builder();
+    }
+
+    @AutoValue.Builder
+    abstract static class Builder {
+      abstract Builder setGcsUtils(GcsUtils value);
+
+      abstract Builder setCloudTasksUtils(CloudTasksUtils value);
+
+      abstract Builder setRdeBucket(String value);
+
+      abstract Builder setStagingKeyBytes(byte[] value);
+
+      abstract Builder setValidationMode(ValidationMode value);
+
+      abstract Builder setShards(int value);
+
+      abstract ShardedWrite build();
+    }
+
+    @Override
+    public PDone expand(PCollection<KV<PendingDeposit, DepositFragment>> input) {
+      int shards = shards();
+      input
+          .apply(
+              "Assign DepositFragment to shards",
+              MapElements.into(
+                      TypeDescriptors.kvs(
+                          TypeDescriptors.kvs(
+                              TypeDescriptor.of(PendingDeposit.class), TypeDescriptors.integers()),
+                          TypeDescriptor.of(DepositFragment.class)))
+                  .via(
+                      (KV<PendingDeposit, DepositFragment> kv) ->
+                          KV.of(
+                              KV.of(
+                                  kv.getKey(),
+                                  Math.floorMod(kv.getValue().key().hashCode(), shards)),
+                              kv.getValue())))
+          .setCoder(
+              KvCoder.of(
+                  KvCoder.of(PendingDepositCoder.of(), VarIntCoder.of()),
+                  SerializableCoder.of(DepositFragment.class)))
+          .apply("Group DepositFragment by shard", GroupByKey.create())
+          .apply("Count and compress shards in chunks", ParDo.of(new ShardWriter()))
+          .setCoder(KvCoder.of(PendingDepositCoder.of(), SerializableCoder.of(DepositChunk.class)))
+          .apply("Group chunks by PendingDeposit", GroupByKey.create())
+          .apply(
+              "Stitch shards and write to GCS",
+              ParDo.of(
+                  new ShardStitcher(gcsUtils(), rdeBucket(), stagingKeyBytes(), validationMode())))
+          .apply(
+              "Update cursor and enqueue next action",
+              ParDo.of(new CursorUpdater(cloudTasksUtils())));
+      return PDone.in(input.getPipeline());
+    }
+  }
+
+  /**
+   * A compressed chunk of a deposit shard, see {@link Ghostryde#shardEncoder}.
+   *
+   * <p>Large shards are split into several chunks, each of which can be appended to the deposit on
+   * its own.
+   *
+   * @param data the compressed XML of the fragments in the chunk
+   * @param length the length of the uncompressed XML
+   * @param counts the number of fragments in the chunk of each resource type
+   * @param failed whether any of the fragments in the chunk failed to marshal
+   */
+  record DepositChunk(
+      byte[] data, long length, ImmutableMap<RdeResourceType, Long> counts, boolean failed)
+      implements Serializable {
+
+    @Serial private static final long serialVersionUID = 2318946102875417531L;
+  }
+
+  /** The names and revision of the files written for a deposit. */
+  private record DepositFiles(
+      String id,
+      int revision,
+      BlobId xmlFilename,
+      BlobId xmlLengthFilename,
+      BlobId reportFilename) {
+
+    static DepositFiles create(PendingDeposit key, PipelineOptions options, String rdeBucket) {
+      final RdeMode mode = key.mode();
+      final String tld = key.tld();
+      final Instant watermark = key.watermark();
+      final int revision =
+          Optional.ofNullable(key.revision())
+              .orElseGet(() -> RdeRevision.getNextRevision(tld, watermark, mode));
+      String id = RdeUtils.timestampToId(watermark);
+      String prefix =
+          options.getJobName()
+              + '/'
+              + RdeNamingUtils.makeRydeFilename(tld, watermark, mode, 1, revision);
+      if (key.manual()) {
+        checkState(key.directoryWithTrailingSlash() != null, "Manual subdirectory not specified");
+        prefix = "manual/" + key.directoryWithTrailingSlash() + prefix;
+      }
+      // The length file will contain the byte length (ASCII) of the raw unencrypted XML.
+      //
+      // This is necessary because RdeUploadAction creates a tar file which requires that the length
+      // be outputted. We don't want to have to decrypt the entire ghostryde file to determine the
+      // length, so we just save it separately.
+      return new DepositFiles(
+          id,
+          revision,
+          BlobId.of(rdeBucket, prefix + ".xml.ghostryde"),
+          BlobId.of(rdeBucket, prefix + ".xml.length"),
+          BlobId.of(rdeBucket, prefix + "-report.xml.ghostryde"));
+    }
+  }
+
+  /** Outputs the XML that follows the fragments of a deposit, and returns its header. */
+  private static XjcRdeHeader writeDepositEnd(
+      Writer output, RdeMarshaller marshaller, PendingDeposit key, RdeCounter counter)
+      throws IOException {
+    // Don't write the IDN elements or EPP params for BRDA.
+    if (key.mode() == RdeMode.FULL) {
+      for (IdnTableEnum idn : IdnTableEnum.values()) {
+        output.write(marshaller.marshalIdn(idn.getTable()));
+        counter.increment(RdeResourceType.IDN);
+      }
+      output.write(marshaller.marshalRdeEppParams());
+      counter.increment(RdeResourceType.EPP_PARAMS);
+    }
+
+    // Output XML that says how many resources were emitted.
+    XjcRdeHeader header = counter.makeHeader(key.tld(), key.mode());
+    output.write(marshaller.marshalOrDie(new XjcRdeHeaderElement(header)));
+
+    // Output the bottom of the XML document.
+    output.write(marshaller.makeFooter());
+    return header;
+  }
+
+  /**
+   * Writes the report of a full deposit, and outputs the deposit so that its cursor is rolled
+   * forward.
+   */
+  private static void finishDeposit(
+      PendingDeposit key,
+      DepositFiles files,
+      XjcRdeHeader header,
+      RdeCounter counter,
+      GcsUtils gcsUtils,
+      PGPPublicKey stagingKey,
+      OutputReceiver<KV<PendingDeposit, Integer>> outputReceiver) {
+    // Write a tiny XML file to GCS containing some information about the deposit.
+    //
+    // This will be sent to ICANN once we're done uploading the big XML to the escrow provider.
+    if (key.mode() == RdeMode.FULL) {
+      logger.atInfo().log("Writing file '%s'.", files.reportFilename());
+      try (OutputStream gcsOutput = gcsUtils.openOutputStream(files.reportFilename());
+          OutputStream ghostrydeEncoder = Ghostryde.encoder(gcsOutput, stagingKey)) {
+        counter
+            .makeReport(files.id(), key.watermark(), header, files.revision())
+            .marshal(ghostrydeEncoder, UTF_8);
+      } catch (IOException | XmlException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    // Now that we're done, output roll the cursor forward.
+    if (key.manual()) {
+      logger.atInfo().log("Manual operation; not advancing cursor or enqueuing upload task.");
+    } else {
+      outputReceiver.output(KV.of(key, files.revision()));
+    }
+  }
+
   private static class RdeWriter
       extends DoFn<KV<PendingDeposit, Iterable<DepositFragment>>, KV<PendingDeposit, Integer>> {
 
@@ -161,29 +379,7 @@ public class RdeIO {
       RdeCounter counter = new RdeCounter();
 
       // Determine some basic things about the deposit.
-      final RdeMode mode = key.mode();
-      final String tld = key.tld();
-      final Instant watermark = key.watermark();
-      final int revision =
-          Optional.ofNullable(key.revision())
-              .orElseGet(() -> RdeRevision.getNextRevision(tld, watermark, mode));
-      String id = RdeUtils.timestampToId(watermark);
-      String prefix =
-          options.getJobName()
-              + '/'
-              + RdeNamingUtils.makeRydeFilename(tld, watermark, mode, 1, revision);
-      if (key.manual()) {
-        checkState(key.directoryWithTrailingSlash() != null, "Manual subdirectory not specified");
-        prefix = "manual/" + key.directoryWithTrailingSlash() + prefix;
-      }
-      BlobId xmlFilename = BlobId.of(rdeBucket, prefix + ".xml.ghostryde");
-      // This file will contain the byte length (ASCII) of the raw unencrypted XML.
-      //
-      // This is necessary because RdeUploadAction creates a tar file which requires that the length
-      // be outputted. We don't want to have to decrypt the entire ghostryde file to determine the
-      // length, so we just save it separately.
-      BlobId xmlLengthFilename = BlobId.of(rdeBucket, prefix + ".xml.length");
-      BlobId reportFilename = BlobId.of(rdeBucket, prefix + "-report.xml.ghostryde");
+      DepositFiles files = DepositFiles.create(key, options, rdeBucket);
 
       // These variables will be populated as we write the deposit XML and used for other files.
       boolean failed = false;
@@ -191,14 +387,20 @@ public class RdeIO {
 
       // Write a gigantic XML file to GCS. We'll start by opening encrypted out/err file handles.
 
-      logger.atInfo().log("Writing files '%s' and '%s'.", xmlFilename, xmlLengthFilename);
-      try (OutputStream gcsOutput = gcsUtils.openOutputStream(xmlFilename);
-          OutputStream lengthOutput = gcsUtils.openOutputStream(xmlLengthFilename);
+      logger.atInfo().log(
+          "Writing files '%s' and '%s'.", files.xmlFilename(), files.xmlLengthFilename());
+      try (OutputStream gcsOutput = gcsUtils.openOutputStream(files.xmlFilename());
+          OutputStream lengthOutput = gcsUtils.openOutputStream(files.xmlLengthFilename());
           OutputStream ghostrydeEncoder = Ghostryde.encoder(gcsOutput, stagingKey, lengthOutput);
           Writer output = new OutputStreamWriter(ghostrydeEncoder, UTF_8)) {
 
         // Output the top portion of the XML document.
-        output.write(marshaller.makeHeader(id, watermark, RdeResourceType.getUris(mode), revision));
+        output.write(
+            marshaller.makeHeader(
+                files.id(),
+                key.watermark(),
+                RdeResourceType.getUris(key.mode()),
+                files.revision()));
 
         // Output XML fragments while counting them.
         for (DepositFragment fragment : fragments) {
@@ -212,48 +414,176 @@ public class RdeIO {
           }
         }
 
-        // Don't write the IDN elements or EPP params for BRDA.
-        if (mode == RdeMode.FULL) {
-          for (IdnTableEnum idn : IdnTableEnum.values()) {
-            output.write(marshaller.marshalIdn(idn.getTable()));
-            counter.increment(RdeResourceType.IDN);
-          }
-          output.write(marshaller.marshalRdeEppParams());
-          counter.increment(RdeResourceType.EPP_PARAMS);
+        header = writeDepositEnd(output, marshaller, key, counter);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+
+      // If an entity was broken, abort after writing as much logs/deposit data as possible.
+      verify(!failed, "RDE staging failed for TLD %s", key.tld());
+
+      finishDeposit(key, files, header, counter, gcsUtils, stagingKey, outputReceiver);
+    }
+  }
+
+  /** Counts the fragments of a deposit shard and compresses their XML. */
+  private static class ShardWriter
+      extends DoFn<
+          KV<KV<PendingDeposit, Integer>, Iterable<DepositFragment>>,
+          KV<PendingDeposit, DepositChunk>> {
+
+    private static final long serialVersionUID = -7417963151322512245L;
+
+    /**
+     * The length of XML after which a chunk of a shard is output.
+     *
+     * <p>This bounds the size of each element, no matter how large the shard.
+     */
+    private static final long MAX_CHUNK_LENGTH = 64L * 1024 * 1024;
+
+    @ProcessElement
+    public void processElement(
+        @Element KV<KV<PendingDeposit, Integer>, Iterable<DepositFragment>> kv,
+        OutputReceiver<KV<PendingDeposit, DepositChunk>> outputReceiver) {
+      PendingDeposit key = kv.getKey().getKey();
+      ChunkWriter chunk = new ChunkWriter();
+      for (DepositFragment fragment : kv.getValue()) {
+        chunk.write(fragment);
+        if (chunk.length() >= MAX_CHUNK_LENGTH) {
+          outputReceiver.output(KV.of(key, chunk.finish()));
+          chunk = new ChunkWriter();
         }
+      }
+      if (chunk.length() > 0 || chunk.failed) {
+        outputReceiver.output(KV.of(key, chunk.finish()));
+      }
+    }
+  }
+
+  /** Counts deposit fragments and compresses their XML into a {@link DepositChunk}. */
+  private static class ChunkWriter {
+
+    private final RdeCounter counter = new RdeCounter();
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    private final ImprovedOutputStream shardEncoder = Ghostryde.shardEncoder(data);
+    private boolean failed = false;
 
-        // Output XML that says how many resources were emitted.
-        header = counter.makeHeader(tld, mode);
-        output.write(marshaller.marshalOrDie(new XjcRdeHeaderElement(header)));
+    void write(DepositFragment fragment) {
+      if (!fragment.xml().isEmpty()) {
+        try {
+          shardEncoder.write(fragment.xml().getBytes(UTF_8));
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        counter.increment(fragment.type());
+      }
+      if (!fragment.error().isEmpty()) {
+        failed = true;
+        logger.atSevere().log("Fragment error: %s", fragment.error());
+      }
+    }
 
-        // Output the bottom of the XML document.
-        output.write(marshaller.makeFooter());
+    long length() {
+      return shardEncoder.getBytesWritten();
+    }
 
+    DepositChunk finish() {
+      try {
+        shardEncoder.close();
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
+      return new DepositChunk(data.toByteArray(), length(), counter.getCounts(), failed);
+    }
+  }
 
-      // If an entity was broken, abort after writing as much logs/deposit data as possible.
-      verify(!failed, "RDE staging failed for TLD %s", tld);
+  /** Stitches the compressed chunks of a deposit into a single encrypted deposit on GCS. */
+  private static class ShardStitcher
+      extends DoFn<KV<PendingDeposit, Iterable<DepositChunk>>, KV<PendingDeposit, Integer>> {
 
-      // Write a tiny XML file to GCS containing some information about the deposit.
-      //
-      // This will be sent to ICANN once we're done uploading the big XML to the escrow provider.
-      if (mode == RdeMode.FULL) {
-        logger.atInfo().log("Writing file '%s'.", reportFilename);
-        try (OutputStream gcsOutput = gcsUtils.openOutputStream(reportFilename);
-            OutputStream ghostrydeEncoder = Ghostryde.encoder(gcsOutput, stagingKey)) {
-          counter.makeReport(id, watermark, header, revision).marshal(ghostrydeEncoder, UTF_8);
-        } catch (IOException | XmlException e) {
-          throw new RuntimeException(e);
-        }
+    private static final long serialVersionUID = 4062553418723495387L;
+
+    private final GcsUtils gcsUtils;
+    private final String rdeBucket;
+    private final byte[] stagingKeyBytes;
+    private final RdeMarshaller marshaller;
+
+    ShardStitcher(
+        GcsUtils gcsUtils,
+        String rdeBucket,
+        byte[] stagingKeyBytes,
+        ValidationMode validationMode) {
+      this.gcsUtils = gcsUtils;
+      this.rdeBucket = rdeBucket;
+      this.stagingKeyBytes = stagingKeyBytes;
+      this.marshaller = new RdeMarshaller(validationMode);
+    }
+
+    @SuppressWarnings({"EffectivelyPrivate", "unused"})
+    @Setup
+    public void setup() {
+      Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @ProcessElement
+    public void processElement(
+        @Element KV<PendingDeposit, Iterable<DepositChunk>> kv,
+        PipelineOptions options,
+        OutputReceiver<KV<PendingDeposit, Integer>> outputReceiver) {
+      PGPPublicKey stagingKey = PgpHelper.loadPublicKeyBytes(stagingKeyBytes);
+      PendingDeposit key = kv.getKey();
+      DepositFiles files = DepositFiles.create(key, options, rdeBucket);
+
+      // The chunks are iterated over twice instead of being collected, so that the whole deposit
+      // doesn't need to fit in memory. The first pass adds up their counts and lengths.
+      RdeCounter counter = new RdeCounter();
+      boolean failed = false;
+      long chunksLength = 0;
+      for (DepositChunk chunk : kv.getValue()) {
+        counter.add(chunk.counts());
+        failed |= chunk.failed();
+        chunksLength += chunk.length();
       }
-      // Now that we're done, output roll the cursor forward.
-      if (key.manual()) {
-        logger.atInfo().log("Manual operation; not advancing cursor or enqueuing upload task.");
-      } else {
-        outputReceiver.output(KV.of(key, revision));
+
+      // The total length is written ahead of the data, so the XML around the shards is
+      // marshalled first.
+      byte[] top =
+          marshaller
+              .makeHeader(
+                  files.id(),
+                  key.watermark(),
+                  RdeResourceType.getUris(key.mode()),
+                  files.revision())
+              .getBytes(UTF_8);
+      StringWriter bottomWriter = new StringWriter();
+      XjcRdeHeader header;
+      try {
+        header = writeDepositEnd(bottomWriter, marshaller, key, counter);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
       }
+      byte[] bottom = bottomWriter.toString().getBytes(UTF_8);
+
+      logger.atInfo().log(
+          "Writing files '%s' and '%s'.", files.xmlFilename(), files.xmlLengthFilename());
+      try (OutputStream gcsOutput = gcsUtils.openOutputStream(files.xmlFilename());
+          OutputStream lengthOutput = gcsUtils.openOutputStream(files.xmlLengthFilename());
+          ShardedEncoder ghostrydeEncoder =
+              Ghostryde.shardedEncoder(
+                  gcsOutput, stagingKey, top.length + chunksLength + bottom.length, lengthOutput)) {
+        ghostrydeEncoder.write(top);
+        for (DepositChunk chunk : kv.getValue()) {
+          ghostrydeEncoder.appendShard(chunk.data(), chunk.length());
+        }
+        ghostrydeEncoder.write(bottom);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+
+      // If an entity was broken, abort after writing as much logs/deposit data as possible.
+      verify(!failed, "RDE staging failed for TLD %s", key.tld());
+
+      finishDeposit(key, files, header, counter, gcsUtils, stagingKey, outputReceiver);
     }
   }
 
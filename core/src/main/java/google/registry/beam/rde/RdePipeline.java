@@ -158,6 +158,11 @@ import org.apache.beam.sdk.values.TypeDescriptor;
  * pending deposit is then rolled forward, and the next action is enqueued. The latter two
  * operations are performed in a transaction so the cursor is rolled back if enqueueing failed.
  *
+ * <p>When the {@code depositShards} option is greater than one, the fragments of each pending
+ * deposit are instead spread over that many shards, which are counted and compressed in parallel.
+ * The compressed shards are then stitched into the same encrypted file, behind a single header with
+ * the combined counts, so only the encryption of each deposit happens on a single worker.
+ *
  * @see <a href="https://cloud.google.com/dataflow/docs/guides/templates/using-flex-templates">Using
  *     Flex Templates</a>
  */
@@ -171,6 +176,7 @@ public class RdePipeline implements Serializable {
   private final Instant watermark;
   private final String rdeBucket;
   private final byte[] stagingKeyBytes;
+  private final int depositShards;
   private final GcsUtils gcsUtils;
   private final CloudTasksUtils cloudTasksUtils;
   private final RdeMarshaller marshaller;
@@ -201,6 +207,9 @@ public class RdePipeline implements Serializable {
     this.watermark = potentialWatermarks.asList().get(0);
     this.rdeBucket = options.getRdeStagingBucket();
     this.stagingKeyBytes = BaseEncoding.base64Url().decode(options.getStagingKey());
+    this.depositShards = options.getDepositShards();
+    checkArgument(
+        depositShards > 0, "Number of deposit shards must be positive: %s", depositShards);
     this.gcsUtils = gcsUtils;
     this.cloudTasksUtils = cloudTasksUtils;
     this.marshaller = new RdeMarshaller(mode);
@@ -208,13 +217,21 @@ public class RdePipeline implements Serializable {
 
   PipelineResult run() {
     Pipeline pipeline = Pipeline.create(options);
-    PCollection<KV<PendingDeposit, Iterable<DepositFragment>>> fragments =
-        createFragments(pipeline);
-    persistData(fragments);
+    if (depositShards > 1) {
+      persistShardedData(flattenFragments(pipeline));
+    } else {
+      persistData(createFragments(pipeline));
+    }
     return pipeline.run();
   }
 
   PCollection<KV<PendingDeposit, Iterable<DepositFragment>>> createFragments(Pipeline pipeline) {
+    return flattenFragments(pipeline)
+        .apply("Group DepositFragment by PendingDeposit", GroupByKey.create());
+  }
+
+  /** Returns the (pending deposit: deposit fragment) pairs from all entities, ungrouped. */
+  PCollection<KV<PendingDeposit, DepositFragment>> flattenFragments(Pipeline pipeline) {
     PCollection<KV<PendingDeposit, DepositFragment>> registrarFragments =
         processRegistrars(pipeline);
 
@@ -245,8 +262,8 @@ public class RdePipeline implements Serializable {
         .apply(
             "Combine PendingDeposit:DepositFragment pairs from all entities",
             Flatten.pCollections())
-        .setCoder(KvCoder.of(PendingDepositCoder.of(), SerializableCoder.of(DepositFragment.class)))
-        .apply("Group DepositFragment by PendingDeposit", GroupByKey.create());
+        .setCoder(
+            KvCoder.of(PendingDepositCoder.of(), SerializableCoder.of(DepositFragment.class)));
   }
 
   void persistData(PCollection<KV<PendingDeposit, Iterable<DepositFragment>>> input) {
@@ -261,6 +278,19 @@ public class RdePipeline implements Serializable {
             .build());
   }
 
+  void persistShardedData(PCollection<KV<PendingDeposit, DepositFragment>> input) {
+    input.apply(
+        "Write shards to GCS, update cursors, and enqueue upload tasks",
+        RdeIO.ShardedWrite.builder()
+            .setRdeBucket(rdeBucket)
+            .setGcsUtils(gcsUtils)
+            .setCloudTasksUtils(cloudTasksUtils)
+            .setValidationMode(mode)
+            .setStagingKeyBytes(stagingKeyBytes)
+            .setShards(depositShards)
+            .build());
+  }
+
   private PCollection<KV<PendingDeposit, DepositFragment>> processRegistrars(Pipeline pipeline) {
     // Note that the namespace in the metric is not being used by Stackdriver, it just has to be
     // non-empty.
@@ -15,6 +15,7 @@
 package google.registry.beam.rde;
 
 import google.registry.beam.common.RegistryPipelineOptions;
+import org.apache.beam.sdk.options.Default;
 import org.apache.beam.sdk.options.Description;
 
 /** Custom options for running the spec11 pipeline. */
@@ -39,4 +40,12 @@ public interface RdePipelineOptions extends RegistryPipelineOptions {
   String getStagingKey();
 
   void setStagingKey(String value);
+
+  @Description(
+      "The number of shards each deposit is written in. Shards are marshalled and compressed in"
+          + " parallel, then stitched into a single encrypted deposit.")
+  @Default.Integer(1)
+  int getDepositShards();
+
+  void setDepositShards(int value);
 }
@@ -0,0 +1,268 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.cache;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import google.registry.model.EppResource;
+import google.registry.model.EppResourceChangeRecorder.ChangedResource;
+import google.registry.model.ForeignKeyUtils;
+import google.registry.model.domain.Domain;
+import google.registry.model.host.Host;
+import google.registry.persistence.VKey;
+import google.registry.util.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.UnifiedJedis;
+
+/**
+ * Broadcasts changes to domains and hosts over Valkey pub/sub, so that every node can evict them
+ * from its local caches.
+ *
+ * <p>After a flow commits, the resources it changed are deleted from the remote cache and published
+ * on a single channel. Each node subscribes to that channel on a daemon thread, and evicts the
+ * resources it receives from the {@link EppResource} and {@link ForeignKeyUtils} caches as well as
+ * from the local layer of the multi-layer domain and host caches. This lets those caches keep
+ * entries for much longer than they could if expiry were the only way to pick up changes.
+ *
+ * <p>Pub/sub delivery is at most once, so whenever the subscription is (re-)established, all local
+ * caches are cleared, as messages may have been missed while the node was not subscribed.
+ */
+public class CacheInvalidationBus {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  @VisibleForTesting static final String CHANNEL = "nomulus:cache-invalidation";
+
+  private static final Duration RESUBSCRIBE_DELAY = Duration.ofSeconds(5);
+
+  private static final ImmutableMap<String, Class<? extends EppResource>> RESOURCE_TYPES =
+      ImmutableMap.of("Domain", Domain.class, "Host", Host.class);
+
+  // Neither separator can occur in a repo ID or a domain or host name.
+  private static final char LINE_SEPARATOR = '\n';
+  private static final char FIELD_SEPARATOR = '\t';
+
+  private final UnifiedJedis jedis;
+  private final SimplifiedJedisClient jedisClient;
+  private final CacheMetrics cacheMetrics;
+  private final Clock clock;
+
+  private final AtomicBoolean subscriberStarted = new AtomicBoolean();
+
+  @Nullable private volatile MultilayerDomainCache domainCache;
+  @Nullable private volatile MultilayerHostCache hostCache;
+
+  public CacheInvalidationBus(
+      UnifiedJedis jedis,
+      SimplifiedJedisClient jedisClient,
+      CacheMetrics cacheMetrics,
+      Clock clock) {
+    this.jedis = jedis;
+    this.jedisClient = jedisClient;
+    this.cacheMetrics = cacheMetrics;
+    this.clock = clock;
+  }
+
+  /** Registers the multi-layer domain cache of this node, whose local layer is kept in sync. */
+  void registerDomainCache(MultilayerDomainCache domainCache) {
+    this.domainCache = domainCache;
+  }
+
+  /** Registers the multi-layer host cache of this node, whose local layer is kept in sync. */
+  void registerHostCache(MultilayerHostCache hostCache) {
+    this.hostCache = hostCache;
+  }
+
+  /**
+   * Starts listening for changes published by any node, including this one.
+   *
+   * <p>This is called once the server starts, rather than when the bus is created, so that merely
+   * building the component doesn't open a subscription. Later calls do nothing.
+   */
+  public void startSubscriber() {
+    if (!subscriberStarted.compareAndSet(false, true)) {
+      return;
+    }
+    new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("cache-invalidation-subscriber-%d")
+        .build()
+        .newThread(this::subscribeForever)
+        .start();
+  }
+
+  /**
+   * Publishes the given changed resources to all nodes.
+   *
+   * <p>This must only be called once the changes have been committed. Failures are logged rather
+   * than thrown, since the changes themselves have already succeeded; the affected entries then
+   * remain stale until they expire.
+   */
+  public void publish(ImmutableSet<ChangedResource> changedResources) {
+    ImmutableList<ChangedResource> supportedResources =
+        changedResources.stream()
+            .filter(resource -> RESOURCE_TYPES.containsValue(resource.resourceType()))
+            .collect(toImmutableList());
+    if (supportedResources.isEmpty()) {
+      return;
+    }
+    invalidateLocally(supportedResources);
+    try {
+      // Remove the stale copies from the remote cache first, so that no node reloads them from
+      // there after evicting them from its local caches.
+      jedisClient.deleteAll(Domain.class, getDomainCacheKeys(supportedResources));
+      jedisClient.deleteAll(Host.class, getHostCacheKeys(supportedResources));
+      jedis.publish(CHANNEL, encodeMessage(clock.now(), supportedResources));
+      supportedResources.forEach(
+          resource ->
+              cacheMetrics.recordInvalidationPublished(resource.resourceType().getSimpleName()));
+    } catch (RuntimeException e) {
+      logger.atWarning().withCause(e).log(
+          "Failed to publish %d changed resources for cache invalidation.",
+          supportedResources.size());
+    }
+  }
+
+  private void subscribeForever() {
+    while (true) {
+      try {
+        jedis.subscribe(createSubscriber(), CHANNEL);
+      } catch (RuntimeException e) {
+        logger.atWarning().atMostEvery(1, MINUTES).withCause(e).log(
+            "Lost subscription to cache invalidation channel %s, resubscribing.", CHANNEL);
+      }
+      Uninterruptibles.sleepUninterruptibly(RESUBSCRIBE_DELAY);
+    }
+  }
+
+  private JedisPubSub createSubscriber() {
+    return new JedisPubSub() {
+      @Override
+      public void onSubscribe(String channel, int subscribedChannels) {
+        logger.atInfo().log("Subscribed to cache invalidation channel %s.", channel);
+        invalidateAllLocally();
+      }
+
+      @Override
+      public void onMessage(String channel, String message) {
+        handleMessage(message);
+      }
+    };
+  }
+
+  @VisibleForTesting
+  void handleMessage(String message) {
+    try {
+      List<String> lines = Splitter.on(LINE_SEPARATOR).splitToList(message);
+      Instant publishTime = Instant.ofEpochMilli(Long.parseLong(lines.get(0)));
+      ImmutableList<ChangedResource> changedResources =
+          lines.stream()
+              .skip(1)
+              .map(CacheInvalidationBus::decodeResource)
+              .collect(toImmutableList());
+      invalidateLocally(changedResources);
+      Duration lag = Duration.between(publishTime, clock.now());
+      changedResources.forEach(
+          resource ->
+              cacheMetrics.recordInvalidationReceived(
+                  resource.resourceType().getSimpleName(), lag));
+    } catch (RuntimeException e) {
+      logger.atWarning().withCause(e).log("Failed to handle cache invalidation message.");
+    }
+  }
+
+  private void invalidateLocally(ImmutableList<ChangedResource> changedResources) {
+    EppResource.invalidateInCache(
+        changedResources.stream()
+            .map(resource -> VKey.create(resource.resourceType(), resource.repoId()))
+            .collect(toImmutableList()));
+    ForeignKeyUtils.invalidateInCaches(
+        changedResources.stream()
+            .map(resource -> VKey.create(resource.resourceType(), resource.foreignKey()))
+            .collect(toImmutableList()));
+    Optional.ofNullable(domainCache)
+        .ifPresent(cache -> cache.invalidateLocally(getDomainCacheKeys(changedResources)));
+    Optional.ofNullable(hostCache)
+        .ifPresent(cache -> cache.invalidateLocally(getHostCacheKeys(changedResources)));
+  }
+
+  private void invalidateAllLocally() {
+    EppResource.invalidateAllInCache();
+    ForeignKeyUtils.invalidateAllInCaches();
+    Optional.ofNullable(domainCache).ifPresent(MultilayerDomainCache::invalidateAllLocally);
+    Optional.ofNullable(hostCache).ifPresent(MultilayerHostCache::invalidateAllLocally);
+  }
+
+  /** Returns the keys of the domain caches, which are domain names. */
+  private static ImmutableSet<String> getDomainCacheKeys(List<ChangedResource> changedResources) {
+    return changedResources.stream()
+        .filter(resource -> resource.resourceType().equals(Domain.class))
+        .map(ChangedResource::foreignKey)
+        .collect(toImmutableSet());
+  }
+
+  /** Returns the keys of the host caches, which are repo IDs. */
+  private static ImmutableSet<String> getHostCacheKeys(List<ChangedResource> changedResources) {
+    return changedResources.stream()
+        .filter(resource -> resource.resourceType().equals(Host.class))
+        .map(ChangedResource::repoId)
+        .collect(toImmutableSet());
+  }
+
+  /**
+   * Encodes a message as the publish time in epoch milliseconds, followed by one line per resource
+   * with its type, repo ID and foreign key.
+   */
+  @VisibleForTesting
+  static String encodeMessage(Instant publishTime, List<ChangedResource> changedResources) {
+    StringBuilder message = new StringBuilder().append(publishTime.toEpochMilli());
+    for (ChangedResource resource : changedResources) {
+      message.append(LINE_SEPARATOR);
+      Joiner.on(FIELD_SEPARATOR)
+          .appendTo(
+              message,
+              resource.resourceType().getSimpleName(),
+              resource.repoId(),
+              resource.foreignKey());
+    }
+    return message.toString();
+  }
+
+  private static ChangedResource decodeResource(String line) {
+    List<String> fields = Splitter.on(FIELD_SEPARATOR).splitToList(line);
+    Class<? extends EppResource> resourceType = RESOURCE_TYPES.get(fields.get(0));
+    if (resourceType == null) {
+      throw new IllegalArgumentException("Unknown resource type: " + fields.get(0));
+    }
+    return new ChangedResource(resourceType, fields.get(1), fields.get(2));
+  }
+}
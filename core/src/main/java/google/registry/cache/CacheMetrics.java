@@ -15,11 +15,14 @@
 package google.registry.cache;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.monitoring.metrics.EventMetric;
+import com.google.monitoring.metrics.ExponentialFitter;
 import com.google.monitoring.metrics.IncrementableMetric;
 import com.google.monitoring.metrics.LabelDescriptor;
 import com.google.monitoring.metrics.MetricRegistryImpl;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import java.time.Duration;
 
 /** Metrics tracking effectiveness of local and remote EPP resource caching. */
 @Singleton
@@ -29,7 +32,9 @@ public class CacheMetrics {
     LOCAL,
     REMOTE,
     MISS,
-    MISS_NONEXISTENT
+    MISS_NONEXISTENT,
+    /** A miss that waited for the concurrent load of the same key by another request. */
+    COALESCED
   }
 
   private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS =
@@ -42,10 +47,47 @@ public class CacheMetrics {
           .newIncrementableMetric(
               "/cache/lookups", "Count of cache lookups", "count", LABEL_DESCRIPTORS);
 
+  private static final ImmutableSet<LabelDescriptor> INVALIDATION_LABEL_DESCRIPTORS =
+      ImmutableSet.of(LabelDescriptor.create("cache_name", "The type of the cache (domain/host)."));
+
+  private static final IncrementableMetric invalidationsPublished =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/cache/invalidations/published",
+              "Count of changed resources published for eviction from the local caches",
+              "count",
+              INVALIDATION_LABEL_DESCRIPTORS);
+
+  private static final IncrementableMetric invalidationsReceived =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/cache/invalidations/received",
+              "Count of changed resources received for eviction from the local caches",
+              "count",
+              INVALIDATION_LABEL_DESCRIPTORS);
+
+  private static final EventMetric invalidationLag =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/cache/invalidations/lag",
+              "Time from the publication of a changed resource to its eviction on this node",
+              "milliseconds",
+              INVALIDATION_LABEL_DESCRIPTORS,
+              ExponentialFitter.create(20, 2.0, 1.0));
+
   @Inject
   public CacheMetrics() {}
 
   public void recordLookup(String cacheName, CacheHitType hitType) {
     cacheLookups.increment(cacheName, hitType.toString());
   }
+
+  public void recordInvalidationPublished(String cacheName) {
+    invalidationsPublished.increment(cacheName);
+  }
+
+  public void recordInvalidationReceived(String cacheName, Duration lag) {
+    invalidationsReceived.increment(cacheName);
+    invalidationLag.record(lag.toMillis(), cacheName);
+  }
 }
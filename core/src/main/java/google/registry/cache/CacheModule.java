@@ -92,26 +92,50 @@ public final class CacheModule {
     return jedis.map(SimplifiedJedisClient::new);
   }
 
+  @Provides
+  @Singleton
+  public static Optional<CacheInvalidationBus> provideCacheInvalidationBus(
+      Optional<UnifiedJedis> jedis,
+      Optional<SimplifiedJedisClient> jedisClient,
+      CacheMetrics cacheMetrics,
+      Clock clock) {
+    if (jedis.isEmpty() || jedisClient.isEmpty()) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        new CacheInvalidationBus(jedis.get(), jedisClient.get(), cacheMetrics, clock));
+  }
+
   @Provides
   @Singleton
   public static DomainCache provideDomainCache(
-      Optional<SimplifiedJedisClient> jedisClient, Clock clock, CacheMetrics cacheMetrics) {
+      Optional<SimplifiedJedisClient> jedisClient,
+      Optional<CacheInvalidationBus> cacheInvalidationBus,
+      Clock clock,
+      CacheMetrics cacheMetrics) {
     if (jedisClient.isEmpty()) {
       return domainName ->
           ForeignKeyUtils.loadResourceByCache(Domain.class, domainName, clock.now());
     }
-    return new MultilayerDomainCache(jedisClient.get(), clock, cacheMetrics);
+    MultilayerDomainCache domainCache =
+        new MultilayerDomainCache(jedisClient.get(), clock, cacheMetrics);
+    cacheInvalidationBus.ifPresent(bus -> bus.registerDomainCache(domainCache));
+    return domainCache;
   }
 
   @Provides
   @Singleton
   public static HostCache provideHostCache(
-      Optional<SimplifiedJedisClient> jedisClient, CacheMetrics cacheMetrics) {
+      Optional<SimplifiedJedisClient> jedisClient,
+      Optional<CacheInvalidationBus> cacheInvalidationBus,
+      CacheMetrics cacheMetrics) {
     if (jedisClient.isEmpty()) {
       return repoId ->
           Optional.ofNullable(EppResource.loadByCache(VKey.create(Host.class, repoId)));
     }
-    return new MultilayerHostCache(jedisClient.get(), cacheMetrics);
+    MultilayerHostCache hostCache = new MultilayerHostCache(jedisClient.get(), cacheMetrics);
+    cacheInvalidationBus.ifPresent(bus -> bus.registerHostCache(hostCache));
+    return hostCache;
   }
 
   private static SSLSocketFactory createValkeySslSocketFactory(String valkeyCertificateAuthority) {
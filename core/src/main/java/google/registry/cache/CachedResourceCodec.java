@@ -0,0 +1,852 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static google.registry.util.CollectionUtils.isNullOrEmpty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import google.registry.model.EppResource;
+import google.registry.model.UpdateAutoTimestamp;
+import google.registry.model.billing.BillingCancellation;
+import google.registry.model.billing.BillingEvent;
+import google.registry.model.billing.BillingRecurrence;
+import google.registry.model.domain.Domain;
+import google.registry.model.domain.DomainAuthInfo;
+import google.registry.model.domain.GracePeriod;
+import google.registry.model.domain.Period;
+import google.registry.model.domain.launch.LaunchNotice;
+import google.registry.model.domain.rgp.GracePeriodStatus;
+import google.registry.model.domain.secdns.DomainDsData;
+import google.registry.model.domain.token.AllocationToken;
+import google.registry.model.eppcommon.AuthInfo.PasswordAuth;
+import google.registry.model.eppcommon.StatusValue;
+import google.registry.model.eppcommon.Trid;
+import google.registry.model.host.Host;
+import google.registry.model.poll.PollMessage;
+import google.registry.model.transfer.DomainTransferData;
+import google.registry.model.transfer.DomainTransferData.TransferServerApproveEntity;
+import google.registry.model.transfer.TransferStatus;
+import google.registry.persistence.VKey;
+import google.registry.tmch.LordnTaskUtils.LordnPhase;
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+
+/**
+ * A compact, versioned binary encoding of the domains and hosts stored in the remote cache.
+ *
+ * <p>An encoded value starts with a format version and a flags byte, followed by the fields of the
+ * resource. Each field is written as a numeric tag followed by its value, and fields that are null
+ * or empty are left out entirely. Nested objects have a tag space of their own, and every object
+ * ends with tag 0. Integers are written as varints, strings as UTF-8 and enums by name.
+ *
+ * <p>Tags must never be reused, and any change to the encoded fields needs a new {@link
+ * #CURRENT_VERSION}, including adding one: since empty fields are left out, a value written before
+ * a field existed would otherwise decode successfully with that field empty. A value written in any
+ * other version, or with a tag that this version doesn't know, fails to decode with an {@link
+ * IncompatibleFormatException}, which callers treat as a cache miss: the resource is then reloaded
+ * from the database and cached again in the current format. As long as the version is bumped, a
+ * deploy that changes the format therefore only causes cache misses, never wrongly decoded
+ * resources. The unit tests pin the encoded fields of each version to make sure of that.
+ *
+ * <p>Bodies larger than {@link #COMPRESSION_THRESHOLD_BYTES} (in practice, domains with many
+ * nameservers or DS records) are deflated when that makes them smaller.
+ */
+final class CachedResourceCodec {
+
+  @VisibleForTesting static final byte CURRENT_VERSION = 1;
+
+  @VisibleForTesting static final int COMPRESSION_THRESHOLD_BYTES = 1024;
+
+  private static final int HEADER_LENGTH = 2;
+  private static final byte FLAG_DEFLATED = 0x01;
+
+  private static final int END = 0;
+
+  // Fields common to all resources.
+  private static final int REPO_ID = 1;
+  private static final int CURRENT_SPONSOR_REGISTRAR_ID = 2;
+  private static final int CREATION_REGISTRAR_ID = 3;
+  private static final int LAST_EPP_UPDATE_REGISTRAR_ID = 4;
+  private static final int CREATION_TIME = 5;
+  private static final int DELETION_TIME = 6;
+  private static final int LAST_EPP_UPDATE_TIME = 7;
+  private static final int STATUSES = 8;
+  private static final int UPDATE_TIMESTAMP = 9;
+
+  // Domain fields.
+  private static final int DOMAIN_NAME = 16;
+  private static final int NAMESERVERS = 17;
+  private static final int AUTH_INFO = 18;
+  private static final int DS_DATA = 19;
+  private static final int LAUNCH_NOTICE = 20;
+  private static final int IDN_TABLE_NAME = 21;
+  private static final int SUBORDINATE_HOSTS = 22;
+  private static final int REGISTRATION_EXPIRATION_TIME = 23;
+  private static final int DELETE_POLL_MESSAGE = 24;
+  private static final int AUTORENEW_BILLING_EVENT = 25;
+  private static final int AUTORENEW_POLL_MESSAGE = 26;
+  private static final int GRACE_PERIODS = 27;
+  private static final int SMD_ID = 28;
+  private static final int TRANSFER_DATA = 29;
+  private static final int DOMAIN_LAST_TRANSFER_TIME = 30;
+  private static final int AUTORENEW_END_TIME = 31;
+  private static final int LORDN_PHASE = 32;
+  private static final int CURRENT_BULK_TOKEN = 33;
+
+  // Host fields.
+  private static final int HOST_NAME = 16;
+  private static final int INET_ADDRESSES = 17;
+  private static final int SUPERORDINATE_DOMAIN = 18;
+  private static final int HOST_LAST_TRANSFER_TIME = 19;
+  private static final int LAST_SUPERORDINATE_CHANGE = 20;
+
+  // Auth info fields.
+  private static final int AUTH_INFO_VALUE = 1;
+  private static final int AUTH_INFO_REPO_ID = 2;
+
+  // DS data fields.
+  private static final int DS_KEY_TAG = 1;
+  private static final int DS_ALGORITHM = 2;
+  private static final int DS_DIGEST_TYPE = 3;
+  private static final int DS_DIGEST = 4;
+
+  // Launch notice fields.
+  private static final int NOTICE_TCN_ID = 1;
+  private static final int NOTICE_VALIDATOR_ID = 2;
+  private static final int NOTICE_EXPIRATION_TIME = 3;
+  private static final int NOTICE_ACCEPTED_TIME = 4;
+
+  // Grace period fields.
+  private static final int GRACE_PERIOD_ID = 1;
+  private static final int GRACE_PERIOD_TYPE = 2;
+  private static final int GRACE_PERIOD_DOMAIN_REPO_ID = 3;
+  private static final int GRACE_PERIOD_EXPIRATION_TIME = 4;
+  private static final int GRACE_PERIOD_REGISTRAR_ID = 5;
+  private static final int GRACE_PERIOD_BILLING_EVENT = 6;
+  private static final int GRACE_PERIOD_BILLING_RECURRENCE = 7;
+
+  // Transfer data fields.
+  private static final int TRANSFER_STATUS = 1;
+  private static final int TRANSFER_GAINING_REGISTRAR_ID = 2;
+  private static final int TRANSFER_REQUEST_TIME = 3;
+  private static final int TRANSFER_LOSING_REGISTRAR_ID = 4;
+  private static final int TRANSFER_PENDING_EXPIRATION_TIME = 5;
+  private static final int TRANSFER_SERVER_TRID = 6;
+  private static final int TRANSFER_CLIENT_TRID = 7;
+  private static final int TRANSFER_PERIOD_VALUE = 8;
+  private static final int TRANSFER_PERIOD_UNIT = 9;
+  private static final int TRANSFER_REPO_ID = 10;
+  private static final int TRANSFER_HISTORY_ENTRY_ID = 11;
+  private static final int TRANSFER_POLL_MESSAGES = 12;
+  private static final int TRANSFER_BILLING_CANCELLATION = 13;
+  private static final int TRANSFER_BILLING_EVENT = 14;
+  private static final int TRANSFER_BILLING_RECURRENCE = 15;
+  private static final int TRANSFER_AUTORENEW_POLL_MESSAGE = 16;
+  private static final int TRANSFER_REGISTRATION_EXPIRATION_TIME = 17;
+
+  private CachedResourceCodec() {}
+
+  /** Thrown when a value can't be decoded, e.g. because it was written in another version. */
+  static class IncompatibleFormatException extends RuntimeException {
+
+    IncompatibleFormatException(String message) {
+      super(message);
+    }
+
+    IncompatibleFormatException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+
+  /** Encodes the given domain or host. */
+  static byte[] encode(EppResource resource) {
+    Output body = new Output();
+    writeCommonFields(resource, body);
+    if (resource instanceof Domain domain) {
+      writeDomainFields(domain, body);
+    } else if (resource instanceof Host host) {
+      writeHostFields(host, body);
+    } else {
+      throw new IllegalArgumentException("Unsupported resource type " + resource.getClass());
+    }
+    body.writeTag(END);
+
+    byte[] bodyBytes = body.toByteArray();
+    byte flags = 0;
+    if (bodyBytes.length > COMPRESSION_THRESHOLD_BYTES) {
+      byte[] deflated = deflate(bodyBytes);
+      if (deflated.length < bodyBytes.length) {
+        bodyBytes = deflated;
+        flags |= FLAG_DEFLATED;
+      }
+    }
+    byte[] data = new byte[HEADER_LENGTH + bodyBytes.length];
+    data[0] = CURRENT_VERSION;
+    data[1] = flags;
+    System.arraycopy(bodyBytes, 0, data, HEADER_LENGTH, bodyBytes.length);
+    return data;
+  }
+
+  /**
+   * Decodes a domain or host of the given type.
+   *
+   * @throws IncompatibleFormatException if the value wasn't written in the current format, or is
+   *     otherwise malformed
+   */
+  static <V extends EppResource> V decode(Class<V> clazz, byte[] data) {
+    checkArgument(
+        clazz.equals(Domain.class) || clazz.equals(Host.class),
+        "Unsupported resource type %s",
+        clazz);
+    if (data.length < HEADER_LENGTH) {
+      throw new IncompatibleFormatException("Truncated header");
+    }
+    if (data[0] != CURRENT_VERSION) {
+      throw new IncompatibleFormatException(
+          String.format(
+              "Format version %d is not the current version %d", data[0], CURRENT_VERSION));
+    }
+    ByteBuffer body =
+        (data[1] & FLAG_DEFLATED) != 0
+            ? ByteBuffer.wrap(inflate(data))
+            : ByteBuffer.wrap(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+    try {
+      Input input = new Input(body);
+      return clazz.cast(clazz.equals(Domain.class) ? readDomain(input) : readHost(input));
+    } catch (IncompatibleFormatException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      // Anything else that goes wrong (truncated data, unknown enum values, fields rejected by the
+      // builders) also means that the value can't be trusted.
+      throw new IncompatibleFormatException("Malformed value", e);
+    }
+  }
+
+  private static void writeCommonFields(EppResource resource, Output out) {
+    out.writeString(REPO_ID, resource.getRepoId());
+    out.writeString(CURRENT_SPONSOR_REGISTRAR_ID, resource.getPersistedCurrentSponsorRegistrarId());
+    out.writeString(CREATION_REGISTRAR_ID, resource.getCreationRegistrarId());
+    out.writeString(LAST_EPP_UPDATE_REGISTRAR_ID, resource.getLastEppUpdateRegistrarId());
+    out.writeInstant(CREATION_TIME, resource.getCreationTime());
+    out.writeInstant(DELETION_TIME, resource.getDeletionTime());
+    out.writeInstant(LAST_EPP_UPDATE_TIME, resource.getLastEppUpdateTime());
+    if (!resource.getStatusValues().isEmpty()) {
+      out.writeTag(STATUSES);
+      out.writeCount(resource.getStatusValues().size());
+      resource.getStatusValues().forEach(status -> out.writeString(status.name()));
+    }
+    out.writeInstant(UPDATE_TIMESTAMP, resource.getUpdateTimestamp().getTimestamp());
+  }
+
+  /**
+   * Reads a field common to all resources into the given builder.
+   *
+   * <p>The update timestamp isn't one of them, since the builder resets it whenever some of the
+   * other fields are set, so the callers read it themselves and set it last.
+   */
+  private static void readCommonField(int tag, Input in, EppResource.Builder<?, ?> builder) {
+    switch (tag) {
+      case REPO_ID -> builder.setRepoId(in.readString());
+      case CURRENT_SPONSOR_REGISTRAR_ID ->
+          builder.setPersistedCurrentSponsorRegistrarId(in.readString());
+      case CREATION_REGISTRAR_ID -> builder.setCreationRegistrarId(in.readString());
+      case LAST_EPP_UPDATE_REGISTRAR_ID -> builder.setLastEppUpdateRegistrarId(in.readString());
+      case CREATION_TIME -> builder.setCreationTime(in.readInstant());
+      case DELETION_TIME -> builder.setDeletionTime(in.readInstant());
+      case LAST_EPP_UPDATE_TIME -> builder.setLastEppUpdateTime(in.readInstant());
+      case STATUSES -> {
+        ImmutableSet.Builder<StatusValue> statuses = new ImmutableSet.Builder<>();
+        for (int i = in.readCount(); i > 0; i--) {
+          statuses.add(in.readEnum(StatusValue.class));
+        }
+        builder.setStatusValues(statuses.build());
+      }
+      default -> throw new IncompatibleFormatException(String.format("Unknown tag %d", tag));
+    }
+  }
+
+  private static void writeDomainFields(Domain domain, Output out) {
+    out.writeString(DOMAIN_NAME, domain.getDomainName());
+    out.writeStrings(
+        NAMESERVERS, domain.getNameservers().stream().map(key -> (String) key.getKey()).toList());
+    if (domain.getAuthInfo() != null && domain.getAuthInfo().getPw() != null) {
+      PasswordAuth pw = domain.getAuthInfo().getPw();
+      out.writeTag(AUTH_INFO);
+      out.writeString(AUTH_INFO_VALUE, pw.getValue());
+      out.writeString(AUTH_INFO_REPO_ID, pw.getRepoId());
+      out.writeTag(END);
+    }
+    if (!domain.getDsData().isEmpty()) {
+      out.writeTag(DS_DATA);
+      out.writeCount(domain.getDsData().size());
+      for (DomainDsData dsData : domain.getDsData()) {
+        // The domain repo ID of DS data is always that of its domain, so it isn't written.
+        out.writeInt(DS_KEY_TAG, dsData.getKeyTag());
+        out.writeInt(DS_ALGORITHM, dsData.getAlgorithm());
+        out.writeInt(DS_DIGEST_TYPE, dsData.getDigestType());
+        out.writeBytes(DS_DIGEST, dsData.getDigest());
+        out.writeTag(END);
+      }
+    }
+    if (domain.getLaunchNotice() != null) {
+      LaunchNotice notice = domain.getLaunchNotice();
+      out.writeTag(LAUNCH_NOTICE);
+      if (notice.getNoticeId() != null) {
+        out.writeString(NOTICE_TCN_ID, notice.getNoticeId().getTcnId());
+        out.writeString(NOTICE_VALIDATOR_ID, notice.getNoticeId().getValidatorId());
+      }
+      out.writeInstant(NOTICE_EXPIRATION_TIME, notice.getExpirationTime());
+      out.writeInstant(NOTICE_ACCEPTED_TIME, notice.getAcceptedTime());
+      out.writeTag(END);
+    }
+    out.writeString(IDN_TABLE_NAME, domain.getIdnTableName());
+    out.writeStrings(SUBORDINATE_HOSTS, domain.getSubordinateHosts());
+    out.writeInstant(REGISTRATION_EXPIRATION_TIME, domain.getRegistrationExpirationTime());
+    out.writeLongKey(DELETE_POLL_MESSAGE, domain.getDeletePollMessage());
+    out.writeLongKey(AUTORENEW_BILLING_EVENT, domain.getAutorenewBillingEvent());
+    out.writeLongKey(AUTORENEW_POLL_MESSAGE, domain.getAutorenewPollMessage());
+    if (!domain.getGracePeriods().isEmpty()) {
+      out.writeTag(GRACE_PERIODS);
+      out.writeCount(domain.getGracePeriods().size());
+      for (GracePeriod gracePeriod : domain.getGracePeriods()) {
+        out.writeLong(GRACE_PERIOD_ID, gracePeriod.getGracePeriodId());
+        out.writeEnum(GRACE_PERIOD_TYPE, gracePeriod.getType());
+        out.writeString(GRACE_PERIOD_DOMAIN_REPO_ID, gracePeriod.getDomainRepoId());
+        out.writeInstant(GRACE_PERIOD_EXPIRATION_TIME, gracePeriod.getExpirationTime());
+        out.writeString(GRACE_PERIOD_REGISTRAR_ID, gracePeriod.getRegistrarId());
+        out.writeLongKey(GRACE_PERIOD_BILLING_EVENT, gracePeriod.getBillingEvent());
+        out.writeLongKey(GRACE_PERIOD_BILLING_RECURRENCE, gracePeriod.getBillingRecurrence());
+        out.writeTag(END);
+      }
+    }
+    out.writeString(SMD_ID, domain.getSmdId());
+    if (!domain.getTransferData().isEmpty()) {
+      out.writeTag(TRANSFER_DATA);
+      writeTransferData(domain.getTransferData(), out);
+      out.writeTag(END);
+    }
+    out.writeInstant(DOMAIN_LAST_TRANSFER_TIME, domain.getLastTransferTime());
+    out.writeInstant(AUTORENEW_END_TIME, domain.getAutorenewEndTime().orElse(null));
+    out.writeEnum(LORDN_PHASE, domain.getLordnPhase());
+    out.writeString(
+        CURRENT_BULK_TOKEN,
+        domain.getCurrentBulkToken().map(key -> (String) key.getKey()).orElse(null));
+  }
+
+  private static Domain readDomain(Input in) {
+    Domain.Builder builder = new Domain.Builder();
+    Instant updateTimestamp = null;
+    for (int tag = in.readTag(); tag != END; tag = in.readTag()) {
+      switch (tag) {
+        case DOMAIN_NAME -> builder.setDomainName(in.readString());
+        case NAMESERVERS ->
+            builder.setNameservers(
+                in.readStrings().stream()
+                    .map(repoId -> VKey.create(Host.class, repoId))
+                    .collect(ImmutableSet.toImmutableSet()));
+        case AUTH_INFO -> builder.setAuthInfo(readAuthInfo(in));
+        case DS_DATA -> {
+          ImmutableSet.Builder<DomainDsData> dsData = new ImmutableSet.Builder<>();
+          for (int i = in.readCount(); i > 0; i--) {
+            dsData.add(readDsData(in));
+          }
+          builder.setDsData(dsData.build());
+        }
+        case LAUNCH_NOTICE -> builder.setLaunchNotice(readLaunchNotice(in));
+        case IDN_TABLE_NAME -> builder.setIdnTableName(in.readString());
+        case SUBORDINATE_HOSTS -> builder.setSubordinateHosts(in.readStrings());
+        case REGISTRATION_EXPIRATION_TIME ->
+            builder.setRegistrationExpirationTime(in.readInstant());
+        case DELETE_POLL_MESSAGE ->
+            builder.setDeletePollMessage(in.readLongKey(PollMessage.OneTime.class));
+        case AUTORENEW_BILLING_EVENT ->
+            builder.setAutorenewBillingEvent(in.readLongKey(BillingRecurrence.class));
+        case AUTORENEW_POLL_MESSAGE ->
+            builder.setAutorenewPollMessage(in.readLongKey(PollMessage.Autorenew.class));
+        case GRACE_PERIODS -> {
+          ImmutableSet.Builder<GracePeriod> gracePeriods = new ImmutableSet.Builder<>();
+          for (int i = in.readCount(); i > 0; i--) {
+            gracePeriods.add(readGracePeriod(in));
+          }
+          builder.setGracePeriods(gracePeriods.build());
+        }
+        case SMD_ID -> builder.setSmdId(in.readString());
+        case TRANSFER_DATA -> builder.setTransferData(readTransferData(in));
+        case DOMAIN_LAST_TRANSFER_TIME -> builder.setLastTransferTime(in.readInstant());
+        case AUTORENEW_END_TIME -> builder.setAutorenewEndTime(Optional.of(in.readInstant()));
+        case LORDN_PHASE -> builder.setLordnPhase(in.readEnum(LordnPhase.class));
+        case CURRENT_BULK_TOKEN ->
+            builder.restoreCurrentBulkToken(VKey.create(AllocationToken.class, in.readString()));
+        case UPDATE_TIMESTAMP -> updateTimestamp = in.readInstant();
+        default -> readCommonField(tag, in, builder);
+      }
+    }
+    if (updateTimestamp != null) {
+      builder.setUpdateTimestamp(UpdateAutoTimestamp.create(updateTimestamp));
+    }
+    return builder.build();
+  }
+
+  private static DomainAuthInfo readAuthInfo(Input in) {
+    String value = null;
+    String repoId = null;
+    for (int tag = in.readTag(); tag != END; tag = in.readTag()) {
+      switch (tag) {
+        case AUTH_INFO_VALUE -> value = in.readString();
+        case AUTH_INFO_REPO_ID -> repoId = in.readString();
+        default ->
+            throw new IncompatibleFormatException(String.format("Unknown auth info tag %d", tag));
+      }
+    }
+    return DomainAuthInfo.create(PasswordAuth.create(value, repoId));
+  }
+
+  private static DomainDsData readDsData(Input in) {
+    int keyTag = 0;
+    int algorithm = 0;
+    int digestType = 0;
+    byte[] digest = null;
+    for (int tag = in.readTag(); tag != END; tag = in.readTag()) {
+      switch (tag) {
+        case DS_KEY_TAG -> keyTag = in.readInt();
+        case DS_ALGORITHM -> algorithm = in.readInt();
+        case DS_DIGEST_TYPE -> digestType = in.readInt();
+        case DS_DIGEST -> digest = in.readBytes();
+        default ->
+            throw new IncompatibleFormatException(String.format("Unknown DS data tag %d", tag));
+      }
+    }
+    return DomainDsData.create(keyTag, algorithm, digestType, digest);
+  }
+
+  private static LaunchNotice readLaunchNotice(Input in) {
+    String tcnId = null;
+    String validatorId = null;
+    Instant expirationTime = null;
+    Instant acceptedTime = null;
+    for (int tag = in.readTag(); tag != END; tag = in.readTag()) {
+      switch (tag) {
+        case NOTICE_TCN_ID -> tcnId = in.readString();
+        case NOTICE_VALIDATOR_ID -> validatorId = in.readString();
+        case NOTICE_EXPIRATION_TIME -> expirationTime = in.readInstant();
+        case NOTICE_ACCEPTED_TIME -> acceptedTime = in.readInstant();
+        default ->
+            throw new IncompatibleFormatException(
+                String.format("Unknown launch notice tag %d", tag));
+      }
+    }
+    return LaunchNotice.create(tcnId, validatorId, expirationTime, acceptedTime);
+  }
+
+  private static GracePeriod readGracePeriod(Input in) {
+    long id = 0;
+    GracePeriodStatus type = null;
+    String domainRepoId = null;
+    Instant expirationTime = null;
+    String registrarId = null;
+    VKey<BillingEvent> billingEvent = null;
+    VKey<BillingRecurrence> billingRecurrence = null;
+    for (int tag = in.readTag(); tag != END; tag = in.readTag()) {
+      switch (tag) {
+        case GRACE_PERIOD_ID -> id = in.readLong();
+        case GRACE_PERIOD_TYPE -> type = in.readEnum(GracePeriodStatus.class);
+        case GRACE_PERIOD_DOMAIN_REPO_ID -> domainRepoId = in.readString();
+        case GRACE_PERIOD_EXPIRATION_TIME -> expirationTime = in.readInstant();
+        case GRACE_PERIOD_REGISTRAR_ID -> registrarId = in.readString();
+        case GRACE_PERIOD_BILLING_EVENT -> billingEvent = in.readLongKey(BillingEvent.class);
+        case GRACE_PERIOD_BILLING_RECURRENCE ->
+            billingRecurrence = in.readLongKey(BillingRecurrence.class);
+        default ->
+            throw new IncompatibleFormatException(
+                String.format("Unknown grace period tag %d", tag));
+      }
+    }
+    return GracePeriod.restore(
+        type, domainRepoId, expirationTime, registrarId, billingEvent, billingRecurrence, id);
+  }
+
+  private static void writeTransferData(DomainTransferData transferData, Output out) {
+    out.writeEnum(TRANSFER_STATUS, transferData.getTransferStatus());
+    out.writeString(TRANSFER_GAINING_REGISTRAR_ID, transferData.getGainingRegistrarId());
+    out.writeInstant(TRANSFER_REQUEST_TIME, transferData.getTransferRequestTime());
+    out.writeString(TRANSFER_LOSING_REGISTRAR_ID, transferData.getLosingRegistrarId());
+    out.writeInstant(
+        TRANSFER_PENDING_EXPIRATION_TIME, transferData.getPendingTransferExpirationTime());
+    Trid trid = transferData.getTransferRequestTrid();
+    if (trid != null) {
+      out.writeString(TRANSFER_SERVER_TRID, trid.getServerTransactionId());
+      out.writeString(TRANSFER_CLIENT_TRID, trid.getClientTransactionId().orElse(null));
+    }
+    Period period = transferData.getTransferPeriod();
+    if (period != null && period.getValue() != null) {
+      out.writeInt(TRANSFER_PERIOD_VALUE, period.getValue());
+      out.writeEnum(TRANSFER_PERIOD_UNIT, period.getUnit());
+    }
+    out.writeString(TRANSFER_REPO_ID, transferData.getRepoId());
+    if (transferData.getHistoryEntryId() != null) {
+      out.writeLong(TRANSFER_HISTORY_ENTRY_ID, transferData.getHistoryEntryId());
+    }
+    ImmutableSet<VKey<? extends TransferServerApproveEntity>> serverApproveEntities =
+        transferData.getServerApproveEntities();
+    ImmutableSet<Long> pollMessageIds =
+        serverApproveEntities.stream()
+            .filter(key -> key.getKind().equals(PollMessage.class))
+            .map(key -> (Long) key.getKey())
+            .collect(ImmutableSet.toImmutableSet());
+    if (!pollMessageIds.isEmpty()) {
+      out.writeTag(TRANSFER_POLL_MESSAGES);
+      out.writeCount(pollMessageIds.size());
+      pollMessageIds.forEach(out::writeLong);
+    }
+    out.writeLongKey(TRANSFER_BILLING_CANCELLATION, transferData.billingCancellationId);
+    out.writeLongKey(TRANSFER_BILLING_EVENT, transferData.getServerApproveBillingEvent());
+    out.writeLongKey(TRANSFER_BILLING_RECURRENCE, transferData.getServerApproveAutorenewEvent());
+    out.writeLongKey(
+        TRANSFER_AUTORENEW_POLL_MESSAGE, transferData.getServerApproveAutorenewPollMessage());
+    out.writeInstant(
+        TRANSFER_REGISTRATION_EXPIRATION_TIME,
+        transferData.getTransferredRegistrationExpirationTime());
+  }
+
+  @SuppressWarnings("deprecation")
+  private static DomainTransferData readTransferData(Input in) {
+    DomainTransferData.Builder builder = new DomainTransferData.Builder();
+    String serverTrid = null;
+    String clientTrid = null;
+    Integer periodValue = null;
+    Period.Unit periodUnit = null;
+    String repoId = null;
+    Long historyEntryId = null;
+    ImmutableSet.Builder<VKey<? extends TransferServerApproveEntity>> serverApproveEntities =
+        new ImmutableSet.Builder<>();
+    for (int tag = in.readTag(); tag != END; tag = in.readTag()) {
+      switch (tag) {
+        case TRANSFER_STATUS -> builder.setTransferStatus(in.readEnum(TransferStatus.class));
+        case TRANSFER_GAINING_REGISTRAR_ID -> builder.setGainingRegistrarId(in.readString());
+        case TRANSFER_REQUEST_TIME -> builder.setTransferRequestTime(in.readInstant());
+        case TRANSFER_LOSING_REGISTRAR_ID -> builder.setLosingRegistrarId(in.readString());
+        case TRANSFER_PENDING_EXPIRATION_TIME ->
+            builder.setPendingTransferExpirationTime(in.readInstant());
+        case TRANSFER_SERVER_TRID -> serverTrid = in.readString();
+        case TRANSFER_CLIENT_TRID -> clientTrid = in.readString();
+        case TRANSFER_PERIOD_VALUE -> periodValue = in.readInt();
+        case TRANSFER_PERIOD_UNIT -> periodUnit = in.readEnum(Period.Unit.class);
+        case TRANSFER_REPO_ID -> repoId = in.readString();
+        case TRANSFER_HISTORY_ENTRY_ID -> historyEntryId = in.readLong();
+        case TRANSFER_POLL_MESSAGES -> {
+          for (int i = in.readCount(); i > 0; i--) {
+            serverApproveEntities.add(VKey.create(PollMessage.class, in.readLong()));
+          }
+        }
+        case TRANSFER_BILLING_CANCELLATION ->
+            serverApproveEntities.add(in.readLongKey(BillingCancellation.class));
+        case TRANSFER_BILLING_EVENT ->
+            builder.setServerApproveBillingEvent(in.readLongKey(BillingEvent.class));
+        case TRANSFER_BILLING_RECURRENCE ->
+            builder.setServerApproveAutorenewEvent(in.readLongKey(BillingRecurrence.class));
+        case TRANSFER_AUTORENEW_POLL_MESSAGE ->
+            builder.setServerApproveAutorenewPollMessage(
+                in.readLongKey(PollMessage.Autorenew.class));
+        case TRANSFER_REGISTRATION_EXPIRATION_TIME ->
+            builder.setTransferredRegistrationExpirationTime(in.readInstant());
+        default ->
+            throw new IncompatibleFormatException(
+                String.format("Unknown transfer data tag %d", tag));
+      }
+    }
+    return builder
+        .setTransferRequestTrid(serverTrid == null ? null : Trid.create(clientTrid, serverTrid))
+        .setTransferPeriod(periodValue == null ? null : Period.create(periodValue, periodUnit))
+        .setServerApproveEntities(repoId, historyEntryId, serverApproveEntities.build())
+        .build();
+  }
+
+  private static void writeHostFields(Host host, Output out) {
+    out.writeString(HOST_NAME, host.getHostName());
+    if (!host.getInetAddresses().isEmpty()) {
+      out.writeTag(INET_ADDRESSES);
+      out.writeCount(host.getInetAddresses().size());
+      host.getInetAddresses().forEach(address -> out.writeBytes(address.getAddress()));
+    }
+    out.writeString(
+        SUPERORDINATE_DOMAIN,
+        host.getSuperordinateDomain() == null
+            ? null
+            : (String) host.getSuperordinateDomain().getKey());
+    out.writeInstant(HOST_LAST_TRANSFER_TIME, host.getLastTransferTime());
+    out.writeInstant(LAST_SUPERORDINATE_CHANGE, host.getLastSuperordinateChange());
+  }
+
+  private static Host readHost(Input in) {
+    Host.Builder builder = new Host.Builder();
+    Instant updateTimestamp = null;
+    for (int tag = in.readTag(); tag != END; tag = in.readTag()) {
+      switch (tag) {
+        case HOST_NAME -> builder.setHostName(in.readString());
+        case INET_ADDRESSES -> {
+          ImmutableSet.Builder<InetAddress> inetAddresses = new ImmutableSet.Builder<>();
+          for (int i = in.readCount(); i > 0; i--) {
+            inetAddresses.add(in.readInetAddress());
+          }
+          builder.setInetAddresses(inetAddresses.build());
+        }
+        case SUPERORDINATE_DOMAIN ->
+            builder.setSuperordinateDomain(VKey.create(Domain.class, in.readString()));
+        case HOST_LAST_TRANSFER_TIME -> builder.setLastTransferTime(in.readInstant());
+        case LAST_SUPERORDINATE_CHANGE -> builder.setLastSuperordinateChange(in.readInstant());
+        case UPDATE_TIMESTAMP -> updateTimestamp = in.readInstant();
+        default -> readCommonField(tag, in, builder);
+      }
+    }
+    if (updateTimestamp != null) {
+      builder.setUpdateTimestamp(UpdateAutoTimestamp.create(updateTimestamp));
+    }
+    return builder.build();
+  }
+
+  private static byte[] deflate(byte[] data) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(data);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+      byte[] chunk = new byte[4096];
+      while (!deflater.finished()) {
+        out.write(chunk, 0, deflater.deflate(chunk));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] data) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+      byte[] chunk = new byte[4096];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(chunk);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IncompatibleFormatException("Truncated compressed body");
+        }
+        out.write(chunk, 0, length);
+      }
+      return out.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IncompatibleFormatException("Malformed compressed body", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /** Writes tagged fields, skipping the ones that are null or empty. */
+  private static final class Output {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+    byte[] toByteArray() {
+      return out.toByteArray();
+    }
+
+    void writeTag(int tag) {
+      writeVarLong(tag);
+    }
+
+    void writeCount(int count) {
+      writeVarLong(count);
+    }
+
+    void writeString(int tag, @Nullable String value) {
+      if (value != null) {
+        writeTag(tag);
+        writeString(value);
+      }
+    }
+
+    void writeStrings(int tag, @Nullable Collection<String> values) {
+      if (!isNullOrEmpty(values)) {
+        writeTag(tag);
+        writeCount(values.size());
+        values.forEach(this::writeString);
+      }
+    }
+
+    void writeInstant(int tag, @Nullable Instant value) {
+      if (value != null) {
+        writeTag(tag);
+        writeSignedVarLong(value.getEpochSecond());
+        writeVarLong(value.getNano());
+      }
+    }
+
+    void writeInt(int tag, int value) {
+      writeTag(tag);
+      writeSignedVarLong(value);
+    }
+
+    void writeLong(int tag, long value) {
+      writeTag(tag);
+      writeLong(value);
+    }
+
+    void writeBytes(int tag, @Nullable byte[] value) {
+      if (value != null) {
+        writeTag(tag);
+        writeBytes(value);
+      }
+    }
+
+    void writeEnum(int tag, @Nullable Enum<?> value) {
+      if (value != null) {
+        writeTag(tag);
+        writeString(value.name());
+      }
+    }
+
+    /** Writes the key of a {@link VKey} whose key is a {@code long}, e.g. of a billing event. */
+    void writeLongKey(int tag, @Nullable VKey<?> key) {
+      if (key != null) {
+        writeLong(tag, (Long) key.getKey());
+      }
+    }
+
+    void writeLong(long value) {
+      writeSignedVarLong(value);
+    }
+
+    void writeString(String value) {
+      writeBytes(value.getBytes(UTF_8));
+    }
+
+    void writeBytes(byte[] value) {
+      writeVarLong(value.length);
+      out.write(value, 0, value.length);
+    }
+
+    private void writeSignedVarLong(long value) {
+      // Zigzag encoding, so that small negative numbers are written in few bytes as well.
+      writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) {
+      while ((value & ~0x7FL) != 0) {
+        out.write((int) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      out.write((int) value);
+    }
+  }
+
+  /** Reads the values written by {@link Output}. */
+  private static final class Input {
+
+    private final ByteBuffer buffer;
+
+    Input(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    int readTag() {
+      return Math.toIntExact(readVarLong());
+    }
+
+    int readCount() {
+      int count = Math.toIntExact(readVarLong());
+      // Every element takes at least one byte, which catches corrupted counts early.
+      if (count > buffer.remaining()) {
+        throw new IncompatibleFormatException(
+            String.format("Count %d exceeds the remaining data", count));
+      }
+      return count;
+    }
+
+    String readString() {
+      return new String(readBytes(), UTF_8);
+    }
+
+    ImmutableSet<String> readStrings() {
+      ImmutableSet.Builder<String> values = new ImmutableSet.Builder<>();
+      for (int i = readCount(); i > 0; i--) {
+        values.add(readString());
+      }
+      return values.build();
+    }
+
+    Instant readInstant() {
+      return Instant.ofEpochSecond(readSignedVarLong(), readVarLong());
+    }
+
+    int readInt() {
+      return Math.toIntExact(readSignedVarLong());
+    }
+
+    long readLong() {
+      return readSignedVarLong();
+    }
+
+    byte[] readBytes() {
+      byte[] value = new byte[readCount()];
+      buffer.get(value);
+      return value;
+    }
+
+    <E extends Enum<E>> E readEnum(Class<E> enumClass) {
+      return Enum.valueOf(enumClass, readString());
+    }
+
+    <T> VKey<T> readLongKey(Class<T> kind) {
+      return VKey.create(kind, readLong());
+    }
+
+    InetAddress readInetAddress() {
+      try {
+        return InetAddress.getByAddress(readBytes());
+      } catch (UnknownHostException e) {
+        throw new IncompatibleFormatException("Malformed IP address", e);
+      }
+    }
+
+    private long readSignedVarLong() {
+      long value = readVarLong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = buffer.get();
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IncompatibleFormatException("Malformed varint");
+    }
+  }
+}
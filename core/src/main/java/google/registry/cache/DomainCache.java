@@ -14,10 +14,21 @@
 
 package google.registry.cache;
 
+import com.google.common.collect.ImmutableMap;
 import google.registry.model.domain.Domain;
+import java.util.Collection;
 import java.util.Optional;
 
 /** Interface for some type of cache that loads {@link Domain}s by domain name. */
 public interface DomainCache {
   Optional<Domain> loadByDomainName(String domainName);
+
+  /** Loads multiple {@link Domain}s by domain name, omitting the ones that don't exist. */
+  default ImmutableMap<String, Domain> loadByDomainNames(Collection<String> domainNames) {
+    ImmutableMap.Builder<String, Domain> domains = new ImmutableMap.Builder<>();
+    domainNames.forEach(
+        domainName ->
+            loadByDomainName(domainName).ifPresent(domain -> domains.put(domainName, domain)));
+    return domains.buildKeepingLast();
+  }
 }
@@ -14,10 +14,19 @@
 
 package google.registry.cache;
 
+import com.google.common.collect.ImmutableMap;
 import google.registry.model.host.Host;
+import java.util.Collection;
 import java.util.Optional;
 
 /** Interface for some type of cache that loads {@link Host}s by repo ID. */
 public interface HostCache {
   Optional<Host> loadByRepoId(String repoId);
+
+  /** Loads multiple {@link Host}s by repo ID, omitting the ones that don't exist. */
+  default ImmutableMap<String, Host> loadByRepoIds(Collection<String> repoIds) {
+    ImmutableMap.Builder<String, Host> hosts = new ImmutableMap.Builder<>();
+    repoIds.forEach(repoId -> loadByRepoId(repoId).ifPresent(host -> hosts.put(repoId, host)));
+    return hosts.buildKeepingLast();
+  }
 }
@@ -14,12 +14,17 @@
 
 package google.registry.cache;
 
-import com.google.common.collect.ImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import google.registry.model.ForeignKeyUtils;
 import google.registry.model.domain.Domain;
 import google.registry.model.tld.Tld;
 import google.registry.util.Clock;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -43,18 +48,26 @@ public class MultilayerDomainCache extends MultilayerEppResourceCache<Domain>
     return loadFromCaches(Domain.class, domainName);
   }
 
+  @Override
+  public ImmutableMap<String, Domain> loadByDomainNames(Collection<String> domainNames) {
+    return loadAllFromCaches(Domain.class, domainNames);
+  }
+
   @Override
   protected Optional<Domain> loadFromDatabase(String domainName) {
+    return Optional.ofNullable(loadAllFromDatabase(ImmutableSet.of(domainName)).get(domainName));
+  }
+
+  @Override
+  protected ImmutableMap<String, Domain> loadAllFromDatabase(ImmutableSet<String> domainNames) {
     // Don't use the cache (avoid caching the same domain twice). Do use the replica SQL instance.
-    Optional<Domain> possibleDomain =
-        Optional.ofNullable(
-            ForeignKeyUtils.loadMostRecentResourceObjects(
-                    Domain.class, ImmutableList.of(domainName), true)
-                .get(domainName));
+    ImmutableMap<String, Domain> domains =
+        ForeignKeyUtils.loadMostRecentResourceObjects(Domain.class, domainNames, true);
     Instant now = clock.now();
-    return possibleDomain
-        .filter(domain -> now.isBefore(domain.getDeletionTime()))
-        .map(domain -> domain.cloneProjectedAtTime(now));
+    return domains.entrySet().stream()
+        .filter(entry -> now.isBefore(entry.getValue().getDeletionTime()))
+        .collect(
+            toImmutableMap(Map.Entry::getKey, entry -> entry.getValue().cloneProjectedAtTime(now)));
   }
 
   @Override
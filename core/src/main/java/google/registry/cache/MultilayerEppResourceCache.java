@@ -14,17 +14,43 @@
 
 package google.registry.cache;
 
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.Uninterruptibles;
 import google.registry.config.RegistryConfig;
 import google.registry.model.EppResource;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A multi-layer cache for {@link EppResource}s.
  *
  * <p>It uses a local Caffeine cache, a remote Jedis cache, and finally the database.
+ *
+ * <p>Concurrent misses on the same key are coalesced: the first thread to miss the local cache goes
+ * on to the remote cache and the database, and every other thread that misses the same key in the
+ * meantime waits for that result instead of issuing its own lookups.
+ *
+ * <p>A load whose key is invalidated while it is in progress may have read the value from before
+ * the change, so its result is dropped from the caches rather than kept until it expires.
  */
 public abstract class MultilayerEppResourceCache<V extends EppResource> {
 
@@ -35,6 +61,20 @@ public abstract class MultilayerEppResourceCache<V extends EppResource> {
           .maximumSize(RegistryConfig.getEppResourceMaxCachedEntries())
           .build();
 
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** How long to wait for a load started by another thread before loading the key again. */
+  private static final Duration MAX_LOAD_WAIT = Duration.ofSeconds(10);
+
+  /** Loads past the local cache that are currently in progress, by key. */
+  private final ConcurrentMap<String, InFlightLoad<V>> inFlightLoads = new ConcurrentHashMap<>();
+
+  /** A load past the local cache, and whether its key has been invalidated since it started. */
+  private static final class InFlightLoad<V> {
+    final CompletableFuture<Optional<V>> result = new CompletableFuture<>();
+    volatile boolean invalidated;
+  }
+
   private final SimplifiedJedisClient jedisClient;
   private final CacheMetrics cacheMetrics;
 
@@ -46,6 +86,13 @@ public abstract class MultilayerEppResourceCache<V extends EppResource> {
 
   protected abstract Optional<V> loadFromDatabase(String key);
 
+  /**
+   * Loads the values for the given keys from the database, ideally in a single query.
+   *
+   * <p>Keys without a value are omitted from the returned map.
+   */
+  protected abstract ImmutableMap<String, V> loadAllFromDatabase(ImmutableSet<String> keys);
+
   protected boolean shouldPersistToRemoteCache(V value) {
     return true;
   }
@@ -58,6 +105,37 @@ public abstract class MultilayerEppResourceCache<V extends EppResource> {
       return possibleValue;
     }
 
+    // if another thread is already loading this key, wait for its result
+    InFlightLoad<V> load = new InFlightLoad<>();
+    InFlightLoad<V> inFlightLoad = inFlightLoads.putIfAbsent(key, load);
+    if (inFlightLoad != null) {
+      cacheMetrics.recordLookup(clazz.getSimpleName(), CacheMetrics.CacheHitType.COALESCED);
+      return awaitLoad(clazz, key, inFlightLoad);
+    }
+    try {
+      possibleValue = loadFromRemoteCacheOrDatabase(clazz, key);
+      possibleValue.ifPresent(
+          value ->
+              dropIfInvalidated(clazz, ImmutableMap.of(key, load), ImmutableMap.of(key, value)));
+      load.result.complete(possibleValue);
+      return possibleValue;
+    } catch (Throwable e) {
+      // Errors must fail the load as well, or the threads waiting for it would hang.
+      load.result.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlightLoads.remove(key, load);
+    }
+  }
+
+  private Optional<V> loadFromRemoteCacheOrDatabase(Class<V> clazz, String key) {
+    // the previous load of this key may have finished between our local lookup and now
+    Optional<V> possibleValue = Optional.ofNullable(localCache.getIfPresent(key));
+    if (possibleValue.isPresent()) {
+      cacheMetrics.recordLookup(clazz.getSimpleName(), CacheMetrics.CacheHitType.LOCAL);
+      return possibleValue;
+    }
+
     // if not, try the remote cache
     possibleValue = jedisClient.get(clazz, key);
     if (possibleValue.isPresent()) {
@@ -80,4 +158,180 @@ public abstract class MultilayerEppResourceCache<V extends EppResource> {
     cacheMetrics.recordLookup(clazz.getSimpleName(), CacheMetrics.CacheHitType.MISS);
     return possibleValue;
   }
+
+  /**
+   * Loads the values for multiple keys, going through each layer once for all of them.
+   *
+   * <p>This checks the local cache for all keys, then fetches the remaining ones from the remote
+   * cache in one pipelined round trip, and loads whatever is still missing from the database in one
+   * query. Values found in a lower layer are backfilled into the layers above it. Keys that another
+   * thread is already loading are not looked up again; their results are awaited once the other
+   * keys have been loaded.
+   *
+   * <p>Keys without a value are omitted from the returned map, which otherwise preserves the order
+   * of {@code keys}.
+   */
+  protected ImmutableMap<String, V> loadAllFromCaches(Class<V> clazz, Collection<String> keys) {
+    ImmutableSet<String> uniqueKeys = ImmutableSet.copyOf(keys);
+    Map<String, V> values = new HashMap<>(localCache.getAllPresent(uniqueKeys));
+    recordLookups(clazz, values.size(), CacheMetrics.CacheHitType.LOCAL);
+
+    Map<String, InFlightLoad<V>> ownLoads = new HashMap<>();
+    Map<String, InFlightLoad<V>> otherLoads = new HashMap<>();
+    for (String key : Sets.difference(uniqueKeys, values.keySet())) {
+      InFlightLoad<V> load = new InFlightLoad<>();
+      InFlightLoad<V> inFlightLoad = inFlightLoads.putIfAbsent(key, load);
+      if (inFlightLoad == null) {
+        ownLoads.put(key, load);
+      } else {
+        otherLoads.put(key, inFlightLoad);
+      }
+    }
+
+    // Finish our own loads before waiting for anyone else's, so that threads loading overlapping
+    // sets of keys can never wait on each other in a cycle.
+    try {
+      ImmutableMap<String, V> loadedValues =
+          loadAllFromRemoteCacheOrDatabase(clazz, ImmutableSet.copyOf(ownLoads.keySet()));
+      dropIfInvalidated(clazz, ownLoads, loadedValues);
+      values.putAll(loadedValues);
+      ownLoads.forEach((key, load) -> load.result.complete(Optional.ofNullable(values.get(key))));
+    } catch (Throwable e) {
+      ownLoads.values().forEach(load -> load.result.completeExceptionally(e));
+      throw e;
+    } finally {
+      ownLoads.forEach(inFlightLoads::remove);
+    }
+
+    recordLookups(clazz, otherLoads.size(), CacheMetrics.CacheHitType.COALESCED);
+    otherLoads.forEach(
+        (key, load) -> awaitLoad(clazz, key, load).ifPresent(value -> values.put(key, value)));
+
+    ImmutableMap.Builder<String, V> result = new ImmutableMap.Builder<>();
+    for (String key : uniqueKeys) {
+      V value = values.get(key);
+      if (value != null) {
+        result.put(key, value);
+      }
+    }
+    return result.build();
+  }
+
+  private ImmutableMap<String, V> loadAllFromRemoteCacheOrDatabase(
+      Class<V> clazz, ImmutableSet<String> keys) {
+    if (keys.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    // some of the keys may have been loaded between our local lookup and now
+    Map<String, V> values = new HashMap<>(localCache.getAllPresent(keys));
+    recordLookups(clazz, values.size(), CacheMetrics.CacheHitType.LOCAL);
+
+    ImmutableSet<String> remainingKeys = Sets.difference(keys, values.keySet()).immutableCopy();
+    if (!remainingKeys.isEmpty()) {
+      ImmutableMap<String, V> remoteValues = jedisClient.getAll(clazz, remainingKeys);
+      localCache.putAll(remoteValues);
+      values.putAll(remoteValues);
+      recordLookups(clazz, remoteValues.size(), CacheMetrics.CacheHitType.REMOTE);
+      remainingKeys = Sets.difference(remainingKeys, remoteValues.keySet()).immutableCopy();
+    }
+
+    if (!remainingKeys.isEmpty()) {
+      ImmutableMap<String, V> databaseValues = loadAllFromDatabase(remainingKeys);
+      ImmutableList<SimplifiedJedisClient.JedisResource<V>> remoteCacheEntries =
+          databaseValues.entrySet().stream()
+              .filter(entry -> shouldPersistToRemoteCache(entry.getValue()))
+              .map(
+                  entry ->
+                      new SimplifiedJedisClient.JedisResource<>(entry.getKey(), entry.getValue()))
+              .collect(toImmutableList());
+      if (!remoteCacheEntries.isEmpty()) {
+        jedisClient.setAll(remoteCacheEntries);
+      }
+      localCache.putAll(databaseValues);
+      values.putAll(databaseValues);
+      recordLookups(clazz, databaseValues.size(), CacheMetrics.CacheHitType.MISS);
+      recordLookups(
+          clazz,
+          remainingKeys.size() - databaseValues.size(),
+          CacheMetrics.CacheHitType.MISS_NONEXISTENT);
+    }
+    return ImmutableMap.copyOf(values);
+  }
+
+  /**
+   * Drops the values of finished loads from the caches if their keys were invalidated while they
+   * were loading.
+   *
+   * <p>The values are dropped after they have been cached rather than instead of caching them, so
+   * that an invalidation racing with the end of a load either evicts the value itself or is seen
+   * here.
+   */
+  private void dropIfInvalidated(
+      Class<V> clazz, Map<String, InFlightLoad<V>> loads, Map<String, V> values) {
+    ImmutableSet<String> invalidatedKeys =
+        loads.entrySet().stream()
+            .filter(entry -> entry.getValue().invalidated && values.containsKey(entry.getKey()))
+            .map(Map.Entry::getKey)
+            .collect(toImmutableSet());
+    if (invalidatedKeys.isEmpty()) {
+      return;
+    }
+    invalidatedKeys.forEach(key -> localCache.asMap().remove(key, values.get(key)));
+    // The value may also have been written to the remote cache after it was deleted from there.
+    jedisClient.deleteAll(clazz, invalidatedKeys);
+  }
+
+  /** Evicts the given keys from the local cache, e.g. after another node has changed them. */
+  void invalidateLocally(Iterable<String> keys) {
+    keys.forEach(this::invalidateInFlightLoad);
+    localCache.invalidateAll(keys);
+  }
+
+  /**
+   * Evicts all keys from the local cache, e.g. when changes by other nodes may have been missed.
+   */
+  void invalidateAllLocally() {
+    inFlightLoads.keySet().forEach(this::invalidateInFlightLoad);
+    localCache.invalidateAll();
+  }
+
+  /**
+   * Marks the load of the given key in progress, if any, as invalidated.
+   *
+   * <p>The load is also forgotten, so that later lookups don't wait for a value from before the
+   * invalidation. This must happen before the key is evicted from the local cache.
+   */
+  private void invalidateInFlightLoad(String key) {
+    InFlightLoad<V> load = inFlightLoads.remove(key);
+    if (load != null) {
+      load.invalidated = true;
+    }
+  }
+
+  /**
+   * Waits for a load started by another thread, rethrowing its failure, if any.
+   *
+   * <p>If the load takes longer than {@link #MAX_LOAD_WAIT}, the key is loaded by this thread
+   * instead, so that a stuck load can't block every other lookup of the same key.
+   */
+  private Optional<V> awaitLoad(Class<V> clazz, String key, InFlightLoad<V> load) {
+    try {
+      return Uninterruptibles.getUninterruptibly(load.result, MAX_LOAD_WAIT);
+    } catch (ExecutionException e) {
+      throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    } catch (TimeoutException e) {
+      logger.atWarning().atMostEvery(1, MINUTES).log(
+          "Timed out waiting for another load of %s %s, loading it again.",
+          clazz.getSimpleName(), key);
+      inFlightLoads.remove(key, load);
+      return loadFromCaches(clazz, key);
+    }
+  }
+
+  private void recordLookups(Class<V> clazz, int count, CacheMetrics.CacheHitType hitType) {
+    for (int i = 0; i < count; i++) {
+      cacheMetrics.recordLookup(clazz.getSimpleName(), hitType);
+    }
+  }
 }
@@ -14,10 +14,14 @@
 
 package google.registry.cache;
 
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static google.registry.persistence.transaction.TransactionManagerFactory.replicaTm;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import google.registry.model.host.Host;
 import google.registry.persistence.VKey;
+import java.util.Collection;
 import java.util.Optional;
 
 /**
@@ -36,9 +40,26 @@ public class MultilayerHostCache extends MultilayerEppResourceCache<Host> implem
     return loadFromCaches(Host.class, repoId);
   }
 
+  @Override
+  public ImmutableMap<String, Host> loadByRepoIds(Collection<String> repoIds) {
+    return loadAllFromCaches(Host.class, repoIds);
+  }
+
   @Override
   protected Optional<Host> loadFromDatabase(String repoId) {
     return replicaTm()
         .transact(() -> replicaTm().loadByKeyIfPresent(VKey.create(Host.class, repoId)));
   }
+
+  @Override
+  protected ImmutableMap<String, Host> loadAllFromDatabase(ImmutableSet<String> repoIds) {
+    return replicaTm()
+        .transact(
+            () ->
+                replicaTm()
+                    .query("FROM Host WHERE repoId IN (:repoIds)", Host.class)
+                    .setParameter("repoIds", repoIds)
+                    .getResultStream()
+                    .collect(toImmutableMap(Host::getRepoId, host -> host)));
+  }
 }
@@ -16,39 +16,32 @@ package google.registry.cache;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
 
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Streams;
 import com.google.common.flogger.FluentLogger;
+import google.registry.cache.CachedResourceCodec.IncompatibleFormatException;
 import google.registry.model.EppResource;
 import google.registry.model.domain.Domain;
 import google.registry.model.host.Host;
-import io.protostuff.Input;
-import io.protostuff.LinkedBuffer;
-import io.protostuff.Output;
-import io.protostuff.Pipe;
-import io.protostuff.ProtostuffIOUtil;
-import io.protostuff.Schema;
-import io.protostuff.WireFormat;
-import io.protostuff.runtime.DefaultIdStrategy;
-import io.protostuff.runtime.Delegate;
-import io.protostuff.runtime.RuntimeSchema;
-import java.io.IOException;
-import java.net.Inet4Address;
-import java.net.Inet6Address;
-import java.net.InetAddress;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import redis.clients.jedis.AbstractPipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.UnifiedJedis;
 import redis.clients.jedis.params.SetParams;
 
 /**
  * A {@link UnifiedJedis} client that handles serialization/deserialization.
  *
- * <p>We use protobufs for serialization to handle the immutable collections that our objects use.
+ * <p>Values are serialized with {@link CachedResourceCodec}. Values that were written in another
+ * version of its format are treated as missing, so that they get reloaded and overwritten.
  *
  * <p>{@link UnifiedJedis} pairs key-value types, so we need the key to be serialized to a byte
  * array as well.
@@ -62,21 +55,6 @@ public class SimplifiedJedisClient {
           Domain.class, "d_",
           Host.class, "h_");
 
-  /** We need to inform Protostuff of the custom {@link InetAddress} delegates. */
-  private static DefaultIdStrategy createIdStrategy() {
-    DefaultIdStrategy strategy = new DefaultIdStrategy();
-    strategy.registerDelegate(new GenericInetAddressDelegate<>(InetAddress.class));
-    strategy.registerDelegate(new GenericInetAddressDelegate<>(Inet4Address.class));
-    strategy.registerDelegate(new GenericInetAddressDelegate<>(Inet6Address.class));
-    return strategy;
-  }
-
-  private static final ImmutableMap<Class<? extends EppResource>, Schema<? extends EppResource>>
-      VALUE_SCHEMAS =
-          ImmutableMap.of(
-              Domain.class, RuntimeSchema.getSchema(Domain.class),
-              Host.class, RuntimeSchema.getSchema(Host.class, createIdStrategy()));
-
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
   private static final int BATCH_SIZE = 500;
@@ -91,7 +69,33 @@ public class SimplifiedJedisClient {
   public <V extends EppResource> Optional<V> get(Class<V> clazz, String key) {
     checkNotNull(key, "Key cannot be null");
     byte[] data = jedis.get(convertKey(clazz, key));
-    return Optional.ofNullable(data).map(d -> deserialize(clazz, d));
+    return Optional.ofNullable(data).flatMap(d -> deserialize(clazz, key, d));
+  }
+
+  /**
+   * Gets the values for multiple keys from the remote cache, using a Jedis {@link AbstractPipeline}
+   * so that each batch of keys takes a single round trip.
+   *
+   * <p>Keys that do not exist are omitted from the returned map.
+   */
+  public <V extends EppResource> ImmutableMap<String, V> getAll(
+      Class<V> clazz, Collection<String> keys) {
+    ImmutableMap.Builder<String, V> values = new ImmutableMap.Builder<>();
+    for (List<String> batch : Iterables.partition(keys, BATCH_SIZE)) {
+      List<Response<byte[]>> responses = new ArrayList<>(batch.size());
+      try (AbstractPipeline pipeline = jedis.pipelined()) {
+        batch.forEach(key -> responses.add(pipeline.get(convertKey(clazz, key))));
+        pipeline.sync();
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        byte[] data = responses.get(i).get();
+        if (data != null) {
+          String key = batch.get(i);
+          deserialize(clazz, key, data).ifPresent(value -> values.put(key, value));
+        }
+      }
+    }
+    return values.buildKeepingLast();
   }
 
   /** Sets the value in the remote cache. */
@@ -141,75 +145,23 @@ public class SimplifiedJedisClient {
     }
   }
 
-  private <V extends EppResource> byte[] serialize(V value) {
-    @SuppressWarnings("unchecked")
-    Schema<V> valueSchema = (Schema<V>) getValueSchema(value.getClass());
-    LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
-    try {
-      return ProtostuffIOUtil.toByteArray(value, valueSchema, buffer);
-    } finally {
-      buffer.clear();
-    }
+  private static byte[] serialize(EppResource value) {
+    return CachedResourceCodec.encode(value);
   }
 
-  private <V extends EppResource> V deserialize(Class<V> clazz, byte[] data) {
-    // We use protobufs because other deserializers don't play nicely with immutable collections
-    Schema<V> valueSchema = getValueSchema(clazz);
-    V value = valueSchema.newMessage();
-    ProtostuffIOUtil.mergeFrom(data, value, valueSchema);
-    return value;
+  private static <V extends EppResource> Optional<V> deserialize(
+      Class<V> clazz, String key, byte[] data) {
+    try {
+      return Optional.of(CachedResourceCodec.decode(clazz, data));
+    } catch (IncompatibleFormatException e) {
+      logger.atWarning().atMostEvery(1, MINUTES).withCause(e).log(
+          "Ignoring cached %s %s, which can't be decoded.", clazz.getSimpleName(), key);
+      return Optional.empty();
+    }
   }
 
   private byte[] convertKey(Class<?> clazz, String key) {
     checkArgument(TYPE_PREFIXES.containsKey(clazz), "Unknown class type %s", clazz);
     return (TYPE_PREFIXES.get(clazz) + key).getBytes(StandardCharsets.UTF_8);
   }
-
-  @SuppressWarnings("unchecked")
-  private <V extends EppResource> Schema<V> getValueSchema(Class<V> clazz) {
-    checkArgument(VALUE_SCHEMAS.containsKey(clazz), "Unknown class type %s", clazz);
-    return (Schema<V>) VALUE_SCHEMAS.get(clazz);
-  }
-
-  /**
-   * A custom Protostuff {@link Delegate} for {@link InetAddress} and its subclasses.
-   *
-   * <p>This is required in Java 17+ because Protostuff's default runtime schema serialization
-   * relies on reflection. Since {@link InetAddress} is part of the encapsulated {@code java.base}
-   * module, reflective access is restricted and throws {@link
-   * java.lang.reflect.InaccessibleObjectException}.
-   *
-   * <p>This delegate serializes the IP address as a raw byte array using {@link
-   * InetAddress#getAddress()} and reconstructs it using {@link InetAddress#getByAddress(byte[])}
-   */
-  private record GenericInetAddressDelegate<T extends InetAddress>(Class<T> clazz)
-      implements Delegate<T> {
-
-    @Override
-    public WireFormat.FieldType getFieldType() {
-      return WireFormat.FieldType.BYTES;
-    }
-
-    @Override
-    public Class<T> typeClass() {
-      return clazz;
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public T readFrom(Input input) throws IOException {
-      return (T) InetAddress.getByAddress(input.readByteArray());
-    }
-
-    @Override
-    public void writeTo(Output output, int number, T value, boolean repeated) throws IOException {
-      output.writeByteArray(number, value.getAddress(), repeated);
-    }
-
-    @Override
-    public void transfer(Pipe pipe, Input input, Output output, int number, boolean repeated)
-        throws IOException {
-      output.writeByteArray(number, input.readByteArray(), repeated);
-    }
-  }
 }
@@ -35,6 +35,7 @@ import dagger.Module;
 import dagger.Provides;
 import google.registry.bsa.UploadBsaUnavailableDomainsAction;
 import google.registry.dns.ReadDnsRefreshRequestsAction;
+import google.registry.flows.EppCommandLogger.OverflowPolicy;
 import google.registry.model.common.DnsRefreshRequest;
 import google.registry.mosapi.MosApiClient;
 import google.registry.persistence.transaction.JpaTransactionManager;
@@ -359,6 +360,19 @@ public final class RegistryConfig {
       return Duration.ofSeconds(45);
     }
 
+    /**
+     * The number of lock buckets that {@link ReadDnsRefreshRequestsAction} enqueues publish tasks
+     * for concurrently.
+     *
+     * <p>One drains the buckets one after the other. TLDs with many DNS publish locks drain faster
+     * with more threads, at the cost of more concurrent calls to Cloud Tasks.
+     */
+    @Provides
+    @Config("readDnsRefreshRequestsThreads")
+    public static int provideReadDnsRefreshRequestsThreads() {
+      return 1;
+    }
+
     /**
      * Returns the default time to live for DNS A and AAAA records.
      *
@@ -833,6 +847,17 @@ public final class RegistryConfig {
       return config.rde.sshIdentityEmailAddress;
     }
 
+    /**
+     * Returns the number of shards each RDE deposit is written in.
+     *
+     * @see google.registry.beam.rde.RdePipeline
+     */
+    @Provides
+    @Config("rdeDepositShards")
+    public static int provideRdeDepositShards(RegistryConfigSettings config) {
+      return config.rde.depositShards;
+    }
+
     /**
      * Returns SFTP URL containing a username, hostname, port (optional), and directory (optional)
      * to which cloud storage files are uploaded. The password should not be included, as it's
@@ -989,6 +1014,39 @@ public final class RegistryConfig {
       return config.misc.transientFailureRetries;
     }
 
+    /**
+     * Returns whether EPP commands are formatted and logged on a background thread.
+     *
+     * @see google.registry.flows.EppCommandLogger
+     */
+    @Provides
+    @Config("asyncEppCommandLoggingEnabled")
+    public static boolean provideAsyncEppCommandLoggingEnabled(RegistryConfigSettings config) {
+      return config.misc.asyncEppCommandLoggingEnabled;
+    }
+
+    /**
+     * Returns the maximum number of EPP commands waiting to be logged asynchronously.
+     *
+     * @see google.registry.flows.EppCommandLogger
+     */
+    @Provides
+    @Config("eppCommandLogQueueCapacity")
+    public static int provideEppCommandLogQueueCapacity(RegistryConfigSettings config) {
+      return config.misc.eppCommandLogQueueCapacity;
+    }
+
+    /**
+     * Returns what to do with an EPP command when the asynchronous logging queue is full.
+     *
+     * @see google.registry.flows.EppCommandLogger
+     */
+    @Provides
+    @Config("eppCommandLogOverflowPolicy")
+    public static OverflowPolicy provideEppCommandLogOverflowPolicy(RegistryConfigSettings config) {
+      return OverflowPolicy.valueOf(config.misc.eppCommandLogOverflowPolicy);
+    }
+
     /**
      * Maximum number of results to return for an RDAP search query
      *
@@ -1543,6 +1601,28 @@ public final class RegistryConfig {
     return CONFIG_SETTINGS.get().caching.staticPremiumListMaxCachedEntries;
   }
 
+  /**
+   * The names of the premium lists whose entries are all kept in memory, built once since they are
+   * checked on every premium price lookup.
+   */
+  private static volatile ImmutableSet<String> residentPremiumLists;
+
+  /** Returns the names of the premium lists whose entries are all kept in memory. */
+  public static ImmutableSet<String> getResidentPremiumLists() {
+    ImmutableSet<String> premiumLists = residentPremiumLists;
+    if (premiumLists == null) {
+      premiumLists = ImmutableSet.copyOf(CONFIG_SETTINGS.get().caching.residentPremiumLists);
+      residentPremiumLists = premiumLists;
+    }
+    return premiumLists;
+  }
+
+  @VisibleForTesting
+  public static void overrideResidentPremiumListsForTesting(ImmutableSet<String> premiumLists) {
+    CONFIG_SETTINGS.get().caching.residentPremiumLists = premiumLists.asList();
+    residentPremiumLists = premiumLists;
+  }
+
   public static boolean isEppResourceCachingEnabled() {
     return CONFIG_SETTINGS.get().caching.eppResourceCachingEnabled;
   }
@@ -148,6 +148,7 @@ public class RegistryConfigSettings {
     public int domainLabelCachingSeconds;
     public int singletonCachePersistSeconds;
     public int staticPremiumListMaxCachedEntries;
+    public List<String> residentPremiumLists;
     public boolean eppResourceCachingEnabled;
     public int eppResourceCachingSeconds;
     public int eppResourceMaxCachedEntries;
@@ -173,6 +174,7 @@ public class RegistryConfigSettings {
     public String reportUrlPrefix;
     public String uploadUrl;
     public String sshIdentityEmailAddress;
+    public int depositShards;
   }
 
   /** Configuration for the web-based registrar console. */
@@ -203,6 +205,9 @@ public class RegistryConfigSettings {
     public String spec11OutgoingEmailAddress;
     public List<String> spec11BccEmailAddresses;
     public int transientFailureRetries;
+    public boolean asyncEppCommandLoggingEnabled;
+    public int eppCommandLogQueueCapacity;
+    public String eppCommandLogOverflowPolicy;
   }
 
   /** Configuration options for the registry tool. */
@@ -39,6 +39,12 @@ public class DnsMetrics {
   /** Disposition of writer.commit(). */
   public enum CommitStatus { SUCCESS, FAILURE }
 
+  /** Whether a connection used to send DNS updates was newly opened or reused. */
+  public enum ConnectionType {
+    NEW,
+    REUSED
+  }
+
   /** Disposition of the publish action. */
   public enum ActionStatus {
     SUCCESS,
@@ -67,6 +73,19 @@ public class DnsMetrics {
           LabelDescriptor.create("status", "Whether the publish succeeded, or why it failed."),
           LabelDescriptor.create("dnsWriter", "The DnsWriter used."));
 
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS_FOR_STAGING =
+      ImmutableSet.of(
+          LabelDescriptor.create("tld", "TLD"),
+          LabelDescriptor.create("dnsWriter", "The DnsWriter used."));
+
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS_FOR_REFRESH_REQUESTS =
+      ImmutableSet.of(LabelDescriptor.create("tld", "TLD"));
+
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS_FOR_CONNECTIONS =
+      ImmutableSet.of(
+          LabelDescriptor.create(
+              "connectionType", "Whether the connection was newly opened or reused."));
+
   // Finer-grained fitter than the DEFAULT_FITTER, allows values between 100 ms and just over 29
   // hours.
   private static final DistributionFitter EXPONENTIAL_FITTER =
@@ -144,6 +163,15 @@ public class DnsMetrics {
               LABEL_DESCRIPTORS_FOR_COMMIT,
               FIBONACCI_FITTER);
 
+  private static final EventMetric stagingTimePerBatchDist =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/dns/per_batch/staging_time",
+              "Time taken to load the resources of a batch and stage their DNS updates",
+              "milliseconds",
+              LABEL_DESCRIPTORS_FOR_STAGING,
+              EXPONENTIAL_FITTER);
+
   private static final EventMetric processingTimePerItemDist =
       MetricRegistryImpl.getDefault()
           .newEventMetric(
@@ -189,6 +217,49 @@ public class DnsMetrics {
               LABEL_DESCRIPTORS_FOR_LATENCY,
               EXPONENTIAL_FITTER);
 
+  private static final IncrementableMetric updateConnections =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/dns/update_connections",
+              "Count of connection uses to send DNS update messages",
+              "count",
+              LABEL_DESCRIPTORS_FOR_CONNECTIONS);
+
+  private static final EventMetric updateRoundTripTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/dns/update_round_trip_time",
+              "Time from sending DNS update messages over a connection until all responses arrived",
+              "milliseconds",
+              LABEL_DESCRIPTORS_FOR_CONNECTIONS,
+              ExponentialFitter.create(20, 2.0, 1.0));
+
+  private static final EventMetric refreshRequestQueueDepth =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/dns/refresh_requests/queue_depth",
+              "Number of DNS refresh requests due when readDnsRefreshRequests started",
+              "count",
+              LABEL_DESCRIPTORS_FOR_REFRESH_REQUESTS,
+              ExponentialFitter.create(20, 2.0, 1.0));
+
+  private static final EventMetric refreshRequestDrainTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/dns/refresh_requests/drain_time",
+              "Time taken to enqueue publish tasks for and delete a batch of DNS refresh requests",
+              "milliseconds",
+              LABEL_DESCRIPTORS_FOR_REFRESH_REQUESTS,
+              EXPONENTIAL_FITTER);
+
+  private static final IncrementableMetric refreshRequestsDrained =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/dns/refresh_requests/drained",
+              "Count of DNS refresh requests for which publish tasks were enqueued",
+              "count",
+              LABEL_DESCRIPTORS_FOR_REFRESH_REQUESTS);
+
   @Inject
   DnsMetrics() {}
 
@@ -212,6 +283,14 @@ public class DnsMetrics {
     }
   }
 
+  /**
+   * Measures the time taken by {@link google.registry.dns.writer.DnsWriter#publishBatch} to stage
+   * the updates of a batch, per TLD.
+   */
+  void recordBatchStaging(String tld, String dnsWriter, Duration stagingDuration) {
+    stagingTimePerBatchDist.record(stagingDuration.toMillis(), tld, dnsWriter);
+  }
+
   /**
    * Measures information about the entire batched commit, per TLD.
    *
@@ -259,6 +338,29 @@ public class DnsMetrics {
     totalBatchSizePerItemDist.record(batchSize, batchSize, tld, status.name(), dnsWriter);
   }
 
+  /**
+   * Records a round trip of DNS update messages over a connection to the DNS server, and whether
+   * that connection was reused.
+   */
+  public void recordUpdateRoundTrip(ConnectionType connectionType, Duration roundTripTime) {
+    updateConnections.increment(connectionType.name());
+    updateRoundTripTime.record(roundTripTime.toMillis(), connectionType.name());
+  }
+
+  /** Records the number of DNS refresh requests that are due to be read, per TLD. */
+  void recordRefreshRequestQueueDepth(String tld, long queueDepth) {
+    refreshRequestQueueDepth.record(queueDepth, tld);
+  }
+
+  /**
+   * Records the draining of a batch of DNS refresh requests, i.e. enqueueing publish tasks for them
+   * and deleting them, per TLD.
+   */
+  void recordRefreshRequestsDrained(String tld, int numberOfRequests, Duration drainDuration) {
+    refreshRequestsDrained.incrementBy(numberOfRequests, tld);
+    refreshRequestDrainTime.record(drainDuration.toMillis(), tld);
+  }
+
   void recordActionResult(
       String tld,
       String dnsWriter,
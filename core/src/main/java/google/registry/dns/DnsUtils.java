@@ -15,19 +15,35 @@
 package google.registry.dns;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static google.registry.persistence.PersistenceModule.TransactionIsolationLevel.TRANSACTION_REPEATABLE_READ;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
+import static google.registry.util.DateTimeUtils.START_INSTANT;
+import static org.hibernate.jpa.SpecHints.HINT_SPEC_LOCK_TIMEOUT;
 
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.net.InternetDomainName;
 import google.registry.model.common.DnsRefreshRequest;
 import google.registry.model.tld.Tld;
 import google.registry.model.tld.Tlds;
+import jakarta.persistence.LockModeType;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import org.hibernate.Session;
 
 /** Utility class to handle DNS refresh requests. */
 public final class DnsUtils {
@@ -35,30 +51,145 @@ public final class DnsUtils {
   /** The name of the DNS publish push queue. */
   public static final String DNS_PUBLISH_PUSH_QUEUE_NAME = "dns-publish"; // See queue.xml.
 
+  /** The maximum number of names to look up pending requests for in a single query. */
+  private static final int PENDING_REQUEST_QUERY_BATCH_SIZE = 1000;
+
+  /**
+   * The lock timeout, in Hibernate's encoding, that makes a locking query skip the rows already
+   * locked by another transaction rather than wait for them, i.e. {@code FOR UPDATE SKIP LOCKED}.
+   */
+  private static final int SKIP_LOCKED_TIMEOUT = -2;
+
+  /**
+   * Locks the pending requests of a type for some names, skipping the ones already locked.
+   *
+   * <p>This runs as plain SQL rather than as a Hibernate query, so that a failure to lock a request
+   * doesn't mark the whole transaction for rollback.
+   */
+  private static final String LOCK_PENDING_REQUESTS_SQL =
+      "SELECT id FROM \"DnsRefreshRequest\" WHERE type = ? AND name = ANY (?) "
+          + "AND last_process_time = ? FOR UPDATE SKIP LOCKED";
+
+  /** The SQL state of a PostgreSQL serialization failure. */
+  private static final String SERIALIZATION_FAILURE_SQL_STATE = "40001";
+
   private DnsUtils() {}
 
   private static void requestDnsRefresh(String name, TargetType type, Duration delay) {
-    tm().assertInTransaction();
-    // Throws an IllegalArgumentException if the name is not under a managed TLD -- we only update
-    // DNS for names that are under our management.
-    String tld = Tlds.findTldForNameOrThrow(InternetDomainName.from(name)).toString();
-    tm().insert(new DnsRefreshRequest(type, name, tld, tm().getTxTime().plus(delay)));
+    requestDnsRefresh(ImmutableList.of(name), type, delay);
   }
 
+  /**
+   * Requests a DNS refresh for the given names, merging the requests with any pending ones.
+   *
+   * <p>A request is pending until a {@link ReadDnsRefreshRequestsAction} reads it. Since that only
+   * happens after this transaction commits, when the request is read the refresh will pick up the
+   * changes made in this transaction, so there is no need for another request for the same name.
+   * The pending requests are locked until then, so that they aren't read in the meantime. If the
+   * new request is due earlier than the pending one, the pending one is brought forward instead.
+   *
+   * <p>Pending requests that are already locked, by a concurrent read or by another transaction
+   * merging into them, are skipped rather than waited for, and a new request is inserted for their
+   * names instead. This never blocks on {@link ReadDnsRefreshRequestsAction}, and a read that
+   * already holds the pending request may not see the changes made in this transaction anyway.
+   * Likewise, if a pending request was read after this transaction started, locking it fails with a
+   * serialization failure, and new requests are inserted for all the names rather than failing the
+   * transaction. This may leave several pending requests for a name, which only costs an extra
+   * refresh.
+   */
   private static void requestDnsRefresh(
       ImmutableCollection<String> names, TargetType type, Duration delay) {
     tm().assertInTransaction();
     Instant requestTime = tm().getTxTime().plus(delay);
-    tm().insertAll(
-            names.stream()
-                .map(
-                    name ->
-                        new DnsRefreshRequest(
-                            type,
-                            name,
-                            Tlds.findTldForNameOrThrow(InternetDomainName.from(name)).toString(),
-                            requestTime))
-                .collect(toImmutableList()));
+    // Throws an IllegalArgumentException if any name is not under a managed TLD -- we only update
+    // DNS for names that are under our management.
+    ImmutableMap<String, String> tldsByName =
+        ImmutableSet.copyOf(names).stream()
+            .collect(
+                toImmutableMap(
+                    name -> name,
+                    name -> Tlds.findTldForNameOrThrow(InternetDomainName.from(name)).toString()));
+    ImmutableMap<String, DnsRefreshRequest> pendingRequests =
+        loadAndLockPendingRequests(type, tldsByName.keySet());
+    ImmutableList.Builder<DnsRefreshRequest> newRequests = new ImmutableList.Builder<>();
+    ImmutableList.Builder<DnsRefreshRequest> advancedRequests = new ImmutableList.Builder<>();
+    tldsByName.forEach(
+        (name, tld) -> {
+          DnsRefreshRequest pendingRequest = pendingRequests.get(name);
+          if (pendingRequest == null) {
+            newRequests.add(new DnsRefreshRequest(type, name, tld, requestTime));
+          } else if (pendingRequest.getRequestTime().isAfter(requestTime)) {
+            advancedRequests.add(pendingRequest.advanceRequestTime(requestTime));
+          }
+        });
+    tm().insertAll(newRequests.build());
+    tm().updateAll(advancedRequests.build());
+  }
+
+  /**
+   * Loads the requests for the given names that haven't been read yet and aren't locked by another
+   * transaction, and locks them until the end of the transaction.
+   *
+   * <p>There should be at most one such request per name, but if there are several (e.g. from
+   * concurrent transactions that both found none), the earliest one is returned. If any of them has
+   * been read since this transaction started, none are returned.
+   */
+  private static ImmutableMap<String, DnsRefreshRequest> loadAndLockPendingRequests(
+      TargetType type, ImmutableSet<String> names) {
+    ImmutableList<Long> lockedIds =
+        tm().getEntityManager()
+            .unwrap(Session.class)
+            .doReturningWork(connection -> lockPendingRequests(connection, type, names));
+    ImmutableList.Builder<DnsRefreshRequest> pendingRequests = new ImmutableList.Builder<>();
+    for (List<Long> batch : Iterables.partition(lockedIds, PENDING_REQUEST_QUERY_BATCH_SIZE)) {
+      pendingRequests.addAll(
+          tm().query("FROM DnsRefreshRequest WHERE id IN :ids", DnsRefreshRequest.class)
+              .setParameter("ids", batch)
+              .getResultList());
+    }
+    return pendingRequests.build().stream()
+        .collect(
+            toImmutableMap(
+                DnsRefreshRequest::getName,
+                request -> request,
+                (request1, request2) ->
+                    request1.getRequestTime().isAfter(request2.getRequestTime())
+                        ? request2
+                        : request1));
+  }
+
+  /**
+   * Locks the pending requests for the given names, and returns their IDs.
+   *
+   * <p>The locks are taken under a savepoint, so that a serialization failure, i.e. a request that
+   * has been read since this transaction started, only rolls them back rather than the whole
+   * transaction. No IDs are returned in that case.
+   */
+  private static ImmutableList<Long> lockPendingRequests(
+      Connection connection, TargetType type, ImmutableSet<String> names) throws SQLException {
+    Savepoint savepoint = connection.setSavepoint();
+    ImmutableList.Builder<Long> lockedIds = new ImmutableList.Builder<>();
+    try (PreparedStatement statement = connection.prepareStatement(LOCK_PENDING_REQUESTS_SQL)) {
+      for (List<String> batch : Iterables.partition(names, PENDING_REQUEST_QUERY_BATCH_SIZE)) {
+        statement.setString(1, type.name());
+        statement.setArray(2, connection.createArrayOf("text", batch.toArray()));
+        statement.setObject(3, OffsetDateTime.ofInstant(START_INSTANT, ZoneOffset.UTC));
+        try (ResultSet results = statement.executeQuery()) {
+          while (results.next()) {
+            lockedIds.add(results.getLong(1));
+          }
+        }
+      }
+    } catch (SQLException e) {
+      if (!SERIALIZATION_FAILURE_SQL_STATE.equals(e.getSQLState())) {
+        throw e;
+      }
+      connection.rollback(savepoint);
+      connection.releaseSavepoint(savepoint);
+      return ImmutableList.of();
+    }
+    connection.releaseSavepoint(savepoint);
+    return lockedIds.build();
   }
 
   public static void requestDomainDnsRefresh(String domainName, Duration delay) {
@@ -95,7 +226,12 @@ public final class DnsUtils {
    *   <li>They are for the given TLD.
    *   <li>Their request time is not in the future.
    *   <li>The last time they were processed is before the cooldown period.
+   *   <li>They aren't locked by another transaction, e.g. a concurrent read or a transaction that
+   *       is merging a new request into them.
    * </ul>
+   *
+   * <p>Locked requests are skipped rather than waited for, so that concurrent reads claim disjoint
+   * batches of requests instead of contending for the same ones.
    */
   public static ImmutableList<DnsRefreshRequest> readAndUpdateRequestsWithLatestProcessTime(
       String tld, Duration cooldown, int batchSize) {
@@ -114,6 +250,8 @@ public final class DnsUtils {
                       .setParameter("now", transactionTime)
                       .setParameter("cutoffTime", transactionTime.minus(cooldown))
                       .setMaxResults(batchSize)
+                      .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                      .setHint(HINT_SPEC_LOCK_TIMEOUT, SKIP_LOCKED_TIMEOUT)
                       .getResultStream()
                       // Note that the process time is when the request was last read, batched and
                       // queued up for publishing, not when it is actually published by the DNS
@@ -127,6 +265,28 @@ public final class DnsUtils {
             });
   }
 
+  /**
+   * Returns the number of requests for the given TLD that are due to be read now.
+   *
+   * <p>This uses the same criteria as {@link #readAndUpdateRequestsWithLatestProcessTime}, so that
+   * requests read within the cooldown period aren't counted, except that requests locked by another
+   * transaction are counted too.
+   */
+  public static long countDueRequests(String tld, Duration cooldown) {
+    return tm().transact(
+            () -> {
+              Instant transactionTime = tm().getTxTime();
+              return tm().query(
+                      "SELECT COUNT(*) FROM DnsRefreshRequest WHERE tld = :tld "
+                          + "AND requestTime <= :now AND lastProcessTime < :cutoffTime",
+                      Long.class)
+                  .setParameter("tld", tld)
+                  .setParameter("now", transactionTime)
+                  .setParameter("cutoffTime", transactionTime.minus(cooldown))
+                  .getSingleResult();
+            });
+  }
+
   /**
    * Removes the requests that have been processed.
    *
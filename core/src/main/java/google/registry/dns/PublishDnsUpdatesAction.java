@@ -43,6 +43,7 @@ import google.registry.config.RegistryConfig.Config;
 import google.registry.dns.DnsMetrics.ActionStatus;
 import google.registry.dns.DnsMetrics.CommitStatus;
 import google.registry.dns.DnsMetrics.PublishStatus;
+import google.registry.dns.writer.DnsCommitFailureException;
 import google.registry.dns.writer.DnsWriter;
 import google.registry.groups.GmailClient;
 import google.registry.model.ForeignKeyUtils;
@@ -215,6 +216,9 @@ public final class PublishDnsUpdatesAction implements Runnable, Callable<Void> {
     try {
       processBatch();
     } catch (Throwable e) {
+      if (e instanceof DnsCommitFailureException failure && requeueFailedNames(failure)) {
+        return null;
+      }
       // Retry the batch 3 times
       if (retryCount < 3) {
         throw e;
@@ -313,6 +317,25 @@ public final class PublishDnsUpdatesAction implements Runnable, Callable<Void> {
     }
   }
 
+  /**
+   * Adds only the domains and hosts whose updates failed back to the queue, if the updates for the
+   * other names in the batch were committed.
+   *
+   * @return whether the failed names were requeued, or the whole batch failed instead
+   */
+  private boolean requeueFailedNames(DnsCommitFailureException failure) {
+    ImmutableSet<String> failedDomains = failure.getFailedDomainNames();
+    ImmutableSet<String> failedHosts = failure.getFailedHostNames();
+    if (failedDomains.containsAll(nullToEmpty(domains))
+        && failedHosts.containsAll(nullToEmpty(hosts))) {
+      return false;
+    }
+    logger.atWarning().withCause(failure).log(
+        "%s: requeueing failed domains %s and hosts %s.", tld, failedDomains, failedHosts);
+    enqueue(failedDomains.asList(), failedHosts.asList());
+    return true;
+  }
+
   /** Splits the domains and hosts in a batch into smaller batches and adds them to the queue. */
   private void splitBatch() {
     ImmutableList<String> domainList = ImmutableList.copyOf(domains);
@@ -384,33 +407,41 @@ public final class PublishDnsUpdatesAction implements Runnable, Callable<Void> {
       return;
     }
 
-    int domainsPublished = 0;
+    ImmutableSet.Builder<String> domainsToPublish = new ImmutableSet.Builder<>();
     int domainsRejected = 0;
     for (String domain : nullToEmpty(domains)) {
       if (!DomainNameUtils.isUnder(InternetDomainName.from(domain), InternetDomainName.from(tld))) {
         logger.atSevere().log("%s: skipping domain %s not under TLD.", tld, domain);
         domainsRejected += 1;
       } else {
-        writer.publishDomain(domain);
-        logger.atInfo().log("%s: published domain %s.", tld, domain);
-        domainsPublished += 1;
+        domainsToPublish.add(domain);
       }
     }
-    dnsMetrics.incrementPublishDomainRequests(tld, domainsPublished, PublishStatus.ACCEPTED);
-    dnsMetrics.incrementPublishDomainRequests(tld, domainsRejected, PublishStatus.REJECTED);
-
-    int hostsPublished = 0;
+    ImmutableSet.Builder<String> hostsToPublish = new ImmutableSet.Builder<>();
     int hostsRejected = 0;
     for (String host : nullToEmpty(hosts)) {
       if (!DomainNameUtils.isUnder(InternetDomainName.from(host), InternetDomainName.from(tld))) {
         logger.atSevere().log("%s: skipping host %s not under TLD.", tld, host);
         hostsRejected += 1;
       } else {
-        writer.publishHost(host);
-        logger.atInfo().log("%s: published host %s.", tld, host);
-        hostsPublished += 1;
+        hostsToPublish.add(host);
       }
     }
+    ImmutableSet<String> publishedDomains = domainsToPublish.build();
+    ImmutableSet<String> publishedHosts = hostsToPublish.build();
+    int domainsPublished = publishedDomains.size();
+    int hostsPublished = publishedHosts.size();
+
+    if (!publishedDomains.isEmpty() || !publishedHosts.isEmpty()) {
+      Instant timeBeforeStaging = clock.now();
+      writer.publishBatch(publishedDomains, publishedHosts);
+      dnsMetrics.recordBatchStaging(
+          tld, dnsWriter, Duration.between(timeBeforeStaging, clock.now()));
+      logger.atInfo().log(
+          "%s: published domains %s and hosts %s.", tld, publishedDomains, publishedHosts);
+    }
+    dnsMetrics.incrementPublishDomainRequests(tld, domainsPublished, PublishStatus.ACCEPTED);
+    dnsMetrics.incrementPublishDomainRequests(tld, domainsRejected, PublishStatus.REJECTED);
     dnsMetrics.incrementPublishHostRequests(tld, hostsPublished, PublishStatus.ACCEPTED);
     dnsMetrics.incrementPublishHostRequests(tld, hostsRejected, PublishStatus.REJECTED);
 
@@ -14,6 +14,7 @@
 
 package google.registry.dns;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSetMultimap.toImmutableSetMultimap;
 import static google.registry.dns.DnsModule.PARAM_DNS_JITTER_SECONDS;
 import static google.registry.dns.DnsModule.PARAM_DNS_WRITER;
@@ -24,6 +25,7 @@ import static google.registry.dns.DnsModule.PARAM_NUM_PUBLISH_LOCKS;
 import static google.registry.dns.DnsModule.PARAM_PUBLISH_TASK_ENQUEUED;
 import static google.registry.dns.DnsModule.PARAM_REFRESH_REQUEST_TIME;
 import static google.registry.dns.DnsUtils.DNS_PUBLISH_PUSH_QUEUE_NAME;
+import static google.registry.dns.DnsUtils.countDueRequests;
 import static google.registry.dns.DnsUtils.deleteRequests;
 import static google.registry.dns.DnsUtils.readAndUpdateRequestsWithLatestProcessTime;
 import static google.registry.request.Action.Method.POST;
@@ -33,12 +35,16 @@ import static google.registry.util.DomainNameUtils.getSecondLevelDomain;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.cloud.tasks.v2.Task;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
+import com.google.common.math.IntMath;
 import google.registry.batch.CloudTasksUtils;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.dns.DnsUtils.TargetType;
@@ -48,10 +54,13 @@ import google.registry.request.Action;
 import google.registry.request.Parameter;
 import google.registry.request.auth.Auth;
 import google.registry.util.Clock;
+import google.registry.util.Concurrent;
 import jakarta.inject.Inject;
+import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -68,35 +77,55 @@ public final class ReadDnsRefreshRequestsAction implements Runnable {
 
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  /** The largest multiple of the base batch size that a backlog of requests can grow it to. */
+  @VisibleForTesting static final int MAX_BATCH_SIZE_MULTIPLIER = 8;
+
   private final int tldUpdateBatchSize;
   private final Duration requestedMaximumDuration;
+  private final int numThreads;
   private final Optional<Integer> jitterSeconds;
   private final String tld;
   private final Clock clock;
   private final HashFunction hashFunction;
   private final CloudTasksUtils cloudTasksUtils;
+  private final DnsMetrics dnsMetrics;
+
+  /**
+   * How many times the base batch size the requests are currently read with.
+   *
+   * <p>Each lock bucket is split into this many publish tasks, so that every task still publishes
+   * about {@link #tldUpdateBatchSize} names.
+   */
+  private int batchSizeMultiplier = 1;
 
   @Inject
   ReadDnsRefreshRequestsAction(
       @Config("dnsTldUpdateBatchSize") int tldUpdateBatchSize,
       @Config("readDnsRefreshRequestsActionRuntime") Duration requestedMaximumDuration,
+      @Config("readDnsRefreshRequestsThreads") int numThreads,
       @Parameter(PARAM_DNS_JITTER_SECONDS) Optional<Integer> jitterSeconds,
       @Parameter(PARAM_TLD) String tld,
       Clock clock,
       HashFunction hashFunction,
-      CloudTasksUtils cloudTasksUtils) {
+      CloudTasksUtils cloudTasksUtils,
+      DnsMetrics dnsMetrics) {
     this.tldUpdateBatchSize = tldUpdateBatchSize;
     this.requestedMaximumDuration = requestedMaximumDuration;
+    this.numThreads = numThreads;
     this.jitterSeconds = jitterSeconds;
     this.tld = tld;
     this.clock = clock;
     this.hashFunction = hashFunction;
     this.cloudTasksUtils = cloudTasksUtils;
+    this.dnsMetrics = dnsMetrics;
   }
 
   /**
    * Reads requests up to the maximum requested runtime, and enqueues update batches from the these
    * requests.
+   *
+   * <p>The requests are read in larger batches while there is a backlog of them, up to {@link
+   * #MAX_BATCH_SIZE_MULTIPLIER} times the base batch size, to drain it with fewer round trips.
    */
   @Override
   public void run() {
@@ -107,8 +136,12 @@ public final class ReadDnsRefreshRequestsAction implements Runnable {
     Instant requestedEndTime = clock.now().plus(requestedMaximumDuration);
     // See getLockIndex(), requests are evenly distributed to [1, numDnsPublishLocks], so each
     // bucket would be roughly the size of tldUpdateBatchSize.
-    int processBatchSize = tldUpdateBatchSize * Tld.get(tld).getNumDnsPublishLocks();
+    int baseBatchSize = tldUpdateBatchSize * Tld.get(tld).getNumDnsPublishLocks();
+    long backlog = countDueRequests(tld, requestedMaximumDuration);
+    dnsMetrics.recordRefreshRequestQueueDepth(tld, backlog);
     while (requestedEndTime.isAfter(clock.now())) {
+      batchSizeMultiplier = getBatchSizeMultiplier(backlog, baseBatchSize);
+      int processBatchSize = baseBatchSize * batchSizeMultiplier;
       ImmutableList<DnsRefreshRequest> requests =
           readAndUpdateRequestsWithLatestProcessTime(
               tld, requestedMaximumDuration, processBatchSize);
@@ -119,33 +152,82 @@ public final class ReadDnsRefreshRequestsAction implements Runnable {
       if (requests.size() < processBatchSize) {
         return;
       }
+      backlog -= requests.size();
     }
   }
+
   /**
-   * Subdivides {@link DnsRefreshRequest} into buckets by lock index, enqueue a Cloud Tasks task per
-   * bucket, and then delete the requests in each bucket.
+   * Returns how many times the base batch size to read requests with, given the number of requests
+   * that are due.
+   *
+   * <p>The batch only grows once there are at least two full base batches due, so that a backlog
+   * that a single base batch drains is read just the same as before.
+   */
+  @VisibleForTesting
+  static int getBatchSizeMultiplier(long backlog, int baseBatchSize) {
+    return Math.clamp(backlog / baseBatchSize, 1, MAX_BATCH_SIZE_MULTIPLIER);
+  }
+
+  /**
+   * Subdivides {@link DnsRefreshRequest} into buckets by lock index, enqueue Cloud Tasks tasks for
+   * each bucket, and then delete the requests of all the buckets.
+   *
+   * <p>The buckets are processed concurrently, on up to {@link #numThreads} threads.
    */
   void processRequests(Collection<DnsRefreshRequest> requests) {
+    Instant startTime = clock.now();
     int numPublishLocks = Tld.get(tld).getNumDnsPublishLocks();
-    requests.stream()
-        .collect(
-            toImmutableSetMultimap(
-                request -> getLockIndex(numPublishLocks, request), request -> request))
-        .asMap()
-        .forEach(
-            (lockIndex, bucketedRequests) -> {
-              try {
-                enqueueUpdates(lockIndex, numPublishLocks, bucketedRequests);
-                deleteRequests(bucketedRequests);
-                logger.atInfo().log(
-                    "Processed %d DNS update requests for TLD %s.", bucketedRequests.size(), tld);
-              } catch (Exception e) {
-                // Log but continue to process the next bucket. The failed tasks will NOT be
-                // deleted and will be retried after the cooldown period has passed.
-                logger.atSevere().withCause(e).log(
-                    "Error processing DNS update requests: %s", bucketedRequests);
-              }
-            });
+    ImmutableList<ImmutableList<DnsRefreshRequest>> enqueuedRequests =
+        Concurrent.transform(
+            requests.stream()
+                .collect(
+                    toImmutableSetMultimap(
+                        request -> getLockIndex(numPublishLocks, request), request -> request))
+                .asMap()
+                .entrySet(),
+            numThreads,
+            bucket -> enqueueBucket(bucket.getKey(), numPublishLocks, bucket.getValue()));
+    ImmutableList<DnsRefreshRequest> processedRequests =
+        enqueuedRequests.stream().flatMap(List::stream).collect(toImmutableList());
+    if (processedRequests.isEmpty()) {
+      return;
+    }
+    try {
+      deleteRequests(processedRequests);
+      dnsMetrics.recordRefreshRequestsDrained(
+          tld, processedRequests.size(), Duration.between(startTime, clock.now()));
+      logger.atInfo().log(
+          "Processed %d DNS update requests for TLD %s.", processedRequests.size(), tld);
+    } catch (Exception e) {
+      // The requests will be read again after the cooldown period has passed, and published again,
+      // which is harmless.
+      logger.atSevere().withCause(e).log(
+          "Error deleting processed DNS update requests: %s", processedRequests);
+    }
+  }
+
+  /**
+   * Enqueues the tasks for the requests in a lock bucket, split into {@link #batchSizeMultiplier}
+   * tasks, and returns the requests for which tasks were enqueued.
+   */
+  private ImmutableList<DnsRefreshRequest> enqueueBucket(
+      int lockIndex, int numPublishLocks, Collection<DnsRefreshRequest> bucketedRequests) {
+    ImmutableList.Builder<DnsRefreshRequest> enqueuedRequests = new ImmutableList.Builder<>();
+    int chunkSize =
+        IntMath.divide(bucketedRequests.size(), batchSizeMultiplier, RoundingMode.CEILING);
+    for (List<DnsRefreshRequest> chunk : Iterables.partition(bucketedRequests, chunkSize)) {
+      ImmutableSet<DnsRefreshRequest> chunkedRequests = ImmutableSet.copyOf(chunk);
+      try {
+        enqueueUpdates(lockIndex, numPublishLocks, chunkedRequests);
+        enqueuedRequests.addAll(chunkedRequests);
+      } catch (Exception e) {
+        // Log but continue to process the next chunk. The failed requests will NOT be deleted and
+        // will be retried after the cooldown period has passed.
+        logger.atSevere().withCause(e).log(
+            "Error processing DNS update requests: %s", chunkedRequests);
+      }
+    }
+    return enqueuedRequests.build();
   }
 
   /**
@@ -161,10 +243,14 @@ public final class ReadDnsRefreshRequestsAction implements Runnable {
     return Hashing.consistentHash(hashFunction.hashString(domain, UTF_8), numPublishLocks) + 1;
   }
 
-  /** Creates DNS refresh tasks for all writers for the tld within a lock index. */
+  /**
+   * Creates DNS refresh tasks for all writers for the tld within a lock index.
+   *
+   * <p>Several requests for the same name are collapsed into a single refresh of that name.
+   */
   void enqueueUpdates(int lockIndex, int numPublishLocks, Collection<DnsRefreshRequest> requests) {
-    ImmutableList.Builder<String> domainsBuilder = new ImmutableList.Builder<>();
-    ImmutableList.Builder<String> hostsBuilder = new ImmutableList.Builder<>();
+    ImmutableSet.Builder<String> domainsBuilder = new ImmutableSet.Builder<>();
+    ImmutableSet.Builder<String> hostsBuilder = new ImmutableSet.Builder<>();
     Instant earliestRequestTime = END_INSTANT;
     for (DnsRefreshRequest request : requests) {
       if (request.getRequestTime().isBefore(earliestRequestTime)) {
@@ -177,8 +263,8 @@ public final class ReadDnsRefreshRequestsAction implements Runnable {
         hostsBuilder.add(name);
       }
     }
-    ImmutableList<String> domains = domainsBuilder.build();
-    ImmutableList<String> hosts = hostsBuilder.build();
+    ImmutableSet<String> domains = domainsBuilder.build();
+    ImmutableSet<String> hosts = hostsBuilder.build();
     for (String dnsWriter : Tld.get(tld).getDnsWriters()) {
       Task task =
           cloudTasksUtils.createTaskWithJitter(
@@ -14,6 +14,7 @@
 
 package google.registry.dns;
 
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static google.registry.dns.DnsUtils.requestDomainDnsRefresh;
 import static google.registry.dns.RefreshDnsOnHostRenameAction.PATH;
 import static google.registry.model.EppResourceUtils.getLinkedDomainKeys;
@@ -68,12 +69,18 @@ public class RefreshDnsOnHostRenameAction implements Runnable {
                 failureMessage =
                     String.format("Host to refresh is already deleted: %s", host.getHostName());
               } else {
-                getLinkedDomainKeys(
-                        host.createVKey(), host.getUpdateTimestamp().getTimestamp(), null)
-                    .stream()
-                    .map(domainKey -> tm().loadByKey(domainKey))
-                    .filter(Domain::shouldPublishToDns)
-                    .forEach(domain -> requestDomainDnsRefresh(domain.getDomainName()));
+                // Load the linked domains and request their refreshes in bulk, rather than one
+                // query per domain, as popular nameservers can be linked to many domains.
+                requestDomainDnsRefresh(
+                    tm()
+                        .loadByKeys(
+                            getLinkedDomainKeys(
+                                host.createVKey(), host.getUpdateTimestamp().getTimestamp(), null))
+                        .values()
+                        .stream()
+                        .filter(Domain::shouldPublishToDns)
+                        .map(Domain::getDomainName)
+                        .collect(toImmutableSet()));
               }
 
               if (!hostValid) {
@@ -16,15 +16,39 @@ package google.registry.dns.writer;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import google.registry.model.ForeignKeyUtils;
+import google.registry.model.domain.Domain;
+import google.registry.model.host.Host;
+import java.time.Instant;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * A base implementation of {@link DnsWriter} that protects against multiple calls to commit().
+ *
+ * <p>It also implements {@link #publishBatch} by loading all the resources of the batch up front.
+ * Subclasses should load resources with {@link #loadDomain}, {@link #loadHost} and {@link
+ * #loadNameserverHostNames}, which use the preloaded resources when they are available.
  */
 public abstract class BaseDnsWriter implements DnsWriter {
 
   private final AtomicBoolean committedAlready = new AtomicBoolean(false);
 
+  @Nullable private PreloadedDnsResources preloadedResources;
+
+  @Override
+  public void publishBatch(ImmutableSet<String> domainNames, ImmutableSet<String> hostNames) {
+    preloadedResources = PreloadedDnsResources.load(domainNames, hostNames);
+    try {
+      DnsWriter.super.publishBatch(domainNames, hostNames);
+    } finally {
+      preloadedResources = null;
+    }
+  }
+
   @Override
   public final void commit() {
     checkState(committedAlready.compareAndSet(false, true), "commit() has already been called");
@@ -33,4 +57,27 @@ public abstract class BaseDnsWriter implements DnsWriter {
 
   /** Commits DNS updates. This can never be called more than once. */
   protected abstract void commitUnchecked();
+
+  /**
+   * Loads a domain by name as of {@code now}, or returns empty if it doesn't exist or is deleted.
+   */
+  protected Optional<Domain> loadDomain(String domainName, Instant now) {
+    return (preloadedResources != null && preloadedResources.containsDomain(domainName))
+        ? preloadedResources.getDomain(domainName, now)
+        : ForeignKeyUtils.loadResource(Domain.class, domainName, now);
+  }
+
+  /** Loads a host by name as of {@code now}, or returns empty if it doesn't exist or is deleted. */
+  protected Optional<Host> loadHost(String hostName, Instant now) {
+    return (preloadedResources != null && preloadedResources.containsHost(hostName))
+        ? preloadedResources.getHost(hostName, now)
+        : ForeignKeyUtils.loadResource(Host.class, hostName, now);
+  }
+
+  /** Loads the names of the nameservers of a domain. */
+  protected ImmutableSortedSet<String> loadNameserverHostNames(Domain domain) {
+    return Optional.ofNullable(preloadedResources)
+        .flatMap(resources -> resources.getNameserverHostNames(domain))
+        .orElseGet(domain::loadNameserverHostNames);
+  }
 }
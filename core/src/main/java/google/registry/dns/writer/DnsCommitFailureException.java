@@ -0,0 +1,51 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.dns.writer;
+
+import com.google.common.collect.ImmutableSet;
+import javax.annotation.Nullable;
+
+/**
+ * Thrown by {@link DnsWriter#commit()} when the updates for some of the published names failed.
+ *
+ * <p>Writers that commit their updates in several independent parts report which of the published
+ * domains and hosts were in the failed parts, so that only those have to be published again. The
+ * updates for all the other names were committed successfully.
+ */
+public class DnsCommitFailureException extends RuntimeException {
+
+  private final ImmutableSet<String> failedDomainNames;
+  private final ImmutableSet<String> failedHostNames;
+
+  public DnsCommitFailureException(
+      String message,
+      ImmutableSet<String> failedDomainNames,
+      ImmutableSet<String> failedHostNames,
+      @Nullable Throwable cause) {
+    super(message, cause);
+    this.failedDomainNames = failedDomainNames;
+    this.failedHostNames = failedHostNames;
+  }
+
+  /** Returns the names passed to {@link DnsWriter#publishDomain} whose updates failed. */
+  public ImmutableSet<String> getFailedDomainNames() {
+    return failedDomainNames;
+  }
+
+  /** Returns the names passed to {@link DnsWriter#publishHost} whose updates failed. */
+  public ImmutableSet<String> getFailedHostNames() {
+    return failedHostNames;
+  }
+}
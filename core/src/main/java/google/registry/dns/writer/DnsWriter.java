@@ -14,6 +14,8 @@
 
 package google.registry.dns.writer;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Transaction object for sending an atomic batch of updates for a single zone to the DNS server.
  *
@@ -58,6 +60,22 @@ public interface DnsWriter {
    */
   void publishHost(String hostName);
 
+  /**
+   * Publishes a batch of domains and hosts, as if by calling {@link #publishDomain} and {@link
+   * #publishHost} for each of them.
+   *
+   * <p>Implementations may load all the resources needed for the batch at once, rather than one
+   * name at a time. Like the other publish methods, this must only stage the updates until {@link
+   * #commit()} is called.
+   *
+   * @param domainNames the fully qualified domain names, with no trailing dots
+   * @param hostNames the fully qualified host names, with no trailing dots
+   */
+  default void publishBatch(ImmutableSet<String> domainNames, ImmutableSet<String> hostNames) {
+    domainNames.forEach(this::publishDomain);
+    hostNames.forEach(this::publishHost);
+  }
+
   /**
    * Commits the updates to the DNS server atomically.
    *
@@ -0,0 +1,153 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.dns.writer;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.collect.ImmutableSortedSet.toImmutableSortedSet;
+import static google.registry.persistence.transaction.TransactionManagerFactory.replicaTm;
+import static google.registry.util.DomainNameUtils.getSecondLevelDomain;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+import com.google.common.net.InternetDomainName;
+import google.registry.model.EppResource;
+import google.registry.model.ForeignKeyUtils;
+import google.registry.model.domain.Domain;
+import google.registry.model.host.Host;
+import google.registry.model.tld.Tlds;
+import google.registry.persistence.VKey;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * The domains and nameserver hosts needed to publish a batch of DNS updates, loaded all at once.
+ *
+ * <p>The domains requested in the batch, as well as the superordinate domains of the requested
+ * hosts, are loaded with a single query, and all of their nameservers with another one. Both
+ * queries go to the replica database, since DNS updates are only published some time after the
+ * changes that requested them.
+ */
+final class PreloadedDnsResources {
+
+  private final ImmutableSet<String> domainNames;
+  private final ImmutableMap<String, Domain> domains;
+  private final ImmutableMap<VKey<? extends Host>, Host> nameservers;
+  private final ImmutableMap<String, Host> nameserversByName;
+
+  private PreloadedDnsResources(
+      ImmutableSet<String> domainNames,
+      ImmutableMap<String, Domain> domains,
+      ImmutableMap<VKey<? extends Host>, Host> nameservers) {
+    this.domainNames = domainNames;
+    this.domains = domains;
+    this.nameservers = nameservers;
+    // Only one host with a given name can be undeleted, so prefer it over any deleted ones.
+    this.nameserversByName =
+        nameservers.values().stream()
+            .collect(
+                toImmutableMap(
+                    Host::getHostName,
+                    host -> host,
+                    (host1, host2) ->
+                        host1.getDeletionTime().isAfter(host2.getDeletionTime()) ? host1 : host2));
+  }
+
+  /** Loads the resources needed to publish the given domains and hosts. */
+  static PreloadedDnsResources load(Collection<String> domainNames, Collection<String> hostNames) {
+    ImmutableSet<String> allDomainNames =
+        Stream.concat(
+                domainNames.stream(),
+                hostNames.stream()
+                    .map(PreloadedDnsResources::getSuperordinateDomainName)
+                    .flatMap(Optional::stream))
+            .collect(toImmutableSet());
+    if (allDomainNames.isEmpty()) {
+      return new PreloadedDnsResources(allDomainNames, ImmutableMap.of(), ImmutableMap.of());
+    }
+    return replicaTm()
+        .reTransact(
+            () -> {
+              ImmutableMap<String, Domain> domains =
+                  ForeignKeyUtils.loadMostRecentResourceObjects(Domain.class, allDomainNames, true);
+              ImmutableSet<VKey<Host>> nameserverKeys =
+                  domains.values().stream()
+                      .flatMap(domain -> domain.getNameservers().stream())
+                      .collect(toImmutableSet());
+              return new PreloadedDnsResources(
+                  allDomainNames,
+                  domains,
+                  nameserverKeys.isEmpty()
+                      ? ImmutableMap.of()
+                      : replicaTm().loadByKeysIfPresent(nameserverKeys));
+            });
+  }
+
+  private static Optional<String> getSuperordinateDomainName(String hostName) {
+    return Tlds.findTldForName(InternetDomainName.from(hostName))
+        .map(tld -> getSecondLevelDomain(hostName, tld.toString()));
+  }
+
+  /** Returns whether the domain with the given name was loaded, whether it exists or not. */
+  boolean containsDomain(String domainName) {
+    return domainNames.contains(domainName);
+  }
+
+  /**
+   * Returns the loaded domain with the given name as of {@code now}, or empty if it doesn't exist
+   * or was deleted before then.
+   */
+  Optional<Domain> getDomain(String domainName, Instant now) {
+    return projectIfNotDeleted(domains.get(domainName), now);
+  }
+
+  /** Returns whether the host with the given name was loaded as the nameserver of a domain. */
+  boolean containsHost(String hostName) {
+    return nameserversByName.containsKey(hostName);
+  }
+
+  /**
+   * Returns the loaded host with the given name as of {@code now}, or empty if it was deleted
+   * before then.
+   */
+  Optional<Host> getHost(String hostName, Instant now) {
+    return projectIfNotDeleted(nameserversByName.get(hostName), now);
+  }
+
+  /**
+   * Returns the names of the nameservers of the given domain, or empty if any of them weren't
+   * loaded.
+   */
+  Optional<ImmutableSortedSet<String>> getNameserverHostNames(Domain domain) {
+    if (!nameservers.keySet().containsAll(domain.getNameservers())) {
+      return Optional.empty();
+    }
+    return Optional.of(
+        domain.getNameservers().stream()
+            .map(key -> nameservers.get(key).getHostName())
+            .collect(toImmutableSortedSet(Ordering.natural())));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends EppResource> Optional<E> projectIfNotDeleted(E resource, Instant now) {
+    return Optional.ofNullable(resource)
+        .filter(r -> now.isBefore(r.getDeletionTime()))
+        .map(r -> (E) r.cloneProjectedAtTime(now));
+  }
+}
@@ -14,6 +14,7 @@
 
 package google.registry.dns.writer;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import jakarta.inject.Inject;
 import java.util.HashSet;
@@ -49,6 +50,13 @@ public final class VoidDnsWriter extends BaseDnsWriter {
     names.add(hostName);
   }
 
+  @Override
+  public void publishBatch(ImmutableSet<String> domainNames, ImmutableSet<String> hostNames) {
+    // Nothing is published, so there's no need to load the resources of the batch.
+    names.addAll(domainNames);
+    names.addAll(hostNames);
+  }
+
   @Override
   protected void commitUnchecked() {
     logger.atWarning().log(
@@ -0,0 +1,79 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.dns.writer.dnsupdate;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.flogger.FluentLogger;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Idle TCP connections to a DNS server, kept open so that later DNS updates can reuse them.
+ *
+ * <p>There is a single pool per server address, shared by all the {@link DnsMessageTransport}s of
+ * the JVM, since each transport only lives as long as the request that uses it. Connections are
+ * reused most recently released first, as those are the least likely to have been closed by the
+ * server in the meantime.
+ */
+final class DnsConnectionPool {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final ConcurrentMap<String, DnsConnectionPool> pools = new ConcurrentHashMap<>();
+
+  private final LinkedBlockingDeque<Socket> idleConnections;
+
+  private DnsConnectionPool(int maxIdleConnections) {
+    this.idleConnections = new LinkedBlockingDeque<>(maxIdleConnections);
+  }
+
+  /** Returns the pool of connections to the given server, creating it if needed. */
+  static DnsConnectionPool get(String host, int port, int maxIdleConnections) {
+    return pools.computeIfAbsent(
+        host + ":" + port, unused -> new DnsConnectionPool(maxIdleConnections));
+  }
+
+  /** Takes the most recently released idle connection out of the pool, if there is one. */
+  Optional<Socket> take() {
+    return Optional.ofNullable(idleConnections.pollFirst());
+  }
+
+  /** Puts a connection back into the pool, or closes it if the pool is already full. */
+  void release(Socket connection) {
+    if (!idleConnections.offerFirst(connection)) {
+      closeQuietly(connection);
+    }
+  }
+
+  /** Closes a connection, e.g. after it failed, only logging any errors while doing so. */
+  static void closeQuietly(Socket connection) {
+    try {
+      connection.close();
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to close connection to the DNS server.");
+    }
+  }
+
+  /** Closes the idle connections of all pools and forgets about the pools. */
+  @VisibleForTesting
+  static void closeAll() {
+    pools.values().forEach(pool -> pool.idleConnections.forEach(DnsConnectionPool::closeQuietly));
+    pools.clear();
+  }
+}
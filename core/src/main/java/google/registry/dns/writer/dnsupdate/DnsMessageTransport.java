@@ -16,19 +16,35 @@ package google.registry.dns.writer.dnsupdate;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.flogger.FluentLogger;
 import com.google.common.primitives.Ints;
 import google.registry.config.RegistryConfig.Config;
+import google.registry.dns.DnsMetrics;
+import google.registry.dns.DnsMetrics.ConnectionType;
+import google.registry.util.Clock;
 import jakarta.inject.Inject;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.Nullable;
 import javax.net.SocketFactory;
 import org.xbill.DNS.Message;
 import org.xbill.DNS.Opcode;
@@ -37,19 +53,28 @@ import org.xbill.DNS.Opcode;
  * A transport for DNS messages. Sends/receives DNS messages over TCP using old-style {@link Socket}
  * s and the message framing defined in <a href="https://tools.ietf.org/html/rfc1035">RFC 1035</a>.
  *
+ * <p>By default, a new connection is opened for every message. If idle connections are pooled,
+ * connections are instead kept open and reused by later messages, and several messages are
+ * pipelined over a single connection as described in <a
+ * href="https://tools.ietf.org/html/rfc7766">RFC 7766</a>, with responses matched to their queries
+ * by message ID.
+ *
  * <p>TODO(b/463732345): now that we're no longer on AppEngine, see if we can use the dnsjava
  * library's {@link org.xbill.DNS.SimpleResolver} class instead of this (that requires {@link
  * java.nio.channels.SocketChannel} which is not supported on AppEngine).
  */
 public class DnsMessageTransport {
 
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   /**
    * Size of message length field for DNS TCP transport.
    *
    * @see <a href="https://tools.ietf.org/html/rfc1035">RFC 1035</a>
    */
   static final int MESSAGE_LENGTH_FIELD_BYTES = 2;
-  private static final int MESSAGE_MAXIMUM_LENGTH = (1 << (MESSAGE_LENGTH_FIELD_BYTES * 8)) - 1;
+
+  static final int MESSAGE_MAXIMUM_LENGTH = (1 << (MESSAGE_LENGTH_FIELD_BYTES * 8)) - 1;
 
   /**
    * The standard DNS port number.
@@ -58,9 +83,16 @@ public class DnsMessageTransport {
    */
   @VisibleForTesting static final int DNS_PORT = 53;
 
+  /** Maximum number of messages sent over a pooled connection before reading their responses. */
+  @VisibleForTesting static final int MAX_PIPELINED_MESSAGES = 16;
+
   private final SocketFactory factory;
   private final String updateHost;
+  private final int updatePort;
   private final int updateTimeout;
+  @Nullable private final DnsConnectionPool connectionPool;
+  private final DnsMetrics dnsMetrics;
+  private final Clock clock;
 
   /**
    * Class constructor.
@@ -68,15 +100,41 @@ public class DnsMessageTransport {
    * @param factory a factory for TCP sockets
    * @param updateHost host name of the DNS server
    * @param updateTimeout update I/O timeout
+   * @param maxIdleConnections maximum number of idle connections kept open for reuse, or zero to
+   *     open a new connection for every message
+   * @param dnsMetrics metrics on the connections used and their round trip times
+   * @param clock a source of time
    */
   @Inject
   public DnsMessageTransport(
       SocketFactory factory,
       @Config("dnsUpdateHost") String updateHost,
-      @Config("dnsUpdateTimeout") Duration updateTimeout) {
+      @Config("dnsUpdateTimeout") Duration updateTimeout,
+      @Config("dnsUpdateMaxIdleConnections") int maxIdleConnections,
+      DnsMetrics dnsMetrics,
+      Clock clock) {
+    this(factory, updateHost, DNS_PORT, updateTimeout, maxIdleConnections, dnsMetrics, clock);
+  }
+
+  @VisibleForTesting
+  DnsMessageTransport(
+      SocketFactory factory,
+      String updateHost,
+      int updatePort,
+      Duration updateTimeout,
+      int maxIdleConnections,
+      DnsMetrics dnsMetrics,
+      Clock clock) {
     this.factory = factory;
     this.updateHost = updateHost;
+    this.updatePort = updatePort;
     this.updateTimeout = Ints.checkedCast(updateTimeout.toMillis());
+    this.connectionPool =
+        maxIdleConnections > 0
+            ? DnsConnectionPool.get(updateHost, updatePort, maxIdleConnections)
+            : null;
+    this.dnsMetrics = dnsMetrics;
+    this.clock = clock;
   }
 
   /**
@@ -89,13 +147,136 @@ public class DnsMessageTransport {
    * @throws IllegalArgumentException if the query is too large to be sent (&gt; 65535 bytes)
    */
   public Message send(Message query) throws IOException {
-    try (Socket socket = factory.createSocket(InetAddress.getByName(updateHost), DNS_PORT)) {
-      socket.setSoTimeout(updateTimeout);
-      writeMessage(socket.getOutputStream(), query);
-      Message response = readMessage(socket.getInputStream());
-      checkValidResponse(query, response);
-      return response;
+    return sendAll(ImmutableList.of(query)).getFirst();
+  }
+
+  /**
+   * Sends several DNS "query" messages and returns their responses, in the same order as the
+   * queries. Each response is checked for matching ID and opcode.
+   *
+   * <p>If connections are pooled, the queries are pipelined over a single connection, up to {@link
+   * #MAX_PIPELINED_MESSAGES} at a time. A failed pooled connection is retried once over a new
+   * connection, since the server may have closed it while it was idle. This is safe for the UPDATE
+   * messages sent by {@link DnsUpdateWriter}, which always replace whole record sets.
+   *
+   * @param queries the messages to send
+   * @return the responses received from the server
+   * @throws IOException if the Socket input/output streams throws one
+   * @throws IllegalArgumentException if any query is too large to be sent (&gt; 65535 bytes)
+   */
+  public ImmutableList<Message> sendAll(List<? extends Message> queries) throws IOException {
+    ImmutableList.Builder<Message> responses = new ImmutableList.Builder<>();
+    if (connectionPool == null) {
+      for (Message query : queries) {
+        try (Socket socket = openConnection()) {
+          responses.addAll(exchange(socket, ImmutableList.of(query), ConnectionType.NEW));
+        }
+      }
+    } else {
+      for (ImmutableList<Message> window : splitIntoPipelineWindows(queries)) {
+        responses.addAll(exchangeOverPooledConnection(window));
+      }
+    }
+    return responses.build();
+  }
+
+  private ImmutableList<Message> exchangeOverPooledConnection(ImmutableList<Message> queries)
+      throws IOException {
+    Optional<Socket> idleConnection = connectionPool.take();
+    if (idleConnection.isPresent()) {
+      Socket socket = idleConnection.get();
+      try {
+        ImmutableList<Message> responses = exchange(socket, queries, ConnectionType.REUSED);
+        connectionPool.release(socket);
+        return responses;
+      } catch (IOException e) {
+        DnsConnectionPool.closeQuietly(socket);
+        logger.atInfo().withCause(e).log(
+            "Pooled connection to DNS server %s failed, reconnecting.", updateHost);
+      } catch (RuntimeException e) {
+        DnsConnectionPool.closeQuietly(socket);
+        throw e;
+      }
+    }
+    Socket socket = openConnection();
+    ImmutableList<Message> responses;
+    try {
+      responses = exchange(socket, queries, ConnectionType.NEW);
+    } catch (IOException | RuntimeException e) {
+      DnsConnectionPool.closeQuietly(socket);
+      throw e;
+    }
+    connectionPool.release(socket);
+    return responses;
+  }
+
+  private Socket openConnection() throws IOException {
+    Socket socket = factory.createSocket(InetAddress.getByName(updateHost), updatePort);
+    socket.setSoTimeout(updateTimeout);
+    return socket;
+  }
+
+  /**
+   * Splits the queries into windows that can be pipelined, which have at most {@link
+   * #MAX_PIPELINED_MESSAGES} queries with distinct IDs each.
+   */
+  private static ImmutableList<ImmutableList<Message>> splitIntoPipelineWindows(
+      List<? extends Message> queries) {
+    ImmutableList.Builder<ImmutableList<Message>> windows = new ImmutableList.Builder<>();
+    List<Message> window = new ArrayList<>();
+    Set<Integer> windowIds = new HashSet<>();
+    for (Message query : queries) {
+      int id = query.getHeader().getID();
+      if (window.size() == MAX_PIPELINED_MESSAGES || windowIds.contains(id)) {
+        windows.add(ImmutableList.copyOf(window));
+        window.clear();
+        windowIds.clear();
+      }
+      window.add(query);
+      windowIds.add(id);
+    }
+    if (!window.isEmpty()) {
+      windows.add(ImmutableList.copyOf(window));
+    }
+    return windows.build();
+  }
+
+  /**
+   * Writes all the queries to the connection, then reads their responses, which may come back in
+   * any order.
+   */
+  private ImmutableList<Message> exchange(
+      Socket socket, ImmutableList<Message> queries, ConnectionType connectionType)
+      throws IOException {
+    // Serialize all queries first, so that none is sent if any of them is too large.
+    ByteArrayOutputStream requestData = new ByteArrayOutputStream();
+    for (Message query : queries) {
+      requestData.writeBytes(frameMessage(query));
+    }
+    Instant startTime = clock.now();
+    socket.getOutputStream().write(requestData.toByteArray());
+    DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+    ImmutableMap<Integer, Message> queriesById =
+        Maps.uniqueIndex(queries, query -> query.getHeader().getID());
+    Map<Integer, Message> responsesById = new HashMap<>();
+    for (int i = 0; i < queries.size(); i++) {
+      Message response = readMessage(inputStream);
+      int id = response.getHeader().getID();
+      if (queries.size() == 1) {
+        checkValidResponse(queries.getFirst(), response);
+      } else {
+        verify(
+            queriesById.containsKey(id) && !responsesById.containsKey(id),
+            "response ID %s does not match any outstanding query ID",
+            id);
+        checkValidResponse(queriesById.get(id), response);
+      }
+      responsesById.put(id, response);
     }
+    dnsMetrics.recordUpdateRoundTrip(connectionType, Duration.between(startTime, clock.now()));
+    return queries.stream()
+        .map(query -> responsesById.get(query.getHeader().getID()))
+        .collect(toImmutableList());
   }
 
   private void checkValidResponse(Message query, Message response) {
@@ -111,7 +292,7 @@ public class DnsMessageTransport {
         Opcode.string(query.getHeader().getOpcode()));
   }
 
-  private void writeMessage(OutputStream outputStream, Message message) throws IOException {
+  private byte[] frameMessage(Message message) {
     byte[] messageData = message.toWire();
     checkArgument(
         messageData.length <= MESSAGE_MAXIMUM_LENGTH,
@@ -121,11 +302,10 @@ public class DnsMessageTransport {
     ByteBuffer buffer = ByteBuffer.allocate(messageData.length + MESSAGE_LENGTH_FIELD_BYTES);
     buffer.putShort((short) messageData.length);
     buffer.put(messageData);
-    outputStream.write(buffer.array());
+    return buffer.array();
   }
 
-  private Message readMessage(InputStream inputStream) throws IOException {
-    DataInputStream stream = new DataInputStream(inputStream);
+  private Message readMessage(DataInputStream stream) throws IOException {
     int length = stream.readUnsignedShort();
     byte[] messageData = new byte[length];
     stream.readFully(messageData);
@@ -41,4 +41,29 @@ public class DnsUpdateConfigModule {
   public static Duration provideDnsUpdateTimeout() {
     return Duration.ofSeconds(30);
   }
+
+  /**
+   * Maximum number of idle connections to the DNS update host kept open for reuse by later updates,
+   * which also pipeline their messages over those connections.
+   *
+   * <p>Zero disables pooling, so that a new connection is opened for every message.
+   */
+  @Provides
+  @Config("dnsUpdateMaxIdleConnections")
+  public static int provideDnsUpdateMaxIdleConnections() {
+    return 0;
+  }
+
+  /**
+   * Size in bytes up to which the changes for several domains are packed into the same DNS UPDATE
+   * message.
+   *
+   * <p>Defaults to the largest message that can be sent over TCP, so that a batch is only split
+   * into several messages when it couldn't be sent at all otherwise.
+   */
+  @Provides
+  @Config("dnsUpdateMaxMessageBytes")
+  public static int provideDnsUpdateMaxMessageBytes() {
+    return 65535;
+  }
 }
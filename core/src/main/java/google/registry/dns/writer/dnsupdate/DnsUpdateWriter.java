@@ -15,7 +15,8 @@
 package google.registry.dns.writer.dnsupdate;
 
 import static com.google.common.base.Preconditions.checkState;
-import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Sets.intersection;
 import static com.google.common.collect.Sets.union;
 import static google.registry.dns.DnsUtils.getDnsAPlusAAAATtlForHost;
@@ -23,11 +24,12 @@ import static google.registry.dns.DnsUtils.getDnsAPlusAAAATtlForHost;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
 import com.google.common.net.InternetDomainName;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.dns.writer.BaseDnsWriter;
+import google.registry.dns.writer.DnsCommitFailureException;
 import google.registry.dns.writer.DnsWriterZone;
-import google.registry.model.ForeignKeyUtils;
 import google.registry.model.domain.Domain;
 import google.registry.model.domain.secdns.DomainDsData;
 import google.registry.model.host.Host;
@@ -40,7 +42,14 @@ import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 import org.xbill.DNS.AAAARecord;
 import org.xbill.DNS.ARecord;
 import org.xbill.DNS.DClass;
@@ -50,6 +59,8 @@ import org.xbill.DNS.NSRecord;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.RRset;
 import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
 import org.xbill.DNS.TextParseException;
 import org.xbill.DNS.Type;
 import org.xbill.DNS.Update;
@@ -60,9 +71,12 @@ import org.xbill.DNS.Update;
  * to a (capable) external DNS server, sometimes called a "hidden master". DNS UPDATE messages are
  * sent via a supplied "transport" class.
  *
- * <p>On call to {@link #commit()}, a single UPDATE message is created containing the records
- * required to "synchronize" the DNS with the current (at the time of processing) state of the
- * registry, for the supplied domain/host.
+ * <p>On call to {@link #commit()}, UPDATE messages are created containing the records required to
+ * "synchronize" the DNS with the current (at the time of processing) state of the registry, for the
+ * supplied domains/hosts. The changes for each domain (including its subordinate hosts) are always
+ * kept in the same message, and the changes for as many domains as fit in {@code
+ * dnsUpdateMaxMessageBytes} are packed together, so that small batches are sent as a single message
+ * and large ones as several messages that the transport can pipeline.
  *
  * <p>The general strategy of the publish methods is to delete <em>all</em> resource records of any
  * <em>type</em> that match the exact domain/host name supplied. And then for create/update cases,
@@ -73,10 +87,12 @@ import org.xbill.DNS.Update;
  * <p>Only NS, DS, A, and AAAA records are published, and in particular no DNSSEC signing is done
  * assuming that this will be done by a third party DNS provider.
  *
- * <p>Each commit call is treated as an atomic update to the DNS. If a commit fails an exception is
- * thrown. The SOA record serial number is implicitly incremented by the server on each UPDATE
- * message, as required by RFC 2136. Care must be taken to make sure the SOA serial number does not
- * go backwards if the entire TLD (zone) is "reset" to empty and republished.
+ * <p>Each UPDATE message is an atomic update to the DNS. If any message of a commit fails, a {@link
+ * DnsCommitFailureException} naming the domains and hosts in the failed messages is thrown, the
+ * other messages having been committed. The SOA record serial number is implicitly incremented by
+ * the server on each UPDATE message, as required by RFC 2136. Care must be taken to make sure the
+ * SOA serial number does not go backwards if the entire TLD (zone) is "reset" to empty and
+ * republished.
  */
 public class DnsUpdateWriter extends BaseDnsWriter {
 
@@ -86,20 +102,27 @@ public class DnsUpdateWriter extends BaseDnsWriter {
    */
   public static final String NAME = "DnsUpdateWriter";
 
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   private final Duration dnsDefaultATtl;
   private final Duration dnsDefaultNsTtl;
   private final Duration dnsDefaultDsTtl;
+  private final int maxMessageBytes;
   private final DnsMessageTransport transport;
   private final Clock clock;
-  private final Update update;
   private final String zoneName;
 
+  /** The staged changes for each domain, keyed by domain name, in the order they were published. */
+  private final Map<String, DomainChanges> stagedChanges = new LinkedHashMap<>();
+
   /**
    * Class constructor.
    *
    * @param dnsDefaultATtl TTL used for any created resource records
    * @param dnsDefaultNsTtl TTL used for any created nameserver records
    * @param dnsDefaultDsTtl TTL used for any created DS records
+   * @param maxMessageBytes size above which the changes for several domains aren't packed into the
+   *     same UPDATE message
    * @param transport the transport used to send/receive the UPDATE messages
    * @param clock a source of time
    */
@@ -109,13 +132,14 @@ public class DnsUpdateWriter extends BaseDnsWriter {
       @Config("dnsDefaultATtl") Duration dnsDefaultATtl,
       @Config("dnsDefaultNsTtl") Duration dnsDefaultNsTtl,
       @Config("dnsDefaultDsTtl") Duration dnsDefaultDsTtl,
+      @Config("dnsUpdateMaxMessageBytes") int maxMessageBytes,
       DnsMessageTransport transport,
       Clock clock) {
     this.zoneName = zoneName;
-    this.update = new Update(toAbsoluteName(zoneName));
     this.dnsDefaultATtl = dnsDefaultATtl;
     this.dnsDefaultNsTtl = dnsDefaultNsTtl;
     this.dnsDefaultDsTtl = dnsDefaultDsTtl;
+    this.maxMessageBytes = maxMessageBytes;
     this.transport = transport;
     this.clock = clock;
   }
@@ -129,8 +153,16 @@ public class DnsUpdateWriter extends BaseDnsWriter {
    *     this domain refresh request
    */
   private void publishDomain(String domainName, String requestingHostName) {
-    Optional<Domain> domainOptional =
-        ForeignKeyUtils.loadResource(Domain.class, domainName, clock.now());
+    Optional<Domain> domainOptional = loadDomain(domainName, clock.now());
+    DomainChanges changes =
+        stagedChanges.computeIfAbsent(
+            domainName, unused -> new DomainChanges(new Update(toAbsoluteName(zoneName))));
+    if (requestingHostName == null) {
+      changes.requestedDomainNames.add(domainName);
+    } else {
+      changes.requestedHostNames.add(requestingHostName);
+    }
+    Update update = changes.update;
     update.delete(toAbsoluteName(domainName), Type.ANY);
     // If the domain is now deleted, then don't update DNS for it.
     if (domainOptional.isPresent()) {
@@ -174,16 +206,97 @@ public class DnsUpdateWriter extends BaseDnsWriter {
 
   @Override
   protected void commitUnchecked() {
+    int emptyMessageBytes = new Update(toAbsoluteName(zoneName)).toWire().length;
+    List<DomainChanges> failedChanges = new ArrayList<>();
+    ImmutableList<PackedUpdate> packedUpdates = packUpdates(emptyMessageBytes, failedChanges);
+    ImmutableList<Message> responses = ImmutableList.of();
     try {
-      Message response = transport.send(update);
-      verify(
-          response.getRcode() == Rcode.NOERROR,
-          "DNS server failed domain update for '%s' rcode: %s",
-          zoneName,
-          Rcode.string(response.getRcode()));
+      if (packedUpdates.size() == 1) {
+        responses = ImmutableList.of(transport.send(packedUpdates.getFirst().update()));
+      } else if (!packedUpdates.isEmpty()) {
+        responses =
+            transport.sendAll(
+                packedUpdates.stream().map(PackedUpdate::update).collect(toImmutableList()));
+      }
     } catch (IOException e) {
-      throw new RuntimeException("publishDomain failed for zone: " + zoneName, e);
+      // There's no telling which messages made it, so all of them have to be published again.
+      throw newCommitFailure(
+          "publishDomain failed for zone: " + zoneName,
+          ImmutableList.copyOf(stagedChanges.values()),
+          e);
+    }
+    List<String> failedRcodes = new ArrayList<>();
+    for (int i = 0; i < packedUpdates.size(); i++) {
+      int rcode = responses.get(i).getRcode();
+      if (rcode != Rcode.NOERROR) {
+        failedRcodes.add(Rcode.string(rcode));
+        failedChanges.addAll(packedUpdates.get(i).changes());
+      }
+    }
+    if (!failedChanges.isEmpty()) {
+      throw newCommitFailure(
+          String.format(
+              "DNS server failed %d of %d domain updates for '%s' rcodes: %s",
+              failedChanges.size(), stagedChanges.size(), zoneName, failedRcodes),
+          failedChanges,
+          null);
+    }
+  }
+
+  /**
+   * Packs the staged changes into as few UPDATE messages as possible, each at most {@link
+   * #maxMessageBytes} long unless it holds the changes for a single domain.
+   *
+   * <p>The size of each domain's changes is measured in a message of their own, which is an upper
+   * bound of their size in a shared message, where the names can be compressed further. The changes
+   * of domains too large for the transport to send at all are added to {@code failedChanges}.
+   */
+  private ImmutableList<PackedUpdate> packUpdates(
+      int emptyMessageBytes, List<DomainChanges> failedChanges) {
+    ImmutableList.Builder<PackedUpdate> packedUpdates = new ImmutableList.Builder<>();
+    Update update = null;
+    List<DomainChanges> packedChanges = new ArrayList<>();
+    int packedBytes = 0;
+    for (DomainChanges changes : stagedChanges.values()) {
+      int changesBytes = changes.update.toWire().length - emptyMessageBytes;
+      if (emptyMessageBytes + changesBytes > DnsMessageTransport.MESSAGE_MAXIMUM_LENGTH) {
+        logger.atSevere().log(
+            "Changes for %s are too large to fit in a DNS UPDATE message (%d bytes).",
+            changes.requestedNames(), emptyMessageBytes + changesBytes);
+        failedChanges.add(changes);
+        continue;
+      }
+      if (update == null || packedBytes + changesBytes > maxMessageBytes) {
+        if (update != null) {
+          packedUpdates.add(new PackedUpdate(update, ImmutableList.copyOf(packedChanges)));
+        }
+        update = new Update(toAbsoluteName(zoneName));
+        packedChanges.clear();
+        packedBytes = emptyMessageBytes;
+      }
+      for (Record record : changes.update.getSection(Section.UPDATE)) {
+        update.addRecord(record, Section.UPDATE);
+      }
+      packedChanges.add(changes);
+      packedBytes += changesBytes;
     }
+    if (update != null) {
+      packedUpdates.add(new PackedUpdate(update, ImmutableList.copyOf(packedChanges)));
+    }
+    return packedUpdates.build();
+  }
+
+  private static DnsCommitFailureException newCommitFailure(
+      String message, List<DomainChanges> failedChanges, Throwable cause) {
+    return new DnsCommitFailureException(
+        message,
+        failedChanges.stream()
+            .flatMap(changes -> changes.requestedDomainNames.stream())
+            .collect(toImmutableSet()),
+        failedChanges.stream()
+            .flatMap(changes -> changes.requestedHostNames.stream())
+            .collect(toImmutableSet()),
+        cause);
   }
 
   private RRset makeDelegationSignerSet(Domain domain) {
@@ -220,8 +333,8 @@ public class DnsUpdateWriter extends BaseDnsWriter {
 
   private void addInBailiwickNameServerSet(Domain domain, Update update) {
     for (String hostName :
-        intersection(domain.loadNameserverHostNames(), domain.getSubordinateHosts())) {
-      Optional<Host> host = ForeignKeyUtils.loadResource(Host.class, hostName, clock.now());
+        intersection(loadNameserverHostNames(domain), domain.getSubordinateHosts())) {
+      Optional<Host> host = loadHost(hostName, clock.now());
       checkState(host.isPresent(), "Host %s cannot be loaded", hostName);
       update.add(makeAddressSet(host.get()));
       update.add(makeV6AddressSet(host.get()));
@@ -231,7 +344,7 @@ public class DnsUpdateWriter extends BaseDnsWriter {
   private RRset makeNameServerSet(Domain domain) {
     RRset nameServerSet = new RRset();
     Tld tld = Tld.get(domain.getTld());
-    for (String hostName : domain.loadNameserverHostNames()) {
+    for (String hostName : loadNameserverHostNames(domain)) {
       NSRecord record =
           new NSRecord(
               toAbsoluteName(domain.getDomainName()),
@@ -277,6 +390,28 @@ public class DnsUpdateWriter extends BaseDnsWriter {
     return addressSet;
   }
 
+  /**
+   * The staged changes to the records of a domain and its subordinate hosts, along with the domain
+   * and host names whose publication required them.
+   */
+  private static final class DomainChanges {
+    private final Update update;
+    private final Set<String> requestedDomainNames = new LinkedHashSet<>();
+    private final Set<String> requestedHostNames = new LinkedHashSet<>();
+
+    private DomainChanges(Update update) {
+      this.update = update;
+    }
+
+    private ImmutableList<String> requestedNames() {
+      return Stream.concat(requestedDomainNames.stream(), requestedHostNames.stream())
+          .collect(toImmutableList());
+    }
+  }
+
+  /** An UPDATE message holding the changes for one or more domains. */
+  private record PackedUpdate(Update update, ImmutableList<DomainChanges> changes) {}
+
   private Name toAbsoluteName(String name) {
     try {
       return Name.fromString(name, Name.root);
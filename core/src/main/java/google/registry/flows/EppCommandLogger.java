@@ -0,0 +1,191 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static google.registry.xml.XmlTransformer.prettyPrint;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.monitoring.metrics.IncrementableMetric;
+import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.MetricRegistryImpl;
+import google.registry.config.RegistryConfig.Config;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Logs incoming EPP commands, either inline or on a background thread.
+ *
+ * <p>Sanitizing and pretty-printing the input XML of every command is a measurable share of the CPU
+ * spent on check-heavy traffic. In asynchronous mode, the request thread only captures the raw
+ * bytes and the (cheap, already stringified) command metadata into a bounded queue, and a single
+ * daemon thread does the formatting and emits the log line. When the queue is full, the configured
+ * {@link OverflowPolicy} decides whether the command is logged on the request thread or dropped.
+ *
+ * <p>Commands still waiting in the queue when the JVM exits are not logged.
+ */
+@Singleton
+public class EppCommandLogger {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final String COMMAND_LOG_FORMAT = "EPP Command" + "\n\t%s".repeat(8);
+
+  /** What to do with a command that does not fit in the asynchronous logging queue. */
+  public enum OverflowPolicy {
+    /** Format and log the command on the request thread. */
+    LOG_SYNCHRONOUSLY,
+    /** Discard the command without logging it. */
+    DROP
+  }
+
+  /** The fate of a command submitted for logging, for use as a metric label. */
+  enum Outcome {
+    LOGGED_INLINE,
+    QUEUED,
+    LOGGED_ASYNC,
+    OVERFLOW_LOGGED_INLINE,
+    OVERFLOW_DROPPED,
+    FAILED
+  }
+
+  private static final IncrementableMetric commandLogCount =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/epp/command_log/count",
+              "Count of EPP commands submitted for logging, by outcome",
+              "count",
+              ImmutableSet.of(
+                  LabelDescriptor.create("outcome", "What happened to the log entry.")));
+
+  /** The metadata of an EPP command, captured on the request thread. */
+  record CommandMetadata(
+      String serverTrid,
+      String registrarId,
+      String sessionMetadata,
+      String credentials,
+      EppRequestSource eppRequestSource,
+      boolean isDryRun,
+      boolean isSuperuser) {}
+
+  private record PendingCommand(byte[] inputXmlBytes, CommandMetadata metadata) {}
+
+  private final boolean asyncEnabled;
+  private final OverflowPolicy overflowPolicy;
+  private final BlockingQueue<PendingCommand> queue;
+
+  @Inject
+  EppCommandLogger(
+      @Config("asyncEppCommandLoggingEnabled") boolean asyncEnabled,
+      @Config("eppCommandLogQueueCapacity") int queueCapacity,
+      @Config("eppCommandLogOverflowPolicy") OverflowPolicy overflowPolicy) {
+    this(asyncEnabled, queueCapacity, overflowPolicy, true);
+  }
+
+  @VisibleForTesting
+  EppCommandLogger(
+      boolean asyncEnabled, int queueCapacity, OverflowPolicy overflowPolicy, boolean startWorker) {
+    checkArgument(queueCapacity > 0, "Queue capacity must be positive: %s", queueCapacity);
+    this.asyncEnabled = asyncEnabled;
+    this.overflowPolicy = overflowPolicy;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    if (asyncEnabled && startWorker) {
+      new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("epp-command-logger-%d")
+          .build()
+          .newThread(this::drainForever)
+          .start();
+    }
+  }
+
+  /**
+   * Logs an EPP command.
+   *
+   * <p>In synchronous mode the command is formatted and logged before this method returns. In
+   * asynchronous mode this method only enqueues it, unless the queue is full.
+   */
+  void log(byte[] inputXmlBytes, CommandMetadata metadata) {
+    if (!asyncEnabled) {
+      write(inputXmlBytes, metadata, Outcome.LOGGED_INLINE);
+      return;
+    }
+    if (queue.offer(new PendingCommand(inputXmlBytes, metadata))) {
+      commandLogCount.increment(Outcome.QUEUED.name());
+      return;
+    }
+    switch (overflowPolicy) {
+      case LOG_SYNCHRONOUSLY -> write(inputXmlBytes, metadata, Outcome.OVERFLOW_LOGGED_INLINE);
+      case DROP -> {
+        commandLogCount.increment(Outcome.OVERFLOW_DROPPED.name());
+        logger.atWarning().atMostEvery(1, MINUTES).log(
+            "EPP command log queue is full, dropped log entry for %s.", metadata.serverTrid());
+      }
+    }
+  }
+
+  /** Logs all commands currently in the queue on the calling thread. */
+  @VisibleForTesting
+  void drainPendingCommands() {
+    PendingCommand command;
+    while ((command = queue.poll()) != null) {
+      write(command.inputXmlBytes(), command.metadata(), Outcome.LOGGED_ASYNC);
+    }
+  }
+
+  private void drainForever() {
+    while (true) {
+      try {
+        PendingCommand command = queue.take();
+        write(command.inputXmlBytes(), command.metadata(), Outcome.LOGGED_ASYNC);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private static void write(byte[] inputXmlBytes, CommandMetadata metadata, Outcome outcome) {
+    try {
+      logger.atInfo().log("%s", formatCommand(inputXmlBytes, metadata));
+      commandLogCount.increment(outcome.name());
+    } catch (RuntimeException e) {
+      // Never let a formatting failure escape into the flow or kill the worker thread.
+      commandLogCount.increment(Outcome.FAILED.name());
+      logger.atWarning().withCause(e).log("Failed to log EPP command %s.", metadata.serverTrid());
+    }
+  }
+
+  @VisibleForTesting
+  static String formatCommand(byte[] inputXmlBytes, CommandMetadata metadata) {
+    String prettyXml = prettyPrint(EppXmlSanitizer.sanitizeEppXml(inputXmlBytes));
+    return String.format(
+        COMMAND_LOG_FORMAT,
+        metadata.serverTrid(),
+        metadata.registrarId(),
+        metadata.sessionMetadata(),
+        prettyXml.replace("\n", "\n\t"),
+        metadata.credentials(),
+        metadata.eppRequestSource(),
+        metadata.isDryRun() ? "DRY_RUN" : "LIVE",
+        metadata.isSuperuser() ? "SUPERUSER" : "NORMAL");
+  }
+}
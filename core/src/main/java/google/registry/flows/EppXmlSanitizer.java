@@ -16,30 +16,26 @@ package google.registry.flows;
 
 import static com.google.common.base.Preconditions.checkState;
 import static google.registry.xml.XmlTransformer.createXmlInputFactory;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
+import com.google.common.io.CharStreams;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.UnsupportedEncodingException;
-import java.nio.charset.Charset;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Base64;
 import java.util.Locale;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventFactory;
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Characters;
-import javax.xml.stream.events.StartDocument;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Sanitizes sensitive data in incoming/outgoing EPP XML messages.
@@ -70,12 +66,20 @@ public class EppXmlSanitizer {
 
   // Masks by unicode char categories:
   // Ctrl chars: [0 - 1F] and [7F - 9F]
-  private static final String CTRL_CHAR_MASK = "C";
-  private static final String DEFAULT_MASK = "*";
+  private static final char CTRL_CHAR_MASK = 'C';
+  private static final char DEFAULT_MASK = '*';
 
   private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
   private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newDefaultFactory();
-  private static final XMLEventFactory XML_EVENT_FACTORY = XMLEventFactory.newDefaultFactory();
+
+  /**
+   * Buffers larger than this (in chars) are not kept for reuse by their thread, so that an
+   * occasional huge message does not pin its memory for the lifetime of the thread.
+   */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+  /** Per-thread scratch space, reused across calls to avoid reallocating buffers. */
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
 
   /**
    * Returns sanitized EPP XML message. For malformed XML messages, base64-encoded raw bytes will be
@@ -88,76 +92,180 @@ public class EppXmlSanitizer {
    * <p>Also, an empty element will be formatted as {@code <tag></tag>} instead of {@code <tag/>}.
    */
   public static String sanitizeEppXml(byte[] inputXmlBytes) {
+    Scratch scratch = SCRATCH.get();
     try {
       // Keep exactly one newline at end of sanitized string.
-      return CharMatcher.whitespace().trimTrailingFrom(sanitizeAndEncode(inputXmlBytes)) + "\n";
-    } catch (XMLStreamException | UnsupportedEncodingException e) {
+      return CharMatcher.whitespace().trimTrailingFrom(sanitize(inputXmlBytes, scratch)) + "\n";
+    } catch (XMLStreamException | IOException e) {
       logger.atWarning().withCause(e).log("Failed to sanitize EPP XML message.");
       return Base64.getMimeEncoder().encodeToString(inputXmlBytes);
+    } finally {
+      scratch.release();
     }
   }
 
-  private static String sanitizeAndEncode(byte[] inputXmlBytes)
-      throws XMLStreamException, UnsupportedEncodingException {
-    XMLEventReader xmlEventReader =
-        XML_INPUT_FACTORY.createXMLEventReader(new ByteArrayInputStream(inputXmlBytes));
+  /**
+   * Copies the input to the scratch output buffer in a single streaming pass, masking the text
+   * content of sensitive elements along the way.
+   *
+   * <p>The output is written as characters rather than encoded bytes, since callers need a string
+   * anyway and this saves an encode/decode round trip.
+   */
+  private static String sanitize(byte[] inputXmlBytes, Scratch scratch)
+      throws XMLStreamException, IOException {
+    XMLStreamReader reader =
+        XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(inputXmlBytes));
+    try {
+      checkState(
+          reader.getEventType() == XMLStreamConstants.START_DOCUMENT, "Missing StartDocument");
+      // Get input encoding so that sanitized XML preserves the encoding declaration. According to
+      // XML spec, UTF-8 is to be used unless input declares otherwise. Epp officially allows UTF-8
+      // and UTF-16.
+      String inputEncoding =
+          Optional.ofNullable(reader.getCharacterEncodingScheme()).orElse(UTF_8.name());
+      StringBuilder output = scratch.output;
+      // The standard XMLStreamWriter API cannot emit a standalone declaration, so the XML
+      // declaration is written directly.
+      appendXmlDeclaration(output, reader, inputEncoding);
+      Writer outputWriter = CharStreams.asWriter(output);
+      XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(outputWriter);
+      copyAndMask(reader, writer, scratch);
+      writer.close();
+      outputWriter.flush();
+      return output.toString();
+    } finally {
+      reader.close();
+    }
+  }
 
-    if (!xmlEventReader.hasNext()) {
-      return "";
+  private static void appendXmlDeclaration(
+      StringBuilder output, XMLStreamReader reader, String encoding) {
+    output
+        .append("<?xml version=\"")
+        .append(Optional.ofNullable(reader.getVersion()).orElse("1.0"))
+        .append("\" encoding=\"")
+        .append(encoding)
+        .append('"');
+    if (reader.standaloneSet()) {
+      output.append(" standalone=\"").append(reader.isStandalone() ? "yes" : "no").append('"');
     }
+    output.append("?>");
+  }
 
-    XMLEvent firstEvent = xmlEventReader.nextEvent();
-    checkState(firstEvent.isStartDocument(), "Missing StartDocument");
-    // Get input encoding for use in XMLEventWriter creation, so that sanitized XML preserves the
-    // encoding declaration. According to XML spec, UTF-8 is to be used unless input declares
-    // otherwise. Epp officially allows UTF-8 and UTF-16.
-    String inputEncoding =
-        Optional.ofNullable(((StartDocument) firstEvent).getCharacterEncodingScheme())
-            .orElse(StandardCharsets.UTF_8.name());
-
-    ByteArrayOutputStream outputXmlBytes = new ByteArrayOutputStream();
-    XMLEventWriter xmlEventWriter =
-        XML_OUTPUT_FACTORY.createXMLEventWriter(outputXmlBytes, inputEncoding);
-    xmlEventWriter.add(firstEvent);
-
-    while (xmlEventReader.hasNext()) {
-      XMLEvent xmlEvent = xmlEventReader.nextEvent();
-      xmlEventWriter.add(xmlEvent);
-      if (isStartEventForSensitiveData(xmlEvent)) {
-        QName startEventName = xmlEvent.asStartElement().getName();
-        while (xmlEventReader.hasNext()) {
-          XMLEvent event = xmlEventReader.nextEvent();
-          if (event.isCharacters()) {
-            Characters characters = event.asCharacters();
-            event = XML_EVENT_FACTORY.createCharacters(maskSensitiveData(characters.getData()));
+  private static void copyAndMask(XMLStreamReader reader, XMLStreamWriter writer, Scratch scratch)
+      throws XMLStreamException {
+    // Element depth, and the depth of the outermost sensitive element we are in (or -1 if none).
+    int depth = 0;
+    int sensitiveDepth = -1;
+    while (reader.hasNext()) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT -> {
+          depth++;
+          copyStartElement(reader, writer);
+          if (sensitiveDepth < 0 && isSensitiveElement(reader)) {
+            sensitiveDepth = depth;
           }
-          xmlEventWriter.add(event);
-          if (isMatchingEndEvent(event, startEventName)) {
-            // The inner while-loop is guaranteed to break here for any valid XML.
-            // If matching event is missing, xmlEventReader will throw XMLStreamException.
-            break;
+        }
+        case XMLStreamConstants.END_ELEMENT -> {
+          writer.writeEndElement();
+          if (depth == sensitiveDepth) {
+            sensitiveDepth = -1;
+          }
+          depth--;
+        }
+        case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE, XMLStreamConstants.CDATA -> {
+          if (sensitiveDepth >= 0) {
+            int length = scratch.mask(reader);
+            writer.writeCharacters(scratch.maskedChars, 0, length);
+          } else if (reader.getEventType() == XMLStreamConstants.CDATA) {
+            writer.writeCData(reader.getText());
+          } else {
+            writer.writeCharacters(
+                reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
           }
         }
+        case XMLStreamConstants.COMMENT -> writer.writeComment(reader.getText());
+        case XMLStreamConstants.PROCESSING_INSTRUCTION ->
+            writer.writeProcessingInstruction(reader.getPITarget(), reader.getPIData());
+        case XMLStreamConstants.ENTITY_REFERENCE -> writer.writeEntityRef(reader.getLocalName());
+        case XMLStreamConstants.DTD -> writer.writeDTD(reader.getText());
+        case XMLStreamConstants.END_DOCUMENT -> writer.writeEndDocument();
+        default -> {}
       }
     }
-    xmlEventWriter.flush();
-    return outputXmlBytes.toString(Charset.forName(inputEncoding));
   }
 
-  private static String maskSensitiveData(String original) {
-    return original
-        .codePoints()
-        .mapToObj(codePoint -> Character.isISOControl(codePoint) ? CTRL_CHAR_MASK : DEFAULT_MASK)
-        .collect(Collectors.joining());
+  private static void copyStartElement(XMLStreamReader reader, XMLStreamWriter writer)
+      throws XMLStreamException {
+    writer.writeStartElement(
+        Strings.nullToEmpty(reader.getPrefix()),
+        reader.getLocalName(),
+        Strings.nullToEmpty(reader.getNamespaceURI()));
+    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+      String prefix = reader.getNamespacePrefix(i);
+      if (Strings.isNullOrEmpty(prefix)) {
+        writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+      } else {
+        writer.writeNamespace(prefix, reader.getNamespaceURI(i));
+      }
+    }
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      String prefix = reader.getAttributePrefix(i);
+      if (Strings.isNullOrEmpty(prefix)) {
+        writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+      } else {
+        writer.writeAttribute(
+            prefix,
+            reader.getAttributeNamespace(i),
+            reader.getAttributeLocalName(i),
+            reader.getAttributeValue(i));
+      }
+    }
   }
 
-  private static boolean isStartEventForSensitiveData(XMLEvent xmlEvent) {
-    return xmlEvent.isStartElement()
-        && EPP_TAGS_IN_LOWER_CASE.contains(
-            xmlEvent.asStartElement().getName().getLocalPart().toLowerCase(Locale.ROOT));
+  private static boolean isSensitiveElement(XMLStreamReader reader) {
+    return EPP_TAGS_IN_LOWER_CASE.contains(reader.getLocalName().toLowerCase(Locale.ROOT));
   }
 
-  private static boolean isMatchingEndEvent(XMLEvent xmlEvent, QName startEventName) {
-    return xmlEvent.isEndElement() && xmlEvent.asEndElement().getName().equals(startEventName);
+  /** Reusable buffers for one thread's sanitization work. */
+  private static final class Scratch {
+
+    final StringBuilder output = new StringBuilder(4096);
+    char[] maskedChars = new char[64];
+
+    /**
+     * Writes the mask of the reader's current text into {@link #maskedChars}, one mask character
+     * per code point, and returns the number of mask characters written.
+     */
+    int mask(XMLStreamReader reader) {
+      char[] text = reader.getTextCharacters();
+      int start = reader.getTextStart();
+      int end = start + reader.getTextLength();
+      if (maskedChars.length < end - start) {
+        maskedChars = new char[end - start];
+      }
+      int length = 0;
+      for (int i = start; i < end; i++) {
+        if (Character.isHighSurrogate(text[i])
+            && i + 1 < end
+            && Character.isLowSurrogate(text[i + 1])) {
+          maskedChars[length++] = DEFAULT_MASK;
+          i++;
+        } else {
+          maskedChars[length++] = Character.isISOControl(text[i]) ? CTRL_CHAR_MASK : DEFAULT_MASK;
+        }
+      }
+      return length;
+    }
+
+    /** Resets the buffers for the next call, dropping them if they have grown too large. */
+    void release() {
+      if (output.capacity() > MAX_RETAINED_BUFFER_SIZE
+          || maskedChars.length > MAX_RETAINED_BUFFER_SIZE) {
+        SCRATCH.remove();
+      } else {
+        output.setLength(0);
+      }
+    }
   }
 }
@@ -0,0 +1,386 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * An {@link XMLStreamWriter} that normalizes the fee extension tag while writing an EPP response.
+ *
+ * <p>The prefix of the fee extension in use is rewritten to {@code fee}, and the declarations of
+ * all other fee extension versions are dropped, as the events go by. It also formats its output the
+ * way JAXB formats a document written to an {@link OutputStream} (an XML declaration with {@code
+ * standalone="yes"}, four-space indentation and self-closing empty elements), since JAXB ignores
+ * {@link jakarta.xml.bind.Marshaller#JAXB_FORMATTED_OUTPUT} for {@link XMLStreamWriter} targets.
+ *
+ * <p>Start tags are held back until the next event, so that elements without content can be written
+ * as empty elements. Elements and attributes written without a prefix use the prefix bound to their
+ * namespace, which must already have been declared.
+ */
+class FeeExtensionNormalizingXmlStreamWriter implements XMLStreamWriter {
+
+  private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newDefaultFactory();
+
+  private static final String XML_DECLARATION =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>";
+
+  private static final String CANONICAL_FEE_TAG = "fee";
+
+  private static final String INDENT = "    ";
+
+  /** A start tag that has not been written yet, because it may turn out to be an empty element. */
+  private record PendingElement(
+      String prefix,
+      String localName,
+      String namespaceUri,
+      List<Namespace> namespaces,
+      List<Attribute> attributes) {}
+
+  private record Namespace(String prefix, String namespaceUri) {}
+
+  private record Attribute(String prefix, String namespaceUri, String localName, String value) {}
+
+  private final Writer out;
+  private final XMLStreamWriter delegate;
+  private final String feeExtensionUriInUse;
+  private final ImmutableSet<String> unusedFeeExtensionUris;
+
+  @Nullable private PendingElement pendingElement;
+
+  /** Whether the pending element was started by {@link #writeEmptyElement}, and has no content. */
+  private boolean pendingElementIsEmpty;
+
+  private int depth;
+  private boolean seenText;
+
+  FeeExtensionNormalizingXmlStreamWriter(
+      OutputStream out, String feeExtensionUriInUse, ImmutableSet<String> unusedFeeExtensionUris)
+      throws XMLStreamException {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+    this.delegate = XML_OUTPUT_FACTORY.createXMLStreamWriter(this.out);
+    this.feeExtensionUriInUse = feeExtensionUriInUse;
+    this.unusedFeeExtensionUris = unusedFeeExtensionUris;
+  }
+
+  private String normalizePrefix(String prefix, String namespaceUri) {
+    return feeExtensionUriInUse.equals(namespaceUri) ? CANONICAL_FEE_TAG : prefix;
+  }
+
+  @Override
+  public void writeStartDocument() throws XMLStreamException {
+    try {
+      out.write(XML_DECLARATION);
+    } catch (IOException e) {
+      throw new XMLStreamException(e);
+    }
+  }
+
+  @Override
+  public void writeStartDocument(String version) throws XMLStreamException {
+    writeStartDocument();
+  }
+
+  @Override
+  public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+    writeStartDocument();
+  }
+
+  @Override
+  public void writeEndDocument() throws XMLStreamException {
+    flushPendingElement(false);
+    delegate.writeEndDocument();
+    delegate.flush();
+    try {
+      out.write('\n');
+      out.flush();
+    } catch (IOException e) {
+      throw new XMLStreamException(e);
+    }
+  }
+
+  @Override
+  public void writeStartElement(String localName) throws XMLStreamException {
+    writeStartElement("", localName, "");
+  }
+
+  @Override
+  public void writeStartElement(String namespaceUri, String localName) throws XMLStreamException {
+    flushPendingElement(false);
+    writeStartElement(getBoundPrefix(namespaceUri), localName, namespaceUri);
+  }
+
+  @Override
+  public void writeStartElement(String prefix, String localName, String namespaceUri)
+      throws XMLStreamException {
+    flushPendingElement(false);
+    if (!seenText) {
+      writeIndent();
+    }
+    depth++;
+    seenText = false;
+    pendingElement =
+        new PendingElement(
+            normalizePrefix(prefix, namespaceUri),
+            localName,
+            namespaceUri,
+            new ArrayList<>(),
+            new ArrayList<>());
+  }
+
+  @Override
+  public void writeEmptyElement(String localName) throws XMLStreamException {
+    writeEmptyElement("", localName, "");
+  }
+
+  @Override
+  public void writeEmptyElement(String namespaceUri, String localName) throws XMLStreamException {
+    flushPendingElement(false);
+    writeEmptyElement(getBoundPrefix(namespaceUri), localName, namespaceUri);
+  }
+
+  @Override
+  public void writeEmptyElement(String prefix, String localName, String namespaceUri)
+      throws XMLStreamException {
+    // Held back like any start tag, as its namespaces and attributes are still to come.
+    writeStartElement(prefix, localName, namespaceUri);
+    pendingElementIsEmpty = true;
+  }
+
+  @Override
+  public void writeEndElement() throws XMLStreamException {
+    if (pendingElementIsEmpty) {
+      // This ends the parent of the empty element, not the empty element itself.
+      flushPendingElement(false);
+    }
+    depth--;
+    if (pendingElement != null) {
+      flushPendingElement(true);
+    } else {
+      if (!seenText) {
+        writeIndent();
+      }
+      delegate.writeEndElement();
+    }
+    seenText = false;
+  }
+
+  @Override
+  public void writeNamespace(String prefix, String namespaceUri) throws XMLStreamException {
+    checkState(pendingElement != null, "Namespace declaration outside of a start tag");
+    if (unusedFeeExtensionUris.contains(namespaceUri)) {
+      return;
+    }
+    pendingElement
+        .namespaces()
+        .add(new Namespace(normalizePrefix(prefix, namespaceUri), namespaceUri));
+  }
+
+  @Override
+  public void writeDefaultNamespace(String namespaceUri) throws XMLStreamException {
+    writeNamespace("", namespaceUri);
+  }
+
+  @Override
+  public void writeAttribute(String localName, String value) throws XMLStreamException {
+    writeAttribute("", "", localName, value);
+  }
+
+  @Override
+  public void writeAttribute(String namespaceUri, String localName, String value)
+      throws XMLStreamException {
+    writeAttribute(getBoundPrefix(namespaceUri), namespaceUri, localName, value);
+  }
+
+  @Override
+  public void writeAttribute(String prefix, String namespaceUri, String localName, String value)
+      throws XMLStreamException {
+    checkState(pendingElement != null, "Attribute outside of a start tag");
+    pendingElement
+        .attributes()
+        .add(new Attribute(normalizePrefix(prefix, namespaceUri), namespaceUri, localName, value));
+  }
+
+  @Override
+  public void writeCharacters(String text) throws XMLStreamException {
+    flushPendingElement(false);
+    seenText = true;
+    delegate.writeCharacters(text);
+  }
+
+  @Override
+  public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+    flushPendingElement(false);
+    seenText = true;
+    delegate.writeCharacters(text, start, len);
+  }
+
+  @Override
+  public void writeCData(String data) throws XMLStreamException {
+    flushPendingElement(false);
+    seenText = true;
+    delegate.writeCData(data);
+  }
+
+  @Override
+  public void writeComment(String data) throws XMLStreamException {
+    flushPendingElement(false);
+    delegate.writeComment(data);
+  }
+
+  @Override
+  public void writeProcessingInstruction(String target) throws XMLStreamException {
+    flushPendingElement(false);
+    delegate.writeProcessingInstruction(target);
+  }
+
+  @Override
+  public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+    flushPendingElement(false);
+    delegate.writeProcessingInstruction(target, data);
+  }
+
+  @Override
+  public void writeDTD(String dtd) throws XMLStreamException {
+    flushPendingElement(false);
+    delegate.writeDTD(dtd);
+  }
+
+  @Override
+  public void writeEntityRef(String name) throws XMLStreamException {
+    flushPendingElement(false);
+    seenText = true;
+    delegate.writeEntityRef(name);
+  }
+
+  @Override
+  public String getPrefix(String uri) throws XMLStreamException {
+    return delegate.getPrefix(uri);
+  }
+
+  @Override
+  public void setPrefix(String prefix, String uri) throws XMLStreamException {
+    delegate.setPrefix(normalizePrefix(prefix, uri), uri);
+  }
+
+  @Override
+  public void setDefaultNamespace(String uri) throws XMLStreamException {
+    delegate.setDefaultNamespace(uri);
+  }
+
+  @Override
+  public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+    delegate.setNamespaceContext(context);
+  }
+
+  @Override
+  public NamespaceContext getNamespaceContext() {
+    return delegate.getNamespaceContext();
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    return delegate.getProperty(name);
+  }
+
+  @Override
+  public void flush() throws XMLStreamException {
+    flushPendingElement(false);
+    delegate.flush();
+  }
+
+  @Override
+  public void close() throws XMLStreamException {
+    flush();
+    delegate.close();
+  }
+
+  /**
+   * Returns the prefix bound to a namespace, either by the pending start tag or by the elements
+   * already written.
+   */
+  private String getBoundPrefix(String namespaceUri) throws XMLStreamException {
+    if (pendingElement != null) {
+      for (Namespace namespace : pendingElement.namespaces()) {
+        if (namespace.namespaceUri().equals(namespaceUri)) {
+          return namespace.prefix();
+        }
+      }
+    }
+    String prefix = delegate.getPrefix(namespaceUri);
+    if (prefix == null) {
+      throw new XMLStreamException("No prefix is bound to namespace " + namespaceUri);
+    }
+    return prefix;
+  }
+
+  private void writeIndent() throws XMLStreamException {
+    // Written through the delegate, so that it closes any start tag that is still open.
+    delegate.writeCharacters("\n" + INDENT.repeat(depth));
+  }
+
+  /**
+   * Writes out the pending start tag, if any, either as an empty element or as a start tag.
+   *
+   * <p>An element started by {@link #writeEmptyElement} is always written as an empty element.
+   */
+  private void flushPendingElement(boolean asEmptyElement) throws XMLStreamException {
+    if (pendingElement == null) {
+      return;
+    }
+    PendingElement element = pendingElement;
+    pendingElement = null;
+    if (pendingElementIsEmpty) {
+      pendingElementIsEmpty = false;
+      asEmptyElement = true;
+      depth--;
+    }
+    if (asEmptyElement) {
+      delegate.writeEmptyElement(element.prefix(), element.localName(), element.namespaceUri());
+    } else {
+      delegate.writeStartElement(element.prefix(), element.localName(), element.namespaceUri());
+    }
+    for (Namespace namespace : element.namespaces()) {
+      if (isNullOrEmpty(namespace.prefix())) {
+        delegate.writeDefaultNamespace(namespace.namespaceUri());
+      } else {
+        delegate.writeNamespace(namespace.prefix(), namespace.namespaceUri());
+      }
+    }
+    for (Attribute attribute : element.attributes()) {
+      if (isNullOrEmpty(attribute.namespaceUri())) {
+        delegate.writeAttribute(attribute.localName(), attribute.value());
+      } else {
+        delegate.writeAttribute(
+            attribute.prefix(), attribute.namespaceUri(), attribute.localName(), attribute.value());
+      }
+    }
+  }
+}
@@ -14,9 +14,8 @@
 
 package google.registry.flows;
 
-import static google.registry.xml.XmlTransformer.prettyPrint;
-
-import com.google.common.flogger.FluentLogger;
+import google.registry.cache.CacheInvalidationBus;
+import google.registry.flows.EppCommandLogger.CommandMetadata;
 import google.registry.flows.FlowModule.DryRun;
 import google.registry.flows.FlowModule.InputXml;
 import google.registry.flows.FlowModule.LogSqlStatements;
@@ -24,6 +23,7 @@ import google.registry.flows.FlowModule.RegistrarId;
 import google.registry.flows.FlowModule.Superuser;
 import google.registry.flows.FlowModule.Transactional;
 import google.registry.flows.session.LoginFlow;
+import google.registry.model.EppResourceChangeRecorder;
 import google.registry.model.eppcommon.Trid;
 import google.registry.model.eppoutput.EppOutput;
 import google.registry.monitoring.whitebox.EppMetric;
@@ -37,10 +37,6 @@ import java.util.Optional;
 /** Run a flow, either transactionally or not, with logging and retrying as needed. */
 public class FlowRunner {
 
-  private static final String COMMAND_LOG_FORMAT = "EPP Command" + "\n\t%s".repeat(8);
-
-  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
-
   @Inject @RegistrarId String registrarId;
   @Inject TransportCredentials credentials;
   @Inject EppRequestSource eppRequestSource;
@@ -56,23 +52,24 @@ public class FlowRunner {
   @Inject Trid trid;
   @Inject FlowReporter flowReporter;
   @Inject JpaTransactionManager jpaTransactionManager;
+  @Inject EppCommandLogger eppCommandLogger;
+  @Inject Optional<CacheInvalidationBus> cacheInvalidationBus;
 
   @Inject FlowRunner() {}
 
   /** Runs the EPP flow, and records metrics on the given builder. */
   public EppOutput run(final EppMetric.Builder eppMetricBuilder) throws EppException {
-    String prettyXml = prettyPrint(EppXmlSanitizer.sanitizeEppXml(inputXmlBytes));
-
-    logger.atInfo().log(
-        COMMAND_LOG_FORMAT,
-        trid.getServerTransactionId(),
-        registrarId,
-        sessionMetadata,
-        prettyXml.replace("\n", "\n\t"),
-        credentials,
-        eppRequestSource,
-        isDryRun ? "DRY_RUN" : "LIVE",
-        isSuperuser ? "SUPERUSER" : "NORMAL");
+    // The session metadata is stringified now, since the flow may mutate it (e.g. on login).
+    eppCommandLogger.log(
+        inputXmlBytes,
+        new CommandMetadata(
+            trid.getServerTransactionId(),
+            registrarId,
+            sessionMetadata.toString(),
+            credentials.toString(),
+            eppRequestSource,
+            isDryRun,
+            isSuperuser));
     // Record flow info to the request logs for reporting purposes if it's not a dry run.
     if (!isDryRun) {
       flowReporter.recordToLogs();
@@ -87,34 +84,50 @@ public class FlowRunner {
     }
 
     stopwatch.tick("We're not in transaction, calling transact.");
+    // Record the resources the flow changes, so that other nodes can evict them from their caches.
+    boolean recordChanges = cacheInvalidationBus.isPresent() && !isDryRun;
+    if (recordChanges) {
+      EppResourceChangeRecorder.startRecording();
+    }
     try {
-      return jpaTransactionManager.transact(
-          isolationLevelOverride.orElse(null),
-          () -> {
-            try {
-              stopwatch.tick("Running the flow in transaction.");
-              EppOutput output = EppOutput.create(flowProvider.get().run());
-              stopwatch.tick("Completed the flow in transaction.");
-              if (isDryRun) {
-                throw new DryRunException(output);
-              }
-              if (flowClass.equals(LoginFlow.class)) {
-                // In LoginFlow, registrarId isn't known until after the flow executes, so save
-                // it then.
-                stopwatch.tick("Login flow started setting registrar id.");
-                eppMetricBuilder.setRegistrarId(sessionMetadata.getRegistrarId());
-                stopwatch.tick("Login flow finished setting registrar id.");
-              }
-              return output;
-            } catch (EppException e) {
-              throw new EppRuntimeException(e);
-            }
-          },
-          logSqlStatements);
+      EppOutput eppOutput =
+          jpaTransactionManager.transact(
+              isolationLevelOverride.orElse(null),
+              () -> {
+                // Forget the changes of any previous attempt that did not commit.
+                EppResourceChangeRecorder.clearRecordedChanges();
+                try {
+                  stopwatch.tick("Running the flow in transaction.");
+                  EppOutput output = EppOutput.create(flowProvider.get().run());
+                  stopwatch.tick("Completed the flow in transaction.");
+                  if (isDryRun) {
+                    throw new DryRunException(output);
+                  }
+                  if (flowClass.equals(LoginFlow.class)) {
+                    // In LoginFlow, registrarId isn't known until after the flow executes, so save
+                    // it then.
+                    stopwatch.tick("Login flow started setting registrar id.");
+                    eppMetricBuilder.setRegistrarId(sessionMetadata.getRegistrarId());
+                    stopwatch.tick("Login flow finished setting registrar id.");
+                  }
+                  return output;
+                } catch (EppException e) {
+                  throw new EppRuntimeException(e);
+                }
+              },
+              logSqlStatements);
+      if (recordChanges) {
+        cacheInvalidationBus.get().publish(EppResourceChangeRecorder.getRecordedChanges());
+      }
+      return eppOutput;
     } catch (DryRunException e) {
       return e.output;
     } catch (EppRuntimeException e) {
       throw e.getCause();
+    } finally {
+      if (recordChanges) {
+        EppResourceChangeRecorder.stopRecording();
+      }
     }
   }
 
@@ -19,7 +19,9 @@ import static google.registry.persistence.transaction.TransactionManagerFactory.
 import static google.registry.xml.ValidationMode.LENIENT;
 import static google.registry.xml.ValidationMode.STRICT;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
@@ -37,7 +39,10 @@ import google.registry.model.eppoutput.EppOutput;
 import google.registry.model.host.InetAddressAdapter.IpVersionMismatchException;
 import google.registry.model.reporting.HistoryEntry.HistoryEntryId;
 import google.registry.xml.XmlException;
+import jakarta.xml.bind.ValidationEvent;
+import java.util.ArrayList;
 import java.util.List;
+import org.xml.sax.SAXParseException;
 
 /** Static utility functions for flows. */
 public final class FlowUtils {
@@ -90,11 +95,34 @@ public final class FlowUtils {
     checkState(eppOutput != null);
     // We need to marshal to a string instead of writing the response directly to the servlet's
     // response writer, so that partial results don't get written on failure.
+    //
+    // Schema violations are collected instead of aborting the marshaling, so that the output
+    // doesn't need to be marshaled a second time without validation if it turns out to be invalid.
+    List<ValidationEvent> validationEvents = new ArrayList<>();
     try {
-      return EppXmlTransformer.marshal(eppOutput, STRICT);
+      byte[] bytes =
+          EppXmlTransformer.marshal(
+              eppOutput,
+              STRICT,
+              event -> {
+                if (!isSchemaViolation(event)) {
+                  return false;
+                }
+                validationEvents.add(event);
+                return true;
+              });
+      if (!validationEvents.isEmpty()) {
+        // We failed to validate the output. This is very bad, but we can still send back slightly
+        // invalid xml.
+        logger.atSevere().log(
+            "Result marshaled but did not validate (%s): %s",
+            validationEvents.stream().map(ValidationEvent::getMessage).collect(joining("; ")),
+            new String(bytes, UTF_8));
+      }
+      return bytes;
     } catch (XmlException e) {
-      // We failed to marshal with validation. This is very bad, but we can potentially still send
-      // back slightly invalid xml, so try again without validation.
+      // We failed to marshal even though schema violations are tolerated, so try again without
+      // validation at all.
       try {
         byte[] lenient = EppXmlTransformer.marshal(eppOutput, LENIENT);
         // Marshaling worked even though the results didn't validate against the schema.
@@ -107,6 +135,17 @@ public final class FlowUtils {
     }
   }
 
+  /**
+   * Returns whether a marshaling event is a violation of the schema, as opposed to a failure of the
+   * marshaling itself, which aborts it.
+   *
+   * <p>The severity isn't checked, since JAXB reports schema violations as fatal errors.
+   */
+  @VisibleForTesting
+  static boolean isSchemaViolation(ValidationEvent event) {
+    return event.getLinkedException() instanceof SAXParseException;
+  }
+
   public static HistoryEntryId createHistoryEntryId(EppResource parent) {
     return new HistoryEntryId(parent.getRepoId(), tm().allocateId());
   }
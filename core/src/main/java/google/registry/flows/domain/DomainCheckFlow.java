@@ -35,6 +35,7 @@ import static google.registry.model.tld.Tld.TldState.START_DATE_SUNRISE;
 import static google.registry.model.tld.Tld.isEnrolledWithBsa;
 import static google.registry.model.tld.label.ReservationType.getTypeOfHighestSeverity;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
+import static google.registry.util.CollectionUtils.isNullOrEmpty;
 
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
@@ -55,6 +56,7 @@ import google.registry.flows.annotations.ReportingSpec;
 import google.registry.flows.custom.DomainCheckFlowCustomLogic;
 import google.registry.flows.custom.DomainCheckFlowCustomLogic.BeforeResponseParameters;
 import google.registry.flows.custom.DomainCheckFlowCustomLogic.BeforeResponseReturnData;
+import google.registry.flows.domain.token.AllocationTokenEvaluationContext;
 import google.registry.flows.domain.token.AllocationTokenFlowUtils;
 import google.registry.model.EppResource;
 import google.registry.model.ForeignKeyUtils;
@@ -194,10 +196,28 @@ public final class DomainCheckFlow implements TransactionalFlow {
     ImmutableSet.Builder<String> availableDomains = new ImmutableSet.Builder<>();
     ImmutableMap<String, TldState> tldStates =
         Maps.toMap(seenTlds, tld -> Tld.get(tld).getTldState(now));
+    // Shared by the availability and fee checks, so that default tokens are only priced once.
+    AllocationTokenEvaluationContext tokenContext =
+        new AllocationTokenEvaluationContext(
+            registrarId,
+            now,
+            eppInput.getSingleExtension(AllocationTokenExtension.class),
+            pricingLogic);
+    if (eppInput.getSingleExtension(FeeCheckCommandExtension.class).isPresent()
+        || seenTlds.stream()
+            .anyMatch(tld -> !isNullOrEmpty(Tld.get(tld).getDefaultPromoTokens()))) {
+      // Domains are priced for fees and default tokens, so look all their prices up at once.
+      pricingLogic.prefetchPrices(parsedDomains.keySet(), now);
+    }
     for (String domainName : domainNames) {
       Optional<String> message =
           getMessageForCheck(
-              domainName, existingDomains, bsaBlockedDomainNames, tldStates, parsedDomains, now);
+              domainName,
+              existingDomains,
+              bsaBlockedDomainNames,
+              tldStates,
+              parsedDomains,
+              tokenContext);
       boolean isAvailable = message.isEmpty();
       checksBuilder.add(DomainCheck.create(isAvailable, domainName, message.orElse(null)));
       if (isAvailable) {
@@ -210,7 +230,11 @@ public final class DomainCheckFlow implements TransactionalFlow {
                 .setDomainChecks(checksBuilder.build())
                 .setResponseExtensions(
                     getResponseExtensions(
-                        parsedDomains, existingDomains, availableDomains.build(), now))
+                        parsedDomains,
+                        existingDomains,
+                        availableDomains.build(),
+                        tokenContext,
+                        now))
                 .setAsOfDate(now)
                 .build());
     return responseBuilder
@@ -225,7 +249,7 @@ public final class DomainCheckFlow implements TransactionalFlow {
       ImmutableSet<InternetDomainName> bsaBlockedDomainNames,
       ImmutableMap<String, TldState> tldStates,
       ImmutableMap<String, InternetDomainName> parsedDomains,
-      Instant now)
+      AllocationTokenEvaluationContext tokenContext)
       throws EppException {
     InternetDomainName idn = parsedDomains.get(domainName);
     Optional<AllocationToken> token;
@@ -233,15 +257,11 @@ public final class DomainCheckFlow implements TransactionalFlow {
       // Which token we use may vary based on the domain -- a provided token may be invalid for
       // some domains, or there may be DEFAULT PROMO tokens only applicable on some domains
       token =
-          AllocationTokenFlowUtils.loadTokenFromExtensionOrGetDefault(
-              registrarId,
-              now,
-              eppInput.getSingleExtension(AllocationTokenExtension.class),
+          tokenContext.loadTokenFromExtensionOrGetDefault(
               Tld.get(idn.parent().toString()),
               domainName,
               FeeQueryCommandExtensionItem.CommandName.CREATE,
-              Optional.empty(),
-              pricingLogic);
+              Optional.empty());
     } catch (AllocationTokenFlowUtils.NonexistentAllocationTokenException
         | AllocationTokenFlowUtils.AllocationTokenInvalidException e) {
       // The provided token was catastrophically invalid in some way
@@ -286,6 +306,7 @@ public final class DomainCheckFlow implements TransactionalFlow {
       ImmutableMap<String, InternetDomainName> domainNames,
       ImmutableMap<String, VKey<Domain>> existingDomains,
       ImmutableSet<String> availableDomains,
+      AllocationTokenEvaluationContext tokenContext,
       Instant now)
       throws EppException {
     Optional<FeeCheckCommandExtension> feeCheckOpt =
@@ -314,15 +335,8 @@ public final class DomainCheckFlow implements TransactionalFlow {
           // The precise token to use for this fee request may vary based on the domain or even the
           // precise command issued (some tokens may be valid only for certain actions)
           token =
-              AllocationTokenFlowUtils.loadTokenFromExtensionOrGetDefault(
-                  registrarId,
-                  now,
-                  eppInput.getSingleExtension(AllocationTokenExtension.class),
-                  tld,
-                  domainName,
-                  feeCheckItem.getCommandName(),
-                  Optional.empty(),
-                  pricingLogic);
+              tokenContext.loadTokenFromExtensionOrGetDefault(
+                  tld, domainName, feeCheckItem.getCommandName(), Optional.empty());
         } catch (AllocationTokenFlowUtils.NonexistentAllocationTokenException
             | AllocationTokenFlowUtils.AllocationTokenInvalidException e) {
           // The provided token was catastrophically invalid in some way
@@ -18,6 +18,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static google.registry.flows.domain.DomainFlowUtils.zeroInCurrency;
 import static google.registry.flows.domain.token.AllocationTokenFlowUtils.discountTokenInvalidForPremiumName;
 import static google.registry.pricing.PricingEngineProxy.getPricesForDomainName;
+import static google.registry.pricing.PricingEngineProxy.getPricesForDomainNames;
 import static google.registry.util.PreconditionsUtils.checkArgumentPresent;
 
 import com.google.common.net.InternetDomainName;
@@ -42,6 +43,7 @@ import google.registry.model.tld.Tld;
 import jakarta.inject.Inject;
 import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Optional;
 import javax.annotation.Nullable;
 import org.joda.money.CurrencyUnit;
@@ -61,6 +63,16 @@ public final class DomainPricingLogic {
     this.customLogic = customLogic;
   }
 
+  /**
+   * Looks up the premium prices of all the given domain names at once ahead of pricing them.
+   *
+   * <p>Flows that price many domains, e.g. domain checks, should call this first, so that the
+   * premium list caches are filled by one lookup per TLD instead of one per domain.
+   */
+  public void prefetchPrices(Collection<String> domainNames, Instant priceTime) {
+    getPricesForDomainNames(domainNames, priceTime);
+  }
+
   /**
    * Returns a new create price for the pricer.
    *
@@ -0,0 +1,169 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.domain.token;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static google.registry.flows.domain.token.AllocationTokenFlowUtils.loadAllocationTokenFromExtension;
+import static google.registry.flows.domain.token.AllocationTokenFlowUtils.tokenIsValidAgainstDomain;
+import static google.registry.flows.domain.token.AllocationTokenFlowUtils.validateTokenForRegistrar;
+import static google.registry.util.CollectionUtils.isNullOrEmpty;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.InternetDomainName;
+import google.registry.flows.EppException;
+import google.registry.flows.domain.DomainPricingLogic;
+import google.registry.flows.domain.token.AllocationTokenFlowUtils.AllocationTokenInvalidException;
+import google.registry.model.domain.fee.FeeQueryCommandExtensionItem.CommandName;
+import google.registry.model.domain.token.AllocationToken;
+import google.registry.model.domain.token.AllocationTokenExtension;
+import google.registry.model.tld.Tld;
+import google.registry.persistence.VKey;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Picks the {@link AllocationToken} to use for each domain of a single EPP command.
+ *
+ * <p>Flows that need the token of many domains, e.g. domain checks, should use a single instance
+ * for the whole command. The default promo tokens of each TLD are then only loaded and validated
+ * against the registrar once. The default token picked for a domain, command and period, which
+ * requires pricing the domain with each applicable default token, is also only computed once, even
+ * when both the availability and the fee checks ask for it.
+ *
+ * <p>Instances are not thread-safe, and must not be reused across commands.
+ */
+public final class AllocationTokenEvaluationContext {
+
+  private final String registrarId;
+  private final Instant now;
+  private final Optional<AllocationTokenExtension> extension;
+  private final DomainPricingLogic pricingLogic;
+
+  /** The default promo tokens of each TLD that are valid for the registrar, keyed by TLD. */
+  private final Map<String, ImmutableList<AllocationToken>> defaultTokensByTld = new HashMap<>();
+
+  private final Map<DefaultTokenKey, Optional<AllocationToken>> defaultTokens = new HashMap<>();
+
+  private record DefaultTokenKey(String domainName, CommandName commandName, int years) {}
+
+  public AllocationTokenEvaluationContext(
+      String registrarId,
+      Instant now,
+      Optional<AllocationTokenExtension> extension,
+      DomainPricingLogic pricingLogic) {
+    this.registrarId = registrarId;
+    this.now = now;
+    this.extension = extension;
+    this.pricingLogic = pricingLogic;
+  }
+
+  /**
+   * Loads the relevant token, if present, for the given domain and command.
+   *
+   * <p>This may be the allocation token provided in the command, if it is present and valid for the
+   * domain. Otherwise, it may be a default allocation token if one is present and valid for the
+   * domain.
+   *
+   * @see AllocationTokenFlowUtils#loadTokenFromExtensionOrGetDefault
+   */
+  public Optional<AllocationToken> loadTokenFromExtensionOrGetDefault(
+      Tld tld, String domainName, CommandName commandName, Optional<Integer> years)
+      throws EppException {
+    Optional<AllocationToken> fromExtension =
+        loadAllocationTokenFromExtension(registrarId, domainName, now, extension);
+    if (fromExtension.isPresent()
+        && tokenIsValidAgainstDomain(
+            InternetDomainName.from(domainName), fromExtension.get(), commandName, now)) {
+      return fromExtension;
+    }
+    DefaultTokenKey key = new DefaultTokenKey(domainName, commandName, years.orElse(1));
+    // Not computeIfAbsent(), because pricing the domain can throw a checked EppException.
+    Optional<AllocationToken> defaultToken = defaultTokens.get(key);
+    if (defaultToken == null) {
+      defaultToken = checkForDefaultToken(tld, key);
+      defaultTokens.put(key, defaultToken);
+    }
+    return defaultToken;
+  }
+
+  /**
+   * Checks if there is a valid default token to be used for a domain command.
+   *
+   * <p>If there is more than one valid default token for the command, the one that results in the
+   * lowest price is returned, or the first one on the TLD's default token list if several do.
+   */
+  private Optional<AllocationToken> checkForDefaultToken(Tld tld, DefaultTokenKey key)
+      throws EppException {
+    InternetDomainName domainName = InternetDomainName.from(key.domainName());
+    ImmutableMap.Builder<AllocationToken, BigDecimal> tokenCosts = new ImmutableMap.Builder<>();
+    for (AllocationToken token : getDefaultTokens(tld)) {
+      if (tokenIsValidAgainstDomain(domainName, token, key.commandName(), now)) {
+        tokenCosts.put(token, getSampleCostWithToken(tld, token, key));
+      }
+    }
+    return tokenCosts.build().entrySet().stream()
+        .min(Map.Entry.comparingByValue())
+        .map(Map.Entry::getKey);
+  }
+
+  /** Returns the default promo tokens of the TLD that are valid for the registrar at this time. */
+  private ImmutableList<AllocationToken> getDefaultTokens(Tld tld) {
+    ImmutableList<AllocationToken> tokens = defaultTokensByTld.get(tld.getTldStr());
+    if (tokens == null) {
+      ImmutableList<VKey<AllocationToken>> tokensFromTld = tld.getDefaultPromoTokens();
+      tokens =
+          isNullOrEmpty(tokensFromTld)
+              ? ImmutableList.of()
+              : AllocationToken.getDefaultPromoTokens(tld.getTldStr(), tokensFromTld, registrarId)
+                  .stream()
+                  .filter(this::isValidForRegistrar)
+                  .collect(toImmutableList());
+      defaultTokensByTld.put(tld.getTldStr(), tokens);
+    }
+    return tokens;
+  }
+
+  private boolean isValidForRegistrar(AllocationToken token) {
+    try {
+      validateTokenForRegistrar(token, registrarId, now);
+      return true;
+    } catch (AllocationTokenInvalidException e) {
+      return false;
+    }
+  }
+
+  private BigDecimal getSampleCostWithToken(Tld tld, AllocationToken token, DefaultTokenKey key)
+      throws EppException {
+    // We only support token discounts on creates or renews
+    return switch (key.commandName()) {
+      case CREATE ->
+          pricingLogic
+              .getCreatePrice(
+                  tld, key.domainName(), now, key.years(), false, false, Optional.of(token))
+              .getTotalCost()
+              .getAmount();
+      case RENEW ->
+          pricingLogic
+              .getRenewPrice(tld, key.domainName(), now, key.years(), null, Optional.of(token))
+              .getTotalCost()
+              .getAmount();
+      default -> BigDecimal.ZERO;
+    };
+  }
+}
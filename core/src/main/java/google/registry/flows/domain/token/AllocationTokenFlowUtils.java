@@ -15,15 +15,11 @@
 package google.registry.flows.domain.token;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.collect.ImmutableList.toImmutableList;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
 import static google.registry.pricing.PricingEngineProxy.isDomainPremium;
-import static google.registry.util.CollectionUtils.isNullOrEmpty;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.net.InternetDomainName;
 import google.registry.flows.EppException;
 import google.registry.flows.EppException.AssociationProhibitsOperationException;
@@ -41,9 +37,7 @@ import google.registry.model.domain.token.AllocationTokenExtension;
 import google.registry.model.reporting.HistoryEntry.HistoryEntryId;
 import google.registry.model.tld.Tld;
 import google.registry.persistence.VKey;
-import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.Map;
 import java.util.Optional;
 
 /** Utility functions for dealing with {@link AllocationToken}s in domain flows. */
@@ -87,6 +81,9 @@ public class AllocationTokenFlowUtils {
    * <p>This may be the allocation token provided in the request, if it is present and valid for the
    * request. Otherwise, it may be a default allocation token if one is present and valid for the
    * request.
+   *
+   * <p>Flows that load the tokens of many domains should use a single {@link
+   * AllocationTokenEvaluationContext} instead, which reuses the default tokens across domains.
    */
   public static Optional<AllocationToken> loadTokenFromExtensionOrGetDefault(
       String registrarId,
@@ -98,15 +95,8 @@ public class AllocationTokenFlowUtils {
       Optional<Integer> years,
       DomainPricingLogic pricingLogic)
       throws EppException {
-    Optional<AllocationToken> fromExtension =
-        loadAllocationTokenFromExtension(registrarId, domainName, now, extension);
-    if (fromExtension.isPresent()
-        && tokenIsValidAgainstDomain(
-            InternetDomainName.from(domainName), fromExtension.get(), commandName, now)) {
-      return fromExtension;
-    }
-    return checkForDefaultToken(
-        tld, domainName, commandName, registrarId, now, years, pricingLogic);
+    return new AllocationTokenEvaluationContext(registrarId, now, extension, pricingLogic)
+        .loadTokenFromExtensionOrGetDefault(tld, domainName, commandName, years);
   }
 
   /** Verifies that the given domain can have a bulk pricing token removed from it. */
@@ -181,79 +171,6 @@ public class AllocationTokenFlowUtils {
         || token.getDomainName().get().equals(domainName.toString());
   }
 
-  /**
-   * Checks if there is a valid default token to be used for a domain create command.
-   *
-   * <p>If there is more than one valid default token for the registration, only the first valid
-   * token found on the TLD's default token list will be returned.
-   */
-  private static Optional<AllocationToken> checkForDefaultToken(
-      Tld tld,
-      String domainName,
-      CommandName commandName,
-      String registrarId,
-      Instant now,
-      Optional<Integer> years,
-      DomainPricingLogic pricingLogic)
-      throws EppException {
-    ImmutableList<VKey<AllocationToken>> tokensFromTld = tld.getDefaultPromoTokens();
-    if (isNullOrEmpty(tokensFromTld)) {
-      return Optional.empty();
-    }
-    ImmutableList<AllocationToken> tokenList =
-        AllocationToken.getAll(tokensFromTld).values().stream()
-            .flatMap(Optional::stream)
-            // Filter to tokens that are 1. valid in general 2. valid for this particular request
-            .filter(
-                token -> {
-                  try {
-                    validateTokenEntity(token, registrarId, domainName, now);
-                  } catch (AllocationTokenInvalidException e) {
-                    return false;
-                  }
-                  return tokenIsValidAgainstDomain(
-                      InternetDomainName.from(domainName), token, commandName, now);
-                })
-            .collect(toImmutableList());
-    // We can't compute the costs directly in the stream due to the checked EppException
-    ImmutableMap.Builder<AllocationToken, BigDecimal> tokenCosts = new ImmutableMap.Builder<>();
-    for (AllocationToken token : tokenList) {
-      tokenCosts.put(
-          token,
-          getSampleCostWithToken(tld, domainName, token, commandName, now, years, pricingLogic));
-    }
-    return tokenCosts.build().entrySet().stream()
-        .min(Map.Entry.comparingByValue())
-        .map(Map.Entry::getKey);
-  }
-
-  private static BigDecimal getSampleCostWithToken(
-      Tld tld,
-      String domainName,
-      AllocationToken token,
-      CommandName commandName,
-      Instant now,
-      Optional<Integer> years,
-      DomainPricingLogic pricingLogic)
-      throws EppException {
-    int yearsForAction = years.orElse(1);
-    // We only support token discounts on creates or renews
-    return switch (commandName) {
-      case CREATE ->
-          pricingLogic
-              .getCreatePrice(
-                  tld, domainName, now, yearsForAction, false, false, Optional.of(token))
-              .getTotalCost()
-              .getAmount();
-      case RENEW ->
-          pricingLogic
-              .getRenewPrice(tld, domainName, now, yearsForAction, null, Optional.of(token))
-              .getTotalCost()
-              .getAmount();
-      default -> BigDecimal.ZERO;
-    };
-  }
-
   /** Loads a given token and validates it against the registrar, time, etc */
   private static AllocationToken loadAndValidateToken(
       String token, String registrarId, String domainName, Instant now)
@@ -282,6 +199,15 @@ public class AllocationTokenFlowUtils {
   private static void validateTokenEntity(
       AllocationToken token, String registrarId, String domainName, Instant now)
       throws AllocationTokenInvalidException {
+    validateTokenForRegistrar(token, registrarId, now);
+    if (token.getDomainName().isPresent() && !token.getDomainName().get().equals(domainName)) {
+      throw new AllocationTokenNotValidForDomainException();
+    }
+  }
+
+  /** Validates the parts of a token that don't depend on the domain it is used for. */
+  static void validateTokenForRegistrar(AllocationToken token, String registrarId, Instant now)
+      throws AllocationTokenInvalidException {
     if (token.isRedeemed()) {
       throw new AlreadyRedeemedAllocationTokenException();
     }
@@ -295,10 +221,6 @@ public class AllocationTokenFlowUtils {
         && !TokenStatus.VALID.equals(token.getTokenStatusTransitions().getValueAtTime(now))) {
       throw new AllocationTokenNotInPromotionException();
     }
-
-    if (token.getDomainName().isPresent() && !token.getDomainName().get().equals(domainName)) {
-      throw new AllocationTokenNotValidForDomainException();
-    }
   }
 
   // Note: exception messages should be <= 32 characters long for domain check results
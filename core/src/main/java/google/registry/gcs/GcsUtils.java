@@ -22,6 +22,7 @@ import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.BlobInfo;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.Storage.BlobListOption;
+import com.google.cloud.storage.Storage.CopyRequest;
 import com.google.cloud.storage.StorageException;
 import com.google.cloud.storage.StorageOptions;
 import com.google.common.annotations.VisibleForTesting;
@@ -118,6 +119,12 @@ public class GcsUtils implements Serializable {
     storage().delete(blobId);
   }
 
+  /** Moves the given GCS file to the target, overwriting existing files. */
+  public void move(BlobId source, BlobId target) throws StorageException {
+    storage().copy(CopyRequest.of(source, target)).getResult();
+    storage().delete(source);
+  }
+
   /** Update file content type on existing GCS file */
   public void updateContentType(BlobId blobId, String contentType) throws StorageException {
     if (existsAndNotEmpty(blobId)) {
@@ -34,6 +34,8 @@ import com.google.common.collect.ImmutableSet;
 import com.google.gson.annotations.Expose;
 import google.registry.config.RegistryConfig;
 import google.registry.model.eppcommon.StatusValue;
+import google.registry.persistence.EntityCallbacksListener.RecursivePostPersist;
+import google.registry.persistence.EntityCallbacksListener.RecursivePostUpdate;
 import google.registry.persistence.VKey;
 import google.registry.util.NonFinalForTesting;
 import jakarta.persistence.Access;
@@ -203,6 +205,13 @@ public abstract class EppResource extends UpdateAutoTimestampEntity implements B
   @Override
   public abstract Builder<?, ?> asBuilder();
 
+  /** Records this resource as changed, so that it can be evicted from caches after commit. */
+  @RecursivePostPersist
+  @RecursivePostUpdate
+  void recordChange() {
+    EppResourceChangeRecorder.record(this);
+  }
+
   /** EppResources that are loaded via foreign keys should implement this marker interface. */
   public interface ForeignKeyedEppResource {}
 
@@ -402,4 +411,14 @@ public abstract class EppResource extends UpdateAutoTimestampEntity implements B
     T resource = (T) cacheEppResources.get(key);
     return resource;
   }
+
+  /** Evicts the given resources from the cache, e.g. after another node has changed them. */
+  public static void invalidateInCache(Iterable<? extends VKey<? extends EppResource>> keys) {
+    cacheEppResources.invalidateAll(keys);
+  }
+
+  /** Evicts all resources from the cache, e.g. when changes by other nodes may have been missed. */
+  public static void invalidateAllInCache() {
+    cacheEppResources.invalidateAll();
+  }
 }
@@ -0,0 +1,75 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import com.google.common.collect.ImmutableSet;
+import jakarta.persistence.Entity;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Records the {@link EppResource}s saved by the current thread, while recording is turned on.
+ *
+ * <p>Recording is off by default, and is only turned on around EPP flows, so that the resources
+ * they change can be evicted from the local caches of every node once the transaction commits.
+ * Resources are recorded from their post-persist and post-update callbacks, i.e. when they are
+ * flushed to the database.
+ */
+public final class EppResourceChangeRecorder {
+
+  /** A resource saved by the current thread, identified by both its repo ID and foreign key. */
+  public record ChangedResource(
+      Class<? extends EppResource> resourceType, String repoId, String foreignKey) {}
+
+  private static final ThreadLocal<Set<ChangedResource>> recordedChanges = new ThreadLocal<>();
+
+  private EppResourceChangeRecorder() {}
+
+  /** Starts recording the resources saved by the current thread. */
+  public static void startRecording() {
+    recordedChanges.set(new LinkedHashSet<>());
+  }
+
+  /**
+   * Forgets the resources recorded so far, e.g. when the transaction they were saved in is retried.
+   */
+  public static void clearRecordedChanges() {
+    Set<ChangedResource> changes = recordedChanges.get();
+    if (changes != null) {
+      changes.clear();
+    }
+  }
+
+  /** Returns the resources recorded so far, or an empty set if recording is off. */
+  public static ImmutableSet<ChangedResource> getRecordedChanges() {
+    Set<ChangedResource> changes = recordedChanges.get();
+    return changes == null ? ImmutableSet.of() : ImmutableSet.copyOf(changes);
+  }
+
+  /** Stops recording the resources saved by the current thread. */
+  public static void stopRecording() {
+    recordedChanges.remove();
+  }
+
+  static void record(EppResource resource) {
+    Set<ChangedResource> changes = recordedChanges.get();
+    // Skip the copies of resources embedded in history entries, which aren't entities themselves.
+    if (changes == null || !resource.getClass().isAnnotationPresent(Entity.class)) {
+      return;
+    }
+    changes.add(
+        new ChangedResource(resource.getClass(), resource.getRepoId(), resource.getForeignKey()));
+  }
+}
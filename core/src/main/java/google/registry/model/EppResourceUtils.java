@@ -17,10 +17,11 @@ package google.registry.model;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
-import static google.registry.util.DateTimeUtils.START_INSTANT;
 import static google.registry.util.DateTimeUtils.isAtOrAfter;
 import static google.registry.util.DateTimeUtils.isBeforeOrAt;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import google.registry.model.domain.Domain;
@@ -35,7 +36,8 @@ import google.registry.model.transfer.TransferStatus;
 import google.registry.persistence.VKey;
 import jakarta.persistence.Query;
 import java.time.Instant;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.Optional;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 
@@ -139,29 +141,70 @@ public final class EppResourceUtils {
     T loadedResource =
         isAtOrAfter(timestamp, resource.getUpdateTimestamp().getTimestamp())
             ? resource
-            : loadMostRecentRevisionAtTime(resource, timestamp);
-    return (loadedResource == null)
-        ? null
-        : (isActive(loadedResource, timestamp)
-            ? (T) loadedResource.cloneProjectedAtTime(timestamp)
-            : null);
+            : getRevisionOrFallBack(
+                resource,
+                HistoryEntryDao.loadMostRecentHistoryObjectForResource(
+                    resource.createVKey(), timestamp),
+                timestamp);
+    return projectIfActive(loadedResource, timestamp);
   }
 
   /**
-   * Returns the most recent revision of a given EppResource before or at the provided timestamp,
-   * falling back to using the resource as-is if there are no revisions.
+   * Returns the given resources as they were at a specific point in time.
+   *
+   * <p>This is the batched version of {@link #loadAtPointInTime(EppResource, Instant)}, which loads
+   * the most recent revisions of all the resources that were modified after {@code timestamp} at
+   * once, rather than with one fetch per resource.
+   *
+   * @return the resources at {@code timestamp}, in the order they were given in, leaving out the
+   *     ones that are deleted or not yet created at that time.
+   */
+  public static <T extends EppResource> ImmutableList<T> loadAtPointInTime(
+      Collection<T> resources, Instant timestamp) {
+    ImmutableSet<VKey<? extends EppResource>> keysToLoad =
+        resources.stream()
+            .filter(resource -> !timestamp.isBefore(resource.getCreationTime()))
+            .filter(
+                resource -> !isAtOrAfter(timestamp, resource.getUpdateTimestamp().getTimestamp()))
+            .map(EppResource::createVKey)
+            .collect(toImmutableSet());
+    ImmutableMap<VKey<? extends EppResource>, HistoryEntry> revisions =
+        keysToLoad.isEmpty()
+            ? ImmutableMap.of()
+            : HistoryEntryDao.loadMostRecentHistoryObjectsForResources(keysToLoad, timestamp);
+    ImmutableList.Builder<T> resourcesAtTime = new ImmutableList.Builder<>();
+    for (T resource : resources) {
+      if (timestamp.isBefore(resource.getCreationTime())) {
+        continue;
+      }
+      VKey<? extends EppResource> key = resource.createVKey();
+      T loadedResource =
+          keysToLoad.contains(key)
+              ? getRevisionOrFallBack(resource, Optional.ofNullable(revisions.get(key)), timestamp)
+              : resource;
+      T resourceAtTime = projectIfActive(loadedResource, timestamp);
+      if (resourceAtTime != null) {
+        resourcesAtTime.add(resourceAtTime);
+      }
+    }
+    return resourcesAtTime.build();
+  }
+
+  @Nullable
+  @SuppressWarnings("unchecked")
+  private static <T extends EppResource> T projectIfActive(T resource, Instant timestamp) {
+    return isActive(resource, timestamp) ? (T) resource.cloneProjectedAtTime(timestamp) : null;
+  }
+
+  /**
+   * Returns the resource stored in the given most recent revision of a resource, falling back to
+   * using the resource as-is if there is no such revision.
    */
-  private static <T extends EppResource> T loadMostRecentRevisionAtTime(
-      final T resource, Instant timestamp) {
+  private static <T extends EppResource> T getRevisionOrFallBack(
+      final T resource, Optional<HistoryEntry> mostRecentRevision, Instant timestamp) {
     @SuppressWarnings("unchecked")
     T resourceAtPointInTime =
-        (T)
-            HistoryEntryDao.loadHistoryObjectsForResource(
-                    resource.createVKey(), START_INSTANT, timestamp)
-                .stream()
-                .max(Comparator.comparing(HistoryEntry::getModificationTime))
-                .flatMap(HistoryEntry::getResourceAtPointInTime)
-                .orElse(null);
+        (T) mostRecentRevision.flatMap(HistoryEntry::getResourceAtPointInTime).orElse(null);
     if (resourceAtPointInTime == null) {
       logger.atSevere().log(
           "Couldn't load resource at %s for key %s, falling back to resource %s.",
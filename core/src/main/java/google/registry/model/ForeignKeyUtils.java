@@ -400,4 +400,21 @@ public final class ForeignKeyUtils {
             .filter(e -> now.isBefore(e.getDeletionTime()))
             .map(e -> e.cloneProjectedAtTime(now));
   }
+
+  /**
+   * Evicts the given foreign keys from the caches, e.g. after another node has changed the
+   * resources they point to.
+   */
+  public static void invalidateInCaches(Iterable<? extends VKey<? extends EppResource>> keys) {
+    foreignKeyToRepoIdCache.invalidateAll(keys);
+    foreignKeyToResourceCache.invalidateAll(keys);
+  }
+
+  /**
+   * Evicts all foreign keys from the caches, e.g. when changes by other nodes may have been missed.
+   */
+  public static void invalidateAllInCaches() {
+    foreignKeyToRepoIdCache.invalidateAll();
+    foreignKeyToResourceCache.invalidateAll();
+  }
 }
@@ -0,0 +1,162 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import com.google.common.primitives.ImmutableIntArray;
+
+/**
+ * An immutable, compact index of distinct strings, which maps each string to its entry number.
+ *
+ * <p>This backs in-memory tables of domain labels with hundreds of thousands of entries, where a
+ * map of strings takes several times the size of the entries themselves. Callers keep the values in
+ * arrays indexed by entry number. All the strings are packed into a single byte array, with one
+ * byte per character if they are all Latin-1 and two otherwise, and looked up through an
+ * open-addressing hash table of entry numbers. Looking up a string that isn't in the index doesn't
+ * allocate anything.
+ */
+public final class PackedStringIndex {
+
+  /** Packed characters of all the strings, in entry order. */
+  private final byte[] chars;
+
+  /** Whether {@link #chars} holds one byte per character, rather than two. */
+  private final boolean latin1;
+
+  /** Offsets of each string in characters, followed by the total length. */
+  private final int[] offsets;
+
+  /**
+   * Hash table of entry numbers plus one, with zero marking empty slots.
+   *
+   * <p>The table is at least twice as large as the number of entries, so probe sequences are short
+   * and always end at an empty slot.
+   */
+  private final int[] slots;
+
+  private PackedStringIndex(byte[] chars, boolean latin1, int[] offsets, int[] hashes) {
+    this.chars = chars;
+    this.latin1 = latin1;
+    this.offsets = offsets;
+    this.slots = new int[Math.max(2, Integer.highestOneBit(Math.max(1, hashes.length)) << 2)];
+    int mask = slots.length - 1;
+    for (int entry = 0; entry < hashes.length; entry++) {
+      int slot = hashes[entry] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = entry + 1;
+    }
+  }
+
+  /** Returns a builder expecting about the given number of strings. */
+  public static Builder builder(int expectedSize) {
+    return new Builder(expectedSize);
+  }
+
+  /** Returns the entry number of the given string, or -1 if it isn't in the index. */
+  public int indexOf(String string) {
+    int mask = slots.length - 1;
+    for (int slot = hash(string) & mask; ; slot = (slot + 1) & mask) {
+      int entry = slots[slot] - 1;
+      if (entry < 0 || entryEquals(entry, string)) {
+        return entry;
+      }
+    }
+  }
+
+  /** Returns the number of strings in the index. */
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  /** Returns the approximate number of bytes taken by the arrays of the index. */
+  public long getSizeInBytes() {
+    return chars.length + 4L * (offsets.length + slots.length);
+  }
+
+  private boolean entryEquals(int entry, String string) {
+    int start = offsets[entry];
+    int length = offsets[entry + 1] - start;
+    if (length != string.length()) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (charAt(start + i) != string.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private char charAt(int index) {
+    if (latin1) {
+      return (char) (chars[index] & 0xff);
+    }
+    return (char) (((chars[2 * index] & 0xff) << 8) | (chars[2 * index + 1] & 0xff));
+  }
+
+  /** Spreads the cached hash code of the string to the low bits used to pick a slot. */
+  private static int hash(String string) {
+    int hash = string.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * A builder for {@link PackedStringIndex}.
+   *
+   * <p>Strings are appended as they are added, so an index can be built from a stream of entries
+   * without holding all of them at once. Each string must only be added once.
+   */
+  public static final class Builder {
+
+    private final StringBuilder chars = new StringBuilder();
+    private final ImmutableIntArray.Builder offsets;
+    private final ImmutableIntArray.Builder hashes;
+    private int size;
+    private boolean latin1 = true;
+
+    private Builder(int expectedSize) {
+      offsets = ImmutableIntArray.builder(expectedSize + 1);
+      hashes = ImmutableIntArray.builder(expectedSize);
+    }
+
+    /** Adds the given string, and returns its entry number. */
+    public int add(String string) {
+      offsets.add(chars.length());
+      chars.append(string);
+      hashes.add(hash(string));
+      for (int i = 0; latin1 && i < string.length(); i++) {
+        latin1 = string.charAt(i) <= 0xff;
+      }
+      return size++;
+    }
+
+    public PackedStringIndex build() {
+      int length = chars.length();
+      byte[] packed = new byte[latin1 ? length : 2 * length];
+      for (int i = 0; i < length; i++) {
+        char c = chars.charAt(i);
+        if (latin1) {
+          packed[i] = (byte) c;
+        } else {
+          packed[2 * i] = (byte) (c >>> 8);
+          packed[2 * i + 1] = (byte) c;
+        }
+      }
+      return new PackedStringIndex(
+          packed, latin1, offsets.add(length).build().toArray(), hashes.build().toArray());
+    }
+  }
+}
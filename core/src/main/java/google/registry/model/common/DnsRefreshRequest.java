@@ -123,6 +123,20 @@ public class DnsRefreshRequest extends ImmutableObject {
     this(null, type, name, tld, requestTime, START_INSTANT);
   }
 
+  /**
+   * Returns a copy of this request that is due at an earlier time, e.g. to merge a new request for
+   * the same name into it.
+   */
+  public DnsRefreshRequest advanceRequestTime(Instant requestTime) {
+    checkArgument(
+        requestTime.isBefore(getRequestTime()),
+        "New request time %s must be earlier than the old one %s",
+        requestTime,
+        getRequestTime());
+    return new DnsRefreshRequest(
+        id, getType(), getName(), getTld(), requestTime, getLastProcessTime());
+  }
+
   public DnsRefreshRequest updateProcessTime(Instant processTime) {
     checkArgument(
         processTime.isAfter(getRequestTime()),
@@ -826,6 +826,17 @@ public class DomainBase extends EppResource {
       return thisCastToDerived();
     }
 
+    /**
+     * Sets the current bulk token without checking that it exists and has the right type.
+     *
+     * <p>This should only be used to restore a domain that was validated when it was saved, e.g.
+     * when reading back a serialized copy of it, since it avoids loading the token.
+     */
+    public B restoreCurrentBulkToken(@Nullable VKey<AllocationToken> currentBulkToken) {
+      getInstance().currentBulkToken = currentBulkToken;
+      return thisCastToDerived();
+    }
+
     public B copyFrom(DomainBase domainBase) {
       getInstance().copyUpdateTimestamp(domainBase);
       return setAuthInfo(domainBase.getAuthInfo())
@@ -129,6 +129,28 @@ public class GracePeriod extends GracePeriodBase {
         history.gracePeriodId);
   }
 
+  /**
+   * Re-creates a GracePeriod with all of its fields, including its {@link #gracePeriodId}, e.g.
+   * from a serialized copy of the domain it belongs to.
+   */
+  public static GracePeriod restore(
+      GracePeriodStatus type,
+      String domainRepoId,
+      Instant expirationTime,
+      String registrarId,
+      @Nullable VKey<BillingEvent> billingEvent,
+      @Nullable VKey<BillingRecurrence> billingRecurrence,
+      long gracePeriodId) {
+    return createInternal(
+        type,
+        domainRepoId,
+        expirationTime,
+        registrarId,
+        billingEvent,
+        billingRecurrence,
+        gracePeriodId);
+  }
+
   /** Creates a GracePeriod for a Recurrence billing event. */
   public static GracePeriod createForRecurrence(
       GracePeriodStatus type,
@@ -16,7 +16,9 @@ package google.registry.model.domain.token;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static google.registry.config.RegistryConfig.getSingletonCacheRefreshDuration;
 import static google.registry.model.domain.token.AllocationToken.TokenStatus.CANCELLED;
 import static google.registry.model.domain.token.AllocationToken.TokenStatus.ENDED;
@@ -374,6 +376,47 @@ public class AllocationToken extends UpdateAutoTimestampEntity implements Builda
     return ALLOCATION_TOKENS_CACHE.getAll(keys);
   }
 
+  /**
+   * Returns the given default promo tokens of a TLD that the registrar may use, in the same order.
+   *
+   * <p>Tokens that are not allowed on the TLD or for the registrar are left out, using a cached
+   * index. The tokens returned still have to be validated for the time and domain they're used for.
+   */
+  public static ImmutableList<AllocationToken> getDefaultPromoTokens(
+      String tld, ImmutableList<VKey<AllocationToken>> defaultPromoTokens, String registrarId) {
+    ImmutableList<VKey<AllocationToken>> keys =
+        DEFAULT_PROMO_TOKENS_INDEX.get(
+            new DefaultPromoTokensKey(tld, defaultPromoTokens, registrarId));
+    if (keys.isEmpty()) {
+      return ImmutableList.of();
+    }
+    Map<VKey<AllocationToken>, Optional<AllocationToken>> tokens = getAll(keys);
+    return keys.stream()
+        .map(key -> tokens.getOrDefault(key, Optional.empty()))
+        .flatMap(Optional::stream)
+        .collect(toImmutableList());
+  }
+
+  /** Loads the tokens with the given keys with a single query. */
+  private static ImmutableMap<VKey<AllocationToken>, Optional<AllocationToken>> loadTokens(
+      Set<? extends VKey<AllocationToken>> keys) {
+    ImmutableMap<String, AllocationToken> tokens =
+        tm().reTransact(
+                () ->
+                    tm().query("FROM AllocationToken WHERE token IN :tokens", AllocationToken.class)
+                        .setParameter(
+                            "tokens",
+                            keys.stream()
+                                .map(key -> (String) key.getKey())
+                                .collect(toImmutableSet()))
+                        .getResultStream()
+                        .collect(toImmutableMap(AllocationToken::getToken, token -> token)));
+    return keys.stream()
+        .collect(
+            toImmutableMap(
+                key -> key, key -> Optional.ofNullable(tokens.get((String) key.getKey()))));
+  }
+
   /** A cache that loads the {@link AllocationToken} object for a given AllocationToken VKey. */
   private static final LoadingCache<VKey<AllocationToken>, Optional<AllocationToken>>
       ALLOCATION_TOKENS_CACHE =
@@ -388,15 +431,43 @@ public class AllocationToken extends UpdateAutoTimestampEntity implements Builda
                     @Override
                     public Map<? extends VKey<AllocationToken>, ? extends Optional<AllocationToken>>
                         loadAll(Set<? extends VKey<AllocationToken>> keys) {
-                      return tm().reTransact(
-                              () ->
-                                  keys.stream()
-                                      .collect(
-                                          toImmutableMap(
-                                              key -> key, key -> tm().loadByKeyIfPresent(key))));
+                      return loadTokens(keys);
                     }
                   });
 
+  /** The key of {@link #DEFAULT_PROMO_TOKENS_INDEX}. */
+  private record DefaultPromoTokensKey(
+      String tld, ImmutableList<VKey<AllocationToken>> defaultPromoTokens, String registrarId) {}
+
+  /**
+   * A cache of the default promo tokens of a TLD that are allowed on the TLD and for a registrar.
+   *
+   * <p>The key includes the TLD's list of default promo tokens, so that changes to the list take
+   * effect right away. Only the keys of the tokens are cached, as the tokens themselves are already
+   * cached in {@link #ALLOCATION_TOKENS_CACHE}.
+   */
+  private static final LoadingCache<DefaultPromoTokensKey, ImmutableList<VKey<AllocationToken>>>
+      DEFAULT_PROMO_TOKENS_INDEX =
+          CacheUtils.newCacheBuilder(getSingletonCacheRefreshDuration())
+              .build(
+                  key -> {
+                    Map<VKey<AllocationToken>, Optional<AllocationToken>> tokens =
+                        getAll(key.defaultPromoTokens());
+                    return key.defaultPromoTokens().stream()
+                        .map(tokenKey -> tokens.getOrDefault(tokenKey, Optional.empty()))
+                        .flatMap(Optional::stream)
+                        .filter(
+                            token ->
+                                token.getAllowedTlds().isEmpty()
+                                    || token.getAllowedTlds().contains(key.tld()))
+                        .filter(
+                            token ->
+                                token.getAllowedRegistrarIds().isEmpty()
+                                    || token.getAllowedRegistrarIds().contains(key.registrarId()))
+                        .map(AllocationToken::createVKey)
+                        .collect(toImmutableList());
+                  });
+
   @Override
   public VKey<AllocationToken> createVKey() {
     if (!AllocationToken.TokenBehavior.DEFAULT.equals(getTokenBehavior())) {
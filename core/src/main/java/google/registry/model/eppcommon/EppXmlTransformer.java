@@ -29,8 +29,13 @@ import google.registry.model.eppoutput.EppResponse;
 import google.registry.xml.ValidationMode;
 import google.registry.xml.XmlException;
 import google.registry.xml.XmlTransformer;
+import jakarta.xml.bind.ValidationEventHandler;
+import jakarta.xml.bind.annotation.XmlSchema;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamException;
 
 /** {@link XmlTransformer} for marshalling to and from the Epp model classes.  */
 public class EppXmlTransformer  {
@@ -92,13 +97,21 @@ public class EppXmlTransformer  {
     return byteArrayOutputStream.toByteArray();
   }
 
-  private static boolean hasFeeExtension(EppOutput eppOutput) {
+  /**
+   * Returns the namespace URI of the fee extension used in an {@link EppOutput}, if any.
+   *
+   * <p>Every fee extension version lives in its own package, whose {@link XmlSchema} carries the
+   * namespace of that version.
+   */
+  private static Optional<String> findFeeExtensionUri(EppOutput eppOutput) {
     if (!eppOutput.isResponse()) {
-      return false;
+      return Optional.empty();
     }
     return eppOutput.getResponse().getExtensions().stream()
         .map(EppResponse.ResponseExtension::getClass)
-        .anyMatch(EppXmlTransformer::isFeeExtension);
+        .filter(EppXmlTransformer::isFeeExtension)
+        .map(clazz -> clazz.getPackage().getAnnotation(XmlSchema.class).namespace())
+        .findFirst();
   }
 
   @VisibleForTesting
@@ -109,11 +122,38 @@ public class EppXmlTransformer  {
   }
 
   public static byte[] marshal(EppOutput root, ValidationMode validation) throws XmlException {
-    byte[] bytes = marshal(OUTPUT_TRANSFORMER, root, validation);
-    if (hasFeeExtension(root)) {
-      return FeeExtensionXmlTagNormalizer.normalize(new String(bytes, UTF_8)).getBytes(UTF_8);
+    return marshal(root, validation, null);
+  }
+
+  /**
+   * Marshals an {@link EppOutput}, reporting schema violations to the given handler.
+   *
+   * <p>The output is serialized exactly once. If the response uses a fee extension, its tag is
+   * normalized by {@link FeeExtensionXmlTagNormalizer} while the output is being written, rather
+   * than by rewriting the marshaled text.
+   *
+   * @param eventHandler the handler for validation events, or null to fail on the first violation
+   */
+  public static byte[] marshal(
+      EppOutput root, ValidationMode validation, @Nullable ValidationEventHandler eventHandler)
+      throws XmlException {
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    Optional<String> feeExtensionUri = findFeeExtensionUri(root);
+    if (feeExtensionUri.isEmpty()) {
+      OUTPUT_TRANSFORMER.marshal(root, byteArrayOutputStream, UTF_8, validation, eventHandler);
+      return byteArrayOutputStream.toByteArray();
+    }
+    try {
+      OUTPUT_TRANSFORMER.marshal(
+          root,
+          FeeExtensionXmlTagNormalizer.createNormalizingWriter(
+              byteArrayOutputStream, feeExtensionUri.get()),
+          validation,
+          eventHandler);
+    } catch (XMLStreamException e) {
+      throw new XmlException(e);
     }
-    return bytes;
+    return byteArrayOutputStream.toByteArray();
   }
 
   @VisibleForTesting
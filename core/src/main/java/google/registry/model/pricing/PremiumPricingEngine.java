@@ -14,7 +14,11 @@
 
 package google.registry.model.pricing;
 
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.common.collect.ImmutableMap;
 import java.time.Instant;
+import java.util.Collection;
 import org.joda.money.Money;
 
 /**
@@ -33,6 +37,19 @@ public interface PremiumPricingEngine {
    */
   DomainPrices getDomainPrices(String domainName, Instant priceTime);
 
+  /**
+   * Returns the prices for each of the given fully qualified domain names at the given time.
+   *
+   * <p>Engines that look prices up remotely should override this to look up all of them at once.
+   */
+  default ImmutableMap<String, DomainPrices> getDomainPrices(
+      Collection<String> domainNames, Instant priceTime) {
+    return domainNames.stream()
+        .distinct()
+        .collect(
+            toImmutableMap(domainName -> domainName, name -> getDomainPrices(name, priceTime)));
+  }
+
   /**
    * A class containing information on premium prices for a specific domain name.
    *
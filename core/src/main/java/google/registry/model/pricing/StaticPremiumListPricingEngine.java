@@ -15,13 +15,17 @@
 package google.registry.model.pricing;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableListMultimap.toImmutableListMultimap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static google.registry.util.DomainNameUtils.getTldFromDomainName;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.net.InternetDomainName;
 import google.registry.model.tld.Tld;
 import google.registry.model.tld.label.PremiumListDao;
 import jakarta.inject.Inject;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Optional;
 import org.joda.money.Money;
 
@@ -36,10 +40,56 @@ public final class StaticPremiumListPricingEngine implements PremiumPricingEngin
   @Override
   public DomainPrices getDomainPrices(String domainName, Instant priceTime) {
     String tldStr = getTldFromDomainName(domainName);
-    String label = InternetDomainName.from(domainName).parts().get(0);
+    String label = getLabel(domainName);
     Tld tld = Tld.get(checkNotNull(tldStr, "tld"));
     Optional<Money> premiumPrice =
         tld.getPremiumListName().flatMap(pl -> PremiumListDao.getPremiumPrice(pl, label));
+    return createDomainPrices(tld, premiumPrice, priceTime);
+  }
+
+  /** Looks up the premium prices of all the labels of each TLD with a single call. */
+  @Override
+  public ImmutableMap<String, DomainPrices> getDomainPrices(
+      Collection<String> domainNames, Instant priceTime) {
+    ImmutableMap.Builder<String, DomainPrices> domainPrices = new ImmutableMap.Builder<>();
+    domainNames.stream()
+        .distinct()
+        .collect(
+            toImmutableListMultimap(
+                domainName -> checkNotNull(getTldFromDomainName(domainName), "tld"),
+                domainName -> domainName))
+        .asMap()
+        .forEach(
+            (tldStr, domainNamesOnTld) -> {
+              Tld tld = Tld.get(tldStr);
+              ImmutableMap<String, Money> premiumPrices =
+                  tld.getPremiumListName()
+                      .map(
+                          pl ->
+                              PremiumListDao.getPremiumPrices(
+                                  pl,
+                                  domainNamesOnTld.stream()
+                                      .map(StaticPremiumListPricingEngine::getLabel)
+                                      .collect(toImmutableSet())))
+                      .orElse(ImmutableMap.of());
+              domainNamesOnTld.forEach(
+                  domainName ->
+                      domainPrices.put(
+                          domainName,
+                          createDomainPrices(
+                              tld,
+                              Optional.ofNullable(premiumPrices.get(getLabel(domainName))),
+                              priceTime)));
+            });
+    return domainPrices.build();
+  }
+
+  private static String getLabel(String domainName) {
+    return InternetDomainName.from(domainName).parts().get(0);
+  }
+
+  private static DomainPrices createDomainPrices(
+      Tld tld, Optional<Money> premiumPrice, Instant priceTime) {
     return DomainPrices.create(
         premiumPrice.isPresent(),
         premiumPrice.orElse(tld.getCreateBillingCost(priceTime)),
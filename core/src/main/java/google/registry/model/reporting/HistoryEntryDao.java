@@ -22,7 +22,10 @@ import static google.registry.util.DateTimeUtils.START_INSTANT;
 
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Streams;
 import google.registry.model.EppResource;
 import google.registry.model.domain.Domain;
@@ -33,13 +36,21 @@ import google.registry.persistence.VKey;
 import google.registry.persistence.transaction.CriteriaQueryBuilder;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BinaryOperator;
 import java.util.stream.Stream;
 
 /** Retrieves {@link HistoryEntry} descendants (e.g. {@link DomainHistory}). */
 public class HistoryEntryDao {
 
+  /** The maximum number of resources whose history objects are loaded in a single query. */
+  private static final int BATCH_SIZE = 1000;
+
   public static ImmutableMap<Class<? extends EppResource>, Class<? extends HistoryEntry>>
       RESOURCE_TYPES_TO_HISTORY_TYPES =
           ImmutableMap.of(
@@ -110,6 +121,85 @@ public class HistoryEntryDao {
         .collect(toImmutableList());
   }
 
+  /**
+   * Loads the most recent history object for the given {@link EppResource} at or before the given
+   * time, if there is one.
+   *
+   * <p>Unlike {@link #loadHistoryObjectsForResource(VKey, Instant, Instant)}, this only loads that
+   * single history object, using the index on the repo ID and modification time. History objects
+   * with the same modification time are ordered by revision ID.
+   */
+  public static Optional<HistoryEntry> loadMostRecentHistoryObjectForResource(
+      VKey<? extends EppResource> resourceKey, Instant timestamp) {
+    Class<? extends HistoryEntry> historyClass = getHistoryClassFromParent(resourceKey.getKind());
+    return tm().reTransact(
+            () ->
+                tm().getEntityManager()
+                    .createQuery(
+                        String.format(
+                            "FROM %s WHERE repoId = :repoId AND modificationTime <= :timestamp"
+                                + " ORDER BY modificationTime DESC, revisionId DESC",
+                            historyClass.getName()),
+                        historyClass)
+                    .setParameter("repoId", resourceKey.getKey().toString())
+                    .setParameter("timestamp", timestamp)
+                    .setMaxResults(1)
+                    .getResultStream()
+                    .findFirst()
+                    .map(HistoryEntry.class::cast));
+  }
+
+  /**
+   * Loads the most recent history object at or before the given time for each of the given {@link
+   * EppResource}s, which may be of different types.
+   *
+   * <p>This is the batched version of {@link #loadMostRecentHistoryObjectForResource}, which takes
+   * one query per resource type and batch of up to 1000 resources. Resources that have no history
+   * at that time are left out of the returned map.
+   */
+  public static ImmutableMap<VKey<? extends EppResource>, HistoryEntry>
+      loadMostRecentHistoryObjectsForResources(
+          Collection<? extends VKey<? extends EppResource>> resourceKeys, Instant timestamp) {
+    ImmutableListMultimap.Builder<Class<? extends EppResource>, String> repoIdsByTypeBuilder =
+        new ImmutableListMultimap.Builder<>();
+    for (VKey<? extends EppResource> resourceKey : ImmutableSet.copyOf(resourceKeys)) {
+      repoIdsByTypeBuilder.put(resourceKey.getKind(), resourceKey.getKey().toString());
+    }
+    ImmutableListMultimap<Class<? extends EppResource>, String> repoIdsByType =
+        repoIdsByTypeBuilder.build();
+    return tm().reTransact(
+            () -> {
+              Map<VKey<? extends EppResource>, HistoryEntry> historyObjects = new HashMap<>();
+              for (Class<? extends EppResource> resourceType : repoIdsByType.keySet()) {
+                Class<? extends HistoryEntry> historyClass =
+                    getHistoryClassFromParent(resourceType);
+                for (List<String> batch :
+                    Iterables.partition(repoIdsByType.get(resourceType), BATCH_SIZE)) {
+                  tm().getEntityManager()
+                      .createQuery(
+                          String.format(
+                              "FROM %1$s h WHERE h.repoId IN :repoIds AND h.modificationTime = "
+                                  + "(SELECT MAX(h2.modificationTime) FROM %1$s h2 WHERE "
+                                  + "h2.repoId = h.repoId AND h2.modificationTime <= :timestamp)",
+                              historyClass.getName()),
+                          historyClass)
+                      .setParameter("repoIds", batch)
+                      .setParameter("timestamp", timestamp)
+                      .getResultStream()
+                      // Several history objects can share the most recent modification time.
+                      .forEach(
+                          historyObject ->
+                              historyObjects.merge(
+                                  VKey.create(resourceType, historyObject.getRepoId()),
+                                  historyObject,
+                                  BinaryOperator.maxBy(
+                                      Comparator.comparingLong(HistoryEntry::getRevisionId))));
+                }
+              }
+              return ImmutableMap.copyOf(historyObjects);
+            });
+  }
+
   /** Loads all history objects from all time from the given registrars. */
   public static Iterable<HistoryEntry> loadHistoryObjectsByRegistrars(
       ImmutableCollection<String> registrarIds) {
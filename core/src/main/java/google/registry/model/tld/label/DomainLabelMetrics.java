@@ -14,12 +14,18 @@
 
 package google.registry.model.tld.label;
 
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.monitoring.metrics.EventMetric;
 import com.google.monitoring.metrics.IncrementableMetric;
 import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.Metric;
 import com.google.monitoring.metrics.MetricRegistryImpl;
+import java.util.function.ToLongFunction;
 
 /** Instrumentation for reserved lists. */
 class DomainLabelMetrics {
@@ -120,6 +126,57 @@ class DomainLabelMetrics {
               "count",
               RESERVED_LIST_HIT_LABEL_DESCRIPTORS);
 
+  /** Labels attached to the resident premium list metrics. */
+  private static final ImmutableSet<LabelDescriptor> RESIDENT_PREMIUM_LIST_LABEL_DESCRIPTORS =
+      ImmutableSet.of(LabelDescriptor.create("premium_list", "Premium list name."));
+
+  /** Metric recording the time taken to load all the entries of a resident premium list. */
+  @VisibleForTesting
+  static final EventMetric residentPremiumListLoadTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/domain_label/premium/resident/load_time",
+              "Resident premium list load time",
+              "milliseconds",
+              RESIDENT_PREMIUM_LIST_LABEL_DESCRIPTORS,
+              EventMetric.DEFAULT_FITTER);
+
+  /** Metric reporting the number of entries of each resident premium list held in memory. */
+  static final Metric<Long> residentPremiumListEntries =
+      MetricRegistryImpl.getDefault()
+          .newGauge(
+              "/domain_label/premium/resident/entries",
+              "Number of resident premium list entries held in memory",
+              "count",
+              RESIDENT_PREMIUM_LIST_LABEL_DESCRIPTORS,
+              () -> getResidentPremiumListValues(ResidentPremiumPrices::size),
+              Long.class);
+
+  /** Metric reporting the approximate memory taken by each resident premium list. */
+  static final Metric<Long> residentPremiumListBytes =
+      MetricRegistryImpl.getDefault()
+          .newGauge(
+              "/domain_label/premium/resident/bytes",
+              "Approximate memory taken by resident premium lists",
+              "bytes",
+              RESIDENT_PREMIUM_LIST_LABEL_DESCRIPTORS,
+              () -> getResidentPremiumListValues(ResidentPremiumPrices::getSizeInBytes),
+              Long.class);
+
+  private static ImmutableMap<ImmutableList<String>, Long> getResidentPremiumListValues(
+      ToLongFunction<ResidentPremiumPrices> valueFunction) {
+    return PremiumListDao.residentPremiumPrices.entrySet().stream()
+        .collect(
+            toImmutableMap(
+                entry -> ImmutableList.of(entry.getKey()),
+                entry -> valueFunction.applyAsLong(entry.getValue())));
+  }
+
+  /** Records the time taken to load a resident premium list. */
+  static void recordResidentPremiumListLoad(String premiumListName, double elapsedMillis) {
+    residentPremiumListLoadTime.record(elapsedMillis, premiumListName);
+  }
+
   /** Update all three reserved list metrics. */
   static void recordReservedListCheckOutcome(
       String tld, ImmutableSet<MetricsReservedListMatch> matches, double elapsedMillis) {
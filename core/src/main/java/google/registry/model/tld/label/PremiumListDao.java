@@ -15,24 +15,42 @@
 package google.registry.model.tld.label;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.collect.ImmutableSetMultimap.toImmutableSetMultimap;
 import static google.registry.config.RegistryConfig.getDomainLabelListCacheDuration;
+import static google.registry.config.RegistryConfig.getResidentPremiumLists;
 import static google.registry.config.RegistryConfig.getSingletonCachePersistDuration;
 import static google.registry.config.RegistryConfig.getStaticPremiumListMaxCachedEntries;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
 import static google.registry.util.CollectionUtils.isNullOrEmpty;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.flogger.FluentLogger;
 import google.registry.model.CacheUtils;
 import google.registry.model.tld.label.PremiumList.PremiumEntry;
 import google.registry.util.NonFinalForTesting;
 import java.math.BigDecimal;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.joda.money.CurrencyUnit;
 import org.joda.money.Money;
 
@@ -46,6 +64,8 @@ import org.joda.money.Money;
  */
 public final class PremiumListDao {
 
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   /**
    * In-memory cache for premium lists.
    *
@@ -62,6 +82,7 @@ public final class PremiumListDao {
   public static void setPremiumListCacheForTest(Optional<Duration> expiry) {
     Duration effectiveExpiry = expiry.orElse(getDomainLabelListCacheDuration());
     premiumListCache = createPremiumListCache(effectiveExpiry);
+    residentPremiumPrices.clear();
   }
 
   @VisibleForTesting
@@ -95,9 +116,42 @@ public final class PremiumListDao {
       Duration cachePersistDuration) {
     return CacheUtils.newCacheBuilder(cachePersistDuration)
         .maximumSize(getStaticPremiumListMaxCachedEntries())
-        .build(PremiumListDao::getPriceForLabelUncached);
+        .build(
+            new CacheLoader<>() {
+              @Override
+              public Optional<BigDecimal> load(RevisionIdAndLabel revisionIdAndLabel) {
+                return getPriceForLabelUncached(revisionIdAndLabel);
+              }
+
+              @Override
+              public Map<RevisionIdAndLabel, Optional<BigDecimal>> loadAll(
+                  Set<? extends RevisionIdAndLabel> revisionIdsAndLabels) {
+                return getPricesForLabelsUncached(revisionIdsAndLabels);
+              }
+            });
   }
 
+  /**
+   * All the prices of the current revision of each resident premium list, keyed by list name.
+   *
+   * <p>Premium lists named in the {@code residentPremiumLists} config are loaded entirely the first
+   * time one of their prices is looked up, and then reloaded the first time a price is looked up
+   * after {@link #premiumListCache} picks up a new revision. Lookups in these lists never consult
+   * the Bloom filter, {@link #premiumEntryCache} or the database.
+   */
+  static final ConcurrentMap<String, ResidentPremiumPrices> residentPremiumPrices =
+      new ConcurrentHashMap<>();
+
+  /**
+   * The loads of resident premium list revisions that are in progress, keyed by revision ID.
+   *
+   * <p>Lookups that need a revision while it is being loaded wait for that load instead of loading
+   * it again.
+   */
+  @VisibleForTesting
+  static final ConcurrentMap<Long, CompletableFuture<ResidentPremiumPrices>> residentPriceLoads =
+      new ConcurrentHashMap<>();
+
   /**
    * Returns the most recent revision of the PremiumList with the specified name, if it exists.
    *
@@ -118,6 +172,10 @@ public final class PremiumListDao {
       return Optional.empty();
     }
     PremiumList loadedList = maybeLoadedList.get();
+    Optional<ResidentPremiumPrices> residentPrices = getResidentPrices(loadedList);
+    if (residentPrices.isPresent()) {
+      return residentPrices.get().getPrice(label);
+    }
     // Consult the bloom filter and immediately return if the label definitely isn't premium.
     if (!loadedList.getBloomFilter().mightContain(label)) {
       return Optional.empty();
@@ -127,6 +185,49 @@ public final class PremiumListDao {
     return premiumEntryCache.get(revisionIdAndLabel).map(loadedList::convertAmountToMoney);
   }
 
+  /**
+   * Returns the premium prices for those of the specified labels that are premium in the list.
+   *
+   * <p>This is equivalent to calling {@link #getPremiumPrice} for each label, but the prices that
+   * aren't cached yet are all loaded with a single query.
+   */
+  public static ImmutableMap<String, Money> getPremiumPrices(
+      String premiumListName, Collection<String> labels) {
+    Optional<PremiumList> maybeLoadedList = getLatestRevision(premiumListName);
+    if (maybeLoadedList.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    PremiumList loadedList = maybeLoadedList.get();
+    Optional<ResidentPremiumPrices> residentPrices = getResidentPrices(loadedList);
+    if (residentPrices.isPresent()) {
+      ImmutableMap.Builder<String, Money> prices = new ImmutableMap.Builder<>();
+      labels.stream()
+          .distinct()
+          .forEach(
+              label -> residentPrices.get().getPrice(label).ifPresent(p -> prices.put(label, p)));
+      return prices.build();
+    }
+    // Consult the bloom filter and leave out the labels that definitely aren't premium.
+    ImmutableSet<RevisionIdAndLabel> revisionIdsAndLabels =
+        labels.stream()
+            .filter(label -> loadedList.getBloomFilter().mightContain(label))
+            .map(label -> RevisionIdAndLabel.create(loadedList.getRevisionId(), label))
+            .collect(toImmutableSet());
+    if (revisionIdsAndLabels.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    ImmutableMap.Builder<String, Money> prices = new ImmutableMap.Builder<>();
+    premiumEntryCache
+        .getAll(revisionIdsAndLabels)
+        .forEach(
+            (revisionIdAndLabel, price) ->
+                price.ifPresent(
+                    p ->
+                        prices.put(
+                            revisionIdAndLabel.label(), loadedList.convertAmountToMoney(p))));
+    return prices.build();
+  }
+
   public static PremiumList save(String name, CurrencyUnit currencyUnit, List<String> inputData) {
     checkArgument(!inputData.isEmpty(), "New premium list data cannot be empty");
     tm().assertInTransaction();
@@ -167,6 +268,102 @@ public final class PremiumListDao {
               }
             });
     premiumListCache.invalidate(premiumList.getName());
+    residentPremiumPrices.remove(premiumList.getName());
+  }
+
+  /**
+   * Returns all the prices of the given revision if its list is resident, loading them if this is
+   * the first lookup since the list's revision changed.
+   */
+  private static Optional<ResidentPremiumPrices> getResidentPrices(PremiumList loadedList) {
+    String name = loadedList.getName();
+    if (!getResidentPremiumLists().contains(name)) {
+      return Optional.empty();
+    }
+    long revisionId = loadedList.getRevisionId();
+    ResidentPremiumPrices prices = residentPremiumPrices.get(name);
+    if (prices == null || prices.getRevisionId() < revisionId) {
+      prices = awaitResidentPricesLoad(loadedList);
+    }
+    return Optional.of(prices);
+  }
+
+  /**
+   * Loads all the prices of the given revision, or waits for a concurrent load of it to finish.
+   *
+   * <p>The prices are loaded outside {@link #residentPremiumPrices}, so that the load doesn't block
+   * other writes to the map. Lookups that still see an older revision afterwards use the newer
+   * prices, which are already in effect.
+   */
+  private static ResidentPremiumPrices awaitResidentPricesLoad(PremiumList loadedList) {
+    long revisionId = loadedList.getRevisionId();
+    CompletableFuture<ResidentPremiumPrices> load = new CompletableFuture<>();
+    CompletableFuture<ResidentPremiumPrices> existingLoad =
+        residentPriceLoads.putIfAbsent(revisionId, load);
+    if (existingLoad != null) {
+      try {
+        return existingLoad.join();
+      } catch (CompletionException e) {
+        throwIfUnchecked(e.getCause());
+        throw e;
+      }
+    }
+    try {
+      // The revision may have been loaded since it was found missing.
+      ResidentPremiumPrices prices = residentPremiumPrices.get(loadedList.getName());
+      if (prices == null || prices.getRevisionId() < revisionId) {
+        prices =
+            residentPremiumPrices.merge(
+                loadedList.getName(),
+                loadResidentPrices(loadedList),
+                (existing, loaded) ->
+                    existing.getRevisionId() >= loaded.getRevisionId() ? existing : loaded);
+      }
+      load.complete(prices);
+      return prices;
+    } catch (Throwable t) {
+      load.completeExceptionally(t);
+      throw t;
+    } finally {
+      residentPriceLoads.remove(revisionId, load);
+    }
+  }
+
+  private static ResidentPremiumPrices loadResidentPrices(PremiumList premiumList) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    ResidentPremiumPrices prices =
+        tm().reTransact(
+                () -> {
+                  long count =
+                      tm().query(
+                              "SELECT COUNT(*) FROM PremiumEntry WHERE revisionId = :revisionId",
+                              Long.class)
+                          .setParameter("revisionId", premiumList.getRevisionId())
+                          .getSingleResult();
+                  ResidentPremiumPrices.Builder builder =
+                      new ResidentPremiumPrices.Builder(
+                          premiumList.getRevisionId(),
+                          premiumList.getCurrency(),
+                          Math.toIntExact(count));
+                  tm().query(
+                          "SELECT pe.domainLabel, pe.price FROM PremiumEntry pe"
+                              + " WHERE pe.revisionId = :revisionId",
+                          Object[].class)
+                      .setParameter("revisionId", premiumList.getRevisionId())
+                      .getResultStream()
+                      .forEach(row -> builder.put((String) row[0], (BigDecimal) row[1]));
+                  return builder.build();
+                });
+    DomainLabelMetrics.recordResidentPremiumListLoad(
+        premiumList.getName(), stopwatch.elapsed().toMillis());
+    logger.atInfo().log(
+        "Loaded %d entries of revision %d of premium list %s into memory in %s, taking %d bytes.",
+        prices.size(),
+        premiumList.getRevisionId(),
+        premiumList.getName(),
+        stopwatch.elapsed(),
+        prices.getSizeInBytes());
+    return prices;
   }
 
   private static Optional<PremiumList> getLatestRevisionUncached(String premiumListName) {
@@ -214,6 +411,43 @@ public final class PremiumListDao {
                     .findFirst());
   }
 
+  /**
+   * Loads the prices for the given revisionId + label combinations, with a single query per
+   * revision. Labels that aren't premium are mapped to empty so that their absence is cached too.
+   */
+  static ImmutableMap<RevisionIdAndLabel, Optional<BigDecimal>> getPricesForLabelsUncached(
+      Set<? extends RevisionIdAndLabel> revisionIdsAndLabels) {
+    ImmutableSetMultimap<Long, String> labelsByRevisionId =
+        revisionIdsAndLabels.stream()
+            .collect(
+                toImmutableSetMultimap(RevisionIdAndLabel::revisionId, RevisionIdAndLabel::label));
+    Map<RevisionIdAndLabel, BigDecimal> prices = new HashMap<>();
+    tm().reTransact(
+            () ->
+                labelsByRevisionId
+                    .asMap()
+                    .forEach(
+                        (revisionId, labels) ->
+                            tm().query(
+                                    "SELECT pe.domainLabel, pe.price FROM PremiumEntry pe WHERE"
+                                        + " pe.revisionId = :revisionId AND pe.domainLabel IN"
+                                        + " :labels",
+                                    Object[].class)
+                                .setParameter("revisionId", revisionId)
+                                .setParameter("labels", labels)
+                                .getResultStream()
+                                .forEach(
+                                    row ->
+                                        prices.put(
+                                            RevisionIdAndLabel.create(revisionId, (String) row[0]),
+                                            (BigDecimal) row[1]))));
+    return revisionIdsAndLabels.stream()
+        .collect(
+            toImmutableMap(
+                revisionIdAndLabel -> revisionIdAndLabel,
+                revisionIdAndLabel -> Optional.ofNullable(prices.get(revisionIdAndLabel))));
+  }
+
   /**
    * Returns all {@link PremiumEntry PremiumEntries} in the list with the given name.
    *
@@ -0,0 +1,113 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.tld.label;
+
+import com.google.common.primitives.ImmutableLongArray;
+import google.registry.model.PackedStringIndex;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Optional;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+
+/**
+ * An immutable, compact table of all the prices of a single {@link PremiumList} revision.
+ *
+ * <p>Labels are looked up in a {@link PackedStringIndex}, and the prices are kept in the same entry
+ * order as amounts in minor units of the list's currency.
+ */
+final class ResidentPremiumPrices {
+
+  private final long revisionId;
+  private final CurrencyUnit currency;
+  private final PackedStringIndex labels;
+
+  /** Price of each entry, in minor units of {@link #currency}. */
+  private final long[] pricesInMinorUnits;
+
+  private ResidentPremiumPrices(
+      long revisionId, CurrencyUnit currency, PackedStringIndex labels, long[] pricesInMinorUnits) {
+    this.revisionId = revisionId;
+    this.currency = currency;
+    this.labels = labels;
+    this.pricesInMinorUnits = pricesInMinorUnits;
+  }
+
+  /** Creates a table of the given labels and their prices in the given currency. */
+  static ResidentPremiumPrices create(
+      long revisionId, CurrencyUnit currency, Map<String, BigDecimal> labelsToPrices) {
+    Builder builder = new Builder(revisionId, currency, labelsToPrices.size());
+    labelsToPrices.forEach(builder::put);
+    return builder.build();
+  }
+
+  long getRevisionId() {
+    return revisionId;
+  }
+
+  /** Returns the price of the given label if it is premium, empty otherwise. */
+  Optional<Money> getPrice(String label) {
+    int entry = labels.indexOf(label);
+    return entry < 0
+        ? Optional.empty()
+        : Optional.of(Money.ofMinor(currency, pricesInMinorUnits[entry]));
+  }
+
+  /** Returns the number of labels in the table. */
+  int size() {
+    return labels.size();
+  }
+
+  /** Returns the approximate number of bytes taken by the arrays of the table. */
+  long getSizeInBytes() {
+    return labels.getSizeInBytes() + 8L * pricesInMinorUnits.length;
+  }
+
+  /**
+   * A builder for {@link ResidentPremiumPrices}, which packs entries as they are added.
+   *
+   * <p>Each label must only be added once.
+   */
+  static final class Builder {
+
+    private final long revisionId;
+    private final CurrencyUnit currency;
+    private final PackedStringIndex.Builder labels;
+    private final ImmutableLongArray.Builder pricesInMinorUnits;
+
+    Builder(long revisionId, CurrencyUnit currency, int expectedSize) {
+      this.revisionId = revisionId;
+      this.currency = currency;
+      labels = PackedStringIndex.builder(expectedSize);
+      pricesInMinorUnits = ImmutableLongArray.builder(expectedSize);
+    }
+
+    void put(String label, BigDecimal price) {
+      labels.add(label);
+      // Same rounding as PremiumList.convertAmountToMoney().
+      pricesInMinorUnits.add(
+          price
+              .setScale(currency.getDecimalPlaces(), RoundingMode.HALF_EVEN)
+              .unscaledValue()
+              .longValueExact());
+    }
+
+    ResidentPremiumPrices build() {
+      return new ResidentPremiumPrices(
+          revisionId, currency, labels.build(), pricesInMinorUnits.build().toArray());
+    }
+  }
+}
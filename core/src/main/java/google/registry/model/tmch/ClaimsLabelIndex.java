@@ -0,0 +1,108 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.tmch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.primitives.ImmutableIntArray;
+import google.registry.model.PackedStringIndex;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An immutable, compact index of the labels of a {@link ClaimsList} and their claim keys.
+ *
+ * <p>Labels are looked up in a {@link PackedStringIndex}, and the claim keys, which are ASCII, are
+ * packed into a byte array in the same entry order.
+ */
+final class ClaimsLabelIndex {
+
+  private final PackedStringIndex labels;
+
+  /** Packed ASCII bytes of all the claim keys, in entry order. */
+  private final byte[] claimKeys;
+
+  /** Offsets of each claim key in {@link #claimKeys}, followed by the total length. */
+  private final int[] claimKeyOffsets;
+
+  private ClaimsLabelIndex(PackedStringIndex labels, byte[] claimKeys, int[] claimKeyOffsets) {
+    this.labels = labels;
+    this.claimKeys = claimKeys;
+    this.claimKeyOffsets = claimKeyOffsets;
+  }
+
+  /** Creates an index of the given labels and their claim keys. */
+  static ClaimsLabelIndex create(Map<String, String> labelsToKeys) {
+    Builder builder = new Builder(labelsToKeys.size());
+    labelsToKeys.forEach(builder::put);
+    return builder.build();
+  }
+
+  /** Returns the claim key for the given label if there is one, empty otherwise. */
+  Optional<String> getClaimKey(String label) {
+    int entry = labels.indexOf(label);
+    if (entry < 0) {
+      return Optional.empty();
+    }
+    int start = claimKeyOffsets[entry];
+    return Optional.of(new String(claimKeys, start, claimKeyOffsets[entry + 1] - start, US_ASCII));
+  }
+
+  /** Returns the number of labels in the index. */
+  int size() {
+    return labels.size();
+  }
+
+  /** Returns the approximate number of bytes taken by the arrays of the index. */
+  long getSizeInBytes() {
+    return labels.getSizeInBytes() + claimKeys.length + 4L * claimKeyOffsets.length;
+  }
+
+  /**
+   * A builder for {@link ClaimsLabelIndex}, which packs entries as they are added.
+   *
+   * <p>Each label must only be added once.
+   */
+  static final class Builder {
+
+    private final PackedStringIndex.Builder labels;
+    private final ByteArrayOutputStream claimKeys = new ByteArrayOutputStream();
+    private final ImmutableIntArray.Builder claimKeyOffsets;
+
+    Builder(int expectedSize) {
+      labels = PackedStringIndex.builder(expectedSize);
+      claimKeyOffsets = ImmutableIntArray.builder(expectedSize + 1);
+    }
+
+    void put(String label, String claimKey) {
+      checkArgument(CharMatcher.ascii().matchesAllOf(label), "Label is not ASCII: %s", label);
+      checkArgument(
+          CharMatcher.ascii().matchesAllOf(claimKey), "Claim key is not ASCII: %s", claimKey);
+      labels.add(label);
+      claimKeyOffsets.add(claimKeys.size());
+      claimKeys.writeBytes(claimKey.getBytes(US_ASCII));
+    }
+
+    ClaimsLabelIndex build() {
+      return new ClaimsLabelIndex(
+          labels.build(),
+          claimKeys.toByteArray(),
+          claimKeyOffsets.add(claimKeys.size()).build().toArray());
+    }
+  }
+}
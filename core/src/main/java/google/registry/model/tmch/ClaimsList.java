@@ -41,6 +41,7 @@ import jakarta.persistence.Transient;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Optional;
+import javax.annotation.Nullable;
 
 /**
  * A list of TMCH claims labels and their associated claims keys.
@@ -102,6 +103,14 @@ public class ClaimsList extends ImmutableObject {
   final LoadingCache<String, Optional<String>> claimKeyCache =
       CacheUtils.newCacheBuilder().build(this::getClaimKeyUncached);
 
+  /**
+   * A compact index of all the mappings from labels to claim keys.
+   *
+   * <p>This is attached by {@link ClaimsListDao} to the instances it returns, and replaces both
+   * {@link #labelsToKeys} and the cache above for looking up claim keys.
+   */
+  @Insignificant @Transient @Nullable ClaimsLabelIndex labelIndex;
+
   @RecursivePreRemove
   void preRemove() {
     tm().query("DELETE FROM ClaimsEntry WHERE revisionId = :revisionId")
@@ -151,12 +160,13 @@ public class ClaimsList extends ImmutableObject {
   /**
    * Returns the claim key for a given domain if there is one, empty otherwise.
    *
-   * <p>Note that this may do a database query. For checking multiple keys against the claims list
-   * it may be more efficient to use {@link #getLabelsToKeys()} first, as this will prefetch all
-   * entries and cache them locally.
+   * <p>Instances returned by {@link ClaimsListDao} look the label up in memory. Otherwise, this may
+   * do a database query. For checking multiple keys against the claims list it may be more
+   * efficient to use {@link #getLabelsToKeys()} first, as this will prefetch all entries and cache
+   * them locally.
    */
   public Optional<String> getClaimKey(String label) {
-    return claimKeyCache.get(label);
+    return labelIndex != null ? labelIndex.getClaimKey(label) : claimKeyCache.get(label);
   }
 
   /**
@@ -188,6 +198,9 @@ public class ClaimsList extends ImmutableObject {
    * previously cached by calling {@link #getLabelsToKeys()}.
    */
   public long size() {
+    if (labelIndex != null) {
+      return labelIndex.size();
+    }
     if (labelsToKeys == null) {
       return tm().createQueryComposer(ClaimsEntry.class)
           .where("revisionId", EQ, revisionId)
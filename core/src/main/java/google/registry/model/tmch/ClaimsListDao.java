@@ -20,14 +20,22 @@ import static google.registry.util.DateTimeUtils.START_INSTANT;
 
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.FluentLogger;
 import google.registry.model.CacheUtils;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
 
 /** Data access object for {@link ClaimsList}. */
 public class ClaimsListDao {
 
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   /**
    * Cache of the {@link ClaimsList} instance.
    *
@@ -42,6 +50,25 @@ public class ClaimsListDao {
   public static void setCacheForTest(Optional<Duration> expiry) {
     Duration effectiveExpiry = expiry.orElse(getClaimsListCacheDuration());
     CACHE = createCache(effectiveExpiry);
+    currentIndex.set(null);
+  }
+
+  /**
+   * The label index of the most recently loaded claims list.
+   *
+   * <p>Each revision of the claims list is immutable, so its index is only built once, and the
+   * periodic reloads of the {@link #CACHE} reuse it until a new revision is saved.
+   */
+  private static final AtomicReference<IndexedRevision> currentIndex = new AtomicReference<>();
+
+  /** The label index of a revision of the claims list. */
+  private record IndexedRevision(
+      @Nullable Long revisionId, Instant tmdbGenerationTime, ClaimsLabelIndex index) {
+
+    boolean isFor(ClaimsList claimsList) {
+      return Objects.equals(revisionId, claimsList.revisionId)
+          && tmdbGenerationTime.equals(claimsList.getTmdbGenerationTime());
+    }
   }
 
   private static LoadingCache<Class<ClaimsListDao>, ClaimsList> createCache(Duration expiry) {
@@ -63,6 +90,7 @@ public class ClaimsListDao {
                   tm().insert(entity);
                   return entity;
                 });
+    persisted.labelIndex = indexRevision(persisted);
     CACHE.put(ClaimsListDao.class, persisted);
     return persisted;
   }
@@ -77,13 +105,71 @@ public class ClaimsListDao {
    * doesn't exist.
    */
   private static ClaimsList getUncached() {
+    ClaimsList claimsList =
+        tm().reTransact(
+                () ->
+                    tm().query("FROM ClaimsList ORDER BY revisionId DESC", ClaimsList.class)
+                        .setMaxResults(1)
+                        .getResultStream()
+                        .findFirst())
+            .orElse(ClaimsList.create(START_INSTANT, ImmutableMap.of()));
+    claimsList.labelIndex = getLabelIndex(claimsList);
+    return claimsList;
+  }
+
+  /**
+   * Returns the label index of the given claims list, reusing the current one if it's for the same
+   * revision.
+   */
+  private static ClaimsLabelIndex getLabelIndex(ClaimsList claimsList) {
+    IndexedRevision indexedRevision = currentIndex.get();
+    if (indexedRevision != null && indexedRevision.isFor(claimsList)) {
+      return indexedRevision.index();
+    }
+    return indexRevision(claimsList);
+  }
+
+  /** Builds the label index of the given claims list and makes it the current one. */
+  private static ClaimsLabelIndex indexRevision(ClaimsList claimsList) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    ClaimsLabelIndex index =
+        claimsList.labelsToKeys != null
+            ? ClaimsLabelIndex.create(claimsList.labelsToKeys)
+            : loadLabelIndex(claimsList.getRevisionId());
+    currentIndex.set(
+        new IndexedRevision(claimsList.revisionId, claimsList.getTmdbGenerationTime(), index));
+    logger.atInfo().log(
+        "Indexed %d claims of revision %s in %s, taking %d bytes.",
+        index.size(), claimsList.revisionId, stopwatch.elapsed(), index.getSizeInBytes());
+    return index;
+  }
+
+  /**
+   * Builds the label index of a revision from its entries in the database.
+   *
+   * <p>Only the labels and claim keys are selected, so that the entries don't pile up in the
+   * persistence context while being streamed.
+   */
+  private static ClaimsLabelIndex loadLabelIndex(long revisionId) {
     return tm().reTransact(
-            () ->
-                tm().query("FROM ClaimsList ORDER BY revisionId DESC", ClaimsList.class)
-                    .setMaxResults(1)
-                    .getResultStream()
-                    .findFirst())
-        .orElse(ClaimsList.create(START_INSTANT, ImmutableMap.of()));
+            () -> {
+              ClaimsLabelIndex.Builder builder =
+                  new ClaimsLabelIndex.Builder(
+                      tm().query(
+                              "SELECT COUNT(*) FROM ClaimsEntry WHERE revisionId = :revisionId",
+                              Long.class)
+                          .setParameter("revisionId", revisionId)
+                          .getSingleResult()
+                          .intValue());
+              tm().query(
+                      "SELECT domainLabel, claimKey FROM ClaimsEntry"
+                          + " WHERE revisionId = :revisionId",
+                      Object[].class)
+                  .setParameter("revisionId", revisionId)
+                  .getResultStream()
+                  .forEach(row -> builder.put((String) row[0], (String) row[1]));
+              return builder.build();
+            });
   }
 
   private ClaimsListDao() {}
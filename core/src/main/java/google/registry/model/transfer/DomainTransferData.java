@@ -158,6 +158,11 @@ public class DomainTransferData extends BaseTransferObject implements Buildable
     return transferPeriod;
   }
 
+  @Nullable
+  public String getRepoId() {
+    return repoId;
+  }
+
   public Long getHistoryEntryId() {
     return historyEntryId;
   }
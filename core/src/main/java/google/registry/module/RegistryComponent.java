@@ -21,6 +21,7 @@ import dagger.Module;
 import dagger.Provides;
 import google.registry.batch.BatchModule;
 import google.registry.bigquery.BigqueryModule;
+import google.registry.cache.CacheInvalidationBus;
 import google.registry.cache.CacheModule;
 import google.registry.config.CloudTasksUtilsModule;
 import google.registry.config.CredentialModule;
@@ -54,6 +55,7 @@ import google.registry.request.auth.RequestAuthenticator;
 import google.registry.util.UtilsModule;
 import jakarta.inject.Provider;
 import jakarta.inject.Singleton;
+import java.util.Optional;
 
 /** Dagger component with instance lifetime. */
 @Singleton
@@ -95,6 +97,8 @@ interface RegistryComponent {
 
   Lazy<MetricReporter> metricReporter();
 
+  Optional<CacheInvalidationBus> cacheInvalidationBus();
+
   @Config("projectId")
   String projectId();
 
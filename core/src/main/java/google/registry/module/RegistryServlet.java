@@ -24,6 +24,7 @@ import static google.registry.util.StringGenerator.Alphabets.HEX_DIGITS_ONLY;
 
 import com.google.monitoring.metrics.MetricReporter;
 import dagger.Lazy;
+import google.registry.cache.CacheInvalidationBus;
 import google.registry.request.RequestHandler;
 import google.registry.util.GcpJsonFormatter;
 import google.registry.util.JdkLoggerConfig;
@@ -75,6 +76,13 @@ public class RegistryServlet extends ServletBase {
     this.projectId = component.projectId();
   }
 
+  @Override
+  public void init() {
+    super.init();
+    // Subscribe to cache invalidations right away, rather than on the first use of a cache.
+    component.cacheInvalidationBus().ifPresent(CacheInvalidationBus::startSubscriber);
+  }
+
   @Override
   public void service(HttpServletRequest req, HttpServletResponse rsp) throws IOException {
     setCurrentTraceId(traceId());
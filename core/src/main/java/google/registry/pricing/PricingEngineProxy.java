@@ -16,12 +16,15 @@ package google.registry.pricing;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableListMultimap.toImmutableListMultimap;
 import static google.registry.util.DomainNameUtils.getTldFromDomainName;
 
+import com.google.common.collect.ImmutableMap;
 import google.registry.model.pricing.PremiumPricingEngine;
 import google.registry.model.pricing.PremiumPricingEngine.DomainPrices;
 import google.registry.model.tld.Tld;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Map;
 import org.joda.money.Money;
 
@@ -57,11 +60,33 @@ public final class PricingEngineProxy {
    * domain is under.
    */
   public static DomainPrices getPricesForDomainName(String domainName, Instant priceTime) {
-    String tld = getTldFromDomainName(domainName);
+    return getPricingEngine(getTldFromDomainName(domainName))
+        .getDomainPrices(domainName, priceTime);
+  }
+
+  /**
+   * Returns the full {@link DomainPrices} details for each of the given domain names, letting each
+   * {@link PremiumPricingEngine} look up the prices of all the names on its TLDs at once.
+   */
+  public static ImmutableMap<String, DomainPrices> getPricesForDomainNames(
+      Collection<String> domainNames, Instant priceTime) {
+    ImmutableMap.Builder<String, DomainPrices> prices = new ImmutableMap.Builder<>();
+    domainNames.stream()
+        .distinct()
+        .collect(
+            toImmutableListMultimap(
+                domainName -> getPricingEngine(getTldFromDomainName(domainName)),
+                domainName -> domainName))
+        .asMap()
+        .forEach((engine, names) -> prices.putAll(engine.getDomainPrices(names, priceTime)));
+    return prices.buildOrThrow();
+  }
+
+  private static PremiumPricingEngine getPricingEngine(String tld) {
     String clazz = Tld.get(tld).getPricingEngineClassName();
     PremiumPricingEngine engine = premiumPricingEngines.get(clazz);
     checkState(engine != null, "Could not load pricing engine %s for TLD %s", clazz, tld);
-    return engine.getDomainPrices(domainName, priceTime);
+    return engine;
   }
 
   private PricingEngineProxy() {}
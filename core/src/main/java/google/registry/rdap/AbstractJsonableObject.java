@@ -19,6 +19,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static google.registry.util.DateTimeUtils.formatInstant;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -28,6 +29,9 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import google.registry.model.CacheUtils;
+import java.io.IOException;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
@@ -35,8 +39,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import javax.annotation.Nullable;
@@ -210,6 +217,10 @@ abstract class AbstractJsonableObject implements Jsonable {
 
   private static final String MERGE_NAME = "*";
 
+  private static final String LINKS_NAME = "links";
+
+  private static final String LINK_VALUE_NAME = "value";
+
   @Target({ElementType.METHOD, ElementType.FIELD})
   @Retention(RUNTIME)
   @interface JsonableElement {
@@ -222,42 +233,107 @@ abstract class AbstractJsonableObject implements Jsonable {
     String[] value();
   }
 
-  @Override
-  public final JsonObject toJson() {
-    try {
-      JsonObjectBuilder builder = new JsonObjectBuilder();
+  /**
+   * Caches the members annotated with {@link JsonableElement} of each class, in the order in which
+   * they are added to the JSON object.
+   *
+   * <p>Finding the members takes a lot of reflection, which would otherwise be repeated for every
+   * object in every response.
+   */
+  private static final LoadingCache<Class<?>, ImmutableList<JsonableMember>>
+      JSONABLE_MEMBERS_CACHE =
+          CacheUtils.newCacheBuilder().build(AbstractJsonableObject::findJsonableMembers);
+
+  /** A member annotated with {@link JsonableElement}, which has been made accessible. */
+  private record JsonableMember(Member member, JsonableElement jsonableElement) {
 
-      for (Field field : getAllJsonableElementFields()) {
-        JsonableElement jsonableElement = field.getAnnotation(JsonableElement.class);
-        Object object;
+    Object getValue(AbstractJsonableObject jsonableObject) {
+      if (member instanceof Field field) {
         try {
-          field.setAccessible(true);
-          object = field.get(this);
+          return field.get(jsonableObject);
         } catch (IllegalAccessException e) {
           throw new IllegalStateException(
               String.format("Error reading value of field '%s'", field), e);
-        } finally {
-          field.setAccessible(false);
         }
-        builder.add(jsonableElement, field, object);
       }
+      Method method = (Method) member;
+      try {
+        return method.invoke(jsonableObject);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException(
+            String.format("Error reading value of method '%s'", method), e);
+      }
+    }
+  }
 
-      for (Method method : getAllJsonableElementMethods()) {
-        JsonableElement jsonableElement = method.getAnnotation(JsonableElement.class);
-        Object object;
-        try {
-          method.setAccessible(true);
-          object = method.invoke(this);
-        } catch (ReflectiveOperationException e) {
-          throw new IllegalStateException(
-              String.format("Error reading value of method '%s'", method), e);
-        } finally {
-          method.setAccessible(false);
+  @Override
+  public final JsonObject toJson() {
+    try {
+      JsonObject jsonObject = new JsonObject();
+      for (Map.Entry<String, Object> entry : getElements().entrySet()) {
+        if (entry.getValue() instanceof ArrayElements arrayElements) {
+          JsonArray jsonArray = new JsonArray();
+          for (MemberValue element : arrayElements.elements()) {
+            jsonArray.add(toJsonElement(element.name(), element.member(), element.object()));
+          }
+          jsonObject.add(entry.getKey(), jsonArray);
+        } else {
+          MemberValue value = (MemberValue) entry.getValue();
+          jsonObject.add(
+              entry.getKey(), toJsonElement(value.name(), value.member(), value.object()));
         }
-        builder.add(jsonableElement, method, object);
       }
+      return jsonObject;
+    } catch (Throwable e) {
+      throw new JsonableException(
+          e, String.format("Error JSONifying %s: %s", this.getClass(), e.getMessage()));
+    }
+  }
+
+  /**
+   * Writes the same JSON object as {@link #toJson} to a stream, without building the JSON tree.
+   *
+   * <p>The value of every link which has no value is set to the given link value. This is the
+   * "context URI" as described in RFC 8288, which is required per the RDAP February 2024 response
+   * profile sections 2.6.3 and 2.10, and the technical implementation guide sections 3.2 and 3.3.2.
+   * It can't be set where the links are created, because many of the links (e.g. terms of service)
+   * are static constants, and thus can't know what the request URL was.
+   */
+  @Override
+  public final void writeJson(JsonWriter writer, String linkValue) throws IOException {
+    writeJson(writer, linkValue, false);
+  }
 
-      return builder.build();
+  private void writeJson(JsonWriter writer, String linkValue, boolean isLink) throws IOException {
+    try {
+      Map<String, Object> elements = getElements();
+      writer.beginObject();
+      for (Map.Entry<String, Object> entry : elements.entrySet()) {
+        writer.name(entry.getKey());
+        if (entry.getValue() instanceof ArrayElements arrayElements) {
+          boolean isLinksArray = LINKS_NAME.equals(entry.getKey());
+          writer.beginArray();
+          for (MemberValue element : arrayElements.elements()) {
+            writeValue(
+                writer,
+                element.name(),
+                element.member(),
+                element.object(),
+                linkValue,
+                isLinksArray);
+          }
+          writer.endArray();
+        } else {
+          MemberValue value = (MemberValue) entry.getValue();
+          writeValue(writer, value.name(), value.member(), value.object(), linkValue, false);
+        }
+      }
+      if (isLink && !elements.containsKey(LINK_VALUE_NAME)) {
+        writer.name(LINK_VALUE_NAME).value(linkValue);
+      }
+      writer.endObject();
+    } catch (IOException e) {
+      throw e;
     } catch (Throwable e) {
       throw new JsonableException(
           e, String.format("Error JSONifying %s: %s", this.getClass(), e.getMessage()));
@@ -265,15 +341,45 @@ abstract class AbstractJsonableObject implements Jsonable {
   }
 
   /**
-   * Get all the fields declared on this class.
+   * Returns the elements of the JSON object, in order, before their values are converted to JSON.
+   *
+   * <p>Each value is either a {@link MemberValue}, or an {@link ArrayElements} for arrays.
+   */
+  private Map<String, Object> getElements() {
+    JsonObjectBuilder builder = new JsonObjectBuilder();
+    addElementsTo(builder);
+    return builder.build();
+  }
+
+  private void addElementsTo(JsonObjectBuilder builder) {
+    for (JsonableMember jsonableMember : JSONABLE_MEMBERS_CACHE.get(getClass())) {
+      builder.add(
+          jsonableMember.jsonableElement(), jsonableMember.member(), jsonableMember.getValue(this));
+    }
+  }
+
+  /** Finds all the members annotated with {@link JsonableElement}, and makes them accessible. */
+  private static ImmutableList<JsonableMember> findJsonableMembers(Class<?> clazz) {
+    ImmutableList.Builder<JsonableMember> builder = new ImmutableList.Builder<>();
+    for (Field field : getAllJsonableElementFields(clazz)) {
+      field.setAccessible(true);
+      builder.add(new JsonableMember(field, field.getAnnotation(JsonableElement.class)));
+    }
+    for (Method method : getAllJsonableElementMethods(clazz)) {
+      method.setAccessible(true);
+      builder.add(new JsonableMember(method, method.getAnnotation(JsonableElement.class)));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Get all the fields declared on the class.
    *
    * <p>We aren't using {@link Class#getFields} because that would return only the public fields.
    */
-  private Iterable<Field> getAllJsonableElementFields() {
+  private static Iterable<Field> getAllJsonableElementFields(Class<?> objectClass) {
     ImmutableList.Builder<Field> builder = new ImmutableList.Builder<>();
-    for (Class<?> clazz = this.getClass();
-        clazz != null;
-        clazz = clazz.getSuperclass()) {
+    for (Class<?> clazz = objectClass; clazz != null; clazz = clazz.getSuperclass()) {
       for (Field field : clazz.getDeclaredFields()) {
         if (!field.isAnnotationPresent(JsonableElement.class)) {
           continue;
@@ -286,16 +392,14 @@ abstract class AbstractJsonableObject implements Jsonable {
   }
 
   /**
-   * Get all the methods declared on this class.
+   * Get all the methods declared on the class.
    *
    * <p>We aren't using {@link Class#getMethods} because that would return only the public methods.
    */
-  private Iterable<Method> getAllJsonableElementMethods() {
+  private static Iterable<Method> getAllJsonableElementMethods(Class<?> objectClass) {
     ImmutableList.Builder<Method> builder = new ImmutableList.Builder<>();
     HashSet<String> seenNames = new HashSet<>();
-    for (Class<?> clazz = this.getClass();
-        clazz != null;
-        clazz = clazz.getSuperclass()) {
+    for (Class<?> clazz = objectClass; clazz != null; clazz = clazz.getSuperclass()) {
       for (Method method : clazz.getDeclaredMethods()) {
         if (!method.isAnnotationPresent(JsonableElement.class)) {
           continue;
@@ -329,18 +433,54 @@ abstract class AbstractJsonableObject implements Jsonable {
       return new JsonPrimitive(b);
     }
     if (object instanceof Instant instant) {
-      // According to RFC 9083 section 3, the syntax of dates and times is defined in RFC3339.
-      //
-      // According to RFC3339, we should use ISO8601, so we use formatInstant.
-      return new JsonPrimitive(formatInstant(instant));
+      return new JsonPrimitive(formatInstantForJson(instant));
     }
     if (object == null) {
       return JsonNull.INSTANCE;
     }
-    throw new IllegalArgumentException(
-        String.format(
-            "Unknows object type '%s' in member '%s'",
-            object.getClass(), member));
+    throw unknownObjectType(member, object);
+  }
+
+  /** Writes an Object to a stream, the same way as {@link #toJsonElement} converts it. */
+  private static void writeValue(
+      JsonWriter writer,
+      String name,
+      Member member,
+      Object object,
+      String linkValue,
+      boolean isLink)
+      throws IOException {
+    if (object instanceof AbstractJsonableObject jsonableObject) {
+      verifyAllowedJsonKeyName(name, member, jsonableObject.getClass());
+      jsonableObject.writeJson(writer, linkValue, isLink);
+    } else if (object instanceof Jsonable jsonable) {
+      verifyAllowedJsonKeyName(name, member, jsonable.getClass());
+      jsonable.writeJson(writer, linkValue);
+    } else if (object instanceof String string) {
+      writer.value(string);
+    } else if (object instanceof Number number) {
+      writer.value(number);
+    } else if (object instanceof Boolean b) {
+      writer.value(b);
+    } else if (object instanceof Instant instant) {
+      writer.value(formatInstantForJson(instant));
+    } else if (object == null) {
+      writer.nullValue();
+    } else {
+      throw unknownObjectType(member, object);
+    }
+  }
+
+  private static String formatInstantForJson(Instant instant) {
+    // According to RFC 9083 section 3, the syntax of dates and times is defined in RFC3339.
+    //
+    // According to RFC3339, we should use ISO8601, so we use formatInstant.
+    return formatInstant(instant);
+  }
+
+  private static IllegalArgumentException unknownObjectType(Member member, Object object) {
+    return new IllegalArgumentException(
+        String.format("Unknows object type '%s' in member '%s'", object.getClass(), member));
   }
 
   /**
@@ -395,8 +535,14 @@ abstract class AbstractJsonableObject implements Jsonable {
         member);
   }
 
+  /** A value of a JSON element, with the name and member used to check and report it. */
+  private record MemberValue(String name, Member member, @Nullable Object object) {}
+
+  /** The values of the elements of a JSON array, which can come from several members. */
+  private record ArrayElements(List<MemberValue> elements) {}
+
   private static final class JsonObjectBuilder {
-    private final JsonObject jsonObject = new JsonObject();
+    private final LinkedHashMap<String, Object> elements = new LinkedHashMap<>();
     private final HashMap<String, Member> seenNames = new HashMap<>();
 
     void add(JsonableElement jsonableElement, Member member, Object object) {
@@ -414,13 +560,12 @@ abstract class AbstractJsonableObject implements Jsonable {
       // First, if this is a Merge element, merge it with the current elements
       if (MERGE_NAME.equals(jsonableElement.value())) {
         // We want to merge this member with the current member.
-        // Recursively get all the ElementData of this member
+        // Recursively add all the elements of this member
         checkState(
             object instanceof AbstractJsonableObject,
             "JsonableElement(\"*\") annotating a non-AbstractJsonableObject object in '%s'",
             member);
-        AbstractJsonableObject jsonableObject = (AbstractJsonableObject) object;
-        mergeWith(jsonableObject.toJson(), member);
+        ((AbstractJsonableObject) object).addElementsTo(this);
         return;
       }
 
@@ -451,60 +596,38 @@ abstract class AbstractJsonableObject implements Jsonable {
       }
     }
 
-    JsonObject build() {
-      return jsonObject;
-    }
-
-    private void mergeWith(JsonObject otherJsonObject, Member member) {
-      for (Map.Entry<String, JsonElement> entry : otherJsonObject.entrySet()) {
-        String name = entry.getKey();
-        JsonElement otherElement = entry.getValue();
-
-        JsonElement ourElement = jsonObject.get(name);
-        if (ourElement == null) {
-          jsonObject.add(name, otherElement);
-          seenNames.put(name, member);
-        } else {
-          // Both this and the other object have element with the same name. That's only OK if that
-          // element is an array - in which case we merge the arrays.
-          checkState((ourElement instanceof JsonArray) && (otherElement instanceof JsonArray),
-              "Encountered the same field name '%s' multiple times: '%s' vs. '%s'",
-              name,
-              member,
-              seenNames.get(name));
-          ((JsonArray) ourElement).addAll((JsonArray) otherElement);
-        }
-      }
-
+    Map<String, Object> build() {
+      return elements;
     }
 
     private void addObject(String name, Member member, Object object) {
       checkState(
-          !jsonObject.has(name),
+          !elements.containsKey(name),
           "Encountered the same field name '%s' multiple times: '%s' vs. '%s'",
           name,
           member,
           seenNames.get(name));
       seenNames.put(name, member);
-      jsonObject.add(name, toJsonElement(name, member, object));
+      elements.put(name, new MemberValue(name, member, object));
     }
 
-    private void addObjectIntoArray(String name, Member member, Object object) {
-      JsonElement innerElement = jsonObject.get(name);
-      JsonArray jsonArray;
+    private void addObjectIntoArray(String name, Member member, @Nullable Object object) {
+      Object innerElement = elements.get(name);
+      ArrayElements arrayElements;
       if (innerElement == null) {
-        jsonArray = new JsonArray();
-        jsonObject.add(name, jsonArray);
+        arrayElements = new ArrayElements(new ArrayList<>());
+        elements.put(name, arrayElements);
       } else {
-        checkState(innerElement instanceof JsonArray,
-          "Encountered the same field name '%s' multiple times: '%s' vs. '%s'",
-          name,
-          member,
-          seenNames.get(name));
-        jsonArray = (JsonArray) innerElement;
+        checkState(
+            innerElement instanceof ArrayElements,
+            "Encountered the same field name '%s' multiple times: '%s' vs. '%s'",
+            name,
+            member,
+            seenNames.get(name));
+        arrayElements = (ArrayElements) innerElement;
       }
       seenNames.put(name, member);
-      jsonArray.add(toJsonElement(name + ARRAY_NAME_SUFFIX, member, object));
+      arrayElements.elements().add(new MemberValue(name + ARRAY_NAME_SUFFIX, member, object));
     }
   }
 
@@ -14,10 +14,55 @@
 
 package google.registry.rdap;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Map;
 
 /** Designates something that can be turned to a JSON format. */
 interface Jsonable {
 
   JsonElement toJson();
+
+  /**
+   * Writes the JSON format to a stream.
+   *
+   * <p>Links without a value get the given link value, see {@link
+   * AbstractJsonableObject#writeJson}. The default implementation writes the result of {@link
+   * #toJson} as is, so it is only suitable for small values without links.
+   */
+  default void writeJson(JsonWriter writer, String linkValue) throws IOException {
+    writeJsonElement(writer, toJson());
+  }
+
+  /** Writes a JSON tree to a stream. */
+  static void writeJsonElement(JsonWriter writer, JsonElement jsonElement) throws IOException {
+    if (jsonElement instanceof JsonPrimitive jsonPrimitive) {
+      if (jsonPrimitive.isBoolean()) {
+        writer.value(jsonPrimitive.getAsBoolean());
+      } else if (jsonPrimitive.isNumber()) {
+        writer.value(jsonPrimitive.getAsNumber());
+      } else {
+        writer.value(jsonPrimitive.getAsString());
+      }
+    } else if (jsonElement instanceof JsonArray jsonArray) {
+      writer.beginArray();
+      for (JsonElement innerElement : jsonArray) {
+        writeJsonElement(writer, innerElement);
+      }
+      writer.endArray();
+    } else if (jsonElement instanceof JsonObject jsonObject) {
+      writer.beginObject();
+      for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
+        writer.name(entry.getKey());
+        writeJsonElement(writer, entry.getValue());
+      }
+      writer.endObject();
+    } else {
+      writer.nullValue();
+    }
+  }
 }
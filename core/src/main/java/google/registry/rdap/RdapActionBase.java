@@ -24,14 +24,11 @@ import static jakarta.servlet.http.HttpServletResponse.SC_NOT_FOUND;
 import static jakarta.servlet.http.HttpServletResponse.SC_OK;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import com.google.common.collect.Streams;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.net.MediaType;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 import google.registry.cache.DomainCache;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.model.EppResource;
@@ -50,6 +47,8 @@ import google.registry.request.RequestUrl;
 import google.registry.request.Response;
 import google.registry.util.Clock;
 import jakarta.inject.Inject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.Duration;
@@ -73,12 +72,6 @@ public abstract class RdapActionBase implements Runnable {
   private static final Gson FORMATTED_OUTPUT_GSON =
       new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
 
-  /** Whether to include or exclude deleted items from a query. */
-  protected enum DeletedItemHandling {
-    EXCLUDE,
-    INCLUDE
-  }
-
   @Inject Response response;
   @Inject @RequestMethod Action.Method requestMethod;
   @Inject @RequestPath String requestPath;
@@ -106,6 +99,9 @@ public abstract class RdapActionBase implements Runnable {
   /** The endpoint type used for recording metrics. */
   private final EndpointType endpointType;
 
+  /** Whether the reply has started streaming, after which its status and body are fixed. */
+  private boolean payloadStarted;
+
   /** Returns the servlet action path; used to extract the search string from the incoming path. */
   final String getActionPath() {
     return getPathForAction(getClass());
@@ -190,6 +186,12 @@ public abstract class RdapActionBase implements Runnable {
   }
 
   void setError(int status, String title, String description) {
+    if (payloadStarted) {
+      // The status and part of the reply have already been sent. Appending an error object would
+      // only turn the truncated reply into two JSON documents, so just record the failure.
+      metricInformationBuilder.setStatusCode(status);
+      return;
+    }
     setErrorCodes(status);
     try {
       setPayload(ErrorResponse.create(status, title, description));
@@ -211,9 +213,18 @@ public abstract class RdapActionBase implements Runnable {
     TopLevelReplyObject topLevelObject =
         TopLevelReplyObject.create(replyObject, rdapJsonFormatter.createTosNotice());
     Gson gson = formatOutputParam.orElse(false) ? FORMATTED_OUTPUT_GSON : GSON;
-    JsonObject jsonResult = topLevelObject.toJson();
-    addLinkValuesRecursively(jsonResult);
-    response.setPayload(gson.toJson(jsonResult));
+    // Stream the JSON straight to the response, so that large search results are never held as a
+    // whole JSON tree or string. The request URL is the value of links, see
+    // AbstractJsonableObject.writeJson(). If writing fails, the client gets a truncated reply that
+    // doesn't parse, rather than an error response, see setError().
+    payloadStarted = true;
+    try {
+      JsonWriter jsonWriter = gson.newJsonWriter(response.getWriter());
+      topLevelObject.writeJson(jsonWriter, requestUrl);
+      jsonWriter.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   /**
@@ -237,10 +248,6 @@ public abstract class RdapActionBase implements Runnable {
         || !rdapAuthorization.registrarIds().isEmpty();
   }
 
-  DeletedItemHandling getDeletedItemHandling() {
-    return shouldIncludeDeleted() ? DeletedItemHandling.INCLUDE : DeletedItemHandling.EXCLUDE;
-  }
-
   /**
    * Returns true if the request is authorized to see the resource.
    *
@@ -278,35 +285,4 @@ public abstract class RdapActionBase implements Runnable {
   Instant getRequestTime() {
     return rdapJsonFormatter.getRequestTime();
   }
-
-  /**
-   * Adds a request-referencing "value" to each link object.
-   *
-   * <p>This is the "context URI" as described in RFC 8288. Basically, this contains a reference to
-   * the request URL that generated this RDAP response.
-   *
-   * <p>This is required per the RDAP February 2024 response profile sections 2.6.3 and 2.10, and
-   * the technical implementation guide sections 3.2 and 3.3.2.
-   *
-   * <p>We must do this here (instead of where the links are generated) because many of the links
-   * (e.g. terms of service) are static constants, and thus cannot by default know what the request
-   * URL was.
-   */
-  private void addLinkValuesRecursively(JsonElement jsonElement) {
-    if (jsonElement instanceof JsonArray jsonArray) {
-      jsonArray.forEach(this::addLinkValuesRecursively);
-    } else if (jsonElement instanceof JsonObject jsonObject) {
-      if (jsonObject.get("links") instanceof JsonArray linksArray) {
-        addLinkValues(linksArray);
-      }
-      jsonObject.entrySet().forEach(entry -> addLinkValuesRecursively(entry.getValue()));
-    }
-  }
-
-  private void addLinkValues(JsonArray linksArray) {
-    Streams.stream(linksArray)
-        .map(JsonElement::getAsJsonObject)
-        .filter(o -> !o.has("value"))
-        .forEach(o -> o.addProperty("value", requestUrl));
-  }
 }
@@ -14,17 +14,12 @@
 
 package google.registry.rdap;
 
-import static com.google.common.collect.ImmutableSet.toImmutableSet;
-import static google.registry.persistence.transaction.TransactionManagerFactory.replicaTm;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static google.registry.request.Action.Method.GET;
 import static google.registry.request.Action.Method.HEAD;
-import static google.registry.util.DateTimeUtils.END_INSTANT;
 import static google.registry.util.DateTimeUtils.START_INSTANT;
 
-import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
 import com.google.common.flogger.FluentLogger;
@@ -34,7 +29,6 @@ import google.registry.model.ForeignKeyUtils;
 import google.registry.model.domain.Domain;
 import google.registry.model.host.Host;
 import google.registry.persistence.VKey;
-import google.registry.persistence.transaction.CriteriaQueryBuilder;
 import google.registry.rdap.RdapJsonFormatter.OutputDataType;
 import google.registry.rdap.RdapMetrics.EndpointType;
 import google.registry.rdap.RdapMetrics.SearchType;
@@ -49,15 +43,10 @@ import google.registry.request.Parameter;
 import google.registry.request.auth.Auth;
 import google.registry.util.NonFinalForTesting;
 import jakarta.inject.Inject;
-import jakarta.persistence.Query;
-import jakarta.persistence.criteria.CriteriaBuilder;
 import java.net.InetAddress;
 import java.time.Instant;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Stream;
-import org.hibernate.Hibernate;
 
 /**
  * RDAP action for domain search requests.
@@ -76,8 +65,6 @@ import org.hibernate.Hibernate;
     auth = Auth.AUTH_PUBLIC)
 public class RdapDomainSearchAction extends RdapSearchActionBase {
 
-  static final int RESULT_SET_SIZE_SCALING_FACTOR = 30;
-
   @NonFinalForTesting static int maxNameserversInFirstStage = 300;
 
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
@@ -175,7 +162,7 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
       throw new UnprocessableEntityException(
           "Initial search string is required for wildcard domain searches without a TLD suffix");
     }
-    return searchByDomainNameByTld(partialStringQuery.getSuffix());
+    return searchByDomainNameByTld(partialStringQuery);
   }
 
   /** Searches for domains by domain name without a wildcard or interest in deleted entries. */
@@ -187,71 +174,26 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
             .toList());
   }
 
-  /** Searches for domains by domain name with an initial string, wildcard and possible suffix. */
+  /**
+   * Searches for domains by domain name with an initial string, wildcard and possible suffix, or by
+   * exact name when deleted entries are included.
+   */
   private DomainSearchResponse searchByDomainNameWithInitialString(
       final RdapSearchPattern partialStringQuery) {
-    // We can't query for undeleted domains as part of the query itself; that would require an
-    // inequality query on deletion time, and we are already using inequality queries on
-    // domainName. So we instead pick an arbitrary limit of RESULT_SET_SIZE_SCALING_FACTOR times the
-    // result set size limit, fetch up to that many, and weed out all deleted domains. If there
-    // still isn't a full result set's worth of domains, we give up and return just the ones we
-    // found. Don't use queryItems, because it checks that the initial string is at least a certain
-    // length, which we don't need in this case. Query the domains directly, rather than the foreign
-    // keys, because then we have an index on TLD if we need it.
-    int querySizeLimit = RESULT_SET_SIZE_SCALING_FACTOR * rdapResultSetMaxSize;
-    RdapResultSet<Domain> resultSet;
-    resultSet =
-        replicaTm()
-            .transact(
-                () -> {
-                  CriteriaBuilder criteriaBuilder =
-                      replicaTm().getEntityManager().getCriteriaBuilder();
-                  CriteriaQueryBuilder<Domain> queryBuilder =
-                      CriteriaQueryBuilder.create(replicaTm(), Domain.class)
-                          .where(
-                              "domainName",
-                              criteriaBuilder::like,
-                              String.format("%s%%", partialStringQuery.getInitialString()))
-                          .orderByAsc("domainName");
-                  if (cursorString.isPresent()) {
-                    queryBuilder =
-                        queryBuilder.where(
-                            "domainName", criteriaBuilder::greaterThan, cursorString.get());
-                  }
-                  if (partialStringQuery.getSuffix() != null) {
-                    queryBuilder =
-                        queryBuilder.where(
-                            "tld", criteriaBuilder::equal, partialStringQuery.getSuffix());
-                  }
-                  return getMatchingResources(queryBuilder, true, querySizeLimit);
-                });
-    return makeSearchResults(resultSet);
+    // Fetch one more domain than we can return, so we know whether to add a "next" link. Deleted
+    // domains are filtered out by the query itself, so there is no need to fetch extra ones.
+    return makeSearchResults(
+        getSearchPlanner()
+            .searchDomains(partialStringQuery, cursorString, rdapResultSetMaxSize + 1));
   }
 
   /** Searches for domains by domain name with a TLD suffix. */
-  private DomainSearchResponse searchByDomainNameByTld(String tld) {
-    // Even though we are not searching on domainName, we want the results to come back ordered by
-    // name, so we are still in the same boat as searchByDomainNameWithInitialString, unable to
-    // perform an inequality query on deletion time. Don't use queryItems, because it doesn't handle
-    // pending deletes.
-    int querySizeLimit = RESULT_SET_SIZE_SCALING_FACTOR * rdapResultSetMaxSize;
-    RdapResultSet<Domain> resultSet;
-    resultSet =
-        replicaTm()
-            .transact(
-                () -> {
-                  CriteriaQueryBuilder<Domain> builder =
-                      queryItems(
-                              Domain.class,
-                              "tld",
-                              tld,
-                              Optional.of("domainName"),
-                              cursorString,
-                              DeletedItemHandling.INCLUDE)
-                          .orderByAsc("domainName");
-                  return getMatchingResources(builder, true, querySizeLimit);
-                });
-    return makeSearchResults(resultSet);
+  private DomainSearchResponse searchByDomainNameByTld(RdapSearchPattern partialStringQuery) {
+    // Even though we are not searching on domainName, the results come back ordered by name, so
+    // the cursor is still the last domain name returned.
+    return makeSearchResults(
+        getSearchPlanner()
+            .searchDomains(partialStringQuery, cursorString, rdapResultSetMaxSize + 1));
   }
 
   /**
@@ -265,7 +207,7 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
    */
   private DomainSearchResponse searchByNameserverLdhName(
       final RdapSearchPattern partialStringQuery) {
-    ImmutableCollection<VKey<Host>> hostKeys = getNameserverRefsByLdhName(partialStringQuery);
+    ImmutableList<VKey<Host>> hostKeys = getNameserverRefsByLdhName(partialStringQuery);
     if (Iterables.isEmpty(hostKeys)) {
       metricInformationBuilder.setNumHostsRetrieved(0);
       throw new NotFoundException("No matching nameservers found");
@@ -277,13 +219,13 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
    * Assembles a list of {@link Host} keys by name.
    *
    * <p>Nameserver query strings with wildcards are allowed to have a suffix after the wildcard,
-   * which must be a domain. If the domain is not specified, or is not an existing domain in one of
-   * our TLDs, the wildcard must be preceded by at least two characters (e.g. "ns*"), to avoid
-   * queries for all nameservers in the system. If the suffix specifies an existing domain, the
-   * initial string is not required (e.g. "*.example.tld" is valid), because we can look up the
-   * domain and just list all of its subordinate hosts.
+   * which must be a domain. If the domain is not specified, the wildcard must be preceded by at
+   * least two characters (e.g. "ns*"), to avoid queries for all nameservers in the system. If the
+   * suffix specifies a domain, the initial string is not required (e.g. "*.example.tld" is valid),
+   * because we can either list the subordinate hosts of an existing domain, or look up the hosts
+   * ending in the domain in the index on reversed host names.
    */
-  private ImmutableCollection<VKey<Host>> getNameserverRefsByLdhName(
+  private ImmutableList<VKey<Host>> getNameserverRefsByLdhName(
       final RdapSearchPattern partialStringQuery) {
     // Handle queries without a wildcard.
     if (!partialStringQuery.getHasWildcard()) {
@@ -296,36 +238,19 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
     // If there's no suffix, query the host resources. Query the resources themselves, rather than
     // the foreign keys, because then we have an index on fully qualified host name and deletion
     // time, so we can check the deletion status in the query itself. The initial string must be
-    // present, to avoid querying every host in the system. This restriction is enforced by
-    // {@link queryItems}.
+    // present, to avoid querying every host in the system.
     //
     // Only return the first maxNameserversInFirstStage nameservers. This could result in an
     // incomplete result set if a search asks for something like "ns*", but we need to enforce a
-    // limit in order to avoid arbitrarily long-running queries.
-    Optional<String> desiredRegistrar = getDesiredRegistrar();
-    return replicaTm()
-        .transact(
-            () -> {
-              CriteriaQueryBuilder<Host> builder =
-                  queryItems(
-                      Host.class,
-                      "hostName",
-                      partialStringQuery,
-                      Optional.empty(),
-                      DeletedItemHandling.EXCLUDE);
-              if (desiredRegistrar.isPresent()) {
-                builder =
-                    builder.where(
-                        "currentSponsorRegistrarId",
-                        replicaTm().getEntityManager().getCriteriaBuilder()::equal,
-                        desiredRegistrar.get());
-              }
-              return getMatchingResources(builder, true, maxNameserversInFirstStage)
-                  .resources()
-                  .stream()
-                  .map(Host::createVKey)
-                  .collect(toImmutableSet());
-            });
+    // limit in order to avoid arbitrarily long-running queries. Deleted nameservers are never
+    // searched, even if deleted domains are included.
+    checkInitialStringLength(partialStringQuery);
+    return getSearchPlanner(false)
+        .searchHosts(partialStringQuery, Optional.empty(), maxNameserversInFirstStage)
+        .resources()
+        .stream()
+        .map(Host::createVKey)
+        .collect(toImmutableList());
   }
 
   /** Assembles a list of {@link Host} keys by name when the pattern has no wildcard. */
@@ -354,17 +279,25 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
   private ImmutableList<VKey<Host>> getNameserverRefsByLdhNameWithSuffix(
       RdapSearchPattern partialStringQuery) {
     Instant timeToQuery = shouldIncludeDeleted() ? START_INSTANT : getRequestTime();
-    // The suffix must be a domain that we manage. That way, we can look up the domain and search
-    // through the subordinate hosts. This is more efficient, and lets us permit wildcard searches
-    // with no initial string.
-    Domain domain =
-        domainCache
-            .loadByDomainName(partialStringQuery.getSuffix())
-            .orElseThrow(
-                () ->
-                    new UnprocessableEntityException(
-                        "A suffix in a lookup by nameserver name "
-                            + "must be a domain defined in the system"));
+    // If the suffix is a domain that we manage, we can look up the domain and search through the
+    // subordinate hosts. Otherwise, the hosts are searched using the index on reversed host names,
+    // as long as the suffix is specific enough for that index to be selective.
+    Optional<Domain> superordinateDomain =
+        domainCache.loadByDomainName(partialStringQuery.getSuffix());
+    if (superordinateDomain.isEmpty()) {
+      if (!isSearchableHostSuffix(partialStringQuery.getSuffix())) {
+        throw new UnprocessableEntityException(
+            "A suffix in a lookup by nameserver name must be a domain defined in the system");
+      }
+      // Deleted nameservers are never searched, even if deleted domains are included.
+      return getSearchPlanner(false)
+          .searchHosts(partialStringQuery, Optional.empty(), maxNameserversInFirstStage)
+          .resources()
+          .stream()
+          .map(Host::createVKey)
+          .collect(toImmutableList());
+    }
+    Domain domain = superordinateDomain.get();
     Optional<String> desiredRegistrar = getDesiredRegistrar();
     ImmutableList.Builder<VKey<Host>> builder = new ImmutableList.Builder<>();
     for (String fqhn : ImmutableSortedSet.copyOf(domain.getSubordinateHosts())) {
@@ -407,40 +340,13 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
    * domains which used to be connected to an undeleted nameserver.
    */
   private DomainSearchResponse searchByNameserverIp(final InetAddress inetAddress) {
-    Optional<String> desiredRegistrar = getDesiredRegistrar();
-    ImmutableSet<VKey<Host>> hostKeys;
-    // Hibernate does not allow us to query @Converted array fields directly, either
-    // in the CriteriaQuery or the raw text format. However, Postgres does -- so we
-    // use native queries to find hosts where any of the inetAddresses match.
-    StringBuilder queryBuilder =
-        new StringBuilder(
-            "SELECT h.repo_id FROM \"Host\" h WHERE :address = ANY(h.inet_addresses) AND "
-                + "h.deletion_time = :endOfTime");
-    ImmutableMap.Builder<String, Object> parameters =
-        new ImmutableMap.Builder<String, Object>()
-            .put("address", InetAddresses.toAddrString(inetAddress))
-            .put("endOfTime", END_INSTANT);
-      if (desiredRegistrar.isPresent()) {
-        queryBuilder.append(" AND h.current_sponsor_registrar_id = :desiredRegistrar");
-        parameters.put("desiredRegistrar", desiredRegistrar.get());
-      }
-    hostKeys =
-        replicaTm()
-            .transact(
-                () -> {
-                  Query query =
-                      replicaTm()
-                          .getEntityManager()
-                          .createNativeQuery(queryBuilder.toString())
-                          .setMaxResults(maxNameserversInFirstStage);
-                  parameters.build().forEach(query::setParameter);
-                  @SuppressWarnings("unchecked")
-                  Stream<String> resultStream = query.getResultStream();
-                  return resultStream
-                      .map(repoId -> VKey.create(Host.class, repoId))
-                      .collect(toImmutableSet());
-                });
-    return searchByNameserverRefs(hostKeys);
+    return searchByNameserverRefs(
+        getSearchPlanner(false)
+            .searchHostsByAddress(inetAddress, Optional.empty(), maxNameserversInFirstStage)
+            .resources()
+            .stream()
+            .map(Host::createVKey)
+            .collect(toImmutableList()));
   }
 
   /**
@@ -449,62 +355,25 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
    * <p>This method is called by {@link #searchByNameserverLdhName} and {@link
    * #searchByNameserverIp} after they assemble the relevant host keys.
    */
-  private DomainSearchResponse searchByNameserverRefs(
-      final ImmutableCollection<VKey<Host>> hostKeys) {
-    // We must break the query up into chunks, because the in operator is limited to 30 subqueries.
-    // Since it is possible for the same domain to show up more than once in our result list (if
-    // we do a wildcard nameserver search that returns multiple nameservers used by the same
-    // domain), we must create a set of resulting {@link Domain} objects. Use a sorted set,
-    // and fetch all domains, to make sure that we can return the first domains in alphabetical
-    // order.
-    ImmutableSortedSet.Builder<Domain> domainSetBuilder =
-        ImmutableSortedSet.orderedBy(Comparator.comparing(Domain::getDomainName));
-    int numHostKeysSearched = 0;
-    for (List<VKey<Host>> chunk : Iterables.partition(hostKeys, 30)) {
-      numHostKeysSearched += chunk.size();
-      replicaTm()
-          .transact(
-              () -> {
-                for (VKey<Host> hostKey : hostKeys) {
-                  CriteriaQueryBuilder<Domain> queryBuilder =
-                      CriteriaQueryBuilder.create(replicaTm(), Domain.class)
-                          .whereFieldContains("nsHosts", hostKey)
-                          .orderByAsc("domainName");
-                  CriteriaBuilder criteriaBuilder =
-                      replicaTm().getEntityManager().getCriteriaBuilder();
-                  if (!shouldIncludeDeleted()) {
-                    queryBuilder =
-                        queryBuilder.where(
-                            "deletionTime", criteriaBuilder::greaterThan, getRequestTime());
-                  }
-                  if (cursorString.isPresent()) {
-                    queryBuilder =
-                        queryBuilder.where(
-                            "domainName", criteriaBuilder::greaterThan, cursorString.get());
-                  }
-                  replicaTm()
-                      .criteriaQuery(queryBuilder.build())
-                      .getResultStream()
-                      .filter(this::isAuthorized)
-                      .forEach(
-                          (domain) -> {
-                            Hibernate.initialize(domain.getDsData());
-                            domainSetBuilder.add(domain);
-                          });
-                }
-              });
-    }
-    List<Domain> domains = domainSetBuilder.build().asList();
-    metricInformationBuilder.setNumHostsRetrieved(numHostKeysSearched);
+  private DomainSearchResponse searchByNameserverRefs(final ImmutableList<VKey<Host>> hostKeys) {
+    // All the host keys are searched in a single query, which returns each matching domain only
+    // once, even if it uses several of the nameservers, in alphabetical order. Fetch one more
+    // domain than we can return, so we know whether to add a "next" link.
+    RdapResultSet<Domain> resultSet =
+        getSearchPlanner()
+            .searchDomainsByNameservers(hostKeys, cursorString, rdapResultSetMaxSize + 1);
+    metricInformationBuilder.setNumHostsRetrieved(hostKeys.size());
     // If everything that we found will fit in the result, check whether there might have been
     // more results that got dropped because the first stage limit on number of nameservers. If
     // so, indicate the result might be incomplete.
     return makeSearchResults(
-        domains,
-        (numHostKeysSearched >= maxNameserversInFirstStage)
+        resultSet.resources(),
+        (hostKeys.size() >= maxNameserversInFirstStage)
             ? IncompletenessWarningType.MIGHT_BE_INCOMPLETE
             : IncompletenessWarningType.COMPLETE,
-        (numHostKeysSearched > 0) ? Optional.of((long) domains.size()) : Optional.empty());
+        hostKeys.isEmpty()
+            ? Optional.empty()
+            : Optional.of((long) resultSet.numResourcesRetrieved()));
   }
 
   /** Output JSON for a list of domains, with no incompleteness warnings. */
@@ -172,17 +172,18 @@ public class RdapJsonFormatter {
   }
 
   /**
-   * JPQL query template for finding the latest history entry per event type for an EPP entity.
+   * JPQL query template for finding the latest history entry per type for an EPP entity.
    *
-   * <p>User should replace '%entityName%' and '%repoIdValue%' with valid values. A {@code
-   * DomainHistory} query may look like below: {@code select e from DomainHistory e where
-   * domainRepoId = '17-Q9JYB4C' and modificationTime in (select max(modificationTime) from
-   * DomainHistory where domainRepoId = '17-Q9JYB4C' and type is not null group by type)}
+   * <p>Only the entity name is filled in, and the repo ID is passed as a parameter, so that each
+   * history class only ever uses a single query string whose plan Hibernate caches. A {@code
+   * DomainHistory} query looks like: {@code select e from DomainHistory e where e.repoId = :repoId
+   * and e.type is not null and e.modificationTime = (select max(h.modificationTime) from
+   * DomainHistory h where h.repoId = e.repoId and h.type = e.type) order by e.modificationTime}
    */
   private static final String GET_LAST_HISTORY_BY_TYPE_JPQL_TEMPLATE =
-      "select e from %entityName% e where repoId = '%repoIdValue%' and modificationTime in "
-          + " (select max(modificationTime) from %entityName% where "
-          + " repoId = '%repoIdValue%' and type is not null group by type)";
+      "select e from %1$s e where e.repoId = :repoId and e.type is not null and"
+          + " e.modificationTime = (select max(h.modificationTime) from %1$s h where"
+          + " h.repoId = e.repoId and h.type = e.type) order by e.modificationTime";
 
   /** Map of EPP status values to the RDAP equivalents. */
   private static final ImmutableMap<EppEnum, RdapStatus> STATUS_TO_RDAP_STATUS_MAP =
@@ -396,10 +397,13 @@ public class RdapJsonFormatter {
     }
 
     ImmutableSet<Host> loadedHosts =
-        domain.getNameservers().stream()
-            .map(key -> hostCache.loadByRepoId((String) key.getKey()))
-            .flatMap(Optional::stream)
-            .collect(toImmutableSet());
+        ImmutableSet.copyOf(
+            hostCache
+                .loadByRepoIds(
+                    domain.getNameservers().stream()
+                        .map(key -> (String) key.getKey())
+                        .collect(toImmutableList()))
+                .values());
 
     // Add the nameservers to the data; the load was kicked off above for efficiency.
     // RDAP Response Profile 2.8: we MUST have the nameservers
@@ -730,17 +734,20 @@ public class RdapJsonFormatter {
     // 2.3.2.3 An event of *eventAction* type *transfer*, with the last date and time that the
     // domain was transferred. The event of *eventAction* type *transfer* MUST be omitted if the
     // domain name has not been transferred since it was created.
-    String entityName = HistoryEntryDao.getHistoryClassFromParent(resourceType).getSimpleName();
+    //
+    // Several types can map to the same event, so the entries are ordered by time to keep the
+    // latest one.
     String jpql =
-        GET_LAST_HISTORY_BY_TYPE_JPQL_TEMPLATE
-            .replace("%entityName%", entityName)
-            .replace("%repoIdValue%", repoId);
+        String.format(
+            GET_LAST_HISTORY_BY_TYPE_JPQL_TEMPLATE,
+            HistoryEntryDao.getHistoryClassFromParent(resourceType).getSimpleName());
     replicaTm()
         .transact(
             () ->
                 replicaTm()
                     .getEntityManager()
                     .createQuery(jpql, HistoryEntry.class)
+                    .setParameter("repoId", repoId)
                     .getResultStream()
                     .forEach(
                         historyEntry -> {
@@ -25,6 +25,8 @@ import com.google.monitoring.metrics.FibonacciFitter;
 import com.google.monitoring.metrics.IncrementableMetric;
 import com.google.monitoring.metrics.LabelDescriptor;
 import com.google.monitoring.metrics.MetricRegistryImpl;
+import google.registry.model.EppResource;
+import google.registry.rdap.RdapSearchPlanner.Plan;
 import google.registry.rdap.RdapSearchResults.IncompletenessWarningType;
 import google.registry.request.Action;
 import jakarta.inject.Inject;
@@ -96,6 +98,12 @@ public class RdapMetrics {
                   MAX_RECORDED_PREFIX_LENGTH)),
           LabelDescriptor.create("include_deleted", "Whether deleted records are included."));
 
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS_FOR_SEARCH_QUERIES =
+      ImmutableSet.of(
+          LabelDescriptor.create("resource_type", "The type of resource searched."),
+          LabelDescriptor.create("query_plan", "The query plan used for the search pattern."),
+          LabelDescriptor.create("include_deleted", "Whether deleted records are included."));
+
   // Fibonacci fitter more suitable for integer-type values. Allows values between 0 and 4181,
   // which is the 19th Fibonacci number.
   private static final DistributionFitter FIBONACCI_FITTER = FibonacciFitter.create(4181);
@@ -145,6 +153,16 @@ public class RdapMetrics {
               LABEL_DESCRIPTORS_FOR_RESPONSES,
               DEFAULT_FITTER);
 
+  @VisibleForTesting
+  static final EventMetric searchQueryTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/rdap/search_query_time",
+              "RDAP Search Query Time",
+              "milliseconds",
+              LABEL_DESCRIPTORS_FOR_SEARCH_QUERIES,
+              DEFAULT_FITTER);
+
   @Inject
   public RdapMetrics() {}
 
@@ -204,6 +222,25 @@ public class RdapMetrics {
     }
   }
 
+  /**
+   * Records the time taken by a single database query of an RDAP search.
+   *
+   * <p>A search request can run several queries, e.g. for nameservers and then for the domains
+   * using them, so this is recorded for each query as it ends, rather than in {@link
+   * #updateMetrics}.
+   */
+  public void recordSearchQueryTime(
+      Class<? extends EppResource> resourceType,
+      Plan plan,
+      boolean includeDeleted,
+      long queryTimeMillis) {
+    searchQueryTime.record(
+        queryTimeMillis,
+        resourceType.getSimpleName(),
+        plan.toString(),
+        includeDeleted ? "YES" : "NO");
+  }
+
   /**
    * Information on RDAP metrics.
    *
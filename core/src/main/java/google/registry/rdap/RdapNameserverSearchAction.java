@@ -14,12 +14,9 @@
 
 package google.registry.rdap;
 
-import static google.registry.persistence.transaction.TransactionManagerFactory.replicaTm;
 import static google.registry.request.Action.Method.GET;
 import static google.registry.request.Action.Method.HEAD;
-import static google.registry.util.DateTimeUtils.END_INSTANT;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
 import com.google.common.net.InetAddresses;
@@ -27,7 +24,6 @@ import com.google.common.primitives.Booleans;
 import google.registry.model.ForeignKeyUtils;
 import google.registry.model.domain.Domain;
 import google.registry.model.host.Host;
-import google.registry.persistence.transaction.CriteriaQueryBuilder;
 import google.registry.rdap.RdapJsonFormatter.OutputDataType;
 import google.registry.rdap.RdapMetrics.EndpointType;
 import google.registry.rdap.RdapMetrics.SearchType;
@@ -40,7 +36,6 @@ import google.registry.request.HttpException.UnprocessableEntityException;
 import google.registry.request.Parameter;
 import google.registry.request.auth.Auth;
 import jakarta.inject.Inject;
-import jakarta.persistence.Query;
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.List;
@@ -131,9 +126,9 @@ public class RdapNameserverSearchAction extends RdapSearchActionBase {
       return searchByNameUsingForeignKey(partialStringQuery);
     }
     // Handle queries with a wildcard (or including deleted entries). If there is a suffix, it
-    // should be a domain that we manage, so we can look up the domain and search through the
-    // subordinate hosts. This is more efficient, and lets us permit wildcard searches with no
-    // initial string. Deleted nameservers cannot be searched using a suffix, because the logic
+    // should be a domain, ideally one that we manage, so we can look up the domain and search
+    // through the subordinate hosts. Either way, we can permit wildcard searches with no initial
+    // string. Deleted nameservers cannot be searched using a suffix, because the logic
     // of the deletion status of the superordinate domain versus the deletion status of the
     // subordinate host gets too messy.
     if (partialStringQuery.getSuffix() != null) {
@@ -177,13 +172,19 @@ public class RdapNameserverSearchAction extends RdapSearchActionBase {
       RdapSearchPattern partialStringQuery) {
     Optional<Domain> domain = domainCache.loadByDomainName(partialStringQuery.getSuffix());
     if (domain.isEmpty()) {
-      // Don't allow wildcards with suffixes which are not domains we manage. That would risk a
-      // table scan in many easily foreseeable cases. The user might ask for ns*.zombo.com,
-      // forcing us to query for all hosts beginning with ns, then filter for those ending in
-      // .zombo.com. It might well be that 80% of all hostnames begin with ns, leading to
-      // inefficiency.
-      throw new UnprocessableEntityException(
-          "A suffix after a wildcard in a nameserver lookup must be an in-bailiwick domain");
+      // Suffixes which are not domains we manage, such as ns*.zombo.com, are searched using the
+      // index on reversed host names, which finds the hosts ending in .zombo.com without scanning
+      // all the hosts beginning with ns. That only works for suffixes below a TLD; a TLD suffix
+      // would still match a large share of all the hosts.
+      if (!isSearchableHostSuffix(partialStringQuery.getSuffix())) {
+        throw new UnprocessableEntityException(
+            "A suffix after a wildcard in a nameserver lookup must be an in-bailiwick domain");
+      }
+      // Add 1 so we can detect truncation.
+      return makeSearchResults(
+          getSearchPlanner()
+              .searchHosts(partialStringQuery, cursorString, rdapResultSetMaxSize + 1),
+          CursorType.NAME);
     }
     List<Host> hostList = new ArrayList<>();
     for (String fqhn : ImmutableSortedSet.copyOf(domain.get().getSubordinateHosts())) {
@@ -211,72 +212,24 @@ public class RdapNameserverSearchAction extends RdapSearchActionBase {
   }
 
   /**
-   * Searches for nameservers by name with a prefix and wildcard.
-   *
-   * <p>There are no pending deletes for hosts, so we can call {@link
-   * RdapSearchActionBase#queryItems}.
+   * Searches for nameservers by name with a prefix and wildcard, or by exact name when deleted
+   * nameservers are included.
    */
   private NameserverSearchResponse searchByNameUsingPrefix(RdapSearchPattern partialStringQuery) {
+    checkInitialStringLength(partialStringQuery);
     // Add 1 so we can detect truncation.
-    int querySizeLimit = getStandardQuerySizeLimit();
-    return replicaTm()
-        .transact(
-            () -> {
-              CriteriaQueryBuilder<Host> queryBuilder =
-                  queryItems(
-                      Host.class,
-                      "hostName",
-                      partialStringQuery,
-                      cursorString,
-                      getDeletedItemHandling());
-              return makeSearchResults(
-                  getMatchingResources(queryBuilder, shouldIncludeDeleted(), querySizeLimit),
-                  CursorType.NAME);
-            });
+    return makeSearchResults(
+        getSearchPlanner().searchHosts(partialStringQuery, cursorString, rdapResultSetMaxSize + 1),
+        CursorType.NAME);
   }
 
   /** Searches for nameservers by IP address, returning a JSON array of nameserver info maps. */
   private NameserverSearchResponse searchByIp(InetAddress inetAddress) {
-    // Add 1 so we can detect truncation.
-    int querySizeLimit = getStandardQuerySizeLimit();
-    RdapResultSet<Host> rdapResultSet;
-      // Hibernate does not allow us to query @Converted array fields directly, either in the
-      // CriteriaQuery or the raw text format. However, Postgres does -- so we use native queries to
-      // find hosts where any of the inetAddresses match.
-      StringBuilder queryBuilder =
-          new StringBuilder("SELECT * FROM \"Host\" WHERE :address = ANY(inet_addresses)");
-    ImmutableMap.Builder<String, Object> parameters =
-        new ImmutableMap.Builder<String, Object>()
-            .put("address", InetAddresses.toAddrString(inetAddress));
-      if (getDeletedItemHandling().equals(DeletedItemHandling.EXCLUDE)) {
-      queryBuilder.append(" AND deletion_time = :endOfTime");
-      parameters.put("endOfTime", END_INSTANT);
-      }
-      if (cursorString.isPresent()) {
-        // cursorString here must be the repo ID
-        queryBuilder.append(" AND repo_id > :repoId");
-        parameters.put("repoId", cursorString.get());
-      }
-      if (getDesiredRegistrar().isPresent()) {
-        queryBuilder.append(" AND current_sponsor_registrar_id = :desiredRegistrar");
-        parameters.put("desiredRegistrar", getDesiredRegistrar().get());
-      }
-      queryBuilder.append(" ORDER BY repo_id ASC");
-    rdapResultSet =
-        replicaTm()
-            .transact(
-                () -> {
-                  Query query =
-                      replicaTm()
-                          .getEntityManager()
-                          .createNativeQuery(queryBuilder.toString(), Host.class)
-                          .setMaxResults(querySizeLimit);
-                  parameters.build().forEach(query::setParameter);
-                  @SuppressWarnings("unchecked")
-                  List<Host> resultList = query.getResultList();
-                  return filterResourcesByVisibility(resultList, querySizeLimit);
-                });
-    return makeSearchResults(rdapResultSet, CursorType.ADDRESS);
+    // Add 1 so we can detect truncation. The cursor string here is the repo ID.
+    return makeSearchResults(
+        getSearchPlanner()
+            .searchHostsByAddress(inetAddress, cursorString, rdapResultSetMaxSize + 1),
+        CursorType.ADDRESS);
   }
 
   /** Output JSON for a lists of hosts contained in an {@link RdapResultSet}. */
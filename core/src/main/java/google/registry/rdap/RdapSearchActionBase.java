@@ -14,32 +14,26 @@
 
 package google.registry.rdap;
 
-import static google.registry.persistence.transaction.TransactionManagerFactory.replicaTm;
-import static google.registry.util.DateTimeUtils.END_INSTANT;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import google.registry.model.EppResource;
 import google.registry.model.registrar.Registrar;
-import google.registry.persistence.transaction.CriteriaQueryBuilder;
+import google.registry.model.tld.Tlds;
 import google.registry.rdap.RdapMetrics.EndpointType;
 import google.registry.rdap.RdapMetrics.WildcardType;
 import google.registry.rdap.RdapSearchResults.BaseSearchResponse;
-import google.registry.rdap.RdapSearchResults.IncompletenessWarningType;
 import google.registry.request.HttpException.BadRequestException;
 import google.registry.request.HttpException.UnprocessableEntityException;
 import google.registry.request.Parameter;
 import google.registry.request.ParameterMap;
 import jakarta.inject.Inject;
-import jakarta.persistence.criteria.CriteriaBuilder;
 import java.net.URI;
 import java.net.URLEncoder;
-import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -50,8 +44,6 @@ import java.util.Optional;
  */
 public abstract class RdapSearchActionBase extends RdapActionBase {
 
-  private static final int RESULT_SET_SIZE_SCALING_FACTOR = 30;
-
   @Inject @ParameterMap ImmutableListMultimap<String, String> parameterMap;
   @Inject @Parameter("cursor") Optional<String> cursorTokenParam;
   @Inject @Parameter("registrar") Optional<String> registrarParam;
@@ -136,79 +128,44 @@ public abstract class RdapSearchActionBase extends RdapActionBase {
   }
 
   /**
-   * In Cloud SQL, builds and runs the given query, and checks for permissioning if necessary.
+   * Returns a planner for the database queries of this search.
    *
-   * @param builder a query builder that represents the various SELECT FROM, WHERE, ORDER BY, etc.
-   *     clauses that make up this SQL query
-   * @param checkForVisibility true if the results should be checked to make sure they are visible;
-   *     normally this should be equal to the shouldIncludeDeleted setting, but in cases where the
-   *     query could not check deletion status, it may need to be set to true even when not
-   *     including deleted records
-   * @param querySizeLimit the maximum number of items the query is expected to return, usually
-   *     because the limit has been set
-   * @return an {@link RdapResultSet} object containing the list of resources and an incompleteness
-   *     warning flag, which is set to MIGHT_BE_INCOMPLETE iff any resources were excluded due to
-   *     lack of visibility, and the resulting list of resources is less than the maximum allowable,
-   *     and the number of items returned by the query is greater than or equal to the maximum
-   *     number we might have expected
+   * <p>The planner filters out the resources that shouldn't be visible to the request as part of
+   * the query, so its results need no further visibility checks.
    */
-  <T extends EppResource> RdapResultSet<T> getMatchingResources(
-      CriteriaQueryBuilder<T> builder, boolean checkForVisibility, int querySizeLimit) {
-    Optional<String> desiredRegistrar = getDesiredRegistrar();
-    if (desiredRegistrar.isPresent()) {
-      builder =
-          builder.where(
-              "currentSponsorRegistrarId",
-              replicaTm().getEntityManager().getCriteriaBuilder()::equal,
-              desiredRegistrar.get());
-    }
-    List<T> queryResult =
-        replicaTm().criteriaQuery(builder.build()).setMaxResults(querySizeLimit).getResultList();
-    if (checkForVisibility) {
-      return filterResourcesByVisibility(queryResult, querySizeLimit);
-    } else {
-      return RdapResultSet.create(queryResult);
-    }
+  RdapSearchPlanner getSearchPlanner() {
+    return getSearchPlanner(shouldIncludeDeleted());
   }
 
-  protected <T extends EppResource> RdapResultSet<T> filterResourcesByVisibility(
-      List<T> queryResult, int querySizeLimit) {
-    // If we are including deleted resources, we need to check that we're authorized for each one.
-    List<T> resources = new ArrayList<>();
-    int numResourcesQueried = 0;
-    boolean someExcluded = false;
-    for (T resource : queryResult) {
-      if (shouldBeVisible(resource)) {
-        resources.add(resource);
-      } else {
-        someExcluded = true;
-      }
-      numResourcesQueried++;
-      if (resources.size() > rdapResultSetMaxSize) {
-        break;
-      }
+  /**
+   * Returns a planner for the database queries of this search, which may exclude deleted resources
+   * even if the request includes them.
+   */
+  RdapSearchPlanner getSearchPlanner(boolean includeDeleted) {
+    return new RdapSearchPlanner(
+        getRequestTime(), includeDeleted, rdapAuthorization, getDesiredRegistrar(), rdapMetrics);
+  }
+
+  /**
+   * Returns whether hosts can be searched by a pattern suffix that isn't a domain we manage.
+   *
+   * <p>Such hosts are looked up by suffix in the index on reversed host names, which is only
+   * selective enough if the suffix is a domain below a TLD. A suffix which is a TLD, ours or not,
+   * would match a large share of all the hosts.
+   */
+  static boolean isSearchableHostSuffix(String suffix) {
+    return suffix.contains(".") && !Tlds.getTlds().contains(suffix);
+  }
+
+  /** Throws if the initial string of a search pattern is too short to search by name prefix. */
+  static void checkInitialStringLength(RdapSearchPattern partialStringQuery) {
+    if (partialStringQuery.getInitialString().length()
+        < RdapSearchPattern.MIN_INITIAL_STRING_LENGTH) {
+      throw new UnprocessableEntityException(
+          String.format(
+              "Initial search string must be at least %d characters",
+              RdapSearchPattern.MIN_INITIAL_STRING_LENGTH));
     }
-    // The incompleteness problem comes about because we don't know how many items to fetch. We want
-    // to return rdapResultSetMaxSize worth of items, but some might be excluded, so we fetch more
-    // just in case. But how many more? That's the potential problem, addressed with the three-way
-    // AND statement:
-    // 1. If we didn't exclude any items, then we can't have the incompleteness problem.
-    // 2. If we have a full result set batch (rdapResultSetMaxSize items), we must by definition be
-    //    giving the user a complete result set.
-    // 3. If we started with fewer than querySizeLimit items, then there weren't any more items that
-    //    we missed. Even if we return fewer than rdapResultSetMaxSize items, it isn't because we
-    //    didn't fetch enough to start.
-    // Only if all three conditions are true might things be incomplete. In other words, we fetched
-    // as many as our limit allowed, but then excluded so many that we wound up with less than a
-    // full result set's worth of results.
-    return RdapResultSet.create(
-        resources,
-        (someExcluded
-                && (resources.size() < rdapResultSetMaxSize)
-                && (numResourcesQueried >= querySizeLimit))
-            ? IncompletenessWarningType.MIGHT_BE_INCOMPLETE
-            : IncompletenessWarningType.COMPLETE,
-        numResourcesQueried);
   }
 
   RdapSearchPattern recordWildcardType(RdapSearchPattern partialStringQuery) {
@@ -266,133 +223,4 @@ public abstract class RdapSearchActionBase extends RdapActionBase {
   URI createNavigationUri(String cursor) {
     return URI.create(getRequestUrlWithExtraParameter("cursor", encodeCursorToken(cursor)));
   }
-
-  // We want to return rdapResultSetMaxSize + 1 results, so that we know if there are "extra"
-  // results (in which case we'll have a "next" link in the RDAP response).
-  // In case that we want to return deleted results as well, we have to scale the number of results
-  // to be (more) sure we got everything.
-  int getStandardQuerySizeLimit() {
-    return shouldIncludeDeleted()
-        ? (RESULT_SET_SIZE_SCALING_FACTOR * (rdapResultSetMaxSize + 1))
-        : (rdapResultSetMaxSize + 1);
-  }
-
-  /**
-   * In Cloud SQL, handles prefix searches in cases where, if we need to filter out deleted items,
-   * there are no pending deletes.
-   *
-   * <p>In such cases, it is sufficient to check whether {@code deletionTime} is equal to {@code
-   * END_INSTANT}, because any other value means it has already been deleted. This allows us to use
-   * an equality query for the deletion time.
-   *
-   * @param clazz the type of resource to be queried
-   * @param filterField the database field of interest
-   * @param partialStringQuery the details of the search string; if there is no wildcard, an
-   *     equality query is used; if there is a wildcard, a range query is used instead; the initial
-   *     string should not be empty, and any search suffix will be ignored, so the caller must
-   *     filter the results if a suffix is specified
-   * @param cursorString if a cursor is present, this parameter should specify the cursor string, to
-   *     skip any results up to and including the string; empty() if there is no cursor
-   * @param deletedItemHandling whether to include or exclude deleted items
-   * @return a {@link CriteriaQueryBuilder} object representing the query so far
-   */
-  static <T extends EppResource> CriteriaQueryBuilder<T> queryItems(
-      Class<T> clazz,
-      String filterField,
-      RdapSearchPattern partialStringQuery,
-      Optional<String> cursorString,
-      DeletedItemHandling deletedItemHandling) {
-    replicaTm().assertInTransaction();
-    if (partialStringQuery.getInitialString().length()
-        < RdapSearchPattern.MIN_INITIAL_STRING_LENGTH) {
-      throw new UnprocessableEntityException(
-          String.format(
-              "Initial search string must be at least %d characters",
-              RdapSearchPattern.MIN_INITIAL_STRING_LENGTH));
-    }
-    CriteriaBuilder criteriaBuilder = replicaTm().getEntityManager().getCriteriaBuilder();
-    CriteriaQueryBuilder<T> builder = CriteriaQueryBuilder.create(replicaTm(), clazz);
-    if (partialStringQuery.getHasWildcard()) {
-      builder =
-          builder.where(
-              filterField,
-              criteriaBuilder::like,
-              String.format("%s%%", partialStringQuery.getInitialString()));
-    } else {
-      // no wildcard means we use a standard equals query
-      builder =
-          builder.where(filterField, criteriaBuilder::equal, partialStringQuery.getInitialString());
-    }
-    if (cursorString.isPresent()) {
-      builder = builder.where(filterField, criteriaBuilder::greaterThan, cursorString.get());
-    }
-    builder = builder.orderByAsc(filterField);
-    return setDeletedItemHandling(builder, deletedItemHandling);
-  }
-
-  /**
-   * In Cloud SQL, handles searches using a simple string rather than an {@link RdapSearchPattern}.
-   *
-   * <p>Since the filter is not an inequality, we can support also checking a cursor string against
-   * a different field (which involves an inequality on that field).
-   *
-   * @param clazz the type of resource to be queried
-   * @param filterField the database field of interest
-   * @param queryString the search string
-   * @param cursorField the field which should be compared to the cursor string, or empty() if the
-   *     key should be compared to a key created from the cursor string
-   * @param cursorString if a cursor is present, this parameter should specify the cursor string, to
-   *     skip any results up to and including the string; empty() if there is no cursor
-   * @param deletedItemHandling whether to include or exclude deleted items
-   * @return a {@link CriteriaQueryBuilder} object representing the query so far
-   */
-  static <T extends EppResource> CriteriaQueryBuilder<T> queryItems(
-      Class<T> clazz,
-      String filterField,
-      String queryString,
-      Optional<String> cursorField,
-      Optional<String> cursorString,
-      DeletedItemHandling deletedItemHandling) {
-    if (queryString.length() < RdapSearchPattern.MIN_INITIAL_STRING_LENGTH) {
-      throw new UnprocessableEntityException(
-          String.format(
-              "Initial search string must be at least %d characters",
-              RdapSearchPattern.MIN_INITIAL_STRING_LENGTH));
-    }
-    replicaTm().assertInTransaction();
-    CriteriaQueryBuilder<T> builder = CriteriaQueryBuilder.create(replicaTm(), clazz);
-    CriteriaBuilder criteriaBuilder = replicaTm().getEntityManager().getCriteriaBuilder();
-    builder = builder.where(filterField, criteriaBuilder::equal, queryString);
-    if (cursorString.isPresent()) {
-      if (cursorField.isPresent()) {
-        builder =
-            builder.where(cursorField.get(), criteriaBuilder::greaterThan, cursorString.get());
-      } else {
-        builder = builder.where("repoId", criteriaBuilder::greaterThan, cursorString.get());
-      }
-    }
-    return setDeletedItemHandling(builder, deletedItemHandling);
-  }
-
-  /** In Cloud SQL, handles searches where the field to be searched is the key. */
-  static <T extends EppResource> CriteriaQueryBuilder<T> queryItemsByKey(
-      Class<T> clazz,
-      RdapSearchPattern partialStringQuery,
-      Optional<String> cursorString,
-      DeletedItemHandling deletedItemHandling) {
-    replicaTm().assertInTransaction();
-    return queryItems(clazz, "repoId", partialStringQuery, cursorString, deletedItemHandling);
-  }
-
-  static <T extends EppResource> CriteriaQueryBuilder<T> setDeletedItemHandling(
-      CriteriaQueryBuilder<T> builder, DeletedItemHandling deletedItemHandling) {
-    if (!Objects.equals(deletedItemHandling, DeletedItemHandling.INCLUDE)) {
-      builder =
-          builder.where(
-              "deletionTime",
-              replicaTm().getEntityManager().getCriteriaBuilder()::equal,
-              END_INSTANT);
-    }
-    return builder;
-  }
 }
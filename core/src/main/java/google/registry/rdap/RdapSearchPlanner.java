@@ -0,0 +1,365 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rdap;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static google.registry.persistence.transaction.TransactionManagerFactory.replicaTm;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.InetAddresses;
+import google.registry.model.EppResource;
+import google.registry.model.domain.Domain;
+import google.registry.model.host.Host;
+import google.registry.persistence.VKey;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+import org.hibernate.Hibernate;
+
+/**
+ * Plans and runs the database queries behind RDAP domain and nameserver searches.
+ *
+ * <p>Each search pattern is answered with the query its shape lets the database serve from an
+ * index: exact names are equality lookups, patterns with an initial string are range scans of the
+ * name index, and domain patterns with only a TLD scan the TLD index. Host patterns with a suffix
+ * are range scans of the index on the reversed host name, which turns the suffix into a prefix.
+ * Results are ordered by name and paginated by keyset, starting right after the name held in the
+ * RDAP cursor token.
+ *
+ * <p>Names are matched, compared to the cursor and ordered in the {@value #NAME_COLLATION}
+ * collation, which orders strings by code point like C and {@link String#compareTo}. The name
+ * indexes use the same collation, since an index only serves the comparisons and the ordering of
+ * its own collation.
+ *
+ * <p>The deletion time, requested registrar and authorization filters are all part of the SQL
+ * query, so every result fetched is visible to the request. A page thus never fetches more than the
+ * one extra result that tells whether there is a next page, instead of over-fetching and filtering
+ * in Java, and result sets are never incomplete because of filtering.
+ *
+ * <p>The time taken by each query is recorded in {@link RdapMetrics}, by query plan.
+ *
+ * <p>All the methods must be called outside of a transaction, since they use their own replica
+ * transaction.
+ */
+final class RdapSearchPlanner {
+
+  /** The collation of the name indexes, see {@code V227__rdap_name_pattern_idx.sql}. */
+  private static final String NAME_COLLATION = "ucs_basic";
+
+  /** The kinds of query plans, which depend on the shape of the search pattern. */
+  enum Plan {
+    /** The name must equal the initial string. */
+    EXACT,
+    /** The name must start with the initial string. */
+    PREFIX,
+    /**
+     * The domain must be on the TLD given by the suffix, or the host must be subordinate to the
+     * suffix.
+     */
+    SUFFIX,
+    /** The name must start with the initial string and match the suffix as above. */
+    PREFIX_AND_SUFFIX,
+    /** The host must have the IP address, which is looked up in the host address array. */
+    ADDRESS,
+    /** The domain must use one of the nameservers, which are looked up in the join table. */
+    NAMESERVERS;
+
+    /** Returns the plan for a search by name with the given pattern. */
+    static Plan forPattern(RdapSearchPattern pattern) {
+      if (!pattern.getHasWildcard()) {
+        return EXACT;
+      }
+      if (pattern.getSuffix() == null) {
+        return PREFIX;
+      }
+      return pattern.getInitialString().isEmpty() ? SUFFIX : PREFIX_AND_SUFFIX;
+    }
+  }
+
+  private final Instant requestTime;
+  private final boolean includeDeleted;
+  private final RdapAuthorization authorization;
+  private final Optional<String> desiredRegistrar;
+  private final RdapMetrics rdapMetrics;
+
+  RdapSearchPlanner(
+      Instant requestTime,
+      boolean includeDeleted,
+      RdapAuthorization authorization,
+      Optional<String> desiredRegistrar,
+      RdapMetrics rdapMetrics) {
+    this.requestTime = requestTime;
+    this.includeDeleted = includeDeleted;
+    this.authorization = authorization;
+    this.desiredRegistrar = desiredRegistrar;
+    this.rdapMetrics = rdapMetrics;
+  }
+
+  /**
+   * Returns the first {@code limit} visible domains matching the pattern, ordered by name.
+   *
+   * @param cursor if present, only domains whose name comes after the cursor are returned
+   */
+  RdapResultSet<Domain> searchDomains(
+      RdapSearchPattern pattern, Optional<String> cursor, int limit) {
+    return search(Domain.class, "domainName", pattern, cursor, limit);
+  }
+
+  /**
+   * Returns the first {@code limit} visible hosts matching the pattern, ordered by name.
+   *
+   * <p>The suffix of a host pattern, if any, is a domain the hosts must be subordinate to, whether
+   * or not that domain is managed by the registry.
+   *
+   * @param cursor if present, only hosts whose name comes after the cursor are returned
+   */
+  RdapResultSet<Host> searchHosts(RdapSearchPattern pattern, Optional<String> cursor, int limit) {
+    return search(Host.class, "hostName", pattern, cursor, limit);
+  }
+
+  /**
+   * Returns the first {@code limit} visible domains using any of the given nameservers, ordered by
+   * name.
+   *
+   * <p>All the nameservers are looked up at once, and each domain is only returned once, however
+   * many of the nameservers it uses. The requested registrar, if any, is the registrar of the
+   * nameservers, so it doesn't apply to the domains.
+   *
+   * @param cursor if present, only domains whose name comes after the cursor are returned
+   */
+  RdapResultSet<Domain> searchDomainsByNameservers(
+      Collection<VKey<Host>> hostKeys, Optional<String> cursor, int limit) {
+    if (hostKeys.isEmpty()) {
+      return RdapResultSet.create(ImmutableList.of());
+    }
+    // The nameservers are an element collection, which HQL can't easily test for membership of any
+    // of many values, so find the matching domains with a native query on the join table.
+    StringBuilder queryBuilder =
+        new StringBuilder(
+            "SELECT d.repo_id FROM \"Domain\" d WHERE d.repo_id IN (SELECT dh.domain_repo_id FROM"
+                + " \"DomainHost\" dh WHERE dh.host_repo_id IN (:hostRepoIds))");
+    ImmutableMap.Builder<String, Object> parameters =
+        new ImmutableMap.Builder<String, Object>()
+            .put(
+                "hostRepoIds",
+                hostKeys.stream()
+                    .map(hostKey -> (String) hostKey.getKey())
+                    .collect(toImmutableList()));
+    if (cursor.isPresent()) {
+      queryBuilder.append(" AND d.domain_name COLLATE " + NAME_COLLATION + " > :cursor");
+      parameters.put("cursor", cursor.get());
+    }
+    appendVisibility(
+        queryBuilder, parameters, "d.deletion_time", "d.current_sponsor_registrar_id", false);
+    queryBuilder.append(" ORDER BY d.domain_name COLLATE " + NAME_COLLATION + " ASC");
+    return runQuery(
+        Domain.class,
+        Plan.NAMESERVERS,
+        () -> {
+          Query query =
+              replicaTm()
+                  .getEntityManager()
+                  .createNativeQuery(queryBuilder.toString())
+                  .setMaxResults(limit);
+          parameters.buildOrThrow().forEach(query::setParameter);
+          @SuppressWarnings("unchecked")
+          Stream<String> resultStream = query.getResultStream();
+          ImmutableList<VKey<Domain>> domainKeys =
+              resultStream
+                  .map(repoId -> VKey.create(Domain.class, repoId))
+                  .collect(toImmutableList());
+          ImmutableMap<VKey<? extends Domain>, Domain> domains = replicaTm().loadByKeys(domainKeys);
+          return RdapResultSet.create(
+              domainKeys.stream()
+                  .map(domains::get)
+                  .peek(domain -> Hibernate.initialize(domain.getDsData()))
+                  .collect(toImmutableList()));
+        });
+  }
+
+  /**
+   * Returns the first {@code limit} visible hosts with the given IP address, ordered by repo ID.
+   *
+   * @param cursor if present, only hosts whose repo ID comes after the cursor are returned
+   */
+  RdapResultSet<Host> searchHostsByAddress(
+      InetAddress address, Optional<String> cursor, int limit) {
+    // Hibernate does not allow us to query @Converted array fields directly, either in the
+    // CriteriaQuery or the raw text format. However, Postgres does -- so we use native queries to
+    // find hosts where any of the inetAddresses match.
+    StringBuilder queryBuilder =
+        new StringBuilder("SELECT * FROM \"Host\" h WHERE :address = ANY(h.inet_addresses)");
+    ImmutableMap.Builder<String, Object> parameters =
+        new ImmutableMap.Builder<String, Object>()
+            .put("address", InetAddresses.toAddrString(address));
+    if (cursor.isPresent()) {
+      queryBuilder.append(" AND h.repo_id > :cursor");
+      parameters.put("cursor", cursor.get());
+    }
+    appendVisibility(
+        queryBuilder, parameters, "h.deletion_time", "h.current_sponsor_registrar_id", true);
+    queryBuilder.append(" ORDER BY h.repo_id ASC");
+    return runQuery(
+        Host.class,
+        Plan.ADDRESS,
+        () -> {
+          Query query =
+              replicaTm()
+                  .getEntityManager()
+                  .createNativeQuery(queryBuilder.toString(), Host.class)
+                  .setMaxResults(limit);
+          parameters.buildOrThrow().forEach(query::setParameter);
+          @SuppressWarnings("unchecked")
+          List<Host> hosts = query.getResultList();
+          return RdapResultSet.create(hosts);
+        });
+  }
+
+  private <T extends EppResource> RdapResultSet<T> search(
+      Class<T> resourceType,
+      String nameField,
+      RdapSearchPattern pattern,
+      Optional<String> cursor,
+      int limit) {
+    StringBuilder queryBuilder =
+        new StringBuilder("FROM ").append(resourceType.getSimpleName()).append(" WHERE ");
+    ImmutableMap.Builder<String, Object> parameters = new ImmutableMap.Builder<>();
+    String collatedName = collate(nameField);
+    Plan plan = Plan.forPattern(pattern);
+    switch (plan) {
+      case EXACT -> {
+        queryBuilder.append(nameField).append(" = :name");
+        parameters.put("name", pattern.getInitialString());
+      }
+      case PREFIX -> {
+        queryBuilder.append(collatedName).append(" LIKE :prefix");
+        parameters.put("prefix", pattern.getInitialString() + "%");
+      }
+      case SUFFIX -> appendSuffix(queryBuilder, parameters, resourceType, nameField, pattern);
+      case PREFIX_AND_SUFFIX -> {
+        queryBuilder.append(collatedName).append(" LIKE :prefix AND ");
+        parameters.put("prefix", pattern.getInitialString() + "%");
+        appendSuffix(queryBuilder, parameters, resourceType, nameField, pattern);
+        if (resourceType == Host.class) {
+          // The initial string and the suffix can't overlap, or ns.exam*.example.tld would match
+          // ns.example.tld.
+          queryBuilder.append(" AND length(").append(nameField).append(") >= :minLength");
+          parameters.put(
+              "minLength", pattern.getInitialString().length() + pattern.getSuffix().length() + 1);
+        }
+      }
+      default -> throw new IllegalStateException("Unexpected plan for a name search: " + plan);
+    }
+    if (cursor.isPresent()) {
+      queryBuilder.append(" AND ").append(collatedName).append(" > :cursor");
+      parameters.put("cursor", cursor.get());
+    }
+    appendVisibility(queryBuilder, parameters, "deletionTime", "currentSponsorRegistrarId", true);
+    queryBuilder.append(" ORDER BY ").append(collatedName).append(" ASC");
+    return runQuery(
+        resourceType,
+        plan,
+        () -> {
+          TypedQuery<T> query =
+              replicaTm().query(queryBuilder.toString(), resourceType).setMaxResults(limit);
+          parameters.buildOrThrow().forEach(query::setParameter);
+          List<T> resources = query.getResultList();
+          resources.forEach(
+              resource -> {
+                if (resource instanceof Domain domain) {
+                  Hibernate.initialize(domain.getDsData());
+                }
+              });
+          return RdapResultSet.create(resources);
+        });
+  }
+
+  /**
+   * Appends the condition on the suffix of the pattern.
+   *
+   * <p>The suffix of a domain pattern is its TLD. The suffix of a host pattern is a domain the host
+   * is subordinate to, which is matched as a prefix of the reversed host name, so that the index on
+   * the reversed name can serve it.
+   */
+  private static void appendSuffix(
+      StringBuilder queryBuilder,
+      ImmutableMap.Builder<String, Object> parameters,
+      Class<? extends EppResource> resourceType,
+      String nameField,
+      RdapSearchPattern pattern) {
+    if (resourceType == Host.class) {
+      queryBuilder
+          .append(collate("function('reverse' as String, " + nameField + ")"))
+          .append(" LIKE :reversedSuffix");
+      parameters.put(
+          "reversedSuffix",
+          new StringBuilder(pattern.getSuffix()).reverse().append(".%").toString());
+    } else {
+      queryBuilder.append("tld = :tld");
+      parameters.put("tld", pattern.getSuffix());
+    }
+  }
+
+  /** Returns the HQL expression for a string in the collation of the name indexes. */
+  private static String collate(String expression) {
+    return String.format("collate(%s as %s)", expression, NAME_COLLATION);
+  }
+
+  /** Runs a query in a replica transaction, recording its latency under its plan. */
+  private <T extends EppResource> RdapResultSet<T> runQuery(
+      Class<T> resourceType, Plan plan, Callable<RdapResultSet<T>> query) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    RdapResultSet<T> resultSet = replicaTm().transact(query);
+    rdapMetrics.recordSearchQueryTime(
+        resourceType, plan, includeDeleted, stopwatch.elapsed().toMillis());
+    return resultSet;
+  }
+
+  /**
+   * Appends the conditions that only keep the resources visible to the request.
+   *
+   * <p>This is the SQL version of {@link RdapSearchActionBase#shouldBeVisible(EppResource)}.
+   */
+  private void appendVisibility(
+      StringBuilder queryBuilder,
+      ImmutableMap.Builder<String, Object> parameters,
+      String deletionTimeField,
+      String registrarField,
+      boolean filterOnDesiredRegistrar) {
+    if (filterOnDesiredRegistrar && desiredRegistrar.isPresent()) {
+      queryBuilder.append(" AND ").append(registrarField).append(" = :desiredRegistrar");
+      parameters.put("desiredRegistrar", desiredRegistrar.get());
+    }
+    if (includeDeleted && authorization.role() == RdapAuthorization.Role.ADMINISTRATOR) {
+      return;
+    }
+    queryBuilder.append(" AND (").append(deletionTimeField).append(" > :requestTime");
+    parameters.put("requestTime", requestTime);
+    if (includeDeleted) {
+      // Deleted resources are only visible to the registrars the request is authorized for.
+      queryBuilder.append(" OR ").append(registrarField).append(" IN (:authorizedRegistrars)");
+      parameters.put("authorizedRegistrars", authorization.registrarIds());
+    }
+    queryBuilder.append(")");
+  }
+}
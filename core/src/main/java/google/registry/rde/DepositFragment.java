@@ -17,13 +17,21 @@ package google.registry.rde;
 import java.io.Serial;
 import java.io.Serializable;
 
-/** Container of RDE resource marshalled by {@link RdeMarshaller}. */
-public record DepositFragment(RdeResourceType type, String xml, String error)
+/**
+ * Container of RDE resource marshalled by {@link RdeMarshaller}.
+ *
+ * @param key the key of the marshalled resource, which stably assigns it to a deposit shard
+ */
+public record DepositFragment(RdeResourceType type, String key, String xml, String error)
     implements Serializable {
 
-  @Serial private static final long serialVersionUID = -5241410684255467454L;
+  @Serial private static final long serialVersionUID = 6218207461230178522L;
 
   public static DepositFragment create(RdeResourceType type, String xml, String error) {
-    return new DepositFragment(type, xml, error);
+    return create(type, "", xml, error);
+  }
+
+  public static DepositFragment create(RdeResourceType type, String key, String xml, String error) {
+    return new DepositFragment(type, key, xml, error);
   }
 }
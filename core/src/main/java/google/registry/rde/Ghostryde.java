@@ -16,19 +16,27 @@ package google.registry.rde;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static google.registry.rde.RydeCompression.openCompressor;
 import static google.registry.rde.RydeCompression.openDecompressor;
+import static google.registry.rde.RydeCompression.openShardCompressor;
+import static google.registry.rde.RydeCompression.openShardDecompressor;
+import static google.registry.rde.RydeCompression.openStitchingCompressor;
 import static google.registry.rde.RydeEncryption.GHOSTRYDE_USE_INTEGRITY_PACKET;
 import static google.registry.rde.RydeEncryption.openDecryptor;
 import static google.registry.rde.RydeEncryption.openEncryptor;
+import static google.registry.rde.RydeFileEncoding.fitsPgpFileHeader;
+import static google.registry.rde.RydeFileEncoding.makePgpFileHeader;
 import static google.registry.rde.RydeFileEncoding.openPgpFileReader;
 import static google.registry.rde.RydeFileEncoding.openPgpFileWriter;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closer;
+import google.registry.rde.RydeCompression.StitchingCompressor;
 import google.registry.util.ImprovedInputStream;
 import google.registry.util.ImprovedOutputStream;
 import java.io.ByteArrayInputStream;
@@ -99,6 +107,23 @@ import org.bouncycastle.openpgp.PGPPublicKey;
  *
  * }</pre>
  *
+ * <h2>Sharded API</h2>
+ *
+ * <p>Large files can also be compressed in shards, e.g. on different machines, and then stitched
+ * together into a single ghostryde file without decompressing them again:
+ *
+ * <pre>{@code
+ * ByteArrayOutputStream shard = new ByteArrayOutputStream();
+ * try (ImprovedOutputStream shardEncoder = Ghostryde.shardEncoder(shard)) {
+ *   shardEncoder.write(shardData);
+ * }
+ * try (ShardedEncoder encoder =
+ *     Ghostryde.shardedEncoder(output, publicKey, head.length + shardData.length, null)) {
+ *   encoder.write(head);
+ *   encoder.appendShard(shard.toByteArray(), shardData.length);
+ * }
+ * }</pre>
+ *
  * <h2>GhostRYDE Format</h2>
  *
  * <p>A {@code .ghostryde} file is the exact same thing as a {@code .gpg} file, except the OpenPGP
@@ -196,6 +221,136 @@ public final class Ghostryde {
     return encoder(output, encryptionKey, null);
   }
 
+  /**
+   * Creates an encoder for one shard of the data of a ghostryde file.
+   *
+   * <p>The shard is only compressed, <b>not</b> encrypted, so it must not be persisted. Instead it
+   * is handed over to a {@link ShardedEncoder} (see {@link #shardedEncoder}) that stitches it into
+   * the final, encrypted file. The number of bytes written to the returned stream must be passed
+   * along with the shard.
+   *
+   * @param output where to write the compressed shard
+   */
+  public static ImprovedOutputStream shardEncoder(OutputStream output) {
+    return openShardCompressor(output);
+  }
+
+  /**
+   * Creates a Ghostryde encoder that stitches shards created by {@link #shardEncoder} into a single
+   * ghostryde file.
+   *
+   * <p>The resulting file is read by {@link #decoder} like any other ghostryde file. Its data needs
+   * to be exactly {@code dataLength} bytes long, which is checked when the encoder is closed.
+   *
+   * <p>Stitching needs the length of the data up front, in a PGP file header that can't hold 4 GiB
+   * or more. Longer data is written like by {@link #encoder} instead, with each shard decompressed
+   * as it is appended.
+   *
+   * @param output where to write the encrypted data
+   * @param encryptionKey the encryption key to use
+   * @param dataLength the total length of the data, including all shards
+   * @param lengthOutput if not null - will save the total length of the data written to this
+   *     output. See {@link #readLength}.
+   */
+  public static ShardedEncoder shardedEncoder(
+      OutputStream output,
+      PGPPublicKey encryptionKey,
+      long dataLength,
+      @Nullable OutputStream lengthOutput) {
+    return shardedEncoder(
+        output,
+        encryptionKey,
+        dataLength,
+        lengthOutput,
+        fitsPgpFileHeader(INNER_FILENAME, dataLength));
+  }
+
+  @VisibleForTesting
+  static ShardedEncoder shardedEncoder(
+      OutputStream output,
+      PGPPublicKey encryptionKey,
+      long dataLength,
+      @Nullable OutputStream lengthOutput,
+      boolean stitchShards) {
+    Closer closer = Closer.create();
+    if (!stitchShards) {
+      OutputStream encoder = closer.register(encoder(output, encryptionKey));
+      return new ShardedEncoder(encoder, null, closer, dataLength, lengthOutput);
+    }
+    OutputStream encryptionLayer =
+        closer.register(
+            openEncryptor(output, GHOSTRYDE_USE_INTEGRITY_PACKET, ImmutableList.of(encryptionKey)));
+    StitchingCompressor kompressor = closer.register(openStitchingCompressor(encryptionLayer));
+    try {
+      // The file layer has a fixed length, so its data can be written straight to the compressor.
+      kompressor.write(makePgpFileHeader(INNER_FILENAME, INNER_MODIFICATION_TIME, dataLength));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return new ShardedEncoder(kompressor, kompressor, closer, dataLength, lengthOutput);
+  }
+
+  /** Ghostryde encoder that can append compressed shards in between the data written to it. */
+  public static final class ShardedEncoder extends ImprovedOutputStream {
+
+    /** The compressor to append shards to, or null if they are decompressed instead. */
+    @Nullable private final StitchingCompressor kompressor;
+
+    private final Closer closer;
+    private final long dataLength;
+    @Nullable private final OutputStream lengthOutput;
+    private long shardBytes;
+
+    private ShardedEncoder(
+        OutputStream output,
+        @Nullable StitchingCompressor kompressor,
+        Closer closer,
+        long dataLength,
+        @Nullable OutputStream lengthOutput) {
+      super("ShardedGhostrydeEncoder", output, false);
+      this.kompressor = kompressor;
+      this.closer = closer;
+      this.dataLength = dataLength;
+      this.lengthOutput = lengthOutput;
+    }
+
+    /**
+     * Appends a shard created by {@link #shardEncoder}.
+     *
+     * @param shard the compressed shard
+     * @param length the number of bytes written to the shard encoder
+     */
+    public void appendShard(byte[] shard, long length) throws IOException {
+      if (kompressor == null) {
+        try (InputStream data = openShardDecompressor(new ByteArrayInputStream(shard))) {
+          ByteStreams.copy(ByteStreams.limit(data, length), this);
+        }
+        return;
+      }
+      kompressor.appendShard(shard);
+      shardBytes += length;
+    }
+
+    /** Returns the number of bytes written so far, including those of the appended shards. */
+    @Override
+    public long getBytesWritten() {
+      return super.getBytesWritten() + shardBytes;
+    }
+
+    @Override
+    public void onClose() throws IOException {
+      closer.close();
+      checkState(
+          getBytesWritten() == dataLength,
+          "Expected %s bytes of data but got %s",
+          dataLength,
+          getBytesWritten());
+      if (lengthOutput != null) {
+        lengthOutput.write(Long.toString(dataLength).getBytes(US_ASCII));
+      }
+    }
+  }
+
   /**
    * Creates a Ghostryde decoder.
    *
@@ -14,6 +14,9 @@
 
 package google.registry.rde;
 
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import google.registry.model.rde.RdeMode;
@@ -26,6 +29,7 @@ import jakarta.inject.Inject;
 import java.time.Instant;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -49,6 +53,17 @@ public final class RdeCounter {
     counts.get(type).incrementAndGet();
   }
 
+  /** Adds counts gathered by another counter, e.g. over one shard of a deposit. */
+  public void add(ImmutableMap<RdeResourceType, Long> otherCounts) {
+    otherCounts.forEach((type, count) -> counts.get(type).addAndGet(count));
+  }
+
+  /** Returns the sum of {@link #increment(RdeResourceType)} calls for each resource type. */
+  public ImmutableMap<RdeResourceType, Long> getCounts() {
+    return counts.entrySet().stream()
+        .collect(toImmutableMap(Map.Entry::getKey, entry -> entry.getValue().get()));
+  }
+
   /** Constructs a header containing the sum of {@link #increment(RdeResourceType)} calls. */
   public XjcRdeHeader makeHeader(String tld, RdeMode mode) {
     XjcRdeHeader header = new XjcRdeHeader();
@@ -214,7 +214,7 @@ public final class RdeMarshaller implements Serializable {
               getMarshaller().marshalLenient(element));
       logger.atSevere().withCause(e).log(error);
     }
-    return DepositFragment.create(type, xml, error);
+    return DepositFragment.create(type, String.valueOf(resource.createVKey().getKey()), xml, error);
   }
 
   private XmlFragmentMarshaller getMarshaller() {
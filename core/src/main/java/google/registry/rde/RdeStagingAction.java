@@ -234,6 +234,11 @@ public final class RdeStagingAction implements Runnable {
   @Inject @Config("transactionCooldown") Duration transactionCooldown;
   @Inject @Config("beamStagingBucketUrl") String stagingBucketUrl;
   @Inject @Config("rdeBucket") String rdeBucket;
+
+  @Inject
+  @Config("rdeDepositShards")
+  int depositShards;
+
   @Inject @Parameter(RdeModule.PARAM_MANUAL) boolean manual;
 
   @Inject @Parameter(RdeModule.PARAM_DIRECTORY) Optional<String> directory;
@@ -289,6 +294,7 @@ public final class RdeStagingAction implements Runnable {
                                         ImmutableSet.copyOf(pendingDeposits)))
                                 .put("validationMode", validationMode.name())
                                 .put("rdeStagingBucket", rdeBucket)
+                                .put("depositShards", String.valueOf(depositShards))
                                 .put(
                                     "stagingKey",
                                     BaseEncoding.base64Url().omitPadding().encode(stagingKeyBytes))
@@ -21,8 +21,14 @@ import google.registry.util.ImprovedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.WillNotClose;
+import org.bouncycastle.bcpg.BCPGOutputStream;
+import org.bouncycastle.bcpg.PacketTags;
 import org.bouncycastle.openpgp.PGPCompressedData;
 import org.bouncycastle.openpgp.PGPCompressedDataGenerator;
 import org.bouncycastle.openpgp.PGPException;
@@ -62,6 +68,108 @@ final class RydeCompression {
     }
   }
 
+  /**
+   * Creates an OutputStream that compresses one shard of the data, to be stitched together with
+   * other shards by {@link #openStitchingCompressor}.
+   *
+   * <p>The output is a raw ZIP (deflate) segment without any OpenPGP packet framing. It doesn't
+   * refer back to data from other shards and ends with a sync flush instead of a final block, so
+   * that it can be concatenated with other segments into a single deflate stream.
+   */
+  @CheckReturnValue
+  static ImprovedOutputStream openShardCompressor(@WillNotClose OutputStream os) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    DeflaterOutputStream kompressor = new DeflaterOutputStream(os, deflater, BUFFER_SIZE, true);
+    return new ImprovedOutputStream("RydeShardCompressor", kompressor, false) {
+      @Override
+      public void onClose() throws IOException {
+        // Sync flush, which ends the segment on a byte boundary without finishing the stream.
+        kompressor.flush();
+        deflater.end();
+      }
+    };
+  }
+
+  /**
+   * Creates an InputStream that decompresses a shard created by {@link #openShardCompressor}.
+   *
+   * <p>A shard isn't a complete compressed stream, so exactly as many bytes as were written to the
+   * shard compressor must be read, and no more.
+   */
+  @CheckReturnValue
+  static ImprovedInputStream openShardDecompressor(@WillNotClose InputStream input) {
+    Inflater inflater = new Inflater(true);
+    return new ImprovedInputStream(
+        "RydeShardDecompressor", new InflaterInputStream(input, inflater, BUFFER_SIZE), false) {
+      @Override
+      public void onClose() {
+        inflater.end();
+      }
+    };
+  }
+
+  /**
+   * Creates a {@link StitchingCompressor} that writes a single OpenPGP compressed data packet.
+   *
+   * <p>This produces the same packet as {@link #openCompressor}, except that shards compressed by
+   * {@link #openShardCompressor} can be appended to it without being decompressed first.
+   */
+  @CheckReturnValue
+  static StitchingCompressor openStitchingCompressor(@WillNotClose OutputStream os) {
+    try {
+      BCPGOutputStream packet =
+          new BCPGOutputStream(os, PacketTags.COMPRESSED_DATA, new byte[BUFFER_SIZE]);
+      packet.write(COMPRESSION_ALGORITHM);
+      return new StitchingCompressor(packet);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * OutputStream that compresses the data written to it, and that can be interleaved with shards
+   * that were already compressed.
+   */
+  static final class StitchingCompressor extends ImprovedOutputStream {
+
+    private final BCPGOutputStream packet;
+    private final Deflater deflater;
+    private final DeflaterOutputStream kompressor;
+
+    private StitchingCompressor(BCPGOutputStream packet) {
+      this(packet, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    }
+
+    private StitchingCompressor(BCPGOutputStream packet, Deflater deflater) {
+      this(packet, deflater, new DeflaterOutputStream(packet, deflater, BUFFER_SIZE, true));
+    }
+
+    private StitchingCompressor(
+        BCPGOutputStream packet, Deflater deflater, DeflaterOutputStream kompressor) {
+      super("RydeStitchingCompressor", kompressor, false);
+      this.packet = packet;
+      this.deflater = deflater;
+      this.kompressor = kompressor;
+    }
+
+    /** Appends a shard created by {@link #openShardCompressor} to the compressed data. */
+    void appendShard(byte[] shard) throws IOException {
+      // Sync flush what was written so far, so that the shard starts on a byte boundary. Then drop
+      // the compression history: data written after the shard must not refer back to data written
+      // before it, since the shard sits in between once decompressed.
+      kompressor.flush();
+      deflater.reset();
+      packet.write(shard);
+    }
+
+    @Override
+    public void onClose() throws IOException {
+      kompressor.finish();
+      deflater.end();
+      packet.finish();
+    }
+  }
+
   /**
    * Creates an InputStream that decompresses the data.
    *
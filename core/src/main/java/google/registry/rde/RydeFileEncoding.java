@@ -14,10 +14,13 @@
 
 package google.registry.rde;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.bouncycastle.openpgp.PGPLiteralData.BINARY;
 
 import google.registry.util.ImprovedInputStream;
 import google.registry.util.ImprovedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -41,6 +44,9 @@ final class RydeFileEncoding {
 
   private static final int BUFFER_SIZE = 64 * 1024;
 
+  /** The largest body length that a fixed-length OpenPGP packet header can hold. */
+  private static final long MAX_PACKET_BODY_LENGTH = 0xFFFFFFFFL;
+
   /**
    * Creates an OutputStream that encodes the data as a PGP file blob.
    *
@@ -65,6 +71,36 @@ final class RydeFileEncoding {
     }
   }
 
+  /**
+   * Returns the header of a PGP file blob whose data is exactly {@code length} bytes long.
+   *
+   * <p>Unlike {@link #openPgpFileWriter}, which splits the data into chunks of varying lengths, the
+   * data of such a blob follows its header as-is. This lets callers write the data in pieces that
+   * were prepared separately, e.g. compressed shards of a deposit.
+   */
+  static byte[] makePgpFileHeader(String filename, Instant modified, long length) {
+    // BouncyCastle silently truncates longer lengths to their lowest 32 bits.
+    checkArgument(
+        fitsPgpFileHeader(filename, length),
+        "PGP file of %s bytes is too long for a fixed-length header",
+        length);
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    try {
+      // The header is written as soon as the file is opened. The data is written by the caller.
+      new PGPLiteralDataGenerator()
+          .open(header, BINARY, filename, length, Timestamp.from(modified));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return header.toByteArray();
+  }
+
+  /** Returns whether {@link #makePgpFileHeader} can make a header for the given file. */
+  static boolean fitsPgpFileHeader(String filename, long length) {
+    // Besides the data, the packet body holds the format, the filename and the modification time.
+    return length + 6 + filename.getBytes(UTF_8).length <= MAX_PACKET_BODY_LENGTH;
+  }
+
   /** Input stream to a PGP file's data that also holds the file's metadata. */
   static class PgpFileInputStream extends ImprovedInputStream {
     private final String filename;
@@ -15,6 +15,8 @@
 package google.registry.tools.server;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.io.BaseEncoding.base16;
 import static google.registry.model.EppResourceUtils.loadAtPointInTime;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
@@ -23,6 +25,7 @@ import static google.registry.util.DateTimeUtils.minusMinutes;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.StorageException;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -33,6 +36,7 @@ import google.registry.model.domain.Domain;
 import google.registry.model.domain.secdns.DomainDsData;
 import google.registry.model.host.Host;
 import google.registry.model.tld.Tld;
+import google.registry.persistence.VKey;
 import google.registry.request.Action;
 import google.registry.request.HttpException.BadRequestException;
 import google.registry.request.JsonActionRunner;
@@ -48,6 +52,7 @@ import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import org.hibernate.CacheMode;
@@ -82,6 +87,9 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
   /** Format for the GCS path to a file. */
   private static final String GCS_PATH_FORMAT = "gs://%s/%s";
 
+  /** Suffix of the temporary file that a zone file is written to before it's complete. */
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
   /** Format for the zone file header. */
   private static final String HEADER_FORMAT = "$ORIGIN\t%s.\n\n";
 
@@ -107,6 +115,7 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
   @Inject @Config("dnsDefaultDsTtl") Duration dnsDefaultDsTtl;
   @Inject Clock clock;
   @Inject GcsUtils gcsUtils;
+  @Inject ZoneFileMetrics zoneFileMetrics;
 
   @Inject GenerateZoneFilesAction() {}
 
@@ -144,21 +153,56 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
   }
 
   private void generateForTld(String tld, Instant exportTime) {
-    ImmutableList<String> stanzas = tm().transact(() -> getStanzasForTld(tld, exportTime));
+    Instant startTime = clock.now();
     BlobId outputBlobId = BlobId.of(bucket, String.format(FILENAME_FORMAT, tld, exportTime));
-    try (OutputStream gcsOutput = gcsUtils.openOutputStream(outputBlobId);
+    // The zone file is written to a temporary file first, so that a generation that fails midway
+    // doesn't leave a truncated zone file under the real name.
+    BlobId tempBlobId = BlobId.of(bucket, outputBlobId.getName() + TEMP_FILE_SUFFIX);
+    long domainCount;
+    try {
+      domainCount = writeZoneFile(tld, exportTime, tempBlobId);
+    } catch (RuntimeException e) {
+      try {
+        gcsUtils.delete(tempBlobId);
+      } catch (StorageException deleteException) {
+        e.addSuppressed(deleteException);
+      }
+      throw e;
+    }
+    gcsUtils.move(tempBlobId, outputBlobId);
+    Duration duration = Duration.between(startTime, clock.now());
+    zoneFileMetrics.recordZoneFileGenerated(tld, domainCount, duration);
+    log.atInfo().log(
+        "Scanned %d domains for the zone file of %s in %s.", domainCount, tld, duration);
+  }
+
+  /** Writes the zone file of the given TLD to GCS, and returns the number of domains scanned. */
+  private long writeZoneFile(String tld, Instant exportTime, BlobId blobId) {
+    try (OutputStream gcsOutput = gcsUtils.openOutputStream(blobId);
         Writer osWriter = new OutputStreamWriter(gcsOutput, UTF_8);
         PrintWriter writer = new PrintWriter(osWriter)) {
       writer.printf(HEADER_FORMAT, tld);
-      stanzas.forEach(writer::println);
-      writer.flush();
+      // The stanzas are written out as they are generated, so the transaction can't be retried.
+      long domainCount = tm().transactNoRetry(() -> writeStanzasForTld(tld, exportTime, writer));
+      // PrintWriter swallows exceptions, so check for them once closed, which finalizes the file.
+      writer.close();
+      if (writer.checkError()) {
+        throw new IOException("Failed to write the zone file of " + tld);
+      }
+      return domainCount;
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private ImmutableList<String> getStanzasForTld(String tld, Instant exportTime) {
-    ImmutableList.Builder<String> result = new ImmutableList.Builder<>();
+  /**
+   * Writes the stanzas of the given TLD at the export time, and returns the number of domains
+   * scanned.
+   *
+   * <p>Domains are processed in chunks of {@link #BATCH_SIZE}, so that their revisions and those of
+   * their nameservers at the export time can be loaded with a few queries per chunk.
+   */
+  private long writeStanzasForTld(String tld, Instant exportTime, PrintWriter writer) {
     ScrollableResults<Domain> scrollableResults =
         tm().query("FROM Domain WHERE tld = :tld AND deletionTime > :exportTime", Domain.class)
             .setParameter("tld", tld)
@@ -166,52 +210,81 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
             .unwrap(SelectionQuery.class)
             .setCacheMode(CacheMode.IGNORE)
             .scroll(ScrollMode.FORWARD_ONLY);
-    for (int i = 1; scrollableResults.next(); i = (i + 1) % BATCH_SIZE) {
-      Domain domain = scrollableResults.get();
-      populateStanzasForDomain(domain, exportTime, result);
-      if (i == 0) {
-        tm().getEntityManager().flush();
-        tm().getEntityManager().clear();
+    long domainCount = 0;
+    List<Domain> chunk = new ArrayList<>(BATCH_SIZE);
+    while (scrollableResults.next()) {
+      chunk.add(scrollableResults.get());
+      domainCount++;
+      if (chunk.size() == BATCH_SIZE) {
+        writeStanzasForChunk(chunk, exportTime, writer);
+        chunk.clear();
       }
     }
-    return result.build();
+    if (!chunk.isEmpty()) {
+      writeStanzasForChunk(chunk, exportTime, writer);
+    }
+    return domainCount;
   }
 
-  private void populateStanzasForDomain(
-      Domain domain, Instant exportTime, ImmutableList.Builder<String> result) {
-    domain = loadAtPointInTime(domain, exportTime);
-    // A null means the domain was deleted (or not created) at this time.
-    if (domain == null || !domain.shouldPublishToDns()) {
-      return;
+  private void writeStanzasForChunk(List<Domain> chunk, Instant exportTime, PrintWriter writer) {
+    // Domains that were deleted (or not created) at this time are left out.
+    ImmutableList<Domain> domains =
+        loadAtPointInTime(chunk, exportTime).stream()
+            .filter(Domain::shouldPublishToDns)
+            .collect(toImmutableList());
+    ImmutableMap<VKey<Host>, Host> nameservers = loadNameserversAtPointInTime(domains, exportTime);
+    for (Domain domain : domains) {
+      String stanza = domainStanza(domain, nameservers, exportTime);
+      if (!stanza.isEmpty()) {
+        writer.println(stanza);
+      }
+      writeStanzasForSubordinateHosts(domain, nameservers, exportTime, writer);
     }
-    String stanza = domainStanza(domain, exportTime);
-    if (!stanza.isEmpty()) {
-      result.add(stanza);
+    tm().getEntityManager().flush();
+    tm().getEntityManager().clear();
+  }
+
+  /**
+   * Returns the nameservers of the given domains as they were at the export time, leaving out those
+   * that were deleted (or not created) at this time.
+   */
+  private static ImmutableMap<VKey<Host>, Host> loadNameserversAtPointInTime(
+      ImmutableList<Domain> domains, Instant exportTime) {
+    ImmutableSet<VKey<Host>> nameserverKeys =
+        domains.stream()
+            .flatMap(domain -> domain.getNameservers().stream())
+            .collect(toImmutableSet());
+    if (nameserverKeys.isEmpty()) {
+      return ImmutableMap.of();
     }
-    populateStanzasForSubordinateHosts(domain, exportTime, result);
+    return loadAtPointInTime(tm().loadByKeys(nameserverKeys).values(), exportTime).stream()
+        .collect(toImmutableMap(Host::createVKey, host -> host));
   }
 
-  private void populateStanzasForSubordinateHosts(
-      Domain domain, Instant exportTime, ImmutableList.Builder<String> result) {
+  private void writeStanzasForSubordinateHosts(
+      Domain domain,
+      ImmutableMap<VKey<Host>, Host> nameservers,
+      Instant exportTime,
+      PrintWriter writer) {
     ImmutableSet<String> subordinateHosts = domain.getSubordinateHosts();
-    if (!subordinateHosts.isEmpty()) {
-      for (Host unprojectedHost : tm().loadByKeys(domain.getNameservers()).values()) {
-        Host host = loadAtPointInTime(unprojectedHost, exportTime);
-        // A null means the host was deleted (or not created) at this time.
-        if (host != null && subordinateHosts.contains(host.getHostName())) {
-          String stanza = hostStanza(host, domain.getTld());
-          if (!stanza.isEmpty()) {
-            result.add(stanza);
-          }
-        } else if (host == null) {
-          log.atSevere().log(
-              "Domain %s contained nameserver %s that didn't exist at time %s",
-              domain.getRepoId(), unprojectedHost.getRepoId(), exportTime);
-        } else {
-          log.atSevere().log(
-              "Domain %s contained nameserver %s not in subordinate hosts at time %s",
-              domain.getRepoId(), unprojectedHost.getRepoId(), exportTime);
+    if (subordinateHosts.isEmpty()) {
+      return;
+    }
+    for (VKey<Host> nameserverKey : domain.getNameservers()) {
+      Host host = nameservers.get(nameserverKey);
+      // A null means the host was deleted (or not created) at this time, which domainStanza logs.
+      if (host == null) {
+        continue;
+      }
+      if (subordinateHosts.contains(host.getHostName())) {
+        String stanza = hostStanza(host, domain.getTld());
+        if (!stanza.isEmpty()) {
+          writer.println(stanza);
         }
+      } else {
+        log.atSevere().log(
+            "Domain %s contained nameserver %s not in subordinate hosts at time %s",
+            domain.getRepoId(), host.getRepoId(), exportTime);
       }
     }
   }
@@ -228,20 +301,26 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
    * }
    * </pre>
    */
-  private String domainStanza(Domain domain, Instant exportTime) {
+  private String domainStanza(
+      Domain domain, ImmutableMap<VKey<Host>, Host> nameservers, Instant exportTime) {
     StringBuilder result = new StringBuilder();
     String domainLabel = stripTld(domain.getDomainName(), domain.getTld());
     Tld tld = Tld.get(domain.getTld());
-    for (Host nameserver : tm().loadByKeys(domain.getNameservers()).values()) {
+    for (VKey<Host> nameserverKey : domain.getNameservers()) {
+      // The nameservers are loaded at the export time in case they've been renamed or deleted.
+      Host nameserver = nameservers.get(nameserverKey);
+      if (nameserver == null) {
+        log.atSevere().log(
+            "Domain %s contained nameserver %s that didn't exist at time %s",
+            domain.getRepoId(), nameserverKey.getKey(), exportTime);
+        continue;
+      }
       result.append(
           String.format(
               NS_FORMAT,
               domainLabel,
-              tld.getDnsNsTtl()
-                  .orElse(dnsDefaultNsTtl)
-                  .toSeconds(),
-              // Load the nameservers at the export time in case they've been renamed or deleted.
-              loadAtPointInTime(nameserver, exportTime).getHostName()));
+              tld.getDnsNsTtl().orElse(dnsDefaultNsTtl).toSeconds(),
+              nameserver.getHostName()));
     }
     for (DomainDsData dsData : domain.getDsData()) {
       result.append(
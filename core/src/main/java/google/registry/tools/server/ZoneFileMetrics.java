@@ -0,0 +1,72 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tools.server;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.monitoring.metrics.EventMetric;
+import com.google.monitoring.metrics.ExponentialFitter;
+import com.google.monitoring.metrics.IncrementableMetric;
+import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.MetricRegistryImpl;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.time.Duration;
+
+/** Metrics tracking the generation of zone files by {@link GenerateZoneFilesAction}. */
+@Singleton
+public class ZoneFileMetrics {
+
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS =
+      ImmutableSet.of(LabelDescriptor.create("tld", "The TLD of the zone file."));
+
+  private static final IncrementableMetric domainsScanned =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/zone_files/domains_scanned",
+              "Count of domains scanned while generating zone files",
+              "count",
+              LABEL_DESCRIPTORS);
+
+  private static final EventMetric generationTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/zone_files/generation_time",
+              "Time taken to generate the zone file of a TLD",
+              "milliseconds",
+              LABEL_DESCRIPTORS,
+              ExponentialFitter.create(20, 2.0, 100.0));
+
+  private static final EventMetric throughput =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/zone_files/throughput",
+              "Rate at which domains were scanned while generating the zone file of a TLD",
+              "domains per second",
+              LABEL_DESCRIPTORS,
+              ExponentialFitter.create(20, 2.0, 1.0));
+
+  @Inject
+  public ZoneFileMetrics() {}
+
+  /**
+   * Records the generation of the zone file of a TLD, which scanned the given number of domains.
+   */
+  public void recordZoneFileGenerated(String tld, long domainCount, Duration duration) {
+    domainsScanned.incrementBy(domainCount, tld);
+    generationTime.record(duration.toMillis(), tld);
+    // Avoid dividing by zero for zone files generated in under a millisecond.
+    throughput.record(domainCount * 1000.0 / Math.max(duration.toMillis(), 1), tld);
+  }
+}
@@ -16,19 +16,25 @@ package google.registry.xml;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.nullToEmpty;
+import static google.registry.xml.ValidationMode.LENIENT;
 import static google.registry.xml.ValidationMode.STRICT;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closer;
 import com.google.common.io.Resources;
+import com.google.monitoring.metrics.IncrementableMetric;
+import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.MetricRegistryImpl;
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
 import jakarta.xml.bind.Marshaller;
 import jakarta.xml.bind.UnmarshalException;
 import jakarta.xml.bind.Unmarshaller;
+import jakarta.xml.bind.ValidationEventHandler;
 import jakarta.xml.bind.helpers.DefaultValidationEventHandler;
 import java.io.IOException;
 import java.io.InputStream;
@@ -38,11 +44,11 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.Collection;
-import java.util.Map;
 import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Transformer;
@@ -52,6 +58,7 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
@@ -73,6 +80,30 @@ public class XmlTransformer {
   /** A {@link Schema} to validate XML. */
   private final Schema schema;
 
+  private static final IncrementableMetric poolLookups =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/xml/transformer/pool_lookups",
+              "Count of lookups of reusable XML transformer objects",
+              "count",
+              ImmutableSet.of(
+                  LabelDescriptor.create("type", "The type of pooled object."),
+                  LabelDescriptor.create("result", "Whether the lookup was a hit or a miss.")));
+
+  /** Reusable {@link Validator}s for {@link #schema}. */
+  private final PerThreadPool<Validator> validatorPool =
+      new PerThreadPool<>("validator", this::createValidator);
+
+  /** Reusable {@link Unmarshaller}s, always validating against {@link #schema}. */
+  private final PerThreadPool<Unmarshaller> unmarshallerPool =
+      new PerThreadPool<>("unmarshaller", this::createUnmarshaller);
+
+  /** Reusable {@link Marshaller}s, keyed by whether they validate against {@link #schema}. */
+  private final ImmutableMap<ValidationMode, PerThreadPool<Marshaller>> marshallerPools =
+      ImmutableMap.of(
+          STRICT, new PerThreadPool<>("marshaller_strict", () -> createMarshaller(STRICT)),
+          LENIENT, new PerThreadPool<>("marshaller_lenient", () -> createMarshaller(LENIENT)));
+
   /**
    * Create a new XmlTransformer that validates using the given schemas, but uses the given classes
    * (rather than generated ones) for marshaling and unmarshaling.
@@ -128,8 +159,10 @@ public class XmlTransformer {
    */
   public void validate(String xml) throws XmlException {
     try {
-      schema.newValidator().validate(new StreamSource(new StringReader(xml)));
-    } catch (SAXException | IOException e) {
+      Validator validator = validatorPool.borrow();
+      validator.validate(new StreamSource(new StringReader(xml)));
+      validatorPool.release(validator);
+    } catch (SAXException | IOException | JAXBException e) {
       throw new XmlException(e);
     }
   }
@@ -146,8 +179,14 @@ public class XmlTransformer {
    */
   public <T> T unmarshal(Class<T> clazz, InputStream stream) throws XmlException {
     try (InputStream autoClosingStream = stream) {
-      return clazz.cast(getUnmarshaller().unmarshal(
-          XML_INPUT_FACTORY.createXMLStreamReader(new StreamSource(autoClosingStream, SYSTEM_ID))));
+      Unmarshaller unmarshaller = unmarshallerPool.borrow();
+      T result =
+          clazz.cast(
+              unmarshaller.unmarshal(
+                  XML_INPUT_FACTORY.createXMLStreamReader(
+                      new StreamSource(autoClosingStream, SYSTEM_ID))));
+      unmarshallerPool.release(unmarshaller);
+      return result;
     } catch (UnmarshalException e) {
       // Plain old parsing exceptions have a SAXParseException with no further cause.
       if (e.getLinkedException() instanceof SAXParseException sae
@@ -190,10 +229,13 @@ public class XmlTransformer {
   public void marshal(Object root, Writer writer, ValidationMode validation) throws XmlException {
     try {
       // Omit XML declaration because character-oriented output prevents us from knowing.
-      getMarshaller(
-          STRICT.equals(validation) ? schema : null,
-          ImmutableMap.of(Marshaller.JAXB_FRAGMENT, true)).marshal(
-              checkNotNull(root, "root"), checkNotNull(writer, "writer"));
+      marshalWithPooledMarshaller(
+          validation,
+          null,
+          true,
+          UTF_8,
+          marshaller ->
+              marshaller.marshal(checkNotNull(root, "root"), checkNotNull(writer, "writer")));
     } catch (JAXBException e) {
       throw new XmlException(e);
     }
@@ -216,11 +258,66 @@ public class XmlTransformer {
    */
   public void marshal(Object root, OutputStream out, Charset charset, ValidationMode validation)
       throws XmlException {
+    marshal(root, out, charset, validation, null);
+  }
+
+  /**
+   * Validates and streams {@code root} as formatted XML bytes with XML declaration, reporting
+   * schema violations to the given handler.
+   *
+   * <p>This is the same as {@link #marshal(Object, OutputStream, Charset, ValidationMode)}, except
+   * that a handler that lets marshalling continue past a violation allows both validating the
+   * output and getting all of it in a single pass. Note that schema violations are reported as
+   * {@link jakarta.xml.bind.ValidationEvent#FATAL_ERROR}s, so such a handler must return true even
+   * for those.
+   *
+   * @param eventHandler the handler for validation events, or null for the JAXB default, which
+   *     fails on the first violation
+   */
+  public void marshal(
+      Object root,
+      OutputStream out,
+      Charset charset,
+      ValidationMode validation,
+      @Nullable ValidationEventHandler eventHandler)
+      throws XmlException {
     try {
-      getMarshaller(
-          STRICT.equals(validation) ? schema : null,
-          ImmutableMap.of(Marshaller.JAXB_ENCODING, charset.toString())).marshal(
-              checkNotNull(root, "root"), checkNotNull(out, "out"));
+      marshalWithPooledMarshaller(
+          validation,
+          eventHandler,
+          false,
+          charset,
+          marshaller -> marshaller.marshal(checkNotNull(root, "root"), checkNotNull(out, "out")));
+    } catch (JAXBException e) {
+      throw new XmlException(e);
+    }
+  }
+
+  /**
+   * Validates and streams {@code root} to an {@link XMLStreamWriter}, with XML declaration.
+   *
+   * <p>This allows the caller to transform the output while it is being written. Note that JAXB
+   * does not format output written to an {@link XMLStreamWriter}, so any indentation is up to the
+   * writer. The writer is flushed but not closed.
+   *
+   * @param eventHandler the handler for validation events, or null for the JAXB default, which
+   *     fails on the first violation
+   * @see #marshal(Object, OutputStream, Charset, ValidationMode, ValidationEventHandler)
+   */
+  public void marshal(
+      Object root,
+      XMLStreamWriter writer,
+      ValidationMode validation,
+      @Nullable ValidationEventHandler eventHandler)
+      throws XmlException {
+    try {
+      marshalWithPooledMarshaller(
+          validation,
+          eventHandler,
+          false,
+          UTF_8,
+          marshaller ->
+              marshaller.marshal(checkNotNull(root, "root"), checkNotNull(writer, "writer")));
     } catch (JAXBException e) {
       throw new XmlException(e);
     }
@@ -240,8 +337,13 @@ public class XmlTransformer {
    */
   public void marshalStrict(Object root, Result result) throws XmlException {
     try {
-      getMarshaller(schema, ImmutableMap.of())
-          .marshal(checkNotNull(root, "root"), checkNotNull(result, "result"));
+      marshalWithPooledMarshaller(
+          STRICT,
+          null,
+          false,
+          UTF_8,
+          marshaller ->
+              marshaller.marshal(checkNotNull(root, "root"), checkNotNull(result, "result")));
     } catch (JAXBException e) {
       throw new XmlException(e);
     }
@@ -274,8 +376,8 @@ public class XmlTransformer {
     return JAXBContext.newInstance(prefix + Joiner.on(':' + prefix).join(schemaNames));
   }
 
-  /** Get a {@link Unmarshaller} instance with the default configuration. */
-  private Unmarshaller getUnmarshaller() throws JAXBException {
+  /** Creates an {@link Unmarshaller} instance with the default configuration. */
+  private Unmarshaller createUnmarshaller() throws JAXBException {
     Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
     unmarshaller.setSchema(schema);
     // This handler was the default in JAXB 1.0. It fails on any exception thrown while
@@ -285,18 +387,87 @@ public class XmlTransformer {
     return unmarshaller;
   }
 
-  /** Get a {@link Marshaller} instance with the given configuration. */
-  private Marshaller getMarshaller(@Nullable Schema schemaParam, Map<String, ?> properties)
-      throws JAXBException {
+  /** Creates a {@link Validator} for {@link #schema}. */
+  private Validator createValidator() {
+    return schema.newValidator();
+  }
+
+  /** Creates a {@link Marshaller} instance with the given validation mode. */
+  private Marshaller createMarshaller(ValidationMode validation) throws JAXBException {
     Marshaller marshaller = jaxbContext.createMarshaller();
-    for (Map.Entry<String, ?> entry : properties.entrySet()) {
-      marshaller.setProperty(entry.getKey(), entry.getValue());
-    }
     marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
-    marshaller.setSchema(schemaParam);
+    marshaller.setSchema(STRICT.equals(validation) ? schema : null);
     return marshaller;
   }
 
+  /** A marshalling operation using a given {@link Marshaller}. */
+  private interface MarshalOperation {
+    void marshal(Marshaller marshaller) throws JAXBException;
+  }
+
+  /**
+   * Runs the given operation with a pooled {@link Marshaller}.
+   *
+   * <p>Every property that any caller changes is set on each use, since pooled instances keep the
+   * properties set by their previous user.
+   */
+  private void marshalWithPooledMarshaller(
+      ValidationMode validation,
+      @Nullable ValidationEventHandler eventHandler,
+      boolean fragment,
+      Charset charset,
+      MarshalOperation operation)
+      throws JAXBException {
+    PerThreadPool<Marshaller> pool =
+        marshallerPools.get(STRICT.equals(validation) ? STRICT : LENIENT);
+    Marshaller marshaller = pool.borrow();
+    marshaller.setEventHandler(eventHandler);
+    marshaller.setProperty(Marshaller.JAXB_FRAGMENT, fragment);
+    marshaller.setProperty(Marshaller.JAXB_ENCODING, charset.toString());
+    operation.marshal(marshaller);
+    pool.release(marshaller);
+  }
+
+  /**
+   * A pool of non-thread-safe, reusable objects that keeps at most one idle instance per thread.
+   *
+   * <p>Callers {@link #borrow} an instance and {@link #release} it once they are done with it. An
+   * instance that is not released (e.g. because using it threw) is simply garbage collected, so
+   * that an object left in an unknown state is never reused. A nested borrow on the same thread
+   * gets a fresh instance.
+   */
+  private static final class PerThreadPool<T> {
+
+    /** Creates a new pooled object. */
+    interface Factory<T> {
+      T create() throws JAXBException;
+    }
+
+    private final String type;
+    private final Factory<T> factory;
+    private final ThreadLocal<T> idleInstance = new ThreadLocal<>();
+
+    PerThreadPool(String type, Factory<T> factory) {
+      this.type = type;
+      this.factory = factory;
+    }
+
+    T borrow() throws JAXBException {
+      T instance = idleInstance.get();
+      if (instance != null) {
+        idleInstance.remove();
+        poolLookups.increment(type, "hit");
+        return instance;
+      }
+      poolLookups.increment(type, "miss");
+      return factory.create();
+    }
+
+    void release(T instance) {
+      idleInstance.set(instance);
+    }
+  }
+
   /** Pretty print XML. */
   public static String prettyPrint(String xmlString) {
     StringWriter prettyXml = new StringWriter();
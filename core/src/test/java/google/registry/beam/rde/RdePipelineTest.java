@@ -77,6 +77,7 @@ import google.registry.persistence.transaction.JpaTestExtensions.JpaIntegrationT
 import google.registry.rde.DepositFragment;
 import google.registry.rde.Ghostryde;
 import google.registry.rde.PendingDeposit;
+import google.registry.rde.PendingDeposit.PendingDepositCoder;
 import google.registry.rde.RdeResourceType;
 import google.registry.testing.CloudTasksHelper;
 import google.registry.testing.CloudTasksHelper.TaskMatcher;
@@ -89,6 +90,8 @@ import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.transforms.Create;
@@ -489,6 +492,72 @@ public class RdePipelineTest {
     cloudTasksHelper.assertNoTasksEnqueued("brda", "rde-upload");
   }
 
+  // The GCS folder listing can be a bit flaky, so retry if necessary
+  @RetryingTest(4)
+  void testSuccess_persistShardedData() throws Exception {
+    options.setDepositShards(3);
+    rdePipeline = new RdePipeline(options, gcsUtils, cloudTasksHelper.getTestCloudTasksUtils());
+    PendingDeposit brdaKey =
+        PendingDeposit.create("soy", now, THIN, CursorType.BRDA, Duration.ofDays(1));
+    PendingDeposit rdeKey =
+        PendingDeposit.create("soy", now, FULL, RDE_STAGING, Duration.ofDays(1));
+    ImmutableList.Builder<KV<PendingDeposit, DepositFragment>> input =
+        new ImmutableList.Builder<>();
+    brdaFragments.forEach(fragment -> input.add(KV.of(brdaKey, fragment)));
+    rdeFragments.forEach(fragment -> input.add(KV.of(rdeKey, fragment)));
+
+    rdePipeline.persistShardedData(
+        pipeline.apply(
+            "Create Input",
+            Create.of(input.build())
+                .withCoder(
+                    KvCoder.of(
+                        PendingDepositCoder.of(), SerializableCoder.of(DepositFragment.class)))));
+    pipeline.run().waitUntilFinish();
+
+    assertThat(gcsUtils.listFolderObjects("gcs-bucket", "rde-job/"))
+        .containsExactly(
+            "soy_2000-01-01_thin_S1_R1.xml.length",
+            "soy_2000-01-01_thin_S1_R1.xml.ghostryde",
+            "soy_2000-01-01_full_S1_R1.xml.length",
+            "soy_2000-01-01_full_S1_R1.xml.ghostryde",
+            "soy_2000-01-01_full_S1_R1-report.xml.ghostryde");
+    // The order of the fragments depends on the shards they end up in.
+    String brdaOutputFile =
+        decryptGhostrydeGcsFile("rde-job/soy_2000-01-01_thin_S1_R1.xml.ghostryde");
+    assertThat(brdaOutputFile.lines().toList())
+        .containsExactlyElementsIn(
+            readResourceUtf8(getClass(), "reducer_brda.xml")
+                .replace("%RESEND%", " resend=\"1\"")
+                .lines()
+                .toList());
+    compareLength(brdaOutputFile, "rde-job/soy_2000-01-01_thin_S1_R1.xml.length");
+    String rdeOutputFile =
+        decryptGhostrydeGcsFile("rde-job/soy_2000-01-01_full_S1_R1.xml.ghostryde");
+    assertThat(rdeOutputFile.lines().toList())
+        .containsExactlyElementsIn(
+            readResourceUtf8(getClass(), "reducer_rde.xml")
+                .replace("%RESEND%", " resend=\"1\"")
+                .lines()
+                .toList());
+    compareLength(rdeOutputFile, "rde-job/soy_2000-01-01_full_S1_R1.xml.length");
+    assertThat(decryptGhostrydeGcsFile("rde-job/soy_2000-01-01_full_S1_R1-report.xml.ghostryde"))
+        .isEqualTo(readResourceUtf8(getClass(), "reducer_rde_report.xml").replace("%RESEND%", "1"));
+
+    assertThat(loadCursorTime(CursorType.BRDA)).isEquivalentAccordingToCompareTo(plusDays(now, 1));
+    assertThat(loadRevision(now, THIN)).isEqualTo(1);
+    assertThat(loadCursorTime(RDE_STAGING)).isEquivalentAccordingToCompareTo(plusDays(now, 1));
+    assertThat(loadRevision(now, FULL)).isEqualTo(1);
+  }
+
+  @Test
+  void testFailure_nonPositiveDepositShards() {
+    options.setDepositShards(0);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new RdePipeline(options, gcsUtils, cloudTasksHelper.getTestCloudTasksUtils()));
+  }
+
   private void verifyFiles(
       ImmutableMap<PendingDeposit, Iterable<DepositFragment>> input, boolean manual)
       throws Exception {
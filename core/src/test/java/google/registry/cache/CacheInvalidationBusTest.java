@@ -0,0 +1,115 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatabaseHelper.persistActiveHost;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import google.registry.model.EppResourceChangeRecorder.ChangedResource;
+import google.registry.model.domain.Domain;
+import google.registry.model.host.Host;
+import google.registry.persistence.transaction.JpaTestExtensions;
+import google.registry.persistence.transaction.JpaTestExtensions.JpaIntegrationTestExtension;
+import google.registry.testing.FakeClock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import redis.clients.jedis.UnifiedJedis;
+
+/** Tests for {@link CacheInvalidationBus}. */
+public class CacheInvalidationBusTest {
+
+  @RegisterExtension
+  final JpaIntegrationTestExtension jpa =
+      new JpaTestExtensions.Builder().buildIntegrationTestExtension();
+
+  private final FakeClock clock = new FakeClock(Instant.parse("2026-01-01T00:00:00Z"));
+  private final UnifiedJedis jedis = mock(UnifiedJedis.class);
+  private final SimplifiedJedisClient jedisClient = mock(SimplifiedJedisClient.class);
+  private final CacheMetrics cacheMetrics = mock(CacheMetrics.class);
+  private final CacheInvalidationBus cacheInvalidationBus =
+      new CacheInvalidationBus(jedis, jedisClient, cacheMetrics, clock);
+
+  private static final ChangedResource CHANGED_DOMAIN =
+      new ChangedResource(Domain.class, "1-TLD", "example.tld");
+  private static final ChangedResource CHANGED_HOST =
+      new ChangedResource(Host.class, "2-ROID", "ns1.example.tld");
+
+  @Test
+  void testPublish() {
+    cacheInvalidationBus.publish(ImmutableSet.of(CHANGED_DOMAIN, CHANGED_HOST));
+    verify(jedisClient).deleteAll(Domain.class, ImmutableSet.of("example.tld"));
+    verify(jedisClient).deleteAll(Host.class, ImmutableSet.of("2-ROID"));
+    verify(jedis)
+        .publish(
+            CacheInvalidationBus.CHANNEL,
+            "1767225600000\nDomain\t1-TLD\texample.tld\nHost\t2-ROID\tns1.example.tld");
+    verify(cacheMetrics).recordInvalidationPublished("Domain");
+    verify(cacheMetrics).recordInvalidationPublished("Host");
+  }
+
+  @Test
+  void testPublish_nothingChanged() {
+    cacheInvalidationBus.publish(ImmutableSet.of());
+    verify(jedis, never()).publish(anyString(), anyString());
+  }
+
+  @Test
+  void testPublish_failureIsNotThrown() {
+    when(jedis.publish(anyString(), anyString())).thenThrow(new RuntimeException("Valkey down"));
+    cacheInvalidationBus.publish(ImmutableSet.of(CHANGED_HOST));
+    verify(cacheMetrics, never()).recordInvalidationPublished(any());
+  }
+
+  @Test
+  void testHandleMessage_evictsFromLocalCache() {
+    Host host = persistActiveHost("ns1.example.tld");
+    MultilayerHostCache hostCache = new MultilayerHostCache(jedisClient, cacheMetrics);
+    cacheInvalidationBus.registerHostCache(hostCache);
+    assertThat(hostCache.loadByRepoId(host.getRepoId())).hasValue(host);
+    assertThat(hostCache.loadByRepoId(host.getRepoId())).hasValue(host);
+    verify(jedisClient).get(Host.class, host.getRepoId());
+
+    Instant publishTime = clock.now();
+    clock.advanceBy(Duration.ofMillis(25));
+    cacheInvalidationBus.handleMessage(
+        CacheInvalidationBus.encodeMessage(
+            publishTime,
+            ImmutableList.of(
+                new ChangedResource(Host.class, host.getRepoId(), host.getHostName()))));
+    verify(cacheMetrics).recordInvalidationReceived("Host", Duration.ofMillis(25));
+
+    // The host is no longer in the local cache, so it's looked up in Valkey again
+    assertThat(hostCache.loadByRepoId(host.getRepoId())).hasValue(host);
+    verify(jedisClient, times(2)).get(Host.class, host.getRepoId());
+  }
+
+  @Test
+  void testHandleMessage_malformed() {
+    cacheInvalidationBus.handleMessage("not a timestamp\nHost\t2-ROID\tns1.example.tld");
+    cacheInvalidationBus.handleMessage("1767225600000\nContact\t3-ROID\tjd1234");
+    verify(cacheMetrics, never()).recordInvalidationReceived(any(), any());
+  }
+}
@@ -0,0 +1,404 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.cache;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.net.InetAddresses;
+import google.registry.cache.CachedResourceCodec.IncompatibleFormatException;
+import google.registry.model.CreateAutoTimestamp;
+import google.registry.model.UpdateAutoTimestamp;
+import google.registry.model.billing.BillingCancellation;
+import google.registry.model.billing.BillingEvent;
+import google.registry.model.billing.BillingRecurrence;
+import google.registry.model.domain.Domain;
+import google.registry.model.domain.DomainAuthInfo;
+import google.registry.model.domain.GracePeriod;
+import google.registry.model.domain.Period;
+import google.registry.model.domain.launch.LaunchNotice;
+import google.registry.model.domain.launch.LaunchNotice.NoticeIdType;
+import google.registry.model.domain.rgp.GracePeriodStatus;
+import google.registry.model.domain.secdns.DomainDsData;
+import google.registry.model.domain.token.AllocationToken;
+import google.registry.model.eppcommon.AuthInfo.PasswordAuth;
+import google.registry.model.eppcommon.StatusValue;
+import google.registry.model.eppcommon.Trid;
+import google.registry.model.host.Host;
+import google.registry.model.poll.PollMessage;
+import google.registry.model.transfer.DomainTransferData;
+import google.registry.model.transfer.TransferStatus;
+import google.registry.persistence.VKey;
+import google.registry.tmch.LordnTaskUtils.LordnPhase;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.runtime.RuntimeSchema;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link CachedResourceCodec}. */
+class CachedResourceCodecTest {
+
+  private static final Instant NOW = Instant.parse("2026-03-01T12:34:56.789012Z");
+
+  /** The cached resources, and the types embedded in them, whose fields the codec must cover. */
+  private static final ImmutableSet<Class<?>> CACHED_TYPES =
+      ImmutableSet.of(
+          Domain.class,
+          Host.class,
+          CreateAutoTimestamp.class,
+          UpdateAutoTimestamp.class,
+          DomainAuthInfo.class,
+          PasswordAuth.class,
+          DomainDsData.class,
+          LaunchNotice.class,
+          NoticeIdType.class,
+          GracePeriod.class,
+          DomainTransferData.class,
+          Trid.class,
+          Period.class);
+
+  /** The fields of {@link #CACHED_TYPES} that are encoded, by declaring class and name. */
+  private static final ImmutableSet<String> ENCODED_FIELDS =
+      ImmutableSet.of(
+          "EppResource.repoId",
+          "EppResource.currentSponsorRegistrarId",
+          "EppResource.creationRegistrarId",
+          "EppResource.lastEppUpdateRegistrarId",
+          "EppResource.creationTime",
+          "EppResource.deletionTime",
+          "EppResource.lastEppUpdateTime",
+          "EppResource.statuses",
+          "UpdateAutoTimestampEntity.updateTimestamp",
+          "CreateAutoTimestamp.creationTime",
+          "UpdateAutoTimestamp.lastUpdateTime",
+          "DomainBase.domainName",
+          "DomainBase.nsHosts",
+          "DomainBase.authInfo",
+          "DomainBase.dsData",
+          "DomainBase.launchNotice",
+          "DomainBase.idnTableName",
+          "DomainBase.subordinateHosts",
+          "DomainBase.registrationExpirationTime",
+          "DomainBase.deletePollMessage",
+          "DomainBase.autorenewBillingEvent",
+          "DomainBase.autorenewPollMessage",
+          "DomainBase.gracePeriods",
+          "DomainBase.smdId",
+          "DomainBase.transferData",
+          "DomainBase.lastTransferTime",
+          "DomainBase.autorenewEndTime",
+          "DomainBase.lordnPhase",
+          "DomainBase.currentBulkToken",
+          "HostBase.hostName",
+          "HostBase.inetAddresses",
+          "HostBase.superordinateDomain",
+          "HostBase.lastTransferTime",
+          "HostBase.lastSuperordinateChange",
+          "AuthInfo.pw",
+          "PasswordAuth.value",
+          "PasswordAuth.repoId",
+          "DomainDsDataBase.keyTag",
+          "DomainDsDataBase.algorithm",
+          "DomainDsDataBase.digestType",
+          "DomainDsDataBase.digest",
+          "LaunchNotice.noticeId",
+          "LaunchNotice.expirationTime",
+          "LaunchNotice.acceptedTime",
+          "NoticeIdType.tcnId",
+          "NoticeIdType.validatorId",
+          "GracePeriodBase.gracePeriodId",
+          "GracePeriodBase.domainRepoId",
+          "GracePeriodBase.type",
+          "GracePeriodBase.expirationTime",
+          "GracePeriodBase.clientId",
+          "GracePeriodBase.billingEvent",
+          "GracePeriodBase.billingRecurrence",
+          "BaseTransferObject.transferStatus",
+          "BaseTransferObject.gainingClientId",
+          "BaseTransferObject.transferRequestTime",
+          "BaseTransferObject.losingClientId",
+          "BaseTransferObject.pendingTransferExpirationTime",
+          "DomainTransferData.transferRequestTrid",
+          "DomainTransferData.repoId",
+          "DomainTransferData.historyEntryId",
+          "DomainTransferData.pollMessageId1",
+          "DomainTransferData.pollMessageId2",
+          "DomainTransferData.pollMessageId3",
+          "DomainTransferData.transferPeriod",
+          "DomainTransferData.transferredRegistrationExpirationTime",
+          "DomainTransferData.billingCancellationId",
+          "DomainTransferData.serverApproveBillingEvent",
+          "DomainTransferData.serverApproveAutorenewEvent",
+          "DomainTransferData.serverApproveAutorenewPollMessage",
+          "Trid.serverTransactionId",
+          "Trid.clientTransactionId",
+          "Period.unit",
+          "Period.value");
+
+  /** The fields of {@link #CACHED_TYPES} that are deliberately not encoded, and why. */
+  private static final ImmutableMap<String, String> EXCLUDED_FIELDS =
+      ImmutableMap.<String, String>builder()
+          .put("ImmutableObject.hashCode", "memoized, recomputed on demand")
+          .put("DomainBase.tld", "derived from the domain name by the builder")
+          .put("DomainBase.adminContact", "vestigial, never read")
+          .put("DomainBase.billingContact", "vestigial, never read")
+          .put("DomainBase.techContact", "vestigial, never read")
+          .put("DomainBase.registrantContact", "vestigial, never read")
+          .put("DomainDsDataBase.domainRepoId", "set to the domain's repo ID by the builder")
+          .put("DomainTransferData.serverApproveAutorenewPollMessageHistoryId", "never read")
+          .buildOrThrow();
+
+  /**
+   * The SHA-256 fingerprint of the sorted {@link #ENCODED_FIELDS} of each version of the codec.
+   *
+   * <p>Entries written by an older version must never be decoded as if they had a field that this
+   * version added, so changing the encoded fields needs a new {@link
+   * CachedResourceCodec#CURRENT_VERSION}, with its fingerprint added here.
+   */
+  private static final ImmutableMap<Byte, String> ENCODED_FIELDS_FINGERPRINTS =
+      ImmutableMap.of((byte) 1, "98c8655aade0bf9b6e092974c408a6cdedd24243f0cf34b58663d38cb7a99c5d");
+
+  private static Domain.Builder newDomainBuilder() {
+    return new Domain.Builder()
+        .setDomainName("example.tld")
+        .setRepoId("1-TLD")
+        .setPersistedCurrentSponsorRegistrarId("TheRegistrar")
+        .setCreationRegistrarId("NewRegistrar")
+        .setLastEppUpdateRegistrarId("TheRegistrar")
+        .setCreationTime(NOW.minusSeconds(86400))
+        .setLastEppUpdateTime(NOW.minusSeconds(3600))
+        .setRegistrationExpirationTime(NOW.plusSeconds(365 * 86400L));
+  }
+
+  @SuppressWarnings("deprecation")
+  private static Domain createFullyPopulatedDomain() {
+    return newDomainBuilder()
+        .setStatusValues(ImmutableSet.of(StatusValue.CLIENT_HOLD, StatusValue.PENDING_TRANSFER))
+        .setNameservers(
+            ImmutableSet.of(VKey.create(Host.class, "2-ROID"), VKey.create(Host.class, "3-ROID")))
+        .setSubordinateHosts(ImmutableSet.of("ns1.example.tld", "ns2.example.tld"))
+        .setAuthInfo(DomainAuthInfo.create(PasswordAuth.create("fooBAR", "4-ROID")))
+        .setDsData(
+            ImmutableSet.of(
+                DomainDsData.create(12345, 8, 2, new byte[] {1, 2, 3, 4}),
+                DomainDsData.create(54321, 13, 4, new byte[] {5, 6, 7, 8})))
+        .setLaunchNotice(
+            LaunchNotice.create("370d0b7c9223372036854775807", "tmch", NOW, NOW.minusSeconds(60)))
+        .setIdnTableName("extended_latin")
+        .setSmdId("0000001761376042759136-65535")
+        .setDeletePollMessage(VKey.create(PollMessage.OneTime.class, 5L))
+        .setAutorenewBillingEvent(VKey.create(BillingRecurrence.class, 6L))
+        .setAutorenewPollMessage(VKey.create(PollMessage.Autorenew.class, 7L))
+        .setGracePeriods(
+            ImmutableSet.of(
+                GracePeriod.create(
+                    GracePeriodStatus.ADD,
+                    "1-TLD",
+                    NOW.plusSeconds(5 * 86400),
+                    "TheRegistrar",
+                    VKey.create(BillingEvent.class, 8L),
+                    9L),
+                GracePeriod.createForRecurrence(
+                    GracePeriodStatus.AUTO_RENEW,
+                    "1-TLD",
+                    NOW.plusSeconds(45 * 86400),
+                    "TheRegistrar",
+                    VKey.create(BillingRecurrence.class, 6L),
+                    10L)))
+        .setTransferData(
+            new DomainTransferData.Builder()
+                .setTransferStatus(TransferStatus.PENDING)
+                .setGainingRegistrarId("NewRegistrar")
+                .setLosingRegistrarId("TheRegistrar")
+                .setTransferRequestTime(NOW.minusSeconds(600))
+                .setPendingTransferExpirationTime(NOW.plusSeconds(5 * 86400))
+                .setTransferRequestTrid(Trid.create("client-trid", "server-trid"))
+                .setTransferPeriod(Period.create(2, Period.Unit.YEARS))
+                .setTransferredRegistrationExpirationTime(NOW.plusSeconds(730 * 86400L))
+                .setServerApproveBillingEvent(VKey.create(BillingEvent.class, 11L))
+                .setServerApproveAutorenewEvent(VKey.create(BillingRecurrence.class, 12L))
+                .setServerApproveAutorenewPollMessage(VKey.create(PollMessage.Autorenew.class, 13L))
+                .setServerApproveEntities(
+                    "1-TLD",
+                    14L,
+                    ImmutableSet.of(
+                        VKey.create(PollMessage.class, 15L),
+                        VKey.create(PollMessage.class, 16L),
+                        VKey.create(BillingCancellation.class, 17L)))
+                .build())
+        .setLastTransferTime(NOW.minusSeconds(30 * 86400L))
+        .setAutorenewEndTime(Optional.of(NOW.plusSeconds(1000 * 86400L)))
+        .setLordnPhase(LordnPhase.CLAIMS)
+        .restoreCurrentBulkToken(VKey.create(AllocationToken.class, "bulk-token"))
+        .setUpdateTimestamp(UpdateAutoTimestamp.create(NOW))
+        .build();
+  }
+
+  private static Domain createDomainWithNameservers(int count) {
+    return newDomainBuilder()
+        .setNameservers(
+            IntStream.range(0, count)
+                .mapToObj(i -> VKey.create(Host.class, i + "-ROID"))
+                .collect(toImmutableSet()))
+        .build();
+  }
+
+  @Test
+  void testRoundTrip_fullyPopulatedDomain() {
+    Domain domain = createFullyPopulatedDomain();
+    assertThat(CachedResourceCodec.decode(Domain.class, CachedResourceCodec.encode(domain)))
+        .isEqualTo(domain);
+  }
+
+  @Test
+  void testRoundTrip_minimalDomain() {
+    Domain domain = new Domain.Builder().setDomainName("example.tld").setRepoId("1-TLD").build();
+    assertThat(CachedResourceCodec.decode(Domain.class, CachedResourceCodec.encode(domain)))
+        .isEqualTo(domain);
+  }
+
+  @Test
+  void testRoundTrip_host() {
+    Host host =
+        new Host.Builder()
+            .setHostName("ns1.example.tld")
+            .setRepoId("2-ROID")
+            .setPersistedCurrentSponsorRegistrarId("TheRegistrar")
+            .setCreationTime(NOW)
+            .setInetAddresses(
+                ImmutableSet.of(
+                    InetAddresses.forString("192.0.2.1"), InetAddresses.forString("2001:db8::1")))
+            .setSuperordinateDomain(VKey.create(Domain.class, "1-TLD"))
+            .setLastSuperordinateChange(NOW.plusSeconds(60))
+            .setLastTransferTime(NOW.plusSeconds(120))
+            .setUpdateTimestamp(UpdateAutoTimestamp.create(NOW.plusSeconds(120)))
+            .build();
+    assertThat(CachedResourceCodec.decode(Host.class, CachedResourceCodec.encode(host)))
+        .isEqualTo(host);
+  }
+
+  @Test
+  void testEncode_compressesLargeDomains() {
+    Domain smallDomain = createDomainWithNameservers(2);
+    Domain largeDomain = createDomainWithNameservers(500);
+    byte[] smallData = CachedResourceCodec.encode(smallDomain);
+    byte[] largeData = CachedResourceCodec.encode(largeDomain);
+    assertThat(smallData[1]).isEqualTo(0);
+    assertThat(largeData[1]).isEqualTo(1);
+    assertThat(largeData.length).isLessThan(CachedResourceCodec.COMPRESSION_THRESHOLD_BYTES * 2);
+    assertThat(CachedResourceCodec.decode(Domain.class, largeData)).isEqualTo(largeDomain);
+  }
+
+  @Test
+  void testEncode_smallerThanProtostuff() {
+    for (Domain domain :
+        ImmutableSet.of(createFullyPopulatedDomain(), createDomainWithNameservers(100))) {
+      byte[] protostuffData =
+          ProtostuffIOUtil.toByteArray(
+              domain,
+              RuntimeSchema.getSchema(Domain.class),
+              LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE));
+      assertThat(CachedResourceCodec.encode(domain).length).isLessThan(protostuffData.length);
+    }
+  }
+
+  /**
+   * Makes sure that a field added to a cached resource can't silently go missing from the cache:
+   * each one must either be encoded, or be listed as excluded.
+   */
+  @Test
+  void testAllFieldsEncodedOrExcluded() {
+    ImmutableSet.Builder<String> fields = new ImmutableSet.Builder<>();
+    for (Class<?> type : CACHED_TYPES) {
+      for (Class<?> clazz = type; !clazz.equals(Object.class); clazz = clazz.getSuperclass()) {
+        for (Field field : clazz.getDeclaredFields()) {
+          if (!Modifier.isStatic(field.getModifiers())
+              && !Modifier.isTransient(field.getModifiers())
+              && !field.isSynthetic()) {
+            fields.add(clazz.getSimpleName() + "." + field.getName());
+          }
+        }
+      }
+    }
+    assertThat(Sets.intersection(ENCODED_FIELDS, EXCLUDED_FIELDS.keySet())).isEmpty();
+    assertThat(fields.build())
+        .containsExactlyElementsIn(Sets.union(ENCODED_FIELDS, EXCLUDED_FIELDS.keySet()));
+  }
+
+  @Test
+  void testEncodedFieldsPinnedToVersion() {
+    String fingerprint =
+        Hashing.sha256()
+            .hashString(String.join("\n", Ordering.natural().sortedCopy(ENCODED_FIELDS)), UTF_8)
+            .toString();
+    assertWithMessage(
+            "The encoded fields changed, which needs a new CachedResourceCodec.CURRENT_VERSION")
+        .that(fingerprint)
+        .isEqualTo(ENCODED_FIELDS_FINGERPRINTS.get(CachedResourceCodec.CURRENT_VERSION));
+  }
+
+  @Test
+  void testDecode_otherVersion() {
+    byte[] data = CachedResourceCodec.encode(createFullyPopulatedDomain());
+    data[0] = CachedResourceCodec.CURRENT_VERSION + 1;
+    IncompatibleFormatException thrown =
+        assertThrows(
+            IncompatibleFormatException.class,
+            () -> CachedResourceCodec.decode(Domain.class, data));
+    assertThat(thrown).hasMessageThat().isEqualTo("Format version 2 is not the current version 1");
+  }
+
+  @Test
+  void testDecode_unknownTag() {
+    byte[] data = {CachedResourceCodec.CURRENT_VERSION, 0, 127, 0};
+    IncompatibleFormatException thrown =
+        assertThrows(
+            IncompatibleFormatException.class, () -> CachedResourceCodec.decode(Host.class, data));
+    assertThat(thrown).hasMessageThat().isEqualTo("Unknown tag 127");
+  }
+
+  @Test
+  void testDecode_truncated() {
+    byte[] data = CachedResourceCodec.encode(createFullyPopulatedDomain());
+    assertThrows(
+        IncompatibleFormatException.class,
+        () -> CachedResourceCodec.decode(Domain.class, Arrays.copyOf(data, data.length / 2)));
+    assertThrows(
+        IncompatibleFormatException.class,
+        () -> CachedResourceCodec.decode(Domain.class, new byte[] {1}));
+  }
+
+  @Test
+  void testDecode_truncatedCompressedBody() {
+    byte[] data = CachedResourceCodec.encode(createDomainWithNameservers(500));
+    assertThrows(
+        IncompatibleFormatException.class,
+        () -> CachedResourceCodec.decode(Domain.class, Arrays.copyOf(data, data.length / 2)));
+  }
+}
@@ -18,11 +18,18 @@ import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.DatabaseHelper.createTld;
 import static google.registry.testing.DatabaseHelper.persistActiveDomain;
 import static google.registry.testing.DatabaseHelper.persistResource;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import google.registry.model.domain.Domain;
 import google.registry.model.tld.Tld;
 import google.registry.persistence.transaction.JpaTestExtensions;
@@ -100,4 +107,66 @@ public class MultilayerDomainCacheTest {
     verify(cacheMetrics).recordLookup("Domain", CacheMetrics.CacheHitType.MISS_NONEXISTENT);
     verifyNoMoreInteractions(cacheMetrics);
   }
+
+  @Test
+  void testLoad_errorDoesNotLeaveLoadInFlight() {
+    Domain domain = persistActiveDomain("example.tld");
+    when(jedisClient.get(Domain.class, "example.tld"))
+        .thenThrow(new StackOverflowError())
+        .thenReturn(Optional.empty());
+    assertThrows(StackOverflowError.class, () -> cache.loadByDomainName("example.tld"));
+
+    // The failed load is no longer in flight, so the next lookup loads the domain itself
+    assertThat(cache.loadByDomainName("example.tld")).hasValue(domain);
+    verify(cacheMetrics).recordLookup("Domain", CacheMetrics.CacheHitType.MISS);
+    verifyNoMoreInteractions(cacheMetrics);
+  }
+
+  @Test
+  void testLoad_invalidatedWhileLoading_isNotCached() {
+    Domain domain = persistActiveDomain("example.tld");
+    // The domain is invalidated after the load has started, e.g. by a change on another node
+    when(jedisClient.get(Domain.class, "example.tld"))
+        .thenAnswer(
+            invocation -> {
+              cache.invalidateLocally(ImmutableList.of("example.tld"));
+              return Optional.empty();
+            });
+    assertThat(cache.loadByDomainName("example.tld")).hasValue(domain);
+    verify(jedisClient).deleteAll(Domain.class, ImmutableSet.of("example.tld"));
+
+    // The result of the invalidated load was dropped, so the next lookup loads the domain again
+    assertThat(cache.loadByDomainName("example.tld")).hasValue(domain);
+    verify(cacheMetrics, times(2)).recordLookup("Domain", CacheMetrics.CacheHitType.MISS);
+    verifyNoMoreInteractions(cacheMetrics);
+  }
+
+  @Test
+  void testLoadAll_fromEachLayer() {
+    Domain localDomain = persistActiveDomain("local.tld");
+    // Note: we don't save this domain to SQL
+    Domain remoteDomain = DatabaseHelper.newDomain("remote.tld");
+    Domain databaseDomain = persistActiveDomain("database.tld");
+    assertThat(cache.loadByDomainName("local.tld")).hasValue(localDomain);
+    when(jedisClient.getAll(eq(Domain.class), any()))
+        .thenReturn(ImmutableMap.of("remote.tld", remoteDomain));
+
+    assertThat(
+            cache.loadByDomainNames(
+                ImmutableList.of("local.tld", "remote.tld", "database.tld", "nonexistent.tld")))
+        .containsExactly(
+            "local.tld", localDomain, "remote.tld", remoteDomain, "database.tld", databaseDomain)
+        .inOrder();
+    // A single remote lookup and a single remote write for all keys not in the local cache
+    verify(jedisClient)
+        .getAll(Domain.class, ImmutableSet.of("remote.tld", "database.tld", "nonexistent.tld"));
+    verify(jedisClient)
+        .setAll(
+            ImmutableList.of(
+                new SimplifiedJedisClient.JedisResource<>("database.tld", databaseDomain)));
+    verify(cacheMetrics).recordLookup("Domain", CacheMetrics.CacheHitType.LOCAL);
+    verify(cacheMetrics).recordLookup("Domain", CacheMetrics.CacheHitType.REMOTE);
+    verify(cacheMetrics, times(2)).recordLookup("Domain", CacheMetrics.CacheHitType.MISS);
+    verify(cacheMetrics).recordLookup("Domain", CacheMetrics.CacheHitType.MISS_NONEXISTENT);
+  }
 }
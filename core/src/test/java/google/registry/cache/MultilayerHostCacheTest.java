@@ -16,16 +16,30 @@ package google.registry.cache;
 
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.DatabaseHelper.persistActiveHost;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import google.registry.model.host.Host;
 import google.registry.persistence.transaction.JpaTestExtensions;
 import google.registry.persistence.transaction.JpaTestExtensions.JpaIntegrationTestExtension;
 import google.registry.testing.DatabaseHelper;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -80,4 +94,116 @@ public class MultilayerHostCacheTest {
     verify(cacheMetrics).recordLookup("Host", CacheMetrics.CacheHitType.MISS_NONEXISTENT);
     verifyNoMoreInteractions(cacheMetrics);
   }
+
+  @Test
+  void testLoadAll_fromEachLayer() {
+    Host localHost = persistActiveHost("ns1.example.tld");
+    // Note: we don't save this host to SQL
+    Host remoteHost = DatabaseHelper.newHost("ns2.example.tld");
+    Host databaseHost = persistActiveHost("ns3.example.tld");
+    assertThat(cache.loadByRepoId(localHost.getRepoId())).hasValue(localHost);
+    when(jedisClient.getAll(eq(Host.class), any()))
+        .thenReturn(ImmutableMap.of(remoteHost.getRepoId(), remoteHost));
+
+    assertThat(
+            cache.loadByRepoIds(
+                ImmutableList.of(
+                    databaseHost.getRepoId(),
+                    "nonexistent",
+                    remoteHost.getRepoId(),
+                    localHost.getRepoId())))
+        .containsExactly(
+            databaseHost.getRepoId(), databaseHost,
+            remoteHost.getRepoId(), remoteHost,
+            localHost.getRepoId(), localHost)
+        .inOrder();
+    // A single remote lookup and a single remote write for all keys not in the local cache
+    verify(jedisClient)
+        .getAll(
+            Host.class,
+            ImmutableSet.of(databaseHost.getRepoId(), "nonexistent", remoteHost.getRepoId()));
+    verify(jedisClient)
+        .setAll(
+            ImmutableList.of(
+                new SimplifiedJedisClient.JedisResource<>(databaseHost.getRepoId(), databaseHost)));
+    verify(cacheMetrics).recordLookup("Host", CacheMetrics.CacheHitType.LOCAL);
+    verify(cacheMetrics).recordLookup("Host", CacheMetrics.CacheHitType.REMOTE);
+    verify(cacheMetrics, times(2)).recordLookup("Host", CacheMetrics.CacheHitType.MISS);
+    verify(cacheMetrics).recordLookup("Host", CacheMetrics.CacheHitType.MISS_NONEXISTENT);
+
+    // Further loads hit the local cache only
+    assertThat(
+            cache.loadByRepoIds(ImmutableList.of(remoteHost.getRepoId(), databaseHost.getRepoId())))
+        .containsExactly(
+            remoteHost.getRepoId(), remoteHost, databaseHost.getRepoId(), databaseHost);
+    verify(cacheMetrics, times(3)).recordLookup("Host", CacheMetrics.CacheHitType.LOCAL);
+  }
+
+  @Test
+  void testLoad_concurrentMisses_coalesced() throws Exception {
+    // Note: we don't save the host to SQL
+    Host host = DatabaseHelper.newHost("ns1.example.tld");
+    CountDownLatch remoteLookupStarted = new CountDownLatch(1);
+    CountDownLatch remoteLookupReleased = new CountDownLatch(1);
+    when(jedisClient.get(Host.class, host.getRepoId()))
+        .thenAnswer(
+            invocation -> {
+              remoteLookupStarted.countDown();
+              remoteLookupReleased.await();
+              return Optional.of(host);
+            });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Optional<Host>> first = executor.submit(() -> cache.loadByRepoId(host.getRepoId()));
+      remoteLookupStarted.await();
+      Future<Optional<Host>> second = executor.submit(() -> cache.loadByRepoId(host.getRepoId()));
+      verify(cacheMetrics, timeout(5000)).recordLookup("Host", CacheMetrics.CacheHitType.COALESCED);
+      remoteLookupReleased.countDown();
+
+      assertThat(first.get()).hasValue(host);
+      assertThat(second.get()).hasValue(host);
+    } finally {
+      executor.shutdownNow();
+    }
+    verify(jedisClient).get(Host.class, host.getRepoId());
+    verify(cacheMetrics).recordLookup("Host", CacheMetrics.CacheHitType.REMOTE);
+    verifyNoMoreInteractions(jedisClient);
+    verifyNoMoreInteractions(cacheMetrics);
+  }
+
+  @Test
+  void testLoad_concurrentMisses_failurePropagatedToWaiters() throws Exception {
+    Host host = DatabaseHelper.newHost("ns1.example.tld");
+    CountDownLatch remoteLookupStarted = new CountDownLatch(1);
+    CountDownLatch remoteLookupReleased = new CountDownLatch(1);
+    when(jedisClient.get(Host.class, host.getRepoId()))
+        .thenAnswer(
+            invocation -> {
+              remoteLookupStarted.countDown();
+              remoteLookupReleased.await();
+              throw new IllegalStateException("Valkey is down");
+            });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Optional<Host>> first = executor.submit(() -> cache.loadByRepoId(host.getRepoId()));
+      remoteLookupStarted.await();
+      Future<Optional<Host>> second = executor.submit(() -> cache.loadByRepoId(host.getRepoId()));
+      verify(cacheMetrics, timeout(5000)).recordLookup("Host", CacheMetrics.CacheHitType.COALESCED);
+      remoteLookupReleased.countDown();
+
+      assertThat(assertThrows(ExecutionException.class, first::get))
+          .hasCauseThat()
+          .isInstanceOf(IllegalStateException.class);
+      assertThat(assertThrows(ExecutionException.class, second::get))
+          .hasCauseThat()
+          .isInstanceOf(IllegalStateException.class);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // The failed load isn't remembered
+    reset(jedisClient);
+    when(jedisClient.get(Host.class, host.getRepoId())).thenReturn(Optional.of(host));
+    assertThat(cache.loadByRepoId(host.getRepoId())).hasValue(host);
+  }
 }
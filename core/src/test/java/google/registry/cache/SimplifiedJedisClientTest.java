@@ -21,6 +21,7 @@ import static google.registry.testing.DatabaseHelper.persistActiveDomain;
 import static google.registry.testing.DatabaseHelper.persistActiveHost;
 import static google.registry.testing.DatabaseHelper.persistActiveSubordinateHost;
 import static google.registry.testing.DatabaseHelper.persistDeletedDomain;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.collect.ImmutableList;
 import google.registry.model.domain.Domain;
@@ -108,6 +109,22 @@ public class SimplifiedJedisClientTest {
         .isEqualExceptFields(domain3, "dsData", "gracePeriods", "nsHosts");
   }
 
+  @Test
+  void testGetAll_host() {
+    Host host1 = persistActiveHost("ns1.example.tld");
+    Host host2 = persistActiveHost("ns2.example.tld");
+    SimplifiedJedisClient client = createJedisClient();
+    client.setAll(
+        ImmutableList.of(
+            new SimplifiedJedisClient.JedisResource<>("repoId1", host1),
+            new SimplifiedJedisClient.JedisResource<>("repoId2", host2)));
+
+    assertThat(client.getAll(Host.class, ImmutableList.of("repoId2", "nonexistent", "repoId1")))
+        .containsExactly("repoId2", host2, "repoId1", host1)
+        .inOrder();
+    assertThat(client.getAll(Host.class, ImmutableList.of())).isEmpty();
+  }
+
   @Test
   void testPipeline_host() {
     Host host1 = persistActiveHost("ns1.example.tld");
@@ -153,10 +170,25 @@ public class SimplifiedJedisClientTest {
     assertThat(hostClient.get(Host.class, "ns1.nonexistent.tld")).isEmpty();
   }
 
+  @Test
+  void testGet_incompatibleFormat_isMiss() {
+    Domain domain = persistActiveDomain("example.tld");
+    SimplifiedJedisClient client = createJedisClient();
+    client.set(new SimplifiedJedisClient.JedisResource<>("example.tld", domain));
+    // Simulate an entry that was written in another version of the format, e.g. during a deploy
+    createRedisClient()
+        .set("d_example.tld".getBytes(UTF_8), new byte[] {CachedResourceCodec.CURRENT_VERSION + 1});
+    assertThat(client.get(Domain.class, "example.tld")).isEmpty();
+    assertThat(client.getAll(Domain.class, ImmutableList.of("example.tld"))).isEmpty();
+  }
+
   private SimplifiedJedisClient createJedisClient() {
-    return new SimplifiedJedisClient(
-        RedisClient.builder()
-            .hostAndPort(new HostAndPort(valkey.getHost(), valkey.getFirstMappedPort()))
-            .build());
+    return new SimplifiedJedisClient(createRedisClient());
+  }
+
+  private static RedisClient createRedisClient() {
+    return RedisClient.builder()
+        .hostAndPort(new HostAndPort(valkey.getHost(), valkey.getFirstMappedPort()))
+        .build();
   }
 }
@@ -16,10 +16,12 @@ package google.registry.dns;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.dns.DnsUtils.countDueRequests;
 import static google.registry.dns.DnsUtils.deleteRequests;
 import static google.registry.dns.DnsUtils.readAndUpdateRequestsWithLatestProcessTime;
 import static google.registry.dns.DnsUtils.requestDomainDnsRefresh;
 import static google.registry.dns.DnsUtils.requestHostDnsRefresh;
+import static google.registry.persistence.PersistenceModule.TransactionIsolationLevel.TRANSACTION_SERIALIZABLE;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
 import static google.registry.testing.DatabaseHelper.createTld;
 import static google.registry.testing.DatabaseHelper.loadAllOf;
@@ -28,14 +30,21 @@ import static google.registry.util.DateTimeUtils.minusMinutes;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Uninterruptibles;
 import google.registry.dns.DnsUtils.TargetType;
 import google.registry.model.common.DnsRefreshRequest;
 import google.registry.persistence.transaction.JpaTestExtensions;
 import google.registry.persistence.transaction.JpaTestExtensions.JpaIntegrationTestExtension;
 import google.registry.testing.FakeClock;
+import jakarta.persistence.LockModeType;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -110,6 +119,134 @@ public class DnsUtilsTest {
         request, TargetType.DOMAIN, domainName, tld, clock.now().plus(Duration.ofMinutes(3)));
   }
 
+  @Test
+  void testSuccess_duplicateNamesInBatch_oneRequest() {
+    tm().transact(
+            () -> requestDomainDnsRefresh(ImmutableList.of(domainName, "test2.tld", domainName)));
+    ImmutableList<DnsRefreshRequest> requests = loadAllOf(DnsRefreshRequest.class);
+    assertThat(requests.size()).isEqualTo(2);
+    assertRequest(requests.get(0), TargetType.DOMAIN, domainName, tld, clock.now());
+    assertRequest(requests.get(1), TargetType.DOMAIN, "test2.tld", tld, clock.now());
+  }
+
+  @Test
+  void testSuccess_pendingRequest_mergedIntoIt() {
+    Instant firstRequestTime = clock.now();
+    tm().transact(() -> requestDomainDnsRefresh(domainName));
+    clock.advanceBy(Duration.ofSeconds(30));
+    tm().transact(() -> requestDomainDnsRefresh(domainName));
+    tm().transact(() -> requestDomainDnsRefresh(ImmutableList.of(domainName)));
+    DnsRefreshRequest request = Iterables.getOnlyElement(loadAllOf(DnsRefreshRequest.class));
+    assertRequest(request, TargetType.DOMAIN, domainName, tld, firstRequestTime);
+  }
+
+  @Test
+  void testSuccess_pendingRequestDueLater_advanced() {
+    tm().transact(() -> requestDomainDnsRefresh(domainName, Duration.ofMinutes(3)));
+    clock.advanceBy(Duration.ofMinutes(1));
+    tm().transact(() -> requestDomainDnsRefresh(domainName));
+    DnsRefreshRequest request = Iterables.getOnlyElement(loadAllOf(DnsRefreshRequest.class));
+    assertRequest(request, TargetType.DOMAIN, domainName, tld, clock.now());
+  }
+
+  @Test
+  void testSuccess_pendingRequestOfOtherType_notMerged() {
+    tm().transact(() -> requestDomainDnsRefresh("ns1.test.tld"));
+    tm().transact(() -> requestHostDnsRefresh("ns1.test.tld"));
+    assertThat(loadAllOf(DnsRefreshRequest.class).size()).isEqualTo(2);
+  }
+
+  @Test
+  void testSuccess_readRequest_notMerged() {
+    tm().transact(() -> requestDomainDnsRefresh(domainName));
+    clock.advanceOneMilli();
+    DnsRefreshRequest readRequest =
+        Iterables.getOnlyElement(
+            readAndUpdateRequestsWithLatestProcessTime(tld, Duration.ofMinutes(1), 10));
+    clock.advanceOneMilli();
+    // The read request may already have been published, so a new request is needed.
+    tm().transact(() -> requestDomainDnsRefresh(domainName));
+    ImmutableList<DnsRefreshRequest> requests = loadAllOf(DnsRefreshRequest.class);
+    assertThat(requests.size()).isEqualTo(2);
+    assertThat(requests).contains(readRequest);
+    assertThat(requests.stream().filter(e -> e.getLastProcessTime().equals(START_INSTANT)).count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void testSuccess_lockedPendingRequest_newRequestInsteadOfWaiting() {
+    tm().transact(() -> requestDomainDnsRefresh(domainName));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      tm().transact(
+              () -> {
+                // Hold the lock on the pending request, as a concurrent read would.
+                tm().query("FROM DnsRefreshRequest", DnsRefreshRequest.class)
+                    .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                    .getResultList();
+                Future<?> request =
+                    executor.submit(() -> tm().transact(() -> requestDomainDnsRefresh(domainName)));
+                try {
+                  // Times out if the request waits for the lock held by this transaction.
+                  Uninterruptibles.getUninterruptibly(request, Duration.ofSeconds(10));
+                } catch (ExecutionException | TimeoutException e) {
+                  throw new AssertionError(e);
+                }
+              });
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(loadAllOf(DnsRefreshRequest.class).size()).isEqualTo(2);
+  }
+
+  @Test
+  void testSuccess_pendingRequestReadConcurrently_newRequestInsteadOfFailing() {
+    tm().transact(() -> requestDomainDnsRefresh(domainName));
+    clock.advanceOneMilli();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // Without retries, so that a serialization failure isn't hidden by a retry with a new
+      // snapshot.
+      tm().transactNoRetry(
+              TRANSACTION_SERIALIZABLE,
+              () -> {
+                // Take the snapshot of this transaction while the request is still pending.
+                assertThat(tm().loadAllOf(DnsRefreshRequest.class)).hasSize(1);
+                Future<?> read =
+                    executor.submit(
+                        () -> readAndUpdateRequestsWithLatestProcessTime(tld, Duration.ZERO, 10));
+                try {
+                  Uninterruptibles.getUninterruptibly(read, Duration.ofSeconds(10));
+                } catch (ExecutionException | TimeoutException e) {
+                  throw new AssertionError(e);
+                }
+                requestDomainDnsRefresh(domainName);
+                return null;
+              });
+    } finally {
+      executor.shutdownNow();
+    }
+    ImmutableList<DnsRefreshRequest> requests = loadAllOf(DnsRefreshRequest.class);
+    assertThat(requests).hasSize(2);
+    assertThat(requests.stream().filter(e -> e.getLastProcessTime().equals(START_INSTANT)).count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void testSuccess_countDueRequests() {
+    tm().transact(() -> requestDomainDnsRefresh(domainName));
+    tm().transact(() -> requestDomainDnsRefresh("test2.tld"));
+    tm().transact(() -> requestDomainDnsRefresh("test3.tld", Duration.ofMinutes(5)));
+    clock.advanceOneMilli();
+    assertThat(countDueRequests(tld, Duration.ofMinutes(1))).isEqualTo(2);
+    readAndUpdateRequestsWithLatestProcessTime(tld, Duration.ofMinutes(1), 1);
+    clock.advanceOneMilli();
+    // The request that was just read isn't counted until its cooldown is over.
+    assertThat(countDueRequests(tld, Duration.ofMinutes(1))).isEqualTo(1);
+    clock.advanceBy(Duration.ofMinutes(1));
+    assertThat(countDueRequests(tld, Duration.ofMinutes(1))).isEqualTo(2);
+  }
+
   @Test
   void testSuccess_ProcessRequests() {
     ImmutableList<DnsRefreshRequest> requests = processRequests();
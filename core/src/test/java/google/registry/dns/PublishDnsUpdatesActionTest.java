@@ -49,6 +49,7 @@ import dagger.Lazy;
 import google.registry.dns.DnsMetrics.ActionStatus;
 import google.registry.dns.DnsMetrics.CommitStatus;
 import google.registry.dns.DnsMetrics.PublishStatus;
+import google.registry.dns.writer.DnsCommitFailureException;
 import google.registry.dns.writer.DnsWriter;
 import google.registry.groups.GmailClient;
 import google.registry.model.domain.Domain;
@@ -173,13 +174,14 @@ public class PublishDnsUpdatesActionTest {
         createAction("xn--q9jyb4c", ImmutableSet.of(), ImmutableSet.of("ns1.example.xn--q9jyb4c"));
     action.run();
 
-    verify(dnsWriter).publishHost("ns1.example.xn--q9jyb4c");
+    verify(dnsWriter).publishBatch(ImmutableSet.of(), ImmutableSet.of("ns1.example.xn--q9jyb4c"));
     verify(dnsWriter).commit();
     verifyNoMoreInteractions(dnsWriter);
     verify(dnsMetrics).incrementPublishDomainRequests("xn--q9jyb4c", 0, PublishStatus.ACCEPTED);
     verify(dnsMetrics).incrementPublishDomainRequests("xn--q9jyb4c", 0, PublishStatus.REJECTED);
     verify(dnsMetrics).incrementPublishHostRequests("xn--q9jyb4c", 1, PublishStatus.ACCEPTED);
     verify(dnsMetrics).incrementPublishHostRequests("xn--q9jyb4c", 0, PublishStatus.REJECTED);
+    verify(dnsMetrics).recordBatchStaging("xn--q9jyb4c", "correctWriter", Duration.ZERO);
     verify(dnsMetrics)
         .recordCommit("xn--q9jyb4c", "correctWriter", CommitStatus.SUCCESS, Duration.ZERO, 0, 1);
     verify(dnsMetrics)
@@ -200,13 +202,14 @@ public class PublishDnsUpdatesActionTest {
     action = createAction("xn--q9jyb4c", ImmutableSet.of("example.xn--q9jyb4c"), ImmutableSet.of());
     action.run();
 
-    verify(dnsWriter).publishDomain("example.xn--q9jyb4c");
+    verify(dnsWriter).publishBatch(ImmutableSet.of("example.xn--q9jyb4c"), ImmutableSet.of());
     verify(dnsWriter).commit();
     verifyNoMoreInteractions(dnsWriter);
     verify(dnsMetrics).incrementPublishDomainRequests("xn--q9jyb4c", 1, PublishStatus.ACCEPTED);
     verify(dnsMetrics).incrementPublishDomainRequests("xn--q9jyb4c", 0, PublishStatus.REJECTED);
     verify(dnsMetrics).incrementPublishHostRequests("xn--q9jyb4c", 0, PublishStatus.ACCEPTED);
     verify(dnsMetrics).incrementPublishHostRequests("xn--q9jyb4c", 0, PublishStatus.REJECTED);
+    verify(dnsMetrics).recordBatchStaging("xn--q9jyb4c", "correctWriter", Duration.ZERO);
     verify(dnsMetrics)
         .recordCommit("xn--q9jyb4c", "correctWriter", CommitStatus.SUCCESS, Duration.ZERO, 1, 0);
     verify(dnsMetrics)
@@ -259,6 +262,7 @@ public class PublishDnsUpdatesActionTest {
     verify(dnsMetrics).incrementPublishDomainRequests("xn--q9jyb4c", 0, PublishStatus.REJECTED);
     verify(dnsMetrics).incrementPublishHostRequests("xn--q9jyb4c", 3, PublishStatus.ACCEPTED);
     verify(dnsMetrics).incrementPublishHostRequests("xn--q9jyb4c", 0, PublishStatus.REJECTED);
+    verify(dnsMetrics).recordBatchStaging("xn--q9jyb4c", "correctWriter", Duration.ZERO);
     verify(dnsMetrics)
         .recordCommit("xn--q9jyb4c", "correctWriter", CommitStatus.FAILURE, Duration.ZERO, 2, 3);
     verify(dnsMetrics)
@@ -350,6 +354,56 @@ public class PublishDnsUpdatesActionTest {
             .header("content-type", "application/x-www-form-urlencoded"));
   }
 
+  @Test
+  void testCommitFailsForSomeNames_requeuesOnlyFailedNames() {
+    ImmutableSet<String> domains =
+        ImmutableSet.of("example1.xn--q9jyb4c", "example2.xn--q9jyb4c", "example3.xn--q9jyb4c");
+    action = createAction("xn--q9jyb4c", domains, ImmutableSet.of("ns1.example.xn--q9jyb4c"));
+    doThrow(
+            new DnsCommitFailureException(
+                "SERVFAIL",
+                ImmutableSet.of("example2.xn--q9jyb4c"),
+                ImmutableSet.of("ns1.example.xn--q9jyb4c"),
+                null))
+        .when(dnsWriter)
+        .commit();
+    action.run();
+
+    verify(dnsMetrics)
+        .recordActionResult(
+            "xn--q9jyb4c",
+            "correctWriter",
+            ActionStatus.COMMIT_FAILURE,
+            4,
+            Duration.ofHours(2),
+            Duration.ofHours(1));
+    cloudTasksHelper.assertTasksEnqueued(
+        DNS_PUBLISH_PUSH_QUEUE_NAME,
+        new TaskMatcher()
+            .path(PublishDnsUpdatesAction.PATH)
+            .param(PARAM_TLD, "xn--q9jyb4c")
+            .param(PARAM_DNS_WRITER, "correctWriter")
+            .param(PARAM_LOCK_INDEX, "1")
+            .param(PARAM_NUM_PUBLISH_LOCKS, "1")
+            .param(PARAM_PUBLISH_TASK_ENQUEUED, clock.now().toString())
+            .param(PARAM_REFRESH_REQUEST_TIME, clock.now().minus(Duration.ofHours(2)).toString())
+            .param(PARAM_DOMAINS, "example2.xn--q9jyb4c")
+            .param(PARAM_HOSTS, "ns1.example.xn--q9jyb4c")
+            .header("content-type", "application/x-www-form-urlencoded"));
+  }
+
+  @Test
+  void testCommitFailsForAllNames_retriesBatch() {
+    ImmutableSet<String> domains = ImmutableSet.of("example1.xn--q9jyb4c", "example2.xn--q9jyb4c");
+    action = createAction("xn--q9jyb4c", domains, ImmutableSet.of());
+    doThrow(new DnsCommitFailureException("SERVFAIL", domains, ImmutableSet.of(), null))
+        .when(dnsWriter)
+        .commit();
+
+    assertThrows(DnsCommitFailureException.class, action::run);
+    cloudTasksHelper.assertNoTasksEnqueued(DNS_PUBLISH_PUSH_QUEUE_NAME);
+  }
+
   @Test
   void testTaskFails_singleHostSingleDomain() {
     action =
@@ -454,17 +508,15 @@ public class PublishDnsUpdatesActionTest {
 
     action.run();
 
-    verify(dnsWriter).publishDomain("example.xn--q9jyb4c");
-    verify(dnsWriter).publishDomain("example2.xn--q9jyb4c");
-    verify(dnsWriter).publishHost("ns1.example.xn--q9jyb4c");
-    verify(dnsWriter).publishHost("ns2.example.xn--q9jyb4c");
-    verify(dnsWriter).publishHost("ns1.example2.xn--q9jyb4c");
+    verify(dnsWriter)
+        .publishBatch(ImmutableSet.of("example.xn--q9jyb4c", "example2.xn--q9jyb4c"), hosts);
     verify(dnsWriter).commit();
     verifyNoMoreInteractions(dnsWriter);
     verify(dnsMetrics).incrementPublishDomainRequests("xn--q9jyb4c", 2, PublishStatus.ACCEPTED);
     verify(dnsMetrics).incrementPublishDomainRequests("xn--q9jyb4c", 0, PublishStatus.REJECTED);
     verify(dnsMetrics).incrementPublishHostRequests("xn--q9jyb4c", 3, PublishStatus.ACCEPTED);
     verify(dnsMetrics).incrementPublishHostRequests("xn--q9jyb4c", 0, PublishStatus.REJECTED);
+    verify(dnsMetrics).recordBatchStaging("xn--q9jyb4c", "correctWriter", Duration.ZERO);
     verify(dnsMetrics)
         .recordCommit("xn--q9jyb4c", "correctWriter", CommitStatus.SUCCESS, Duration.ZERO, 2, 3);
     verify(dnsMetrics)
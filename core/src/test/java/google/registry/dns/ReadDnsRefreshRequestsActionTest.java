@@ -27,6 +27,7 @@ import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -58,24 +59,30 @@ public class ReadDnsRefreshRequestsActionTest {
   private final FakeClock clock = new FakeClock(Instant.parse("2020-02-02T01:23:45Z"));
   private final CloudTasksHelper cloudTasksHelper = new CloudTasksHelper(clock);
   private final Optional<Integer> jitterSeconds = Optional.of(5);
+  private final DnsMetrics dnsMetrics = mock(DnsMetrics.class);
 
   @RegisterExtension
   JpaIntegrationTestExtension jpa =
       new JpaTestExtensions.Builder().withClock(clock).buildIntegrationTestExtension();
 
-  private final ReadDnsRefreshRequestsAction action =
-      spy(
-          new ReadDnsRefreshRequestsAction(
-              2,
-              Duration.ofSeconds(10),
-              jitterSeconds,
-              "tld",
-              clock,
-              null,
-              cloudTasksHelper.getTestCloudTasksUtils()));
+  private final ReadDnsRefreshRequestsAction action = createAction(1);
 
   private ImmutableList<DnsRefreshRequest> requests;
 
+  private ReadDnsRefreshRequestsAction createAction(int numThreads) {
+    return spy(
+        new ReadDnsRefreshRequestsAction(
+            2,
+            Duration.ofSeconds(10),
+            numThreads,
+            jitterSeconds,
+            "tld",
+            clock,
+            null,
+            cloudTasksHelper.getTestCloudTasksUtils(),
+            dnsMetrics));
+  }
+
   @BeforeEach
   void beforeEach() {
     persistResource(
@@ -136,6 +143,47 @@ public class ReadDnsRefreshRequestsActionTest {
     verify(action, times(1)).processRequests(captor.capture());
     assertThat(captor.getValue().size()).isEqualTo(3);
     assertThat(loadAllOf(DnsRefreshRequest.class).isEmpty()).isTrue();
+    verify(dnsMetrics).recordRefreshRequestQueueDepth("tld", 3);
+    verify(dnsMetrics).recordRefreshRequestsDrained(eq("tld"), eq(3), any(Duration.class));
+  }
+
+  @Test
+  void testSuccess_runAction_backlog_largerBatchSplitIntoTasks() {
+    // Make the base read batch size 2 * 1 = 2. With 5 requests due, the first read is twice that.
+    persistResource(Tld.get("tld").asBuilder().setNumDnsPublishLocks(1).build());
+    persistResources(
+        ImmutableList.of(
+            new DnsRefreshRequest(
+                TargetType.DOMAIN, "backlog1.tld", "tld", clock.now().minus(Duration.ofMinutes(1))),
+            new DnsRefreshRequest(
+                TargetType.DOMAIN,
+                "backlog2.tld",
+                "tld",
+                clock.now().minus(Duration.ofMinutes(1)))));
+    doReturn(1).when(action).getLockIndex(anyInt(), any(DnsRefreshRequest.class));
+    action.run();
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Collection<DnsRefreshRequest>> captor =
+        ArgumentCaptor.forClass(Collection.class);
+    // The first batch of 4 is split into two tasks of 2, the second batch only has 1 request.
+    verify(action, times(3)).enqueueUpdates(eq(1), eq(1), captor.capture());
+    assertThat(captor.getAllValues().get(0).size()).isEqualTo(2);
+    assertThat(captor.getAllValues().get(1).size()).isEqualTo(2);
+    assertThat(captor.getAllValues().get(2).size()).isEqualTo(1);
+    verify(action, times(2)).processRequests(captor.capture());
+    assertThat(captor.getAllValues().get(3).size()).isEqualTo(4);
+    assertThat(captor.getAllValues().get(4).size()).isEqualTo(1);
+    assertThat(loadAllOf(DnsRefreshRequest.class).isEmpty()).isTrue();
+    verify(dnsMetrics).recordRefreshRequestQueueDepth("tld", 5);
+  }
+
+  @Test
+  void testGetBatchSizeMultiplier() {
+    assertThat(ReadDnsRefreshRequestsAction.getBatchSizeMultiplier(0, 4)).isEqualTo(1);
+    assertThat(ReadDnsRefreshRequestsAction.getBatchSizeMultiplier(7, 4)).isEqualTo(1);
+    assertThat(ReadDnsRefreshRequestsAction.getBatchSizeMultiplier(8, 4)).isEqualTo(2);
+    assertThat(ReadDnsRefreshRequestsAction.getBatchSizeMultiplier(1000, 4))
+        .isEqualTo(ReadDnsRefreshRequestsAction.MAX_BATCH_SIZE_MULTIPLIER);
   }
 
   @Test
@@ -206,6 +254,22 @@ public class ReadDnsRefreshRequestsActionTest {
     verify(action).enqueueUpdates(2, 2, ImmutableSet.of(requests.get(0), requests.get(2)));
     verify(action).enqueueUpdates(1, 2, ImmutableSet.of(requests.get(1)));
     assertThat(loadAllOf(DnsRefreshRequest.class)).isEmpty();
+    verify(dnsMetrics).recordRefreshRequestsDrained(eq("tld"), eq(3), any(Duration.class));
+  }
+
+  @Test
+  void testSuccess_processTasks_concurrently() {
+    ReadDnsRefreshRequestsAction action = createAction(2);
+    doReturn(2)
+        .doReturn(1)
+        .doReturn(2)
+        .when(action)
+        .getLockIndex(eq(2), any(DnsRefreshRequest.class));
+    action.processRequests(requests);
+    verify(action).enqueueUpdates(2, 2, ImmutableSet.of(requests.get(0), requests.get(2)));
+    verify(action).enqueueUpdates(1, 2, ImmutableSet.of(requests.get(1)));
+    assertThat(cloudTasksHelper.getTestTasksFor("dns-publish")).hasSize(4);
+    assertThat(loadAllOf(DnsRefreshRequest.class)).isEmpty();
   }
 
   @Test
@@ -222,6 +286,7 @@ public class ReadDnsRefreshRequestsActionTest {
     verify(action).enqueueUpdates(2, 2, ImmutableSet.of(requests.get(0), requests.get(2)));
     verify(action).enqueueUpdates(1, 2, ImmutableSet.of(requests.get(1)));
     assertThat(loadAllOf(DnsRefreshRequest.class).size()).isEqualTo(2);
+    verify(dnsMetrics).recordRefreshRequestsDrained(eq("tld"), eq(1), any(Duration.class));
   }
 
   @Test
@@ -260,4 +325,26 @@ public class ReadDnsRefreshRequestsActionTest {
                   .isAtMost(Duration.ofSeconds(jitterSeconds.get()));
             });
   }
+
+  @Test
+  void testSuccess_enqueueTasks_duplicateNamesCollapsed() {
+    action.enqueueUpdates(
+        1,
+        1,
+        ImmutableList.of(
+            new DnsRefreshRequest(TargetType.DOMAIN, "domain.tld", "tld", clock.now()),
+            new DnsRefreshRequest(TargetType.HOST, "ns1.domain.tld", "tld", clock.now()),
+            new DnsRefreshRequest(TargetType.DOMAIN, "domain.tld", "tld", clock.now()),
+            new DnsRefreshRequest(TargetType.HOST, "ns1.domain.tld", "tld", clock.now())));
+    cloudTasksHelper.assertTasksEnqueued(
+        "dns-publish",
+        new TaskMatcher()
+            .param("dnsWriter", "FooWriter")
+            .param("domains", "domain.tld")
+            .param("hosts", "ns1.domain.tld"),
+        new TaskMatcher()
+            .param("dnsWriter", "BarWriter")
+            .param("domains", "domain.tld")
+            .param("hosts", "ns1.domain.tld"));
+  }
 }
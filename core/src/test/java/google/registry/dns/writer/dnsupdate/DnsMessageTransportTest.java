@@ -14,25 +14,40 @@
 
 package google.registry.dns.writer.dnsupdate;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.io.BaseEncoding.base16;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.base.VerifyException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import google.registry.dns.DnsMetrics;
+import google.registry.dns.DnsMetrics.ConnectionType;
+import google.registry.testing.FakeClock;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 import javax.net.SocketFactory;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -44,6 +59,7 @@ import org.xbill.DNS.Name;
 import org.xbill.DNS.Opcode;
 import org.xbill.DNS.Rcode;
 import org.xbill.DNS.Record;
+import org.xbill.DNS.TextParseException;
 import org.xbill.DNS.Type;
 import org.xbill.DNS.Update;
 
@@ -54,11 +70,18 @@ class DnsMessageTransportTest {
 
   private final SocketFactory mockFactory = mock(SocketFactory.class);
   private final Socket mockSocket = mock(Socket.class);
+  private final DnsMetrics dnsMetrics = mock(DnsMetrics.class);
+  private final FakeClock clock = new FakeClock();
 
   private Message simpleQuery;
   private Message expectedResponse;
   private DnsMessageTransport resolver;
 
+  @AfterEach
+  void afterEach() {
+    DnsConnectionPool.closeAll();
+  }
+
   @BeforeEach
   @SuppressWarnings("AddressSelection")
   void beforeEach() throws Exception {
@@ -67,7 +90,8 @@ class DnsMessageTransportTest {
     expectedResponse = responseMessageWithCode(simpleQuery, Rcode.NOERROR);
     when(mockFactory.createSocket(InetAddress.getByName(UPDATE_HOST), DnsMessageTransport.DNS_PORT))
         .thenReturn(mockSocket);
-    resolver = new DnsMessageTransport(mockFactory, UPDATE_HOST, Duration.ZERO);
+    resolver =
+        new DnsMessageTransport(mockFactory, UPDATE_HOST, Duration.ZERO, 0, dnsMetrics, clock);
   }
 
   @Test
@@ -122,7 +146,8 @@ class DnsMessageTransportTest {
     when(mockSocket.getOutputStream()).thenReturn(new ByteArrayOutputStream());
 
     Duration testTimeout = Duration.ofSeconds(1);
-    DnsMessageTransport resolver = new DnsMessageTransport(mockFactory, UPDATE_HOST, testTimeout);
+    DnsMessageTransport resolver =
+        new DnsMessageTransport(mockFactory, UPDATE_HOST, testTimeout, 0, dnsMetrics, clock);
     Message expectedQuery = new Message();
     assertThrows(SocketTimeoutException.class, () -> resolver.send(expectedQuery));
     verify(mockSocket).setSoTimeout((int) testTimeout.toMillis());
@@ -174,6 +199,166 @@ class DnsMessageTransportTest {
         .contains("response opcode 'STATUS' does not match query opcode 'QUERY'");
   }
 
+  @Test
+  void testSentMessage_recordsRoundTrip() throws Exception {
+    when(mockSocket.getInputStream())
+        .thenReturn(new ByteArrayInputStream(messageToBytesWithLength(expectedResponse)));
+    when(mockSocket.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+    resolver.send(simpleQuery);
+    verify(dnsMetrics).recordUpdateRoundTrip(ConnectionType.NEW, Duration.ZERO);
+  }
+
+  @Test
+  void testPooled_reusesConnection() throws Exception {
+    try (StandInDnsServer server = new StandInDnsServer(false, false)) {
+      DnsMessageTransport pooledResolver = createPooledResolver(server);
+      Message firstQuery = newQuery("example1.tld.");
+      Message secondQuery = newQuery("example2.tld.");
+
+      assertThat(pooledResolver.send(firstQuery).getHeader().getID())
+          .isEqualTo(firstQuery.getHeader().getID());
+      assertThat(pooledResolver.send(secondQuery).getHeader().getID())
+          .isEqualTo(secondQuery.getHeader().getID());
+
+      assertThat(server.getConnectionCount()).isEqualTo(1);
+      verify(dnsMetrics).recordUpdateRoundTrip(ConnectionType.NEW, Duration.ZERO);
+      verify(dnsMetrics).recordUpdateRoundTrip(ConnectionType.REUSED, Duration.ZERO);
+    }
+  }
+
+  @Test
+  void testPooled_pipelinesMessagesAndMatchesResponsesById() throws Exception {
+    try (StandInDnsServer server = new StandInDnsServer(true, false)) {
+      DnsMessageTransport pooledResolver = createPooledResolver(server);
+      ImmutableList<Message> queries =
+          IntStream.range(0, DnsMessageTransport.MAX_PIPELINED_MESSAGES + 2)
+              .mapToObj(i -> newQuery(String.format("example%d.tld.", i)))
+              .collect(toImmutableList());
+
+      ImmutableList<Message> responses = pooledResolver.sendAll(queries);
+
+      assertThat(responses.stream().map(response -> response.getHeader().getID()))
+          .containsExactlyElementsIn(
+              queries.stream().map(query -> query.getHeader().getID()).collect(toImmutableList()))
+          .inOrder();
+      // The first window is pipelined over a new connection and the second one reuses it.
+      assertThat(server.getConnectionCount()).isEqualTo(1);
+      verify(dnsMetrics).recordUpdateRoundTrip(ConnectionType.NEW, Duration.ZERO);
+      verify(dnsMetrics).recordUpdateRoundTrip(ConnectionType.REUSED, Duration.ZERO);
+    }
+  }
+
+  @Test
+  void testPooled_reconnectsWhenServerClosedConnection() throws Exception {
+    try (StandInDnsServer server = new StandInDnsServer(false, true)) {
+      DnsMessageTransport pooledResolver = createPooledResolver(server);
+      Message firstQuery = newQuery("example1.tld.");
+      Message secondQuery = newQuery("example2.tld.");
+
+      pooledResolver.send(firstQuery);
+      assertThat(pooledResolver.send(secondQuery).getHeader().getID())
+          .isEqualTo(secondQuery.getHeader().getID());
+
+      assertThat(server.getConnectionCount()).isEqualTo(2);
+      verify(dnsMetrics, times(2)).recordUpdateRoundTrip(ConnectionType.NEW, Duration.ZERO);
+    }
+  }
+
+  private DnsMessageTransport createPooledResolver(StandInDnsServer server) {
+    return new DnsMessageTransport(
+        SocketFactory.getDefault(),
+        UPDATE_HOST,
+        server.getPort(),
+        Duration.ofSeconds(10),
+        2,
+        dnsMetrics,
+        clock);
+  }
+
+  private static Message newQuery(String name) {
+    try {
+      return Message.newQuery(Record.newRecord(Name.fromString(name), Type.A, DClass.IN));
+    } catch (TextParseException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  /**
+   * A local stand-in for a DNS server, which answers every message it receives over TCP with an
+   * empty NOERROR response.
+   */
+  private class StandInDnsServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final boolean answerInReverseOrder;
+    private final boolean closeAfterEachAnswer;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final Thread thread;
+    private volatile Socket currentConnection;
+
+    StandInDnsServer(boolean answerInReverseOrder, boolean closeAfterEachAnswer)
+        throws IOException {
+      this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName(UPDATE_HOST));
+      this.answerInReverseOrder = answerInReverseOrder;
+      this.closeAfterEachAnswer = closeAfterEachAnswer;
+      this.thread = new Thread(this::serve);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    int getPort() {
+      return serverSocket.getLocalPort();
+    }
+
+    int getConnectionCount() {
+      return connectionCount.get();
+    }
+
+    private void serve() {
+      while (!serverSocket.isClosed()) {
+        try (Socket socket = serverSocket.accept()) {
+          currentConnection = socket;
+          connectionCount.incrementAndGet();
+          answer(socket);
+        } catch (IOException e) {
+          // The server was closed, or the client went away.
+        }
+      }
+    }
+
+    private void answer(Socket socket) throws IOException {
+      DataInputStream input = new DataInputStream(socket.getInputStream());
+      while (true) {
+        List<Message> queries = new ArrayList<>();
+        // Read everything that was pipelined before answering, so the answers can be reordered.
+        do {
+          byte[] data = new byte[input.readUnsignedShort()];
+          input.readFully(data);
+          queries.add(new Message(data));
+        } while (input.available() > 0);
+        List<Message> answerOrder = answerInReverseOrder ? Lists.reverse(queries) : queries;
+        for (Message query : answerOrder) {
+          socket
+              .getOutputStream()
+              .write(messageToBytesWithLength(responseMessageWithCode(query, Rcode.NOERROR)));
+        }
+        if (closeAfterEachAnswer) {
+          return;
+        }
+      }
+    }
+
+    @Override
+    public void close() throws Exception {
+      serverSocket.close();
+      // Pooled connections stay open, so they must be closed for the server thread to finish.
+      if (currentConnection != null) {
+        currentConnection.close();
+      }
+      thread.join();
+    }
+  }
+
   private Message responseMessageWithCode(Message query, int responseCode) {
     Message message = new Message(query.getHeader().getID());
     message.getHeader().setOpcode(query.getHeader().getOpcode());
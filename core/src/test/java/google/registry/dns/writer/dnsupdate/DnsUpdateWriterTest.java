@@ -28,14 +28,15 @@ import static google.registry.testing.DatabaseHelper.persistResource;
 import static google.registry.util.DateTimeUtils.minusDays;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
-import com.google.common.base.VerifyException;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.net.InetAddresses;
+import google.registry.dns.writer.DnsCommitFailureException;
 import google.registry.model.domain.Domain;
 import google.registry.model.domain.secdns.DomainDsData;
 import google.registry.model.eppcommon.StatusValue;
@@ -45,6 +46,7 @@ import google.registry.persistence.transaction.JpaTestExtensions;
 import google.registry.persistence.transaction.JpaTestExtensions.JpaIntegrationTestExtension;
 import google.registry.testing.DatabaseHelper;
 import google.registry.testing.FakeClock;
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -83,6 +85,7 @@ public class DnsUpdateWriterTest {
 
   @Mock private DnsMessageTransport mockResolver;
   @Captor private ArgumentCaptor<Update> updateCaptor;
+  @Captor private ArgumentCaptor<List<Update>> updatesCaptor;
 
   private final FakeClock clock = new FakeClock(Instant.parse("1971-01-01T00:00:00Z"));
 
@@ -95,7 +98,7 @@ public class DnsUpdateWriterTest {
 
     writer =
         new DnsUpdateWriter(
-            "tld", Duration.ZERO, Duration.ZERO, Duration.ZERO, mockResolver, clock);
+            "tld", Duration.ZERO, Duration.ZERO, Duration.ZERO, 65535, mockResolver, clock);
   }
 
   @Test
@@ -185,6 +188,47 @@ public class DnsUpdateWriterTest {
     assertThatTotalUpdateSetsIs(update, 4); // The delete and NS sets for each TLD
   }
 
+  @Test
+  void testPublishBatch_oneUpdate() throws Exception {
+    Host externalNameserver = persistResource(newHost("ns1.example.com"));
+    Host inBailiwickNameserver =
+        persistResource(
+            newHost("ns1.example2.tld")
+                .asBuilder()
+                .setInetAddresses(ImmutableSet.of(InetAddresses.forString("10.0.0.1")))
+                .build());
+    persistResource(
+        DatabaseHelper.newDomain("example1.tld")
+            .asBuilder()
+            .addNameserver(externalNameserver.createVKey())
+            .build());
+    persistResource(
+        DatabaseHelper.newDomain("example2.tld")
+            .asBuilder()
+            .addSubordinateHost("ns1.example2.tld")
+            .addNameserver(inBailiwickNameserver.createVKey())
+            .build());
+
+    writer.publishBatch(
+        ImmutableSet.of("example1.tld", "nonexistent.tld"), ImmutableSet.of("ns1.example2.tld"));
+    writer.commit();
+
+    verify(mockResolver).send(updateCaptor.capture());
+    Update update = updateCaptor.getValue();
+    assertThatUpdatedZoneIs(update, "tld.");
+    assertThatUpdateDeletes(update, "example1.tld.", Type.ANY);
+    assertThatUpdateDeletes(update, "nonexistent.tld.", Type.ANY);
+    assertThatUpdateDeletes(update, "example2.tld.", Type.ANY);
+    assertThatUpdateDeletes(update, "ns1.example2.tld.", Type.ANY);
+    assertThatUpdateAdds(
+        update, "example1.tld.", Type.NS, Duration.ZERO.toSeconds(), "ns1.example.com.");
+    assertThatUpdateAdds(
+        update, "example2.tld.", Type.NS, Duration.ZERO.toSeconds(), "ns1.example2.tld.");
+    assertThatUpdateAdds(
+        update, "ns1.example2.tld.", Type.A, Duration.ZERO.toSeconds(), "10.0.0.1");
+    assertThatTotalUpdateSetsIs(update, 7);
+  }
+
   @Test
   void testPublishDomainCreate_publishesDelegationSigner_usesDefaultTtl() throws Exception {
     Domain domain =
@@ -511,14 +555,16 @@ public class DnsUpdateWriterTest {
             .build();
     persistResource(domain);
     when(mockResolver.send(any(Message.class))).thenReturn(messageWithResponseCode(Rcode.SERVFAIL));
-    VerifyException thrown =
+    DnsCommitFailureException thrown =
         assertThrows(
-            VerifyException.class,
+            DnsCommitFailureException.class,
             () -> {
               writer.publishDomain("example.tld");
               writer.commit();
             });
     assertThat(thrown).hasMessageThat().contains("SERVFAIL");
+    assertThat(thrown.getFailedDomainNames()).containsExactly("example.tld");
+    assertThat(thrown.getFailedHostNames()).isEmpty();
   }
 
   @MockitoSettings(strictness = Strictness.LENIENT)
@@ -532,14 +578,107 @@ public class DnsUpdateWriterTest {
             .build();
     persistResource(host);
     when(mockResolver.send(any(Message.class))).thenReturn(messageWithResponseCode(Rcode.SERVFAIL));
-    VerifyException thrown =
+    DnsCommitFailureException thrown =
         assertThrows(
-            VerifyException.class,
+            DnsCommitFailureException.class,
             () -> {
               writer.publishHost("ns1.example.tld");
               writer.commit();
             });
     assertThat(thrown).hasMessageThat().contains("SERVFAIL");
+    assertThat(thrown.getFailedDomainNames()).isEmpty();
+    assertThat(thrown.getFailedHostNames()).containsExactly("ns1.example.tld");
+  }
+
+  @MockitoSettings(strictness = Strictness.LENIENT)
+  @Test
+  void testCommit_splitsDomainsAcrossMessages() throws Exception {
+    persistDomainWithNameserver("example1.tld", "ns.example1.tld");
+    persistDomainWithNameserver("example2.tld", "ns.example2.tld");
+    when(mockResolver.sendAll(any()))
+        .thenReturn(
+            ImmutableList.of(
+                messageWithResponseCode(Rcode.NOERROR), messageWithResponseCode(Rcode.NOERROR)));
+    // Too small for the changes of more than one domain to be packed together.
+    writer =
+        new DnsUpdateWriter(
+            "tld", Duration.ZERO, Duration.ZERO, Duration.ZERO, 1, mockResolver, clock);
+
+    writer.publishDomain("example1.tld");
+    writer.publishHost("ns.example2.tld");
+    writer.commit();
+
+    verify(mockResolver).sendAll(updatesCaptor.capture());
+    List<Update> updates = updatesCaptor.getValue();
+    assertThat(updates).hasSize(2);
+    assertThatUpdatedZoneIs(updates.get(0), "tld.");
+    assertThatUpdateDeletes(updates.get(0), "example1.tld.", Type.ANY);
+    assertThatUpdateAdds(
+        updates.get(0), "example1.tld.", Type.NS, Duration.ZERO.toSeconds(), "ns.example1.tld.");
+    assertThatTotalUpdateSetsIs(updates.get(0), 2);
+    assertThatUpdatedZoneIs(updates.get(1), "tld.");
+    assertThatUpdateDeletes(updates.get(1), "example2.tld.", Type.ANY);
+    assertThatUpdateDeletes(updates.get(1), "ns.example2.tld.", Type.ANY);
+    assertThatUpdateAdds(
+        updates.get(1), "example2.tld.", Type.NS, Duration.ZERO.toSeconds(), "ns.example2.tld.");
+    verify(mockResolver, never()).send(any());
+  }
+
+  @MockitoSettings(strictness = Strictness.LENIENT)
+  @Test
+  void testCommit_reportsOnlyDomainsOfFailedMessages() throws Exception {
+    persistDomainWithNameserver("example1.tld", "ns.example1.tld");
+    persistDomainWithNameserver("example2.tld", "ns.example2.tld");
+    persistDomainWithNameserver("example3.tld", "ns.example3.tld");
+    when(mockResolver.sendAll(any()))
+        .thenReturn(
+            ImmutableList.of(
+                messageWithResponseCode(Rcode.NOERROR),
+                messageWithResponseCode(Rcode.SERVFAIL),
+                messageWithResponseCode(Rcode.NOERROR)));
+    writer =
+        new DnsUpdateWriter(
+            "tld", Duration.ZERO, Duration.ZERO, Duration.ZERO, 1, mockResolver, clock);
+
+    writer.publishDomain("example1.tld");
+    writer.publishDomain("example2.tld");
+    writer.publishHost("ns.example2.tld");
+    writer.publishDomain("example3.tld");
+    DnsCommitFailureException thrown =
+        assertThrows(DnsCommitFailureException.class, () -> writer.commit());
+
+    assertThat(thrown).hasMessageThat().contains("SERVFAIL");
+    assertThat(thrown.getFailedDomainNames()).containsExactly("example2.tld");
+    assertThat(thrown.getFailedHostNames()).containsExactly("ns.example2.tld");
+  }
+
+  @MockitoSettings(strictness = Strictness.LENIENT)
+  @Test
+  void testCommit_transportFails_reportsAllDomains() throws Exception {
+    persistDomainWithNameserver("example1.tld", "ns.example1.tld");
+    persistDomainWithNameserver("example2.tld", "ns.example2.tld");
+    when(mockResolver.sendAll(any())).thenThrow(new IOException("connection reset"));
+    writer =
+        new DnsUpdateWriter(
+            "tld", Duration.ZERO, Duration.ZERO, Duration.ZERO, 1, mockResolver, clock);
+
+    writer.publishDomain("example1.tld");
+    writer.publishHost("ns.example2.tld");
+    DnsCommitFailureException thrown =
+        assertThrows(DnsCommitFailureException.class, () -> writer.commit());
+
+    assertThat(thrown).hasCauseThat().isInstanceOf(IOException.class);
+    assertThat(thrown.getFailedDomainNames()).containsExactly("example1.tld");
+    assertThat(thrown.getFailedHostNames()).containsExactly("ns.example2.tld");
+  }
+
+  private static void persistDomainWithNameserver(String domainName, String hostName) {
+    Host host = persistActiveHost(hostName);
+    persistResource(
+        persistActiveDomain(domainName)
+            .asBuilder()
+            .setNameservers(ImmutableSet.of(host.createVKey()))
+            .build());
   }
 
   private static void assertThatUpdatedZoneIs(Update update, String zoneName) {
@@ -0,0 +1,125 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.testing.TestLogHandler;
+import google.registry.flows.EppCommandLogger.CommandMetadata;
+import google.registry.flows.EppCommandLogger.OverflowPolicy;
+import google.registry.util.JdkLoggerConfig;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link EppCommandLogger}. */
+class EppCommandLoggerTest {
+
+  private static final byte[] INPUT_XML = "<xml/>".getBytes(UTF_8);
+
+  private final TestLogHandler handler = new TestLogHandler();
+
+  @BeforeEach
+  void beforeEach() {
+    JdkLoggerConfig.getConfig(EppCommandLogger.class).addHandler(handler);
+  }
+
+  @AfterEach
+  void afterEach() {
+    JdkLoggerConfig.getConfig(EppCommandLogger.class).removeHandler(handler);
+  }
+
+  private static CommandMetadata metadata(String serverTrid) {
+    return new CommandMetadata(
+        serverTrid,
+        "TheRegistrar",
+        "session",
+        "credentials",
+        EppRequestSource.UNIT_TEST,
+        false,
+        false);
+  }
+
+  private long countInfoLogs() {
+    return handler.getStoredLogRecords().stream()
+        .filter(r -> r.getLevel().equals(Level.INFO))
+        .count();
+  }
+
+  @Test
+  void testSynchronous_logsImmediately() {
+    EppCommandLogger commandLogger = new EppCommandLogger(false, 1, OverflowPolicy.DROP, false);
+    commandLogger.log(INPUT_XML, metadata("server-1"));
+    commandLogger.log(INPUT_XML, metadata("server-2"));
+    assertThat(countInfoLogs()).isEqualTo(2);
+  }
+
+  @Test
+  void testAsynchronous_logsOnlyWhenDrained() {
+    EppCommandLogger commandLogger = new EppCommandLogger(true, 10, OverflowPolicy.DROP, false);
+    commandLogger.log(INPUT_XML, metadata("server-1"));
+    commandLogger.log(INPUT_XML, metadata("server-2"));
+    assertThat(countInfoLogs()).isEqualTo(0);
+    commandLogger.drainPendingCommands();
+    assertThat(
+            handler.getStoredLogRecords().stream()
+                .map(LogRecord::getMessage)
+                .filter(m -> m.startsWith("EPP Command\n\t")))
+        .hasSize(2);
+  }
+
+  @Test
+  void testAsynchronous_overflow_logsSynchronously() {
+    EppCommandLogger commandLogger =
+        new EppCommandLogger(true, 1, OverflowPolicy.LOG_SYNCHRONOUSLY, false);
+    commandLogger.log(INPUT_XML, metadata("server-1"));
+    commandLogger.log(INPUT_XML, metadata("server-2"));
+    assertThat(countInfoLogs()).isEqualTo(1);
+    assertThat(handler.getStoredLogRecords().get(0).getMessage()).contains("server-2");
+    commandLogger.drainPendingCommands();
+    assertThat(countInfoLogs()).isEqualTo(2);
+  }
+
+  @Test
+  void testAsynchronous_overflow_drops() {
+    EppCommandLogger commandLogger = new EppCommandLogger(true, 1, OverflowPolicy.DROP, false);
+    commandLogger.log(INPUT_XML, metadata("server-1"));
+    commandLogger.log(INPUT_XML, metadata("server-2"));
+    commandLogger.drainPendingCommands();
+    assertThat(countInfoLogs()).isEqualTo(1);
+    assertThat(handler.getStoredLogRecords().stream().map(LogRecord::getMessage))
+        .contains("EPP command log queue is full, dropped log entry for server-2.");
+  }
+
+  @Test
+  void testFormatCommand() {
+    assertThat(EppCommandLogger.formatCommand(INPUT_XML, metadata("server-1")))
+        .isEqualTo(
+            "EPP Command\n\tserver-1\n\tTheRegistrar\n\tsession\n\t"
+                + "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n\t<xml/>\n\t"
+                + "\n\tcredentials\n\tUNIT_TEST\n\tLIVE\n\tNORMAL");
+  }
+
+  @Test
+  void testFailure_nonPositiveCapacity() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new EppCommandLogger(true, 0, OverflowPolicy.DROP, false));
+  }
+}
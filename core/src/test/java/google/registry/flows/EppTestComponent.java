@@ -21,6 +21,7 @@ import dagger.Subcomponent;
 import google.registry.batch.AsyncTaskEnqueuer;
 import google.registry.batch.AsyncTaskEnqueuerTest;
 import google.registry.batch.CloudTasksUtils;
+import google.registry.cache.CacheInvalidationBus;
 import google.registry.config.RegistryConfig.ConfigModule;
 import google.registry.config.RegistryConfig.ConfigModule.TmchCaMode;
 import google.registry.flows.custom.CustomLogicFactory;
@@ -40,6 +41,7 @@ import google.registry.tmch.TmchXmlSignature;
 import google.registry.util.Clock;
 import google.registry.util.Sleeper;
 import jakarta.inject.Singleton;
+import java.util.Optional;
 
 /** Dagger component for running EPP tests. */
 @Singleton
@@ -134,6 +136,11 @@ public interface EppTestComponent {
     DomainDeletionTimeCache provideDomainDeletionTimeCache() {
       return DomainDeletionTimeCache.create();
     }
+
+    @Provides
+    Optional<CacheInvalidationBus> provideCacheInvalidationBus() {
+      return Optional.empty();
+    }
   }
 
   class FakeServerTridProvider implements ServerTridProvider {
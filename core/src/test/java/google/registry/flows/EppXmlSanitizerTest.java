@@ -116,4 +116,55 @@ class EppXmlSanitizerTest {
     String sanitizedXml = sanitizeEppXml(inputXml.getBytes(UTF_16LE));
     assertThat(sanitizedXml).isEqualTo(inputXml);
   }
+
+  @Test
+  void testSanitize_largeDomainCheck_namespacesAndAttributesPreserved() throws Exception {
+    StringBuilder names = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      names.append(String.format("<domain:name>example-%d.tld</domain:name>", i));
+    }
+    String inputXml =
+        "<epp xmlns=\"urn:ietf:params:xml:ns:epp-1.0\"><command><check>"
+            + "<domain:check xmlns:domain=\"urn:ietf:params:xml:ns:domain-1.0\">"
+            + names
+            + "</domain:check></check>"
+            + "<extension><fee:check xmlns:fee=\"urn:ietf:params:xml:ns:fee-0.6\">"
+            + "<fee:domain><fee:name>example-0.tld</fee:name>"
+            + "<fee:command phase=\"sunrise\">create</fee:command>"
+            + "<fee:period unit=\"y\">1</fee:period></fee:domain></fee:check></extension>"
+            + "<clTRID>ABC-12345</clTRID></command></epp>";
+    assertXmlEqualsIgnoreHeader(UTF8_HEADER + inputXml, sanitizeEppXml(inputXml.getBytes(UTF_8)));
+  }
+
+  @Test
+  void testSanitize_repeatedCalls_doNotShareOutput() throws Exception {
+    byte[] createXmlBytes =
+        new EppLoader(this, "domain_create.xml", ImmutableMap.of("DOMAIN", "example.tld"))
+            .getEppXml()
+            .getBytes(UTF_8);
+    String expectedXml =
+        UTF8_HEADER
+            + new EppLoader(this, "domain_create.xml", ImmutableMap.of("DOMAIN", "example.tld"))
+                .getEppXml()
+                .replace("2fooBAR", "*******");
+    String first = sanitizeEppXml(createXmlBytes);
+    assertThat(sanitizeEppXml("<pw>".getBytes(UTF_8)))
+        .isEqualTo(Base64.getMimeEncoder().encodeToString("<pw>".getBytes(UTF_8)));
+    String second = sanitizeEppXml(createXmlBytes);
+    assertThat(second).isEqualTo(first);
+    assertXmlEqualsIgnoreHeader(expectedXml, second);
+  }
+
+  @Test
+  void testSanitize_supplementaryCharacter_maskedOnce() throws Exception {
+    byte[] inputXmlBytes = "<pw>a\uD83D\uDE00b</pw>".getBytes(UTF_8);
+    assertXmlEqualsIgnoreHeader("<pw>***</pw>", sanitizeEppXml(inputXmlBytes));
+  }
+
+  @Test
+  void testSanitize_standaloneDeclaration_preserved() {
+    String inputXml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?><p a=\"&amp;\">&lt;</p>";
+    assertThat(sanitizeEppXml(inputXml.getBytes(UTF_8))).isEqualTo(inputXml + "\n");
+  }
 }
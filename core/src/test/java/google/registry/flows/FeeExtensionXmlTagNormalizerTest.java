@@ -14,15 +14,28 @@
 
 package google.registry.flows;
 
+import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.truth.Truth.assertThat;
-import static google.registry.flows.FeeExtensionXmlTagNormalizer.feeExtensionInUseRegex;
-import static google.registry.flows.FeeExtensionXmlTagNormalizer.normalize;
+import static google.registry.flows.FeeExtensionXmlTagNormalizer.createNormalizingWriter;
 import static google.registry.flows.FlowTestCase.verifyFeeTagNormalized;
-import static google.registry.model.eppcommon.EppXmlTransformer.validateOutput;
+import static google.registry.model.eppcommon.ProtocolDefinition.ServiceExtension.FEE_0_11;
+import static google.registry.model.eppcommon.ProtocolDefinition.ServiceExtension.FEE_0_12;
+import static google.registry.model.eppcommon.ProtocolDefinition.ServiceExtension.FEE_0_6;
+import static google.registry.model.eppcommon.ProtocolDefinition.ServiceExtension.FEE_1_00;
 import static google.registry.testing.TestDataHelper.loadFile;
+import static google.registry.xml.XmlTransformer.createXmlInputFactory;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import google.registry.model.eppcommon.ProtocolDefinition.ServiceExtension;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
 import java.util.stream.Stream;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -30,38 +43,85 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 class FeeExtensionXmlTagNormalizerTest {
 
-  @Test
-  void feeExtensionInUseRegex_correct() {
-    assertThat(feeExtensionInUseRegex())
-        .isEqualTo("\\b(fee):|\\b(fee11):|\\b(fee12):|\\b(fee_1_00):");
-  }
+  @ParameterizedTest(name = "createNormalizingWriter_withFeeExtension-{0}")
+  @MethodSource("provideTestCombinationsWithExtension")
+  @SuppressWarnings("unused") // Parameter 'name' is part of test case name
+  void createNormalizingWriter_withFeeExtension(
+      String name,
+      String inputXmlFilename,
+      String expectedXmlFilename,
+      ServiceExtension feeExtension)
+      throws Exception {
+    String original = loadFile(getClass(), inputXmlFilename);
+    String expected = loadFile(getClass(), expectedXmlFilename);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // Replay the raw response the way JAXB writes it: no whitespace-only text, explicit prefixes.
+    XMLStreamReader reader =
+        createXmlInputFactory().createXMLStreamReader(new StringReader(original));
+    XMLStreamWriter writer = createNormalizingWriter(out, feeExtension.getUri());
+    writer.writeStartDocument();
+    while (reader.hasNext()) {
+      switch (reader.next()) {
+        case START_ELEMENT -> {
+          writer.writeStartElement(
+              nullToEmpty(reader.getPrefix()), reader.getLocalName(), reader.getNamespaceURI());
+          for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            writer.writeNamespace(
+                nullToEmpty(reader.getNamespacePrefix(i)), reader.getNamespaceURI(i));
+          }
+          for (int i = 0; i < reader.getAttributeCount(); i++) {
+            writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+          }
+        }
+        case END_ELEMENT -> writer.writeEndElement();
+        case CHARACTERS -> {
+          if (!reader.isWhiteSpace()) {
+            writer.writeCharacters(reader.getText());
+          }
+        }
+        default -> {}
+      }
+    }
+    writer.writeEndDocument();
+    writer.flush();
 
-  @Test
-  void normalize_noFeeExtensions() throws Exception {
-    String xml = loadFile(getClass(), "domain_create.xml");
-    String normalized = normalize(xml);
-    assertThat(normalized).isEqualTo(xml);
+    assertThat(out.toString(UTF_8)).isEqualTo(expected);
   }
 
   @Test
-  void normalize_greetingUnchanged() throws Exception {
-    String xml = loadFile(getClass(), "greeting.xml");
-    String normalized = normalize(xml);
-    assertThat(normalized).isEqualTo(xml);
-  }
+  void createNormalizingWriter_unprefixedEventsUseBoundPrefix() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    XMLStreamWriter writer = createNormalizingWriter(out, FEE_0_12.getUri());
+    writer.writeStartDocument();
+    writer.setPrefix("fee12", FEE_0_12.getUri());
+    writer.writeStartElement(FEE_0_12.getUri(), "chkData");
+    writer.writeNamespace("fee12", FEE_0_12.getUri());
+    writer.writeNamespace("fee11", FEE_0_11.getUri());
+    writer.writeEmptyElement(FEE_0_12.getUri(), "cd");
+    writer.writeAttribute(FEE_0_12.getUri(), "avail", "1");
+    writer.writeComment("comment");
+    writer.writeEmptyElement(FEE_0_12.getUri(), "cd");
+    writer.writeEndElement();
+    writer.writeEndDocument();
 
-  @ParameterizedTest(name = "normalize_withFeeExtension-{0}")
-  @MethodSource("provideTestCombinations")
-  @SuppressWarnings("unused") // Parameter 'name' is part of test case name
-  void normalize_withFeeExtension(String name, String inputXmlFilename, String expectedXmlFilename)
-      throws Exception {
-    String original = loadFile(getClass(), inputXmlFilename);
-    String normalized = normalize(original);
-    String expected = loadFile(getClass(), expectedXmlFilename);
-    // Verify that expected xml is syntatically correct.
-    validateOutput(expected);
+    assertThat(out.toString(UTF_8))
+        .isEqualTo(
+            """
+            <?xml version="1.0" encoding="UTF-8" standalone="yes"?>
+            <fee:chkData xmlns:fee="urn:ietf:params:xml:ns:fee-0.12">
+                <fee:cd fee:avail="1"/><!--comment-->
+                <fee:cd/>
+            </fee:chkData>
+            """);
+  }
 
-    assertThat(normalized).isEqualTo(expected);
+  @Test
+  void createNormalizingWriter_notAFeeExtension() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            createNormalizingWriter(
+                new ByteArrayOutputStream(), "urn:ietf:params:xml:ns:domain-1.0"));
   }
 
   // Piggyback tests for FlowTestCase.verifyFeeTagNormalized here.
@@ -106,4 +166,29 @@ class FeeExtensionXmlTagNormalizerTest {
             "domain_check_fee_response_raw_stdv1.xml",
             "domain_check_fee_response_normalized_stdv1.xml"));
   }
+
+  @SuppressWarnings("unused")
+  static Stream<Arguments> provideTestCombinationsWithExtension() {
+    return Stream.of(
+        Arguments.of(
+            "v06",
+            "domain_check_fee_response_raw_v06.xml",
+            "domain_check_fee_response_normalized_v06.xml",
+            FEE_0_6),
+        Arguments.of(
+            "v11",
+            "domain_check_fee_response_raw_v11.xml",
+            "domain_check_fee_response_normalized_v11.xml",
+            FEE_0_11),
+        Arguments.of(
+            "v12",
+            "domain_check_fee_response_raw_v12.xml",
+            "domain_check_fee_response_normalized_v12.xml",
+            FEE_0_12),
+        Arguments.of(
+            "stdv1",
+            "domain_check_fee_response_raw_stdv1.xml",
+            "domain_check_fee_response_normalized_stdv1.xml",
+            FEE_1_00));
+  }
 }
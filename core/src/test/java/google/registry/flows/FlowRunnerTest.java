@@ -17,10 +17,13 @@ package google.registry.flows;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
+import static google.registry.testing.DatabaseHelper.newHost;
+import static google.registry.testing.DatabaseHelper.persistNewRegistrar;
 import static google.registry.testing.TestDataHelper.loadFile;
 import static google.registry.testing.TestLogHandlerUtils.findFirstLogMessageByPrefix;
 import static google.registry.util.DateTimeUtils.START_INSTANT;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -31,10 +34,14 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.net.InetAddresses;
 import com.google.common.testing.TestLogHandler;
+import google.registry.cache.CacheInvalidationBus;
+import google.registry.flows.EppCommandLogger.OverflowPolicy;
 import google.registry.flows.certs.CertificateChecker;
+import google.registry.model.EppResourceChangeRecorder.ChangedResource;
 import google.registry.model.eppcommon.Trid;
 import google.registry.model.eppoutput.EppOutput.ResponseOrGreeting;
 import google.registry.model.eppoutput.EppResponse;
+import google.registry.model.host.Host;
 import google.registry.monitoring.whitebox.EppMetric;
 import google.registry.persistence.PersistenceModule.TransactionIsolationLevel;
 import google.registry.persistence.transaction.JpaTestExtensions;
@@ -96,7 +103,7 @@ class FlowRunnerTest {
 
   @BeforeEach
   void beforeEach() {
-    JdkLoggerConfig.getConfig(FlowRunner.class).addHandler(handler);
+    JdkLoggerConfig.getConfig(EppCommandLogger.class).addHandler(handler);
     flowRunner.registrarId = "TheRegistrar";
     flowRunner.credentials = new PasswordOnlyTransportCredentials();
     flowRunner.eppRequestSource = EppRequestSource.UNIT_TEST;
@@ -112,6 +119,9 @@ class FlowRunnerTest {
     flowRunner.trid = Trid.create("client-123", "server-456");
     flowRunner.flowReporter = mock(FlowReporter.class);
     flowRunner.jpaTransactionManager = tm();
+    flowRunner.eppCommandLogger =
+        new EppCommandLogger(false, 1, OverflowPolicy.LOG_SYNCHRONOUSLY, false);
+    flowRunner.cacheInvalidationBus = Optional.empty();
   }
 
   @Test
@@ -140,6 +150,43 @@ class FlowRunnerTest {
     assertThat(eppMetricBuilder.build().getCommandName()).hasValue("TestTransactional");
   }
 
+  @Test
+  void testRun_transactionalCommand_publishesChangedResources() throws Exception {
+    persistNewRegistrar("TheRegistrar");
+    Host host = newHost("ns1.example.tld");
+    CacheInvalidationBus cacheInvalidationBus = mock(CacheInvalidationBus.class);
+    flowRunner.cacheInvalidationBus = Optional.of(cacheInvalidationBus);
+    flowRunner.isTransactional = true;
+    flowRunner.flowProvider =
+        () ->
+            () -> {
+              tm().put(host);
+              return mock(EppResponse.class);
+            };
+    flowRunner.run(eppMetricBuilder);
+    verify(cacheInvalidationBus)
+        .publish(
+            ImmutableSet.of(new ChangedResource(Host.class, host.getRepoId(), "ns1.example.tld")));
+  }
+
+  @Test
+  void testRun_dryRun_doesNotPublishChangedResources() throws Exception {
+    persistNewRegistrar("TheRegistrar");
+    Host host = newHost("ns1.example.tld");
+    CacheInvalidationBus cacheInvalidationBus = mock(CacheInvalidationBus.class);
+    flowRunner.cacheInvalidationBus = Optional.of(cacheInvalidationBus);
+    flowRunner.isTransactional = true;
+    flowRunner.isDryRun = true;
+    flowRunner.flowProvider =
+        () ->
+            () -> {
+              tm().put(host);
+              return mock(EppResponse.class);
+            };
+    flowRunner.run(eppMetricBuilder);
+    verify(cacheInvalidationBus, never()).publish(any());
+  }
+
   @Test
   void testRun_callsFlowReporterOnce() throws Exception {
     flowRunner.run(eppMetricBuilder);
@@ -212,6 +259,18 @@ class FlowRunnerTest {
         .contains("SUPERUSER");
   }
 
+  @Test
+  void testRun_asyncLogging_logsAfterDrain() throws Exception {
+    flowRunner.eppCommandLogger =
+        new EppCommandLogger(true, 10, OverflowPolicy.LOG_SYNCHRONOUSLY, false);
+    flowRunner.run(eppMetricBuilder);
+    assertThat(handler.getStoredLogRecords()).isEmpty();
+    flowRunner.eppCommandLogger.drainPendingCommands();
+    assertThat(Splitter.on("\n\t").split(findFirstLogMessageByPrefix(handler, "EPP Command\n\t")))
+        .containsAtLeast("server-456", "TheRegistrar", "UNIT_TEST", "LIVE", "NORMAL")
+        .inOrder();
+  }
+
   @Test
   void testRun_loggingStatement_complexEppInput() throws Exception {
     String domainCreateXml = loadFile(getClass(), "domain_create_prettyprinted.xml");
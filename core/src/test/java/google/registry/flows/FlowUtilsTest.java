@@ -0,0 +1,124 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.flows.FlowUtils.isSchemaViolation;
+import static google.registry.flows.FlowUtils.marshalWithLenientRetry;
+import static google.registry.testing.LogsSubject.assertAboutLogs;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+import com.google.common.testing.TestLogHandler;
+import google.registry.model.eppcommon.EppXmlTransformer;
+import google.registry.model.eppcommon.Trid;
+import google.registry.model.eppoutput.EppOutput;
+import google.registry.model.eppoutput.Result;
+import google.registry.model.eppoutput.Result.Code;
+import google.registry.xml.ValidationMode;
+import jakarta.xml.bind.ValidationEvent;
+import jakarta.xml.bind.helpers.ValidationEventImpl;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.xml.sax.SAXParseException;
+
+/** Unit tests for {@link FlowUtils}. */
+class FlowUtilsTest {
+
+  private final TestLogHandler logHandler = new TestLogHandler();
+  private final Logger loggerToIntercept = Logger.getLogger(FlowUtils.class.getCanonicalName());
+
+  @BeforeEach
+  void beforeEach() {
+    loggerToIntercept.addHandler(logHandler);
+  }
+
+  @AfterEach
+  void afterEach() {
+    loggerToIntercept.removeHandler(logHandler);
+  }
+
+  @Test
+  void testMarshalWithLenientRetry_valid() {
+    byte[] bytes =
+        marshalWithLenientRetry(
+            EppController.getErrorResponse(
+                Result.create(Code.COMMAND_FAILED), Trid.create(null, "server-trid")));
+    assertThat(new String(bytes, UTF_8)).contains("<svTRID>server-trid</svTRID>");
+    assertAboutLogs().that(logHandler).hasNoLogsAtLevel(Level.SEVERE);
+  }
+
+  @Test
+  void testMarshalWithLenientRetry_invalid_returnsOutputOfSinglePass() {
+    byte[] bytes;
+    try (MockedStatic<EppXmlTransformer> transformer =
+        mockStatic(EppXmlTransformer.class, CALLS_REAL_METHODS)) {
+      // A server TRID must be at least 3 characters long.
+      bytes =
+          marshalWithLenientRetry(
+              EppController.getErrorResponse(
+                  Result.create(Code.COMMAND_FAILED), Trid.create(null, "x")));
+      // The output is only marshaled once, with validation, and never again leniently.
+      transformer.verify(
+          () -> EppXmlTransformer.marshal(any(EppOutput.class), any(ValidationMode.class), any()),
+          times(1));
+      transformer.verify(
+          () -> EppXmlTransformer.marshal(any(EppOutput.class), any(ValidationMode.class)),
+          never());
+    }
+    assertThat(new String(bytes, UTF_8)).contains("<svTRID>x</svTRID>");
+    assertAboutLogs()
+        .that(logHandler)
+        .hasLogAtLevelWithMessage(Level.SEVERE, "Result marshaled but did not validate")
+        .contains("<svTRID>x</svTRID>");
+  }
+
+  @Test
+  void testIsSchemaViolation() {
+    SAXParseException schemaError = new SAXParseException("cvc-minLength-valid", null);
+    assertThat(
+            isSchemaViolation(
+                new ValidationEventImpl(ValidationEvent.ERROR, "", null, schemaError)))
+        .isTrue();
+    assertThat(
+            isSchemaViolation(
+                new ValidationEventImpl(ValidationEvent.WARNING, "", null, schemaError)))
+        .isTrue();
+    // JAXB reports schema violations as fatal errors.
+    assertThat(
+            isSchemaViolation(
+                new ValidationEventImpl(ValidationEvent.FATAL_ERROR, "", null, schemaError)))
+        .isTrue();
+    // Failures of the marshaling itself, e.g. of an adapter, aren't linked to a SAX error.
+    assertThat(
+            isSchemaViolation(
+                new ValidationEventImpl(
+                    ValidationEvent.ERROR, "", null, new IllegalStateException("adapter"))))
+        .isFalse();
+    assertThat(
+            isSchemaViolation(
+                new ValidationEventImpl(
+                    ValidationEvent.FATAL_ERROR, "", null, new IllegalStateException("adapter"))))
+        .isFalse();
+  }
+}
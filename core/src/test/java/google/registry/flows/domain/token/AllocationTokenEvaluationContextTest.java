@@ -0,0 +1,184 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.domain.token;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.domain.token.AllocationToken.TokenType.DEFAULT_PROMO;
+import static google.registry.model.domain.token.AllocationToken.TokenType.SINGLE_USE;
+import static google.registry.testing.DatabaseHelper.createTld;
+import static google.registry.testing.DatabaseHelper.persistResource;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import google.registry.flows.custom.DomainPricingCustomLogic;
+import google.registry.flows.domain.DomainPricingLogic;
+import google.registry.model.domain.fee.FeeQueryCommandExtensionItem.CommandName;
+import google.registry.model.domain.token.AllocationToken;
+import google.registry.model.domain.token.AllocationTokenExtension;
+import google.registry.model.tld.Tld;
+import google.registry.persistence.transaction.JpaTestExtensions;
+import google.registry.persistence.transaction.JpaTestExtensions.JpaIntegrationTestExtension;
+import google.registry.testing.FakeClock;
+import java.time.Instant;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/** Unit tests for {@link AllocationTokenEvaluationContext}. */
+class AllocationTokenEvaluationContextTest {
+
+  private final FakeClock clock = new FakeClock(Instant.parse("2025-01-10T01:00:00.000Z"));
+
+  @RegisterExtension
+  final JpaIntegrationTestExtension jpa =
+      new JpaTestExtensions.Builder().withClock(clock).buildIntegrationTestExtension();
+
+  private final DomainPricingLogic domainPricingLogic =
+      spy(new DomainPricingLogic(new DomainPricingCustomLogic(null, null, null)));
+
+  private Tld tld;
+  private AllocationToken cheaperToken;
+  private AllocationToken moreExpensiveToken;
+
+  @BeforeEach
+  void beforeEach() {
+    tld = createTld("tld");
+    cheaperToken = persistDefaultToken("cheaperToken", 0.5);
+    moreExpensiveToken = persistDefaultToken("moreExpensiveToken", 0.1);
+    // List the more expensive token first to ensure that we don't just pick the first valid one
+    tld =
+        persistResource(
+            tld.asBuilder()
+                .setDefaultPromoTokens(
+                    ImmutableList.of(moreExpensiveToken.createVKey(), cheaperToken.createVKey()))
+                .build());
+  }
+
+  private AllocationTokenEvaluationContext createContext(
+      Optional<AllocationTokenExtension> extension) {
+    return new AllocationTokenEvaluationContext(
+        "TheRegistrar", clock.now(), extension, domainPricingLogic);
+  }
+
+  @Test
+  void testSuccess_cheapestDefaultTokenUsed() throws Exception {
+    assertThat(
+            createContext(Optional.empty())
+                .loadTokenFromExtensionOrGetDefault(
+                    tld, "example.tld", CommandName.CREATE, Optional.empty()))
+        .hasValue(cheaperToken);
+  }
+
+  @Test
+  void testSuccess_defaultTokenPricedOncePerDomainAndCommand() throws Exception {
+    AllocationTokenEvaluationContext context = createContext(Optional.empty());
+    for (int i = 0; i < 3; i++) {
+      assertThat(
+              context.loadTokenFromExtensionOrGetDefault(
+                  tld, "example.tld", CommandName.CREATE, Optional.empty()))
+          .hasValue(cheaperToken);
+      // Not specifying the period is the same as asking for a single year.
+      assertThat(
+              context.loadTokenFromExtensionOrGetDefault(
+                  tld, "example.tld", CommandName.CREATE, Optional.of(1)))
+          .hasValue(cheaperToken);
+    }
+    // Once for each of the two default tokens.
+    verify(domainPricingLogic, times(2))
+        .getCreatePrice(
+            any(Tld.class),
+            eq("example.tld"),
+            any(Instant.class),
+            eq(1),
+            anyBoolean(),
+            anyBoolean(),
+            any());
+  }
+
+  @Test
+  void testSuccess_defaultTokenPricedSeparatelyForOtherDomainsAndPeriods() throws Exception {
+    AllocationTokenEvaluationContext context = createContext(Optional.empty());
+    context.loadTokenFromExtensionOrGetDefault(
+        tld, "example.tld", CommandName.CREATE, Optional.empty());
+    context.loadTokenFromExtensionOrGetDefault(
+        tld, "other.tld", CommandName.CREATE, Optional.empty());
+    context.loadTokenFromExtensionOrGetDefault(
+        tld, "example.tld", CommandName.CREATE, Optional.of(2));
+    verify(domainPricingLogic, times(6))
+        .getCreatePrice(
+            any(Tld.class),
+            anyString(),
+            any(Instant.class),
+            anyInt(),
+            anyBoolean(),
+            anyBoolean(),
+            any());
+  }
+
+  @Test
+  void testSuccess_defaultTokenInvalidForRegistrarIgnored() throws Exception {
+    assertThat(
+            new AllocationTokenEvaluationContext(
+                    "NewRegistrar", clock.now(), Optional.empty(), domainPricingLogic)
+                .loadTokenFromExtensionOrGetDefault(
+                    tld, "example.tld", CommandName.CREATE, Optional.empty()))
+        .isEmpty();
+  }
+
+  @Test
+  void testSuccess_tokenFromExtensionPreferred() throws Exception {
+    AllocationToken token =
+        persistResource(
+            new AllocationToken.Builder()
+                .setToken("tokeN")
+                .setAllowedEppActions(ImmutableSet.of(CommandName.CREATE))
+                .setTokenType(SINGLE_USE)
+                .build());
+    AllocationTokenExtension extension = mock(AllocationTokenExtension.class);
+    when(extension.getAllocationToken()).thenReturn("tokeN");
+    AllocationTokenEvaluationContext context = createContext(Optional.of(extension));
+    assertThat(
+            context.loadTokenFromExtensionOrGetDefault(
+                tld, "example.tld", CommandName.CREATE, Optional.empty()))
+        .hasValue(token);
+    // The provided token isn't valid for renews, so the default token is used instead.
+    assertThat(
+            context.loadTokenFromExtensionOrGetDefault(
+                tld, "example.tld", CommandName.RENEW, Optional.empty()))
+        .hasValue(cheaperToken);
+  }
+
+  private static AllocationToken persistDefaultToken(String token, double discountFraction) {
+    return persistResource(
+        new AllocationToken.Builder()
+            .setToken(token)
+            .setDiscountFraction(discountFraction)
+            .setAllowedTlds(ImmutableSet.of("tld"))
+            .setAllowedRegistrarIds(ImmutableSet.of("TheRegistrar"))
+            .setTokenType(DEFAULT_PROMO)
+            .build());
+  }
+}
@@ -68,6 +68,15 @@ class GcsUtilsTest {
     assertThat(gcsUtils.getBlobInfo(blobId).getMetadata()).containsExactlyEntriesIn(metadata);
   }
 
+  @Test
+  void testMove() throws Exception {
+    BlobId target = BlobId.of(bucket, "other-file");
+    gcsUtils.createFromBytes(blobId, bytes);
+    gcsUtils.move(blobId, target);
+    assertThat(gcsUtils.listFolderObjects(bucket, "")).containsExactly("other-file");
+    assertThat(gcsUtils.readBytesFrom(target)).isEqualTo(bytes);
+  }
+
   @Test
   void testCreateListReadDelete() throws Exception {
     gcsUtils.createFromBytes(BlobInfo.newBuilder(blobId).setMetadata(metadata).build(), bytes);
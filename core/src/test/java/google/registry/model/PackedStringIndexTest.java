@@ -0,0 +1,78 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link PackedStringIndex}. */
+class PackedStringIndexTest {
+
+  private static PackedStringIndex index(String... strings) {
+    PackedStringIndex.Builder builder = PackedStringIndex.builder(strings.length);
+    for (int i = 0; i < strings.length; i++) {
+      assertThat(builder.add(strings[i])).isEqualTo(i);
+    }
+    return builder.build();
+  }
+
+  @Test
+  void testIndexOf_latin1() {
+    PackedStringIndex index = index("silver", "gold", "café");
+    assertThat(index.size()).isEqualTo(3);
+    assertThat(index.indexOf("silver")).isEqualTo(0);
+    assertThat(index.indexOf("gold")).isEqualTo(1);
+    assertThat(index.indexOf("café")).isEqualTo(2);
+    assertThat(index.indexOf("silve")).isEqualTo(-1);
+    assertThat(index.indexOf("golden")).isEqualTo(-1);
+    assertThat(index.indexOf("")).isEqualTo(-1);
+    // One byte per character, plus the offsets and the hash table.
+    assertThat(index.getSizeInBytes()).isEqualTo(14 + 4 * (4 + 8));
+  }
+
+  @Test
+  void testIndexOf_notLatin1() {
+    PackedStringIndex index = index("silver", "пример", "");
+    assertThat(index.indexOf("silver")).isEqualTo(0);
+    assertThat(index.indexOf("пример")).isEqualTo(1);
+    assertThat(index.indexOf("")).isEqualTo(2);
+    assertThat(index.indexOf("примеp")).isEqualTo(-1);
+    assertThat(index.indexOf("silveя")).isEqualTo(-1);
+    // Two bytes per character, plus the offsets and the hash table.
+    assertThat(index.getSizeInBytes()).isEqualTo(24 + 4 * (4 + 8));
+  }
+
+  @Test
+  void testIndexOf_empty() {
+    PackedStringIndex index = index();
+    assertThat(index.size()).isEqualTo(0);
+    assertThat(index.indexOf("silver")).isEqualTo(-1);
+  }
+
+  @Test
+  void testIndexOf_manyStrings() {
+    PackedStringIndex.Builder builder = PackedStringIndex.builder(10000);
+    for (int i = 0; i < 10000; i++) {
+      builder.add("label" + i);
+    }
+    PackedStringIndex index = builder.build();
+    assertThat(index.size()).isEqualTo(10000);
+    for (int i = 0; i < 10000; i++) {
+      assertThat(index.indexOf("label" + i)).isEqualTo(i);
+      assertThat(index.indexOf("missing" + i)).isEqualTo(-1);
+    }
+  }
+}
@@ -91,4 +91,17 @@ public class DnsRefreshRequestTest extends EntityTestCase {
         .hasMessageThat()
         .contains("must be later than the old one");
   }
+
+  @Test
+  void testAdvanceRequestTime() {
+    assertThat(
+            assertThrows(
+                IllegalArgumentException.class, () -> request.advanceRequestTime(fakeClock.now())))
+        .hasMessageThat()
+        .contains("must be earlier than the old one");
+
+    DnsRefreshRequest newRequest = request.advanceRequestTime(fakeClock.now().minusMillis(1));
+    assertAboutImmutableObjects().that(newRequest).isEqualExceptFields(request, "requestTime");
+    assertThat(newRequest.getRequestTime()).isEqualTo(fakeClock.now().minusMillis(1));
+  }
 }
@@ -20,6 +20,7 @@ import static google.registry.model.domain.token.AllocationToken.TokenStatus.END
 import static google.registry.model.domain.token.AllocationToken.TokenStatus.NOT_STARTED;
 import static google.registry.model.domain.token.AllocationToken.TokenStatus.VALID;
 import static google.registry.model.domain.token.AllocationToken.TokenType.BULK_PRICING;
+import static google.registry.model.domain.token.AllocationToken.TokenType.DEFAULT_PROMO;
 import static google.registry.model.domain.token.AllocationToken.TokenType.REGISTER_BSA;
 import static google.registry.model.domain.token.AllocationToken.TokenType.SINGLE_USE;
 import static google.registry.model.domain.token.AllocationToken.TokenType.UNLIMITED_USE;
@@ -31,6 +32,7 @@ import static google.registry.util.DateTimeUtils.START_INSTANT;
 import static google.registry.util.DateTimeUtils.plusDays;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import google.registry.model.Buildable;
@@ -42,8 +44,10 @@ import google.registry.model.domain.token.AllocationToken.RegistrationBehavior;
 import google.registry.model.domain.token.AllocationToken.TokenStatus;
 import google.registry.model.domain.token.AllocationToken.TokenType;
 import google.registry.model.reporting.HistoryEntry.HistoryEntryId;
+import google.registry.persistence.VKey;
 import google.registry.util.SerializeUtils;
 import java.time.Instant;
+import java.util.Optional;
 import org.joda.money.CurrencyUnit;
 import org.joda.money.Money;
 import org.junit.jupiter.api.BeforeEach;
@@ -146,6 +150,57 @@ public class AllocationTokenTest extends EntityTestCase {
     assertThat(tokenAfterPersisting.getCreationTime()).hasValue(fakeClock.now());
   }
 
+  @Test
+  void testGetAll_loadsExistingAndMissingTokens() {
+    AllocationToken token1 =
+        persistResource(
+            new AllocationToken.Builder().setToken("token1").setTokenType(UNLIMITED_USE).build());
+    AllocationToken token2 =
+        persistResource(
+            new AllocationToken.Builder().setToken("token2").setTokenType(UNLIMITED_USE).build());
+    VKey<AllocationToken> missingKey = VKey.create(AllocationToken.class, "missing");
+    assertThat(
+            AllocationToken.getAll(
+                ImmutableList.of(token1.createVKey(), missingKey, token2.createVKey())))
+        .containsExactly(
+            token1.createVKey(),
+            Optional.of(token1),
+            missingKey,
+            Optional.empty(),
+            token2.createVKey(),
+            Optional.of(token2));
+  }
+
+  @Test
+  void testGetDefaultPromoTokens_filtersByTldAndRegistrar() {
+    createTld("bar");
+    AllocationToken anyToken =
+        persistDefaultPromoToken("anyToken", ImmutableSet.of(), ImmutableSet.of());
+    AllocationToken fooToken =
+        persistDefaultPromoToken("fooToken", ImmutableSet.of("foo"), ImmutableSet.of());
+    AllocationToken barToken =
+        persistDefaultPromoToken("barToken", ImmutableSet.of("bar"), ImmutableSet.of());
+    AllocationToken registrarToken =
+        persistDefaultPromoToken(
+            "registrarToken", ImmutableSet.of(), ImmutableSet.of("NewRegistrar"));
+    ImmutableList<VKey<AllocationToken>> defaultPromoTokens =
+        ImmutableList.of(
+            registrarToken.createVKey(),
+            barToken.createVKey(),
+            VKey.create(AllocationToken.class, "missing"),
+            fooToken.createVKey(),
+            anyToken.createVKey());
+    assertThat(AllocationToken.getDefaultPromoTokens("foo", defaultPromoTokens, "TheRegistrar"))
+        .containsExactly(fooToken, anyToken)
+        .inOrder();
+    assertThat(AllocationToken.getDefaultPromoTokens("foo", defaultPromoTokens, "NewRegistrar"))
+        .containsExactly(registrarToken, fooToken, anyToken)
+        .inOrder();
+    assertThat(AllocationToken.getDefaultPromoTokens("bar", defaultPromoTokens, "TheRegistrar"))
+        .containsExactly(barToken, anyToken)
+        .inOrder();
+  }
+
   @Test
   void testGetRenewalBehavior_returnsDefaultRenewBehavior() {
     assertThat(
@@ -745,4 +800,16 @@ public class AllocationTokenTest extends EntityTestCase {
         .hasMessageThat()
         .isEqualTo(String.format("tokenStatusTransitions map cannot transition from %s.", status));
   }
+
+  private static AllocationToken persistDefaultPromoToken(
+      String token, ImmutableSet<String> allowedTlds, ImmutableSet<String> allowedRegistrarIds) {
+    return persistResource(
+        new AllocationToken.Builder()
+            .setToken(token)
+            .setTokenType(DEFAULT_PROMO)
+            .setAllowedTlds(allowedTlds)
+            .setAllowedRegistrarIds(allowedRegistrarIds)
+            .setDiscountFraction(0.1)
+            .build());
+  }
 }
@@ -17,8 +17,11 @@ package google.registry.model.eppcommon;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
 import static google.registry.model.eppcommon.EppXmlTransformer.isFeeExtension;
+import static google.registry.model.eppcommon.EppXmlTransformer.marshalInput;
 import static google.registry.model.eppcommon.EppXmlTransformer.unmarshal;
+import static google.registry.model.eppcommon.EppXmlTransformer.validateInput;
 import static google.registry.testing.TestDataHelper.loadBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.google.common.collect.ImmutableSet;
@@ -30,6 +33,8 @@ import google.registry.model.eppinput.EppInput;
 import google.registry.model.eppoutput.EppOutput;
 import google.registry.model.eppoutput.EppResponse;
 import google.registry.util.RegistryEnvironment;
+import google.registry.xml.ValidationMode;
+import google.registry.xml.XmlException;
 import jakarta.xml.bind.annotation.XmlElementRef;
 import jakarta.xml.bind.annotation.XmlElementRefs;
 import java.util.Arrays;
@@ -70,6 +75,24 @@ class EppXmlTransformerTest {
         () -> unmarshal(EppOutput.class, loadBytes(getClass(), "domain_info.xml").read()));
   }
 
+  @Test
+  void testUnmarshaling_afterFailure_reusedUnmarshallerStillWorks() throws Exception {
+    byte[] validXml = loadBytes(getClass(), "domain_info.xml").read();
+    assertThat(unmarshal(EppInput.class, validXml).getCommandType()).isEqualTo("info");
+    assertThrows(XmlException.class, () -> unmarshal(EppInput.class, "<epp>".getBytes(UTF_8)));
+    assertThat(unmarshal(EppInput.class, validXml).getCommandType()).isEqualTo("info");
+  }
+
+  @Test
+  void testMarshalingInput_repeated_alwaysIncludesXmlDeclaration() throws Exception {
+    EppInput input = unmarshal(EppInput.class, loadBytes(getClass(), "domain_info.xml").read());
+    byte[] first = marshalInput(input, ValidationMode.STRICT);
+    validateInput(new String(first, UTF_8));
+    assertThat(new String(first, UTF_8)).startsWith("<?xml");
+    assertThat(marshalInput(input, ValidationMode.LENIENT)).isEqualTo(first);
+    assertThat(marshalInput(input, ValidationMode.STRICT)).isEqualTo(first);
+  }
+
   @Test
   void testSchemas_inNonProduction_includesFee1Point0() {
     var currentEnv = RegistryEnvironment.get();
@@ -15,6 +15,7 @@
 package google.registry.model.reporting;
 
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ImmutableObjectSubject.assertAboutImmutableObjects;
 import static google.registry.model.ImmutableObjectSubject.immutableObjectCorrespondence;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
 import static google.registry.testing.DatabaseHelper.createTld;
@@ -24,13 +25,17 @@ import static google.registry.util.DateTimeUtils.END_INSTANT;
 import static google.registry.util.DateTimeUtils.START_INSTANT;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import google.registry.model.EntityTestCase;
+import google.registry.model.EppResource;
 import google.registry.model.domain.Domain;
 import google.registry.model.domain.DomainHistory;
 import google.registry.model.domain.Period;
 import google.registry.model.eppcommon.Trid;
 import google.registry.model.reporting.DomainTransactionRecord.TransactionReportField;
+import google.registry.persistence.VKey;
 import google.registry.testing.DatabaseHelper;
 import java.time.Instant;
 import org.junit.jupiter.api.BeforeEach;
@@ -121,4 +126,63 @@ class HistoryEntryDaoTest extends EntityTestCase {
     Domain newDomain = persistResource(DatabaseHelper.newDomain("new.foobar"));
     assertThat(HistoryEntryDao.loadHistoryObjectsForResource(newDomain.createVKey())).isEmpty();
   }
+
+  @Test
+  void testLoadMostRecent() {
+    assertAboutImmutableObjects()
+        .that(
+            HistoryEntryDao.loadMostRecentHistoryObjectForResource(
+                    domain.createVKey(), fakeClock.now())
+                .get())
+        .isEqualExceptFields(domainHistory, "nsHosts", "resource");
+  }
+
+  @Test
+  void testLoadMostRecent_skips_tooEarly() {
+    assertThat(
+            HistoryEntryDao.loadMostRecentHistoryObjectForResource(
+                domain.createVKey(), fakeClock.now().minusMillis(1)))
+        .isEmpty();
+  }
+
+  @Test
+  void testLoadMostRecent_picksLatestBeforeTimestamp() {
+    HistoryEntry updateHistory = persistUpdateHistory(domain, fakeClock.now().plusSeconds(60));
+    persistUpdateHistory(domain, fakeClock.now().plusSeconds(120));
+    assertAboutImmutableObjects()
+        .that(
+            HistoryEntryDao.loadMostRecentHistoryObjectForResource(
+                    domain.createVKey(), fakeClock.now().plusSeconds(90))
+                .get())
+        .isEqualExceptFields(updateHistory, "nsHosts", "resource");
+  }
+
+  @Test
+  void testLoadMostRecent_batched() {
+    Domain otherDomain = persistActiveDomain("bar.foobar");
+    Domain newDomain = persistResource(DatabaseHelper.newDomain("new.foobar"));
+    HistoryEntry otherHistory = persistUpdateHistory(otherDomain, fakeClock.now().plusSeconds(30));
+    persistUpdateHistory(domain, fakeClock.now().plusSeconds(120));
+    ImmutableMap<VKey<? extends EppResource>, HistoryEntry> mostRecent =
+        HistoryEntryDao.loadMostRecentHistoryObjectsForResources(
+            ImmutableList.of(domain.createVKey(), otherDomain.createVKey(), newDomain.createVKey()),
+            fakeClock.now().plusSeconds(90));
+    assertThat(mostRecent.keySet()).containsExactly(domain.createVKey(), otherDomain.createVKey());
+    assertAboutImmutableObjects()
+        .that(mostRecent.get(domain.createVKey()))
+        .isEqualExceptFields(domainHistory, "nsHosts", "resource");
+    assertAboutImmutableObjects()
+        .that(mostRecent.get(otherDomain.createVKey()))
+        .isEqualExceptFields(otherHistory, "nsHosts", "resource");
+  }
+
+  private static HistoryEntry persistUpdateHistory(Domain domain, Instant modificationTime) {
+    return persistResource(
+        new DomainHistory.Builder()
+            .setDomain(domain)
+            .setType(HistoryEntry.Type.DOMAIN_UPDATE)
+            .setModificationTime(modificationTime)
+            .setRegistrarId("TheRegistrar")
+            .build());
+  }
 }
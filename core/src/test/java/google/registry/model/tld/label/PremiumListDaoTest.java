@@ -26,7 +26,10 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.Uninterruptibles;
+import google.registry.config.RegistryConfig;
 import google.registry.persistence.transaction.JpaTestExtensions;
 import google.registry.persistence.transaction.JpaTestExtensions.JpaIntegrationWithCoverageExtension;
 import google.registry.testing.FakeClock;
@@ -35,6 +38,10 @@ import jakarta.persistence.OptimisticLockException;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
@@ -243,6 +250,102 @@ public class PremiumListDaoTest {
     assertThat(PremiumListDao.getPremiumPrice("premlist", "zirconium")).isEmpty();
   }
 
+  @Test
+  void getPremiumPrices_worksSuccessfully() {
+    PremiumList premiumList =
+        tm().transact(
+                () ->
+                    PremiumListDao.save(
+                        new PremiumList.Builder()
+                            .setName("premlist")
+                            .setCurrency(USD)
+                            .setLabelsToPrices(TEST_PRICES)
+                            .setCreationTimestamp(fakeClock.now())
+                            .build()));
+    persistResource(newTld("foobar", "FOOBAR").asBuilder().setPremiumList(premiumList).build());
+    assertThat(
+            PremiumListDao.getPremiumPrices(
+                "premlist", ImmutableList.of("silver", "gold", "zirconium", "silver")))
+        .containsExactly("silver", Money.of(USD, 10.23), "gold", Money.of(USD, 1305.47));
+    assertThat(PremiumListDao.getPremiumPrices("premlist", ImmutableList.of("zirconium")))
+        .isEmpty();
+  }
+
+  @Test
+  void getPremiumPrice_residentList_reloadedForNewRevision() {
+    ImmutableSet<String> originalResidentLists = RegistryConfig.getResidentPremiumLists();
+    RegistryConfig.overrideResidentPremiumListsForTesting(ImmutableSet.of("premlist"));
+    try {
+      PremiumList premiumList =
+          tm().transact(
+                  () ->
+                      PremiumListDao.save(
+                          new PremiumList.Builder()
+                              .setName("premlist")
+                              .setCurrency(USD)
+                              .setLabelsToPrices(TEST_PRICES)
+                              .setCreationTimestamp(fakeClock.now())
+                              .build()));
+      assertThat(PremiumListDao.getPremiumPrice("premlist", "silver"))
+          .hasValue(Money.of(USD, 10.23));
+      assertThat(PremiumListDao.getPremiumPrice("premlist", "zirconium")).isEmpty();
+      assertThat(
+              PremiumListDao.getPremiumPrices(
+                  "premlist", ImmutableList.of("silver", "gold", "zirconium", "silver")))
+          .containsExactly("silver", Money.of(USD, 10.23), "gold", Money.of(USD, 1305.47));
+      assertThat(PremiumListDao.residentPremiumPrices.get("premlist").getRevisionId())
+          .isEqualTo(premiumList.getRevisionId());
+      tm().transact(
+              () ->
+                  PremiumListDao.save(
+                      new PremiumList.Builder()
+                          .setName("premlist")
+                          .setCurrency(USD)
+                          .setLabelsToPrices(ImmutableMap.of("silver", BigDecimal.valueOf(20)))
+                          .setCreationTimestamp(fakeClock.now())
+                          .build()));
+      assertThat(PremiumListDao.getPremiumPrice("premlist", "silver")).hasValue(Money.of(USD, 20));
+      assertThat(PremiumListDao.getPremiumPrice("premlist", "gold")).isEmpty();
+      assertThat(PremiumListDao.residentPremiumPrices.get("premlist").size()).isEqualTo(1);
+    } finally {
+      RegistryConfig.overrideResidentPremiumListsForTesting(originalResidentLists);
+    }
+  }
+
+  @Test
+  void getPremiumPrice_residentList_waitsForLoadInProgress() throws Exception {
+    ImmutableSet<String> originalResidentLists = RegistryConfig.getResidentPremiumLists();
+    RegistryConfig.overrideResidentPremiumListsForTesting(ImmutableSet.of("premlist"));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      PremiumList premiumList =
+          tm().transact(
+                  () ->
+                      PremiumListDao.save(
+                          new PremiumList.Builder()
+                              .setName("premlist")
+                              .setCurrency(USD)
+                              .setLabelsToPrices(TEST_PRICES)
+                              .setCreationTimestamp(fakeClock.now())
+                              .build()));
+      CompletableFuture<ResidentPremiumPrices> load = new CompletableFuture<>();
+      PremiumListDao.residentPriceLoads.put(premiumList.getRevisionId(), load);
+      Future<Optional<Money>> price =
+          executor.submit(() -> PremiumListDao.getPremiumPrice("premlist", "silver"));
+      // The lookup gets the prices of the load in progress rather than loading them again.
+      load.complete(
+          ResidentPremiumPrices.create(
+              premiumList.getRevisionId(), USD, ImmutableMap.of("silver", BigDecimal.valueOf(99))));
+      assertThat(Uninterruptibles.getUninterruptibly(price, Duration.ofSeconds(10)))
+          .hasValue(Money.of(USD, 99));
+      assertThat(PremiumListDao.residentPremiumPrices).doesNotContainKey("premlist");
+    } finally {
+      executor.shutdownNow();
+      PremiumListDao.residentPriceLoads.clear();
+      RegistryConfig.overrideResidentPremiumListsForTesting(originalResidentLists);
+    }
+  }
+
   @Test
   void testGetPremiumPrice_worksForJPY() {
     PremiumList premiumList =
@@ -0,0 +1,82 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.tld.label;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.joda.money.CurrencyUnit.JPY;
+import static org.joda.money.CurrencyUnit.USD;
+
+import com.google.common.collect.ImmutableMap;
+import java.math.BigDecimal;
+import org.joda.money.Money;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link ResidentPremiumPrices}. */
+class ResidentPremiumPricesTest {
+
+  @Test
+  void testGetPrice() {
+    ResidentPremiumPrices prices =
+        ResidentPremiumPrices.create(
+            5L,
+            USD,
+            ImmutableMap.of(
+                "silver", BigDecimal.valueOf(10.23),
+                "gold", BigDecimal.valueOf(1305.47),
+                "пример", BigDecimal.valueOf(7)));
+    assertThat(prices.getRevisionId()).isEqualTo(5L);
+    assertThat(prices.size()).isEqualTo(3);
+    assertThat(prices.getPrice("silver")).hasValue(Money.of(USD, 10.23));
+    assertThat(prices.getPrice("gold")).hasValue(Money.of(USD, 1305.47));
+    assertThat(prices.getPrice("пример")).hasValue(Money.of(USD, 7));
+    assertThat(prices.getPrice("silve")).isEmpty();
+    assertThat(prices.getPrice("silvers")).isEmpty();
+    assertThat(prices.getPrice("")).isEmpty();
+  }
+
+  @Test
+  void testGetPrice_roundedToCurrency() {
+    ResidentPremiumPrices prices =
+        ResidentPremiumPrices.create(
+            1L,
+            JPY,
+            ImmutableMap.of("silver", new BigDecimal("100.5"), "gold", new BigDecimal("101.5")));
+    // Rounded the same way as PremiumList.convertAmountToMoney().
+    assertThat(prices.getPrice("silver")).hasValue(Money.of(JPY, 100));
+    assertThat(prices.getPrice("gold")).hasValue(Money.of(JPY, 102));
+  }
+
+  @Test
+  void testGetPrice_empty() {
+    ResidentPremiumPrices prices = ResidentPremiumPrices.create(1L, USD, ImmutableMap.of());
+    assertThat(prices.size()).isEqualTo(0);
+    assertThat(prices.getPrice("silver")).isEmpty();
+  }
+
+  @Test
+  void testGetPrice_manyLabels() {
+    ImmutableMap.Builder<String, BigDecimal> labelsToPrices = new ImmutableMap.Builder<>();
+    for (int i = 0; i < 10000; i++) {
+      labelsToPrices.put("label" + i, BigDecimal.valueOf(i));
+    }
+    ResidentPremiumPrices prices = ResidentPremiumPrices.create(1L, USD, labelsToPrices.build());
+    assertThat(prices.size()).isEqualTo(10000);
+    for (int i = 0; i < 10000; i++) {
+      assertThat(prices.getPrice("label" + i)).hasValue(Money.of(USD, i));
+      assertThat(prices.getPrice("missing" + i)).isEmpty();
+    }
+    assertThat(prices.getSizeInBytes()).isLessThan(50L * 10000);
+  }
+}
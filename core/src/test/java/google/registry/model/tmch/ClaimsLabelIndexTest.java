@@ -0,0 +1,85 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.tmch;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for {@link ClaimsLabelIndex}. */
+class ClaimsLabelIndexTest {
+
+  @Test
+  void testGetClaimKey() {
+    ClaimsLabelIndex index =
+        ClaimsLabelIndex.create(
+            ImmutableMap.of(
+                "example", "2013041500/2/6/9/rJ1NrDO92vDsAzf7EQzgjX4R0000000001",
+                "xn--mgbh0fb", "2013041500/2/6/9/rJ1NrDO92vDsAzf7EQzgjX4R0000000002"));
+    assertThat(index.size()).isEqualTo(2);
+    assertThat(index.getClaimKey("example"))
+        .hasValue("2013041500/2/6/9/rJ1NrDO92vDsAzf7EQzgjX4R0000000001");
+    assertThat(index.getClaimKey("xn--mgbh0fb"))
+        .hasValue("2013041500/2/6/9/rJ1NrDO92vDsAzf7EQzgjX4R0000000002");
+    assertThat(index.getClaimKey("exampl")).isEmpty();
+    assertThat(index.getClaimKey("examples")).isEmpty();
+    assertThat(index.getClaimKey("")).isEmpty();
+    assertThat(index.getClaimKey("exämple")).isEmpty();
+  }
+
+  @Test
+  void testGetClaimKey_empty() {
+    ClaimsLabelIndex index = ClaimsLabelIndex.create(ImmutableMap.of());
+    assertThat(index.size()).isEqualTo(0);
+    assertThat(index.getClaimKey("example")).isEmpty();
+  }
+
+  @Test
+  void testGetClaimKey_manyLabels() {
+    ImmutableMap.Builder<String, String> labelsToKeys = new ImmutableMap.Builder<>();
+    for (int i = 0; i < 10000; i++) {
+      labelsToKeys.put("label" + i, "key" + i);
+    }
+    ClaimsLabelIndex index = ClaimsLabelIndex.create(labelsToKeys.build());
+    assertThat(index.size()).isEqualTo(10000);
+    for (int i = 0; i < 10000; i++) {
+      assertThat(index.getClaimKey("label" + i)).hasValue("key" + i);
+      assertThat(index.getClaimKey("missing" + i)).isEmpty();
+    }
+  }
+
+  @Test
+  void testGetSizeInBytes_smallerThanStrings() {
+    ImmutableMap.Builder<String, String> labelsToKeys = new ImmutableMap.Builder<>();
+    for (int i = 0; i < 1000; i++) {
+      labelsToKeys.put("label" + i, "2013041500/2/6/9/rJ1NrDO92vDsAzf7EQzgjX4R000000" + i);
+    }
+    ClaimsLabelIndex index = ClaimsLabelIndex.create(labelsToKeys.build());
+    // Each entry takes about 60 bytes of characters, and at most 16 bytes of offsets and 16 bytes
+    // of hash table, whereas two strings alone have about 80 bytes of overhead.
+    assertThat(index.getSizeInBytes()).isLessThan(100L * 1000);
+  }
+
+  @Test
+  void testFailure_nonAsciiLabel() {
+    IllegalArgumentException thrown =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ClaimsLabelIndex.create(ImmutableMap.of("exämple", "key")));
+    assertThat(thrown).hasMessageThat().isEqualTo("Label is not ASCII: exämple");
+  }
+}
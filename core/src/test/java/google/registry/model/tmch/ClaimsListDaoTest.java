@@ -117,9 +117,10 @@ public class ClaimsListDaoTest {
   void testEntryCaching_savesAndUpdates() {
     ClaimsList claimsList =
         ClaimsList.create(fakeClock.now(), ImmutableMap.of("label1", "key1", "label2", "key2"));
-    // Bypass the DAO to avoid the cache
+    // Bypass the DAO to avoid the cache and the label index
     tm().transact(() -> tm().insert(claimsList));
-    ClaimsList fromDatabase = ClaimsListDao.get();
+    ClaimsList fromDatabase =
+        tm().transact(() -> tm().query("FROM ClaimsList", ClaimsList.class).getSingleResult());
     // At first, we haven't loaded any entries
     assertThat(tm().transact(() -> fromDatabase.claimKeyCache.getIfPresent("label1"))).isNull();
     assertThat(tm().transact(() -> fromDatabase.getClaimKey("label1"))).hasValue("key1");
@@ -138,6 +139,37 @@ public class ClaimsListDaoTest {
         .isEmpty();
   }
 
+  @Test
+  void testLabelIndex_usedForClaimKeys() {
+    ClaimsList claimsList =
+        ClaimsList.create(fakeClock.now(), ImmutableMap.of("label1", "key1", "label2", "key2"));
+    // Bypass the DAO so that the list is loaded from the database
+    tm().transact(() -> tm().insert(claimsList));
+    ClaimsList fromDatabase = ClaimsListDao.get();
+    assertThat(fromDatabase.labelIndex).isNotNull();
+    assertThat(fromDatabase.getClaimKey("label1")).hasValue("key1");
+    assertThat(fromDatabase.getClaimKey("label2")).hasValue("key2");
+    assertThat(fromDatabase.getClaimKey("nonexistent")).isEmpty();
+    assertThat(fromDatabase.size()).isEqualTo(2);
+    // The lookups didn't go through the per-label cache, nor loaded the whole map
+    assertThat(fromDatabase.claimKeyCache.estimatedSize()).isEqualTo(0);
+    assertThat(fromDatabase.labelsToKeys).isNull();
+  }
+
+  @Test
+  void testLabelIndex_reusedForSameRevision() {
+    ClaimsListDao.save(
+        ClaimsList.create(fakeClock.now(), ImmutableMap.of("label1", "key1", "label2", "key2")));
+    ClaimsLabelIndex index = ClaimsListDao.get().labelIndex;
+    ClaimsListDao.CACHE.invalidateAll();
+    assertThat(ClaimsListDao.get().labelIndex).isSameInstanceAs(index);
+    ClaimsListDao.save(ClaimsList.create(fakeClock.now(), ImmutableMap.of("label3", "key3")));
+    ClaimsList newList = ClaimsListDao.get();
+    assertThat(newList.labelIndex).isNotSameInstanceAs(index);
+    assertThat(newList.getClaimKey("label1")).isEmpty();
+    assertThat(newList.getClaimKey("label3")).hasValue("key3");
+  }
+
   private void assertClaimsListEquals(ClaimsList left, ClaimsList right) {
     assertThat(left.getRevisionId()).isEqualTo(right.getRevisionId());
     assertThat(left.getTmdbGenerationTime()).isEqualTo(right.getTmdbGenerationTime());
@@ -22,8 +22,11 @@ import com.google.common.collect.ImmutableList;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
 import google.registry.rdap.AbstractJsonableObject.JsonableException;
 import google.registry.rdap.AbstractJsonableObject.RestrictJsonNames;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.time.Instant;
 import java.util.Optional;
 import org.junit.jupiter.api.Test;
@@ -370,4 +373,106 @@ final class AbstractJsonableObjectTest {
     assertThat(jsonable.toJson())
         .isEqualTo(createJson("{'key':'value','middleKey':'middleValue','innerKey':'innerValue'}"));
   }
+
+  private JsonElement writeJson(Jsonable jsonable, String linkValue) throws IOException {
+    StringWriter stringWriter = new StringWriter();
+    jsonable.writeJson(new JsonWriter(stringWriter), linkValue);
+    return createJson(stringWriter.toString());
+  }
+
+  @Test
+  void testWriteJson_sameAsToJson() throws IOException {
+    Jsonable jsonable =
+        new AbstractJsonableObject() {
+          @JsonableElement String myString = "Hello, world!";
+          @JsonableElement int myInt = 42;
+          @JsonableElement boolean myBoolean = true;
+          @JsonableElement Instant instant = Instant.parse("2019-01-02T13:53:00Z");
+          @JsonableElement Optional<String> empty = Optional.empty();
+
+          @JsonableElement("lst")
+          ImmutableList<Object> list = ImmutableList.of("a", 1);
+
+          @JsonableElement("lst[]")
+          String element = "b";
+
+          @JsonableElement
+          JsonableWithNameRestrictions allowed = new JsonableWithNameRestrictions();
+
+          @JsonableElement("*")
+          Object subObject =
+              new AbstractJsonableObject() {
+                @JsonableElement("lst[]")
+                String innerElement = "c";
+
+                @JsonableElement String innerKey = "innerValue";
+              };
+
+          @JsonableElement
+          Object inner =
+              new AbstractJsonableObject() {
+                @JsonableElement double myDouble = 3.14;
+              };
+        };
+    assertThat(writeJson(jsonable, "https://example.tld")).isEqualTo(jsonable.toJson());
+  }
+
+  @Test
+  void testWriteJson_setsValueOfLinksWithoutValue() throws IOException {
+    Jsonable jsonable =
+        new AbstractJsonableObject() {
+          @JsonableElement("links[]")
+          Object linkWithoutValue =
+              new AbstractJsonableObject() {
+                @JsonableElement String href = "https://a.tld";
+              };
+
+          @JsonableElement("links[]")
+          Object linkWithValue =
+              new AbstractJsonableObject() {
+                @JsonableElement String href = "https://b.tld";
+                @JsonableElement String value = "https://c.tld";
+              };
+
+          @JsonableElement
+          Object inner =
+              new AbstractJsonableObject() {
+                @JsonableElement("links[]")
+                Object innerLink =
+                    new AbstractJsonableObject() {
+                      @JsonableElement String href = "https://d.tld";
+                    };
+              };
+        };
+    assertThat(writeJson(jsonable, "https://example.tld/rdap/domain/cat.lol"))
+        .isEqualTo(
+            createJson(
+                "{",
+                "  'links':[",
+                "    {'href':'https://a.tld','value':'https://example.tld/rdap/domain/cat.lol'},",
+                "    {'href':'https://b.tld','value':'https://c.tld'}",
+                "  ],",
+                "  'inner':{",
+                "    'links':[",
+                "      {'href':'https://d.tld','value':'https://example.tld/rdap/domain/cat.lol'}",
+                "    ]",
+                "  }",
+                "}"));
+  }
+
+  @Test
+  void testWriteJson_duplicateNames_fails() {
+    Jsonable jsonable =
+        new AbstractJsonableObject() {
+          @JsonableElement String myString = "A";
+
+          @JsonableElement("myString")
+          String anotherString = "B";
+        };
+    JsonableException thrown =
+        assertThrows(JsonableException.class, () -> writeJson(jsonable, "https://example.tld"));
+    assertThat(thrown)
+        .hasMessageThat()
+        .contains("Encountered the same field name 'myString' multiple times");
+  }
 }
@@ -65,6 +65,14 @@ class RdapActionBaseTest extends RdapActionBaseTestCase<RdapActionBaseTest.RdapT
       if (pathSearchString.equals("RuntimeException")) {
         throw new RuntimeException();
       }
+      if (pathSearchString.equals("failWhileWriting")) {
+        return new ReplyPayloadBase(BoilerplateType.OTHER) {
+          @JsonableElement
+          String key() {
+            throw new RuntimeException();
+          }
+        };
+      }
       if (pathSearchString.equals("advanceClock")) {
         ((FakeClock) clock).advanceBy(Duration.ofMillis(50));
       }
@@ -94,6 +102,32 @@ class RdapActionBaseTest extends RdapActionBaseTestCase<RdapActionBaseTest.RdapT
     assertThat(response.getStatus()).isEqualTo(500);
   }
 
+  @Test
+  void testFailureWhileWriting_doesNotAppendErrorResponse() {
+    action.requestPath = actionPath + "failWhileWriting";
+    action.requestMethod = GET;
+    action.run();
+    assertThat(getPayload()).startsWith("{\"rdapConformance\":");
+    assertThat(getPayload()).doesNotContain("An error was encountered");
+    // The status was sent before the failure, but the metrics record the error
+    assertThat(response.getStatus()).isEqualTo(200);
+    verify(rdapMetrics)
+        .updateMetrics(
+            RdapMetrics.RdapMetricInformation.builder()
+                .setEndpointType(EndpointType.HELP)
+                .setSearchType(SearchType.NONE)
+                .setWildcardType(WildcardType.INVALID)
+                .setPrefixLength(0)
+                .setIncludeDeleted(false)
+                .setRegistrarSpecified(false)
+                .setRole(RdapAuthorization.Role.PUBLIC)
+                .setRequestMethod(Action.Method.GET)
+                .setStatusCode(500)
+                .setIncompletenessWarningType(IncompletenessWarningType.COMPLETE)
+                .setProcessingTime(0L)
+                .build());
+  }
+
   @Test
   void testContentType_rdapjson_utf8() {
     generateActualJson("no.thing");
@@ -164,7 +198,7 @@ class RdapActionBaseTest extends RdapActionBaseTestCase<RdapActionBaseTest.RdapT
     action.requestPath = actionPath + "no.thing";
     action.requestMethod = GET;
     action.run();
-    String payload = response.getPayload();
+    String payload = getPayload();
     assertThat(payload).doesNotContain("\n");
     assertThat(parseJsonObject(payload)).isEqualTo(loadJsonFile("rdapjson_toplevel.json"));
   }
@@ -175,7 +209,7 @@ class RdapActionBaseTest extends RdapActionBaseTestCase<RdapActionBaseTest.RdapT
     action.requestMethod = GET;
     action.formatOutputParam = Optional.of(true);
     action.run();
-    String payload = response.getPayload();
+    String payload = getPayload();
     assertThat(payload).contains("\n");
     assertThat(parseJsonObject(payload)).isEqualTo(loadJsonFile("rdapjson_toplevel.json"));
   }
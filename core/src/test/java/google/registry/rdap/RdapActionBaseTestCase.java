@@ -157,12 +157,17 @@ abstract class RdapActionBaseTestCase<A extends RdapActionBase> {
     action.requestPath = actionPath + name;
     action.requestUrl = "https://example.tld" + actionPath + name;
     action.run();
-    return response.getPayload();
+    return getPayload();
+  }
+
+  /** Returns the JSON payload, which RDAP actions write to the response writer. */
+  String getPayload() {
+    return response.getStringWriter().toString();
   }
 
   JsonElement createTosNotice() {
     return JsonParser.parseString(
-"""
+        """
 {
   "title": "RDAP Terms of Service",
   "description": [
@@ -217,7 +222,7 @@ have failed to comply with these terms.",
     JsonArray notices = jsonObject.getAsJsonArray("notices");
     notices.add(
         JsonParser.parseString(
-"""
+            """
 {
   "title": "Status Codes",
   "description": [
@@ -236,7 +241,7 @@ have failed to comply with these terms.",
                 .replaceAll("%REQUEST_URL%", action.requestUrl)));
     notices.add(
         JsonParser.parseString(
-"""
+            """
 {
   "title": "RDDS Inaccuracy Complaint Form",
   "description": [
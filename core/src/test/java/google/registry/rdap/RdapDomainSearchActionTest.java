@@ -113,7 +113,7 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
       }
     }
     action.run();
-    return parseJsonObject(response.getPayload());
+    return parseJsonObject(getPayload());
   }
 
   private Host addHostToMap(Host host) {
@@ -908,7 +908,7 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
     action.includeDeletedParam = Optional.of(true);
     persistDomainAsDeleted(domainCatLol, minusDays(clock.now(), 1));
     runNotFoundTest(RequestType.NAME, "cat.lol", "No domains found");
-    verifyErrorMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(1L), 404);
+    verifyErrorMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(0L), 404);
   }
 
   @Test
@@ -924,7 +924,7 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
   void testDomainMatchDeletedDomainWithWildcard_notFound() {
     persistDomainAsDeleted(domainCatLol, minusDays(clock.now(), 1));
     runNotFoundTest(RequestType.NAME, "cat.lo*", "No domains found");
-    verifyErrorMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(1L), 404);
+    verifyErrorMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(0L), 404);
   }
 
   @Test
@@ -932,7 +932,7 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
     persistDomainAsDeleted(domainCatLol, minusDays(clock.now(), 1));
     persistDomainAsDeleted(domainCatLol2, minusDays(clock.now(), 1));
     runNotFoundTest(RequestType.NAME, "cat*.lol", "No domains found");
-    verifyErrorMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(2L), 404);
+    verifyErrorMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(0L), 404);
   }
 
   // TODO(b/27376E-95): reenable or delete this test
@@ -952,7 +952,7 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
     JsonObject obj = generateActualJson(RequestType.NAME, "domain*.lol");
     assertThat(response.getStatus()).isEqualTo(200);
     checkNumberOfDomainsInResult(obj, 4);
-    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(16L));
+    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(4L));
   }
 
   @Test
@@ -963,14 +963,13 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
     JsonObject obj = generateActualJson(RequestType.NAME, "domain*.lol");
     assertThat(response.getStatus()).isEqualTo(200);
     checkNumberOfDomainsInResult(obj, 3);
-    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(60L));
+    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(3L));
   }
 
   @Test
-  void testDomainMatch_manyDeletedDomains_partialResultSetDueToFetchingLimit() {
-    // This is not exactly desired behavior, but expected: There are enough domains to fill a full
-    // result set, but there are so many deleted domains that we run out of patience before we work
-    // our way through all of them.
+  void testDomainMatch_manyDeletedDomains_fullResultSetDespiteManyDeletedDomains() {
+    // There are enough domains to fill a full result set, and many more deleted domains between
+    // them. Deleted domains are excluded by the query itself, so they are never fetched at all.
     ImmutableList<Domain> domains = createManyDomainsAndHosts(4, 50, 2);
     rememberWildcardType("domain*.lol");
     assertAboutJson()
@@ -980,13 +979,10 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
                 .addDomain("domain100.lol", domains.get(100).getRepoId())
                 .addDomain("domain150.lol", domains.get(50).getRepoId())
                 .addDomain("domain200.lol", domains.get(0).getRepoId())
-                .addDomain("domainunused.lol", "unused-LOL")
-                .load("rdap_incomplete_domain_result_set.json"));
+                .addDomain("domain50.lol", domains.get(150).getRepoId())
+                .load("rdap_nontruncated_domains.json"));
     assertThat(response.getStatus()).isEqualTo(200);
-    verifyMetrics(
-        SearchType.BY_DOMAIN_NAME,
-        Optional.of(120L),
-        IncompletenessWarningType.MIGHT_BE_INCOMPLETE);
+    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(4L));
   }
 
   @Test
@@ -1067,7 +1063,7 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
                 .setNextQuery("name=domain*.lol&cursor=ZG9tYWluMzAubG9s")
                 .load("rdap_domains_four_truncated.json"));
     assertThat(response.getStatus()).isEqualTo(200);
-    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(27L), IncompletenessWarningType.TRUNCATED);
+    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(5L), IncompletenessWarningType.TRUNCATED);
   }
 
   @Test
@@ -1225,9 +1221,31 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
   }
 
   @Test
-  void testNameserverMatchWithWildcardAndInvalidSuffix_unprocessable() {
-    rememberWildcardType("ns*.google.com");
-    generateActualJson(RequestType.NS_LDH_NAME, "ns*.google.com");
+  void testNameserverMatchWithWildcardAndUnknownSuffix_notFound() {
+    runNotFoundTest(RequestType.NS_LDH_NAME, "ns*.google.com", "No matching nameservers found");
+    verifyErrorMetrics(SearchType.BY_NAMESERVER_NAME, Optional.empty(), Optional.of(0L), 404);
+  }
+
+  @Test
+  void testNameserverMatchWithWildcardAndExternalSuffix_found() {
+    login("evilregistrar");
+    runSuccessfulTest(
+        RequestType.NS_LDH_NAME,
+        "ns*.external.tld",
+        jsonFileBuilder()
+            .addDomain("cat.example", domainCatExample.getRepoId())
+            .addRegistrar("St. John Chrysostom")
+            .addNameserver("ns1.cat.lol", hostNs1CatLol.getRepoId())
+            .addNameserver(
+                "ns2.external.tld", hostNameToHostMap.get("ns2.external.tld").getRepoId())
+            .load("rdap_domain.json"));
+    verifyMetrics(SearchType.BY_NAMESERVER_NAME, 1, 1);
+  }
+
+  @Test
+  void testNameserverMatchWithWildcardAndTldSuffix_unprocessable() {
+    rememberWildcardType("ns*.lol");
+    generateActualJson(RequestType.NS_LDH_NAME, "ns*.lol");
     assertThat(response.getStatus()).isEqualTo(422);
     verifyErrorMetrics(SearchType.BY_NAMESERVER_NAME, Optional.empty(), 422);
   }
@@ -1418,9 +1436,8 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
   @Test
   void testNameserverMatchManyNameserversForTheSameDomainsWithSuffix() {
     // Same as above, except that we find all 39 nameservers because of the wildcard. But we
-    // should still only return 3 domains, because we merge duplicate domains together in a set.
-    // Since we fetch domains by nameserver in batches of 30 nameservers, we need to make sure to
-    // have more than that number of nameservers for an effective test.
+    // should still only return 3 domains, because each domain is only returned once, however many
+    // of the nameservers it uses.
     createManyDomainsAndHosts(3, 1, 39);
     rememberWildcardType("ns*.domain1.lol");
     JsonObject obj = generateActualJson(RequestType.NS_LDH_NAME, "ns*.domain1.lol");
@@ -1476,15 +1493,15 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
         "rdap_domains_four_truncated.json");
     verifyMetrics(
         SearchType.BY_NAMESERVER_NAME,
-        Optional.of(9L),
+        Optional.of(5L),
         Optional.of(1L),
         IncompletenessWarningType.TRUNCATED);
   }
 
   @Test
   void testNameserverMatch_duplicatesNotTruncated() {
-    // 36 nameservers for each of 4 domains; these should translate into two fetches, which should
-    // not trigger the truncation warning because all the domains will be duplicates.
+    // 36 nameservers for each of 4 domains; these should not trigger the truncation warning,
+    // because all the domains will be duplicates.
     ImmutableList<Domain> domains = createManyDomainsAndHosts(4, 1, 36);
     rememberWildcardType("ns*.domain1.lol");
     assertAboutJson()
@@ -1713,7 +1730,7 @@ class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDomainSear
         "rdap_domains_four_truncated.json");
     verifyMetrics(
         SearchType.BY_NAMESERVER_ADDRESS,
-        Optional.of(9L),
+        Optional.of(5L),
         Optional.of(1L),
         IncompletenessWarningType.TRUNCATED);
   }
@@ -75,7 +75,7 @@ class RdapEntitySearchActionTest extends RdapSearchActionTestCase<RdapEntitySear
       action.cursorTokenParam = Optional.of(cursor);
     }
     action.run();
-    return parseJsonObject(response.getPayload());
+    return parseJsonObject(getPayload());
   }
 
   private JsonObject generateActualJsonWithHandle(String handle) {
@@ -93,7 +93,7 @@ class RdapEntitySearchActionTest extends RdapSearchActionTestCase<RdapEntitySear
       action.cursorTokenParam = Optional.of(cursor);
     }
     action.run();
-    return parseJsonObject(response.getPayload());
+    return parseJsonObject(getPayload());
   }
 
   @BeforeEach
@@ -244,7 +244,7 @@ class RdapEntitySearchActionTest extends RdapSearchActionTestCase<RdapEntitySear
   void testInvalidRequest_rejected() {
     action.run();
     assertAboutJson()
-        .that(parseJsonObject(response.getPayload()))
+        .that(parseJsonObject(getPayload()))
         .isEqualTo(
             generateExpectedJsonError("You must specify either fn=XXXX or handle=YYYY", 400));
     assertThat(response.getStatus()).isEqualTo(400);
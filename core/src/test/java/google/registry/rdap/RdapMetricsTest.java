@@ -18,9 +18,12 @@ import static com.google.monitoring.metrics.contrib.DistributionMetricSubject.as
 import static com.google.monitoring.metrics.contrib.LongMetricSubject.assertThat;
 
 import com.google.common.collect.ImmutableSet;
+import google.registry.model.domain.Domain;
+import google.registry.model.host.Host;
 import google.registry.rdap.RdapMetrics.EndpointType;
 import google.registry.rdap.RdapMetrics.SearchType;
 import google.registry.rdap.RdapMetrics.WildcardType;
+import google.registry.rdap.RdapSearchPlanner.Plan;
 import google.registry.rdap.RdapSearchResults.IncompletenessWarningType;
 import google.registry.request.Action;
 import org.junit.jupiter.api.BeforeEach;
@@ -38,6 +41,7 @@ class RdapMetricsTest {
     RdapMetrics.numberOfDomainsRetrieved.reset();
     RdapMetrics.numberOfHostsRetrieved.reset();
     RdapMetrics.requestTime.reset();
+    RdapMetrics.searchQueryTime.reset();
   }
 
   private RdapMetrics.RdapMetricInformation.Builder getBuilder() {
@@ -284,4 +288,16 @@ class RdapMetricsTest {
         .and()
         .hasNoOtherValues();
   }
+
+  @Test
+  void testRecordSearchQueryTime() {
+    rdapMetrics.recordSearchQueryTime(Host.class, Plan.SUFFIX, false, 12L);
+    rdapMetrics.recordSearchQueryTime(Domain.class, Plan.NAMESERVERS, true, 34L);
+    assertThat(RdapMetrics.searchQueryTime)
+        .hasDataSetForLabels(ImmutableSet.of(12L), "Host", "SUFFIX", "NO")
+        .and()
+        .hasDataSetForLabels(ImmutableSet.of(34L), "Domain", "NAMESERVERS", "YES")
+        .and()
+        .hasNoOtherValues();
+  }
 }
@@ -77,7 +77,7 @@ class RdapNameserverSearchActionTest extends RdapSearchActionTestCase<RdapNamese
       action.cursorTokenParam = Optional.of(cursor);
     }
     action.run();
-    return parseJsonObject(response.getPayload());
+    return parseJsonObject(getPayload());
   }
 
   private JsonObject generateActualJsonWithIp(String ipString) {
@@ -96,7 +96,7 @@ class RdapNameserverSearchActionTest extends RdapSearchActionTestCase<RdapNamese
       action.cursorTokenParam = Optional.of(cursor);
     }
     action.run();
-    return parseJsonObject(response.getPayload());
+    return parseJsonObject(getPayload());
   }
 
   @BeforeEach
@@ -219,7 +219,7 @@ class RdapNameserverSearchActionTest extends RdapSearchActionTestCase<RdapNamese
   void testInvalidRequest_rejected() {
     action.run();
     assertAboutJson()
-        .that(parseJsonObject(response.getPayload()))
+        .that(parseJsonObject(getPayload()))
         .isEqualTo(generateExpectedJsonError("You must specify either name=XXXX or ip=YYYY", 400));
     assertThat(response.getStatus()).isEqualTo(400);
     verifyErrorMetrics(Optional.empty(), 400);
@@ -240,9 +240,18 @@ class RdapNameserverSearchActionTest extends RdapSearchActionTestCase<RdapNamese
   }
 
   @Test
-  void testNonexistentDomainSuffix_unprocessable() {
+  void testNonexistentDomainSuffix_notFound() {
     assertAboutJson()
         .that(generateActualJsonWithName("exam*.foo.bar"))
+        .isEqualTo(generateExpectedJsonError("No nameservers found", 404));
+    assertThat(response.getStatus()).isEqualTo(404);
+    verifyErrorMetrics();
+  }
+
+  @Test
+  void testTldSuffix_unprocessable() {
+    assertAboutJson()
+        .that(generateActualJsonWithName("ns*.lol"))
         .isEqualTo(
             generateExpectedJsonError(
                 "A suffix after a wildcard in a nameserver lookup must be an in-bailiwick domain",
@@ -364,6 +373,28 @@ class RdapNameserverSearchActionTest extends RdapSearchActionTestCase<RdapNamese
     verifyMetrics(1);
   }
 
+  @Test
+  void testNameMatchWithWildcard_cat_external_foundUsingReversedName() {
+    assertAboutJson()
+        .that(generateActualJsonWithName("ns*.cat.external"))
+        .isEqualTo(
+            addBoilerplate(
+                jsonFileBuilder()
+                    .addNameserver("ns1.cat.external", "8-ROID")
+                    .load("rdap_host_external.json")));
+    assertThat(response.getStatus()).isEqualTo(200);
+    verifyMetrics(1);
+  }
+
+  @Test
+  void testNameMatchWithWildcard_cat_external_overlappingPrefixAndSuffix_notFound() {
+    assertAboutJson()
+        .that(generateActualJsonWithName("ns1.cat.ext*.cat.external"))
+        .isEqualTo(generateExpectedJsonError("No nameservers found", 404));
+    assertThat(response.getStatus()).isEqualTo(404);
+    verifyErrorMetrics();
+  }
+
   @Test
   void testNameMatch_ns1_cat_idn_unicode_found() {
     assertAboutJson()
@@ -583,7 +614,7 @@ class RdapNameserverSearchActionTest extends RdapSearchActionTestCase<RdapNamese
     login("unicoderegistrar");
     generateActualJsonWithName("nsdeleted.cat.lol");
     assertThat(response.getStatus()).isEqualTo(404);
-    verifyErrorMetrics(Optional.of(1L), 404);
+    verifyErrorMetrics();
   }
 
   @Test
@@ -835,7 +866,7 @@ class RdapNameserverSearchActionTest extends RdapSearchActionTestCase<RdapNamese
     login("unicoderegistrar");
     generateActualJsonWithIp("4.3.2.1");
     assertThat(response.getStatus()).isEqualTo(404);
-    verifyErrorMetrics(Optional.of(1L), 404);
+    verifyErrorMetrics();
   }
 
   @Test
@@ -0,0 +1,200 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rdap;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
+import static google.registry.testing.DatabaseHelper.createTld;
+import static google.registry.util.DateTimeUtils.END_INSTANT;
+import static google.registry.util.DateTimeUtils.START_INSTANT;
+import static google.registry.util.DateTimeUtils.minusDays;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.net.InetAddresses;
+import google.registry.model.host.Host;
+import google.registry.persistence.VKey;
+import google.registry.persistence.transaction.JpaTestExtensions;
+import google.registry.persistence.transaction.JpaTestExtensions.JpaIntegrationTestExtension;
+import google.registry.testing.FakeClock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/**
+ * Benchmark of the query plans of {@link RdapSearchPlanner} over a million domains.
+ *
+ * <p>Generating the dataset takes a while, so the benchmark only runs when the {@code
+ * RDAP_SEARCH_BENCHMARK} environment variable is {@code true}, e.g. {@code
+ * RDAP_SEARCH_BENCHMARK=true ./gradlew :core:test --tests RdapSearchPlannerBenchmarkTest}. The
+ * latencies of each plan are logged.
+ *
+ * <p>One in ten domains is deleted, and one in three is sponsored by a second registrar, so that
+ * the deletion and registrar filters have to skip rows.
+ */
+@EnabledIfEnvironmentVariable(named = "RDAP_SEARCH_BENCHMARK", matches = "true")
+class RdapSearchPlannerBenchmarkTest {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final int NUM_DOMAINS = 1_000_000;
+  private static final int NUM_HOSTS = 1_000;
+  private static final int NUM_WARMUP_RUNS = 5;
+  private static final int NUM_RUNS = 50;
+
+  /** The usual result set size plus one, as fetched by the search actions. */
+  private static final int PAGE_SIZE = 101;
+
+  private final FakeClock clock = new FakeClock(Instant.parse("2000-01-01T00:00:00Z"));
+
+  @RegisterExtension
+  final JpaIntegrationTestExtension jpa =
+      new JpaTestExtensions.Builder().withClock(clock).buildIntegrationTestExtension();
+
+  @BeforeEach
+  void beforeEach() {
+    createTld("lol");
+    tm().transact(
+            () -> {
+              tm().getEntityManager()
+                  .createNativeQuery(
+                      "INSERT INTO \"Host\" (repo_id, host_name, creation_registrar_id,"
+                          + " creation_time, current_sponsor_registrar_id, deletion_time,"
+                          + " inet_addresses) SELECT 'H' || i || '-ROID', 'ns' || i ||"
+                          + " '.example.net', 'TheRegistrar', :creationTime, 'TheRegistrar',"
+                          + " :endOfTime, ARRAY['10.0.' || (i / 256) || '.' || (i % 256)] FROM"
+                          + " generate_series(1, :numHosts) i")
+                  .setParameter("creationTime", START_INSTANT)
+                  .setParameter("endOfTime", END_INSTANT)
+                  .setParameter("numHosts", NUM_HOSTS)
+                  .executeUpdate();
+              tm().getEntityManager()
+                  .createNativeQuery(
+                      "INSERT INTO \"Domain\" (repo_id, domain_name, tld, creation_registrar_id,"
+                          + " creation_time, current_sponsor_registrar_id, deletion_time) SELECT"
+                          + " 'D' || i || '-LOL', 'domain' || i || '.lol', 'lol', 'TheRegistrar',"
+                          + " :creationTime, CASE WHEN i % 3 = 0 THEN 'NewRegistrar' ELSE"
+                          + " 'TheRegistrar' END, CASE WHEN i % 10 = 0 THEN :deletionTime ELSE"
+                          + " :endOfTime END FROM generate_series(1, :numDomains) i")
+                  .setParameter("creationTime", START_INSTANT)
+                  .setParameter("deletionTime", minusDays(clock.now(), 1))
+                  .setParameter("endOfTime", END_INSTANT)
+                  .setParameter("numDomains", NUM_DOMAINS)
+                  .executeUpdate();
+              tm().getEntityManager()
+                  .createNativeQuery(
+                      "INSERT INTO \"DomainHost\" (domain_repo_id, host_repo_id) SELECT 'D' || i"
+                          + " || '-LOL', 'H' || (i % :numHosts + 1) || '-ROID' FROM"
+                          + " generate_series(1, :numDomains) i")
+                  .setParameter("numHosts", NUM_HOSTS)
+                  .setParameter("numDomains", NUM_DOMAINS)
+                  .executeUpdate();
+            });
+    tm().transact(() -> tm().getEntityManager().createNativeQuery("ANALYZE").executeUpdate());
+  }
+
+  @Test
+  void benchmarkQueryPlans() {
+    RdapSearchPlanner publicPlanner =
+        new RdapSearchPlanner(
+            clock.now(),
+            false,
+            RdapAuthorization.PUBLIC_AUTHORIZATION,
+            Optional.empty(),
+            new RdapMetrics());
+    RdapSearchPlanner registrarPlanner =
+        new RdapSearchPlanner(
+            clock.now(),
+            true,
+            RdapAuthorization.create(RdapAuthorization.Role.REGISTRAR, "NewRegistrar"),
+            Optional.of("NewRegistrar"),
+            new RdapMetrics());
+    ImmutableList<VKey<Host>> hostKeys =
+        ImmutableList.of(VKey.create(Host.class, "H1-ROID"), VKey.create(Host.class, "H2-ROID"));
+
+    benchmark(
+        "exact",
+        () ->
+            publicPlanner.searchDomains(pattern("domain123457.lol"), Optional.empty(), PAGE_SIZE));
+    benchmark(
+        "prefix",
+        () -> publicPlanner.searchDomains(pattern("domain12*"), Optional.empty(), PAGE_SIZE));
+    benchmark(
+        "prefix, next page",
+        () ->
+            publicPlanner.searchDomains(pattern("domain12*"), Optional.of("domain125"), PAGE_SIZE));
+    benchmark(
+        "suffix", () -> publicPlanner.searchDomains(pattern("*.lol"), Optional.empty(), PAGE_SIZE));
+    benchmark(
+        "suffix, deep page",
+        () -> publicPlanner.searchDomains(pattern("*.lol"), Optional.of("domain9"), PAGE_SIZE));
+    benchmark(
+        "prefix and suffix",
+        () -> publicPlanner.searchDomains(pattern("domain5*.lol"), Optional.empty(), PAGE_SIZE));
+    benchmark(
+        "prefix, registrar and deleted",
+        () -> registrarPlanner.searchDomains(pattern("domain7*"), Optional.empty(), PAGE_SIZE));
+    benchmark(
+        "nameserver prefix",
+        () -> publicPlanner.searchHosts(pattern("ns12*"), Optional.empty(), PAGE_SIZE));
+    benchmark(
+        "nameserver suffix",
+        () -> publicPlanner.searchHosts(pattern("*.example.net"), Optional.empty(), PAGE_SIZE));
+    benchmark(
+        "nameserver prefix and suffix",
+        () -> publicPlanner.searchHosts(pattern("ns12*.example.net"), Optional.empty(), PAGE_SIZE));
+    benchmark(
+        "nameserver address",
+        () ->
+            publicPlanner.searchHostsByAddress(
+                InetAddresses.forString("10.0.1.1"), Optional.empty(), PAGE_SIZE));
+    benchmark(
+        "domains by nameservers",
+        () -> publicPlanner.searchDomainsByNameservers(hostKeys, Optional.empty(), PAGE_SIZE));
+  }
+
+  private static RdapSearchPattern pattern(String pattern) {
+    return RdapSearchPattern.createFromLdhDomainName(pattern);
+  }
+
+  private static void benchmark(String name, Supplier<RdapResultSet<?>> search) {
+    for (int i = 0; i < NUM_WARMUP_RUNS; i++) {
+      search.get();
+    }
+    long[] nanos = new long[NUM_RUNS];
+    int numResults = 0;
+    for (int i = 0; i < NUM_RUNS; i++) {
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      numResults = search.get().resources().size();
+      nanos[i] = stopwatch.elapsed().toNanos();
+    }
+    assertThat(numResults).isGreaterThan(0);
+    Arrays.sort(nanos);
+    logger.atInfo().log(
+        "%s: %d results, median %s, p90 %s, max %s",
+        name,
+        numResults,
+        Duration.ofNanos(nanos[NUM_RUNS / 2]),
+        Duration.ofNanos(nanos[NUM_RUNS * 9 / 10]),
+        Duration.ofNanos(nanos[NUM_RUNS - 1]));
+  }
+}
@@ -0,0 +1,283 @@
+// Copyright 2026 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rdap;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.rdap.RdapAuthorization.Role.REGISTRAR;
+import static google.registry.testing.DatabaseHelper.createTld;
+import static google.registry.testing.DatabaseHelper.newDomain;
+import static google.registry.testing.DatabaseHelper.persistActiveHost;
+import static google.registry.testing.DatabaseHelper.persistDeletedDomain;
+import static google.registry.testing.DatabaseHelper.persistDomainAsDeleted;
+import static google.registry.testing.DatabaseHelper.persistResource;
+import static google.registry.util.DateTimeUtils.minusDays;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.InetAddresses;
+import google.registry.model.EppResource;
+import google.registry.model.domain.Domain;
+import google.registry.model.host.Host;
+import google.registry.persistence.transaction.JpaTestExtensions;
+import google.registry.persistence.transaction.JpaTestExtensions.JpaIntegrationTestExtension;
+import google.registry.rdap.RdapSearchPlanner.Plan;
+import google.registry.testing.FakeClock;
+import java.time.Instant;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+/** Unit tests for {@link RdapSearchPlanner}. */
+class RdapSearchPlannerTest {
+
+  private final FakeClock clock = new FakeClock(Instant.parse("2000-01-01T00:00:00Z"));
+  private final RdapMetrics rdapMetrics = mock(RdapMetrics.class);
+
+  @RegisterExtension
+  final JpaIntegrationTestExtension jpa =
+      new JpaTestExtensions.Builder().withClock(clock).buildIntegrationTestExtension();
+
+  private Host host1;
+  private Host host2;
+
+  @BeforeEach
+  void beforeEach() {
+    createTld("lol");
+    createTld("example");
+    host1 =
+        persistResource(
+            persistActiveHost("ns1.cat.example")
+                .asBuilder()
+                .setInetAddresses(ImmutableSet.of(InetAddresses.forString("1.2.3.4")))
+                .build());
+    host2 = persistActiveHost("ns2.cat.example");
+    persistResource(newDomain("cat.lol", host1, host2));
+    persistResource(newDomain("cat2.lol", host2));
+    persistResource(newDomain("cat.example", host1));
+    persistDomainAsDeleted(newDomain("cat3.lol", host1), minusDays(clock.now(), 1));
+    persistDomainAsDeleted(
+        newDomain("cat4.lol", host1)
+            .asBuilder()
+            .setPersistedCurrentSponsorRegistrarId("NewRegistrar")
+            .build(),
+        minusDays(clock.now(), 1));
+    persistResource(
+        newDomain("cat5.lol")
+            .asBuilder()
+            .setPersistedCurrentSponsorRegistrarId("NewRegistrar")
+            .build());
+  }
+
+  private RdapSearchPlanner createPlanner(
+      boolean includeDeleted, RdapAuthorization authorization, Optional<String> registrar) {
+    return new RdapSearchPlanner(
+        clock.now(), includeDeleted, authorization, registrar, rdapMetrics);
+  }
+
+  private RdapSearchPlanner createPublicPlanner() {
+    return createPlanner(false, RdapAuthorization.PUBLIC_AUTHORIZATION, Optional.empty());
+  }
+
+  private static ImmutableList<String> getNames(RdapResultSet<? extends EppResource> resultSet) {
+    return resultSet.resources().stream()
+        .map(EppResource::getForeignKey)
+        .collect(toImmutableList());
+  }
+
+  private static RdapSearchPattern pattern(String pattern) {
+    return RdapSearchPattern.createFromLdhDomainName(pattern);
+  }
+
+  @Test
+  void testPlan_forPattern() {
+    assertThat(Plan.forPattern(pattern("cat.lol"))).isEqualTo(Plan.EXACT);
+    assertThat(Plan.forPattern(pattern("cat*"))).isEqualTo(Plan.PREFIX);
+    assertThat(Plan.forPattern(pattern("*.lol"))).isEqualTo(Plan.SUFFIX);
+    assertThat(Plan.forPattern(pattern("cat*.lol"))).isEqualTo(Plan.PREFIX_AND_SUFFIX);
+  }
+
+  @Test
+  void testSearchDomains_exact() {
+    assertThat(
+            getNames(createPublicPlanner().searchDomains(pattern("cat.lol"), Optional.empty(), 5)))
+        .containsExactly("cat.lol");
+  }
+
+  @Test
+  void testSearchDomains_prefix_excludesDeletedDomains() {
+    assertThat(getNames(createPublicPlanner().searchDomains(pattern("cat*"), Optional.empty(), 10)))
+        .containsExactly("cat.example", "cat.lol", "cat2.lol", "cat5.lol")
+        .inOrder();
+  }
+
+  @Test
+  void testSearchDomains_suffix() {
+    assertThat(
+            getNames(createPublicPlanner().searchDomains(pattern("*.lol"), Optional.empty(), 10)))
+        .containsExactly("cat.lol", "cat2.lol", "cat5.lol")
+        .inOrder();
+  }
+
+  @Test
+  void testSearchDomains_prefixAndSuffix_withCursorAndLimit() {
+    assertThat(
+            getNames(
+                createPublicPlanner()
+                    .searchDomains(pattern("cat*.lol"), Optional.of("cat.lol"), 1)))
+        .containsExactly("cat2.lol");
+  }
+
+  @Test
+  void testSearchDomains_desiredRegistrar() {
+    assertThat(
+            getNames(
+                createPlanner(
+                        false, RdapAuthorization.PUBLIC_AUTHORIZATION, Optional.of("NewRegistrar"))
+                    .searchDomains(pattern("cat*"), Optional.empty(), 10)))
+        .containsExactly("cat5.lol");
+  }
+
+  @Test
+  void testSearchDomains_includeDeleted_onlyOwnDeletedDomains() {
+    assertThat(
+            getNames(
+                createPlanner(
+                        true, RdapAuthorization.create(REGISTRAR, "TheRegistrar"), Optional.empty())
+                    .searchDomains(pattern("cat*.lol"), Optional.empty(), 10)))
+        .containsExactly("cat.lol", "cat2.lol", "cat3.lol", "cat5.lol")
+        .inOrder();
+  }
+
+  @Test
+  void testSearchDomains_includeDeleted_administrator() {
+    assertThat(
+            getNames(
+                createPlanner(true, RdapAuthorization.ADMINISTRATOR_AUTHORIZATION, Optional.empty())
+                    .searchDomains(pattern("cat*.lol"), Optional.empty(), 10)))
+        .containsExactly("cat.lol", "cat2.lol", "cat3.lol", "cat4.lol", "cat5.lol")
+        .inOrder();
+  }
+
+  @Test
+  void testSearchDomains_includeDeleted_exactMatchesEveryDeletedDomain() {
+    persistDeletedDomain("cat.lol", minusDays(clock.now(), 100));
+    assertThat(
+            getNames(
+                createPlanner(true, RdapAuthorization.ADMINISTRATOR_AUTHORIZATION, Optional.empty())
+                    .searchDomains(pattern("cat.lol"), Optional.empty(), 10)))
+        .containsExactly("cat.lol", "cat.lol");
+  }
+
+  @Test
+  void testSearchHosts_prefix() {
+    assertThat(getNames(createPublicPlanner().searchHosts(pattern("ns*"), Optional.empty(), 10)))
+        .containsExactly("ns1.cat.example", "ns2.cat.example")
+        .inOrder();
+  }
+
+  @Test
+  void testSearchHosts_suffix() {
+    persistActiveHost("ns1.dog.example");
+    persistActiveHost("ns1.cat.example.net");
+    assertThat(
+            getNames(
+                createPublicPlanner().searchHosts(pattern("*.cat.example"), Optional.empty(), 10)))
+        .containsExactly("ns1.cat.example", "ns2.cat.example")
+        .inOrder();
+  }
+
+  @Test
+  void testSearchHosts_prefixAndSuffix_withCursor() {
+    assertThat(
+            getNames(
+                createPublicPlanner()
+                    .searchHosts(pattern("ns*.cat.example"), Optional.of("ns1.cat.example"), 10)))
+        .containsExactly("ns2.cat.example");
+  }
+
+  @Test
+  void testSearchHosts_prefixAndSuffix_mustNotOverlap() {
+    assertThat(
+            createPublicPlanner()
+                .searchHosts(pattern("ns1.cat.exa*.cat.example"), Optional.empty(), 10)
+                .resources())
+        .isEmpty();
+  }
+
+  @Test
+  void testSearchHosts_recordsQueryTime() {
+    createPublicPlanner().searchHosts(pattern("*.cat.example"), Optional.empty(), 10);
+    verify(rdapMetrics)
+        .recordSearchQueryTime(eq(Host.class), eq(Plan.SUFFIX), eq(false), anyLong());
+  }
+
+  @Test
+  void testSearchHostsByAddress() {
+    assertThat(
+            getNames(
+                createPublicPlanner()
+                    .searchHostsByAddress(
+                        InetAddresses.forString("1.2.3.4"), Optional.empty(), 10)))
+        .containsExactly("ns1.cat.example");
+  }
+
+  @Test
+  void testSearchDomainsByNameservers_eachDomainOnlyOnce() {
+    assertThat(
+            getNames(
+                createPublicPlanner()
+                    .searchDomainsByNameservers(
+                        ImmutableList.of(host1.createVKey(), host2.createVKey()),
+                        Optional.empty(),
+                        10)))
+        .containsExactly("cat.example", "cat.lol", "cat2.lol")
+        .inOrder();
+  }
+
+  @Test
+  void testSearchDomainsByNameservers_withCursorAndLimit() {
+    assertThat(
+            getNames(
+                createPublicPlanner()
+                    .searchDomainsByNameservers(
+                        ImmutableList.of(host1.createVKey(), host2.createVKey()),
+                        Optional.of("cat.example"),
+                        1)))
+        .containsExactly("cat.lol");
+  }
+
+  @Test
+  void testSearchDomainsByNameservers_includeDeleted_onlyOwnDeletedDomains() {
+    RdapResultSet<Domain> resultSet =
+        createPlanner(true, RdapAuthorization.create(REGISTRAR, "TheRegistrar"), Optional.empty())
+            .searchDomainsByNameservers(ImmutableList.of(host1.createVKey()), Optional.empty(), 10);
+    assertThat(getNames(resultSet)).containsExactly("cat.example", "cat.lol", "cat3.lol").inOrder();
+  }
+
+  @Test
+  void testSearchDomainsByNameservers_noNameservers() {
+    assertThat(
+            createPublicPlanner()
+                .searchDomainsByNameservers(ImmutableList.of(), Optional.empty(), 10)
+                .resources())
+        .isEmpty();
+  }
+}
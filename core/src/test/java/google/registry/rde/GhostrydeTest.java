@@ -22,8 +22,10 @@ import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import com.google.common.io.ByteStreams;
 import google.registry.keyring.api.Keyring;
+import google.registry.rde.Ghostryde.ShardedEncoder;
 import google.registry.testing.BouncyCastleProviderExtension;
 import google.registry.testing.FakeKeyringModule;
+import google.registry.util.ImprovedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
@@ -114,6 +116,94 @@ public class GhostrydeTest {
     assertThat(Long.parseLong(new String(lenOut.toByteArray(), UTF_8))).isEqualTo(data.length);
   }
 
+  @ParameterizedTest
+  @MethodSource("provideTestCombinations")
+  void testShardedApi(String content) throws Exception {
+    Keyring keyring = new FakeKeyringModule().get();
+    byte[] data = content.getBytes(UTF_8);
+    PGPPublicKey publicKey = keyring.getRdeStagingEncryptionKey();
+    PGPPrivateKey privateKey = keyring.getRdeStagingDecryptionKey();
+    // Like in a deposit, the data around the shards shares long substrings.
+    String header = "<rdeHeader:header xmlns:rdeHeader=\"urn:ietf:params:xml:ns:rdeHeader-1.0\">";
+    byte[] top = (header + "<rde:contents>").getBytes(UTF_8);
+    byte[] bottom = ("</rde:contents>" + header).getBytes(UTF_8);
+
+    ByteArrayOutputStream shardOut = new ByteArrayOutputStream();
+    try (ImprovedOutputStream shardEncoder = Ghostryde.shardEncoder(shardOut)) {
+      shardEncoder.write(data);
+    }
+    byte[] shard = shardOut.toByteArray();
+
+    ByteArrayOutputStream bsOut = new ByteArrayOutputStream();
+    ByteArrayOutputStream lenOut = new ByteArrayOutputStream();
+    long length = top.length + 2L * data.length + bottom.length;
+    try (ShardedEncoder encoder = Ghostryde.shardedEncoder(bsOut, publicKey, length, lenOut)) {
+      encoder.write(top);
+      encoder.appendShard(shard, data.length);
+      encoder.appendShard(shard, data.length);
+      encoder.write(bottom);
+    }
+
+    assertThat(new String(Ghostryde.decode(bsOut.toByteArray(), privateKey), UTF_8))
+        .isEqualTo(header + "<rde:contents>" + content + content + "</rde:contents>" + header);
+    assertThat(Ghostryde.readLength(new ByteArrayInputStream(lenOut.toByteArray())))
+        .isEqualTo(length);
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideTestCombinations")
+  void testShardedApi_withoutStitching(String content) throws Exception {
+    Keyring keyring = new FakeKeyringModule().get();
+    byte[] data = content.getBytes(UTF_8);
+    byte[] top = "<rde:contents>".getBytes(UTF_8);
+    byte[] bottom = "</rde:contents>".getBytes(UTF_8);
+
+    ByteArrayOutputStream shardOut = new ByteArrayOutputStream();
+    try (ImprovedOutputStream shardEncoder = Ghostryde.shardEncoder(shardOut)) {
+      shardEncoder.write(data);
+    }
+    byte[] shard = shardOut.toByteArray();
+
+    ByteArrayOutputStream bsOut = new ByteArrayOutputStream();
+    ByteArrayOutputStream lenOut = new ByteArrayOutputStream();
+    long length = top.length + 2L * data.length + bottom.length;
+    try (ShardedEncoder encoder =
+        Ghostryde.shardedEncoder(
+            bsOut, keyring.getRdeStagingEncryptionKey(), length, lenOut, false)) {
+      encoder.write(top);
+      encoder.appendShard(shard, data.length);
+      encoder.appendShard(shard, data.length);
+      encoder.write(bottom);
+    }
+
+    assertThat(
+            new String(
+                Ghostryde.decode(bsOut.toByteArray(), keyring.getRdeStagingDecryptionKey()), UTF_8))
+        .isEqualTo("<rde:contents>" + content + content + "</rde:contents>");
+    assertThat(Ghostryde.readLength(new ByteArrayInputStream(lenOut.toByteArray())))
+        .isEqualTo(length);
+  }
+
+  @Test
+  void testShardedApi_tooLongForFileHeader_doesNotStitch() throws Exception {
+    PGPPublicKey publicKey = new FakeKeyringModule().get().getRdeStagingEncryptionKey();
+    // A fixed-length file header would silently truncate this length to 0.
+    ShardedEncoder encoder =
+        Ghostryde.shardedEncoder(new ByteArrayOutputStream(), publicKey, 1L << 32, null);
+    IllegalStateException thrown = assertThrows(IllegalStateException.class, encoder::close);
+    assertThat(thrown).hasMessageThat().isEqualTo("Expected 4294967296 bytes of data but got 0");
+  }
+
+  @Test
+  void testFailure_shardedApi_lengthMismatch() throws Exception {
+    PGPPublicKey publicKey = new FakeKeyringModule().get().getRdeStagingEncryptionKey();
+    ShardedEncoder encoder =
+        Ghostryde.shardedEncoder(new ByteArrayOutputStream(), publicKey, 10, null);
+    encoder.write("hi".getBytes(UTF_8));
+    IllegalStateException thrown = assertThrows(IllegalStateException.class, encoder::close);
+    assertThat(thrown).hasMessageThat().isEqualTo("Expected 10 bytes of data but got 2");
+  }
+
   @ParameterizedTest
   @MethodSource("provideTestCombinations")
   void testFailure_tampering(String content) throws Exception {
@@ -195,14 +285,14 @@ public class GhostrydeTest {
 
     String encryptedInputBase64 =
         """
-                hQEMA6WcEy81iaHVAQgAnn9bS6IOCTW2uZnITPWH8zIYr6K7YJslv38c4YU5eQqVhHC5PN0NhM2l
-                i89U3lUE6gp3DdEEbTbugwXCHWyRL4fYTlpiHZjBn2vZdSS21EAG+q1XuTaD8DTjkC2G060/sW6i
-                0gSIkksqgubbSVZTxHEqh92tv35KCqiYc52hjKZIIGI8FHhpJOtDa3bhMMad8nrMy3vbv5LiYNh5
-                j3DUCFhskU8Ldi1vBfXIonqUNLBrD/R471VVJyQ3NoGQTVUF9uXLoy+2dL0oBLc1Avj1XNP5PQ08
-                MWlqmezkLdY0oHnQqTHYhYDxRo/Sw7xO1GLwWR11rcx/IAJloJbKSHTFeNJUAcKFnKvPDwBk3nnr
-                uR505HtOj/tZDT5weVjhrlnmWXzaBRmYASy6PXZu6KzTbPUQTf4JeeJWdyw7glLMr2WPdMVPGZ8e
-                gcFAjSJZjZlqohZyBUpP
-            """;
+            hQEMA6WcEy81iaHVAQgAnn9bS6IOCTW2uZnITPWH8zIYr6K7YJslv38c4YU5eQqVhHC5PN0NhM2l
+            i89U3lUE6gp3DdEEbTbugwXCHWyRL4fYTlpiHZjBn2vZdSS21EAG+q1XuTaD8DTjkC2G060/sW6i
+            0gSIkksqgubbSVZTxHEqh92tv35KCqiYc52hjKZIIGI8FHhpJOtDa3bhMMad8nrMy3vbv5LiYNh5
+            j3DUCFhskU8Ldi1vBfXIonqUNLBrD/R471VVJyQ3NoGQTVUF9uXLoy+2dL0oBLc1Avj1XNP5PQ08
+            MWlqmezkLdY0oHnQqTHYhYDxRo/Sw7xO1GLwWR11rcx/IAJloJbKSHTFeNJUAcKFnKvPDwBk3nnr
+            uR505HtOj/tZDT5weVjhrlnmWXzaBRmYASy6PXZu6KzTbPUQTf4JeeJWdyw7glLMr2WPdMVPGZ8e
+            gcFAjSJZjZlqohZyBUpP
+        """;
 
     byte[] result =
         Ghostryde.decode(Base64.getMimeDecoder().decode(encryptedInputBase64), privateKey);
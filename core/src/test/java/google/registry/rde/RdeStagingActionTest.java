@@ -79,6 +79,7 @@ public class RdeStagingActionTest extends BeamActionTestBase {
     action.revision = Optional.empty();
     action.dataflow = dataflow;
     action.machineType = "machine-type";
+    action.depositShards = 1;
   }
 
   @Test
@@ -18,6 +18,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.io.ByteStreams;
+import google.registry.rde.RydeCompression.StitchingCompressor;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
@@ -42,4 +43,30 @@ final class RydeCompressionTest {
       assertThat(ByteStreams.toByteArray(decompressor)).isEqualTo(expected);
     }
   }
+
+  @Test
+  void testStitchedCompression_decompression() throws Exception {
+    ByteArrayOutputStream shardOutput = new ByteArrayOutputStream();
+    try (OutputStream compressor = RydeCompression.openShardCompressor(shardOutput)) {
+      compressor.write("1, 2, ".getBytes(UTF_8));
+    }
+    byte[] shard = shardOutput.toByteArray();
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (StitchingCompressor compressor = RydeCompression.openStitchingCompressor(output)) {
+      compressor.write("Testing, testing ".getBytes(UTF_8));
+      compressor.appendShard(shard);
+      compressor.appendShard(shard);
+      // Shares long substrings with the data written before the shards, which must not be
+      // referenced across them.
+      compressor.write("3, testing, testing".getBytes(UTF_8));
+    }
+    byte[] compressed = output.toByteArray();
+
+    ByteArrayInputStream input = new ByteArrayInputStream(compressed);
+    try (InputStream decompressor = RydeCompression.openDecompressor(input)) {
+      assertThat(new String(ByteStreams.toByteArray(decompressor), UTF_8))
+          .isEqualTo("Testing, testing 1, 2, 1, 2, 3, testing, testing");
+    }
+  }
 }
@@ -16,6 +16,7 @@ package google.registry.rde;
 
 import static com.google.common.truth.Truth.assertThat;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.google.common.io.ByteStreams;
 import java.io.ByteArrayInputStream;
@@ -47,4 +48,41 @@ final class RydeFileEncodingTest {
       assertThat(ByteStreams.toByteArray(decoder)).isEqualTo(expectedContent);
     }
   }
+
+  @Test
+  void testMakePgpFileHeader() throws Exception {
+    byte[] expectedContent = "Testing 1, 2, 3".getBytes(UTF_8);
+    Instant expectedModified = Instant.parse("2015-12-25T06:30:00Z");
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    output.write(
+        RydeFileEncoding.makePgpFileHeader("myFile.txt", expectedModified, expectedContent.length));
+    output.write(expectedContent);
+
+    ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+    try (RydeFileEncoding.PgpFileInputStream decoder = RydeFileEncoding.openPgpFileReader(input)) {
+      assertThat(decoder.getFilename()).isEqualTo("myFile.txt");
+      assertThat(decoder.getModified()).isEqualTo(expectedModified);
+      assertThat(ByteStreams.toByteArray(decoder)).isEqualTo(expectedContent);
+    }
+  }
+
+  @Test
+  void testFitsPgpFileHeader() {
+    // The packet body also holds 6 bytes of metadata and the 8 bytes of the filename.
+    assertThat(RydeFileEncoding.fitsPgpFileHeader("file.xml", 0xFFFFFFFFL - 14)).isTrue();
+    assertThat(RydeFileEncoding.fitsPgpFileHeader("file.xml", 0xFFFFFFFFL - 13)).isFalse();
+    assertThat(RydeFileEncoding.fitsPgpFileHeader("file.xml", 1L << 32)).isFalse();
+  }
+
+  @Test
+  void testFailure_makePgpFileHeader_lengthOver4GiB() {
+    IllegalArgumentException thrown =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> RydeFileEncoding.makePgpFileHeader("file.xml", Instant.EPOCH, 1L << 32));
+    assertThat(thrown)
+        .hasMessageThat()
+        .isEqualTo("PGP file of 4294967296 bytes is too long for a fixed-length header");
+  }
 }
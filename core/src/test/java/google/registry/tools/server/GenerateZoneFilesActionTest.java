@@ -23,6 +23,10 @@ import static google.registry.testing.DatabaseHelper.persistResource;
 import static google.registry.testing.TestDataHelper.loadFile;
 import static google.registry.util.DateTimeUtils.plusMinutes;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 import com.google.cloud.storage.BlobId;
 import com.google.cloud.storage.contrib.nio.testing.LocalStorageHelper;
@@ -55,6 +59,7 @@ class GenerateZoneFilesActionTest {
       new JpaTestExtensions.Builder().buildIntegrationTestExtension();
 
   private final GcsUtils gcsUtils = new GcsUtils(LocalStorageHelper.getOptions());
+  private final ZoneFileMetrics zoneFileMetrics = mock(ZoneFileMetrics.class);
 
   @Test
   void testGenerate_defaultTtls() throws Exception {
@@ -148,6 +153,7 @@ class GenerateZoneFilesActionTest {
     action.dnsDefaultNsTtl = Duration.ofSeconds(222);
     action.dnsDefaultDsTtl = Duration.ofSeconds(3333);
     action.clock = new FakeClock(plusMinutes(now, 2)); // Move past the actions' 2 minute check.
+    action.zoneFileMetrics = zoneFileMetrics;
 
     Map<String, Object> response =
         action.handleJsonRequest(
@@ -155,6 +161,9 @@ class GenerateZoneFilesActionTest {
     assertThat(response)
         .containsEntry("filenames", ImmutableList.of("gs://zonefiles-bucket/tld-" + now + ".zone"));
 
+    // Only the final zone file is left, not the temporary one it was written to.
+    assertThat(gcsUtils.listFolderObjects("zonefiles-bucket", ""))
+        .containsExactly(String.format("tld-%s.zone", now));
     BlobId gcsFilename = BlobId.of("zonefiles-bucket", String.format("tld-%s.zone", now));
     String generatedFile = new String(gcsUtils.readBytesFrom(gcsFilename), UTF_8);
     // The generated file contains spaces and tabs, but the golden file contains only spaces, as
@@ -166,5 +175,7 @@ class GenerateZoneFilesActionTest {
     assertThat(generatedFileLines.iterator().next()).isEqualTo(goldenFileLines.iterator().next());
     // The remaining lines can be in any order.
     assertThat(generatedFileLines).containsExactlyElementsIn(goldenFileLines);
+    // All nine domains of the TLD are scanned, even those that aren't published to DNS.
+    verify(zoneFileMetrics).recordZoneFileGenerated(eq("tld"), eq(9L), any(Duration.class));
   }
 }
@@ -0,0 +1,26 @@
+-- Copyright 2026 The Nomulus Authors. All Rights Reserved.
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+
+-- The default btree indexes on names can't serve LIKE prefix searches, since the database doesn't
+-- use the C collation. These indexes use ucs_basic, which orders UTF-8 strings like C, and which
+-- the RDAP searches use for their prefix matches, cursors and ordering, so that one index serves
+-- all three. The reversed host name index serves suffix searches as prefix searches.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS domain_domain_name_pattern_idx
+  ON "Domain" (domain_name COLLATE ucs_basic);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS host_host_name_pattern_idx
+  ON "Host" (host_name COLLATE ucs_basic);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS host_host_name_reverse_pattern_idx
+  ON "Host" (reverse(host_name) COLLATE ucs_basic);
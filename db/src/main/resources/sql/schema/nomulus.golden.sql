@@ -1798,6 +1798,13 @@ CREATE INDEX billingrecurrence_billing_recurrence_id_hash ON public."BillingRecu
 CREATE INDEX delegationsignerdata_domain_repo_id_hash ON public."DelegationSignerData" USING hash (domain_repo_id);
 
 
+--
+-- Name: dnsrefreshrequest_name_idx; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX dnsrefreshrequest_name_idx ON public."DnsRefreshRequest" USING btree (name);
+
+
 --
 -- Name: domain_current_package_token_idx; Type: INDEX; Schema: public; Owner: -
 --
@@ -1812,6 +1819,13 @@ CREATE INDEX domain_current_package_token_idx ON public."Domain" USING hash (cur
 CREATE INDEX domain_domain_name_hash ON public."Domain" USING hash (domain_name);
 
 
+--
+-- Name: domain_domain_name_pattern_idx; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX domain_domain_name_pattern_idx ON public."Domain" USING btree (domain_name COLLATE ucs_basic);
+
+
 --
 -- Name: domain_domain_repo_id_hash; Type: INDEX; Schema: public; Owner: -
 --
@@ -1861,6 +1875,13 @@ CREATE INDEX domainhistory_current_package_token_idx ON public."DomainHistory" U
 CREATE INDEX domainhistory_domain_repo_id_hash ON public."DomainHistory" USING hash (domain_repo_id);
 
 
+--
+-- Name: domainhistory_domain_repo_id_modification_time_idx; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX domainhistory_domain_repo_id_modification_time_idx ON public."DomainHistory" USING btree (domain_repo_id, history_modification_time);
+
+
 --
 -- Name: domainhistory_history_revision_id_hash; Type: INDEX; Schema: public; Owner: -
 --
@@ -1931,6 +1952,20 @@ CREATE INDEX graceperiodhistory_grace_period_history_revision_id_hash ON public.
 CREATE INDEX host_host_name_hash ON public."Host" USING hash (host_name);
 
 
+--
+-- Name: host_host_name_pattern_idx; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX host_host_name_pattern_idx ON public."Host" USING btree (host_name COLLATE ucs_basic);
+
+
+--
+-- Name: host_host_name_reverse_pattern_idx; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX host_host_name_reverse_pattern_idx ON public."Host" USING btree (reverse(host_name) COLLATE ucs_basic);
+
+
 --
 -- Name: host_repo_id_hash; Type: INDEX; Schema: public; Owner: -
 --
@@ -1938,6 +1973,13 @@ CREATE INDEX host_host_name_hash ON public."Host" USING hash (host_name);
 CREATE INDEX host_repo_id_hash ON public."Host" USING hash (repo_id);
 
 
+--
+-- Name: hosthistory_host_repo_id_modification_time_idx; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX hosthistory_host_repo_id_modification_time_idx ON public."HostHistory" USING btree (host_repo_id, history_modification_time);
+
+
 --
 -- Name: idx1dyqmqb61xbnj7mt7bk27ds25; Type: INDEX; Schema: public; Owner: -
 --